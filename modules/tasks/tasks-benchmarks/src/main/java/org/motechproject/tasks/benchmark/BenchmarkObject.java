@@ -0,0 +1,29 @@
+package org.motechproject.tasks.benchmark;
+
+/**
+ * The object returned by the {@link InMemoryDataProvider}.
+ */
+public class BenchmarkObject {
+
+    private final String id;
+    private final String name;
+    private final BenchmarkObject parent;
+
+    public BenchmarkObject(String id, String name, BenchmarkObject parent) {
+        this.id = id;
+        this.name = name;
+        this.parent = parent;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BenchmarkObject getParent() {
+        return parent;
+    }
+}
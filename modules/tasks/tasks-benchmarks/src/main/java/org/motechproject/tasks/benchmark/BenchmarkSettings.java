@@ -0,0 +1,22 @@
+package org.motechproject.tasks.benchmark;
+
+import org.motechproject.server.config.SettingsFacade;
+
+import java.util.Properties;
+
+/**
+ * Task module settings read from the given properties instead of the configuration service.
+ */
+public class BenchmarkSettings extends SettingsFacade {
+
+    private final Properties properties;
+
+    public BenchmarkSettings(Properties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        return properties.getProperty(key);
+    }
+}
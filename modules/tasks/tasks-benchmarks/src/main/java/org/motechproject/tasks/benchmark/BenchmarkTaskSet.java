@@ -0,0 +1,190 @@
+package org.motechproject.tasks.benchmark;
+
+import org.joda.time.LocalDate;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.tasks.domain.ActionEvent;
+import org.motechproject.tasks.domain.ActionEventBuilder;
+import org.motechproject.tasks.domain.ActionParameter;
+import org.motechproject.tasks.domain.ActionParameterBuilder;
+import org.motechproject.tasks.domain.DataSource;
+import org.motechproject.tasks.domain.EventParameter;
+import org.motechproject.tasks.domain.Filter;
+import org.motechproject.tasks.domain.FilterSet;
+import org.motechproject.tasks.domain.LogicalOperator;
+import org.motechproject.tasks.domain.Lookup;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.domain.TaskTriggerInformation;
+import org.motechproject.tasks.domain.TriggerEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.motechproject.tasks.domain.OperatorType.CONTAINS;
+import static org.motechproject.tasks.domain.OperatorType.EXIST;
+import static org.motechproject.tasks.domain.OperatorType.GT;
+import static org.motechproject.tasks.domain.ParameterType.DATE;
+import static org.motechproject.tasks.domain.ParameterType.INTEGER;
+import static org.motechproject.tasks.domain.ParameterType.TEXTAREA;
+import static org.motechproject.tasks.domain.ParameterType.UNICODE;
+
+/**
+ * A synthetic set of tasks listening on the same trigger, together with the trigger and action definitions they use.
+ * Every task has the configured number of filters, data sources and actions. All filters pass for the events created
+ * by {@link #createEvent(int)}, so every handled event executes all actions of all tasks.
+ */
+public class BenchmarkTaskSet {
+
+    public static final String TRIGGER_SUBJECT = "org.motechproject.tasks.benchmark.trigger";
+    public static final String ACTION_SUBJECT = "org.motechproject.tasks.benchmark.action";
+    public static final String PROVIDER_NAME = "benchmark-provider";
+    public static final String OBJECT_TYPE = "BenchmarkObject";
+
+    private static final String MODULE_NAME = "motech-tasks-benchmarks";
+    private static final String MODULE_VERSION = "1.0";
+    private static final long PROVIDER_ID = 1L;
+
+    private final List<Task> tasks = new ArrayList<>();
+    private final TriggerEvent triggerEvent;
+    private final ActionEvent actionEvent;
+
+    /**
+     * Creates the task set.
+     *
+     * @param taskCount  the number of tasks
+     * @param filterCount  the number of filters of every task
+     * @param dataSourceCount  the number of data sources of every task
+     * @param actionCount  the number of actions of every task
+     */
+    public BenchmarkTaskSet(int taskCount, int filterCount, int dataSourceCount, int actionCount) {
+        this.triggerEvent = createTriggerEvent();
+        this.actionEvent = createActionEvent(dataSourceCount);
+
+        for (int i = 0; i < taskCount; ++i) {
+            tasks.add(createTask(i + 1, filterCount, dataSourceCount, actionCount));
+        }
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public TriggerEvent getTriggerEvent() {
+        return triggerEvent;
+    }
+
+    public ActionEvent getActionEvent() {
+        return actionEvent;
+    }
+
+    /**
+     * Creates a trigger event matching the tasks of this set.
+     *
+     * @param number  the number of the event, used to vary the parameter values
+     * @return the event
+     */
+    public MotechEvent createEvent(int number) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("externalId", String.valueOf(100000 + number));
+        parameters.put("name", "benchmark user " + number);
+        parameters.put("date", new LocalDate(2015, 1, 1).plusDays(number % 365));
+        parameters.put("count", number);
+
+        return new MotechEvent(TRIGGER_SUBJECT, parameters);
+    }
+
+    private static TriggerEvent createTriggerEvent() {
+        TriggerEvent trigger = new TriggerEvent();
+        trigger.setSubject(TRIGGER_SUBJECT);
+        trigger.setEventParameters(Arrays.asList(
+                new EventParameter("External ID", "externalId"),
+                new EventParameter("Name", "name"),
+                new EventParameter("Date", "date", DATE),
+                new EventParameter("Count", "count", INTEGER)
+        ));
+
+        return trigger;
+    }
+
+    private static ActionEvent createActionEvent(int dataSourceCount) {
+        SortedSet<ActionParameter> parameters = new TreeSet<>();
+        int order = 0;
+
+        parameters.add(new ActionParameterBuilder().setDisplayName("Recipient").setKey("recipient")
+                .setType(UNICODE).setOrder(order++).createActionParameter());
+        parameters.add(new ActionParameterBuilder().setDisplayName("Message").setKey("message")
+                .setType(TEXTAREA).setOrder(order++).createActionParameter());
+        parameters.add(new ActionParameterBuilder().setDisplayName("Count").setKey("count")
+                .setType(INTEGER).setOrder(order++).createActionParameter());
+
+        for (int i = 1; i <= dataSourceCount; ++i) {
+            parameters.add(new ActionParameterBuilder().setDisplayName("Object " + i).setKey("object" + i)
+                    .setType(UNICODE).setOrder(order++).createActionParameter());
+        }
+
+        ActionEvent action = new ActionEventBuilder().setDisplayName("Benchmark action").setSubject(ACTION_SUBJECT)
+                .setActionParameters(parameters).createActionEvent();
+
+        return action;
+    }
+
+    private static Task createTask(long id, int filterCount, int dataSourceCount, int actionCount) {
+        TaskTriggerInformation trigger = new TaskTriggerInformation("Benchmark trigger", "benchmark", MODULE_NAME,
+                MODULE_VERSION, TRIGGER_SUBJECT, TRIGGER_SUBJECT);
+
+        Task task = new Task("benchmark task " + id, trigger, null);
+        task.setId(id);
+        task.setHasRegisteredChannel(true);
+
+        for (int i = 1; i <= dataSourceCount; ++i) {
+            String lookupValue = i == 1
+                    ? "{{trigger.externalId}}"
+                    : String.format("{{ad.%d.%s#%d.id}}", PROVIDER_ID, OBJECT_TYPE, i - 1);
+
+            task.getTaskConfig().add(new DataSource(PROVIDER_NAME, PROVIDER_ID, (long) i, OBJECT_TYPE, "id",
+                    Arrays.asList(new Lookup("id", lookupValue)), true));
+        }
+
+        if (filterCount > 0) {
+            List<Filter> filters = new ArrayList<>(filterCount);
+
+            for (int i = 0; i < filterCount; ++i) {
+                filters.add(createFilter(i));
+            }
+
+            task.getTaskConfig().add(new FilterSet(filters, LogicalOperator.AND));
+        }
+
+        for (int i = 0; i < actionCount; ++i) {
+            Map<String, String> values = new HashMap<>();
+            values.put("recipient", "{{trigger.externalId}}");
+            values.put("message", "Hello {{trigger.name}}, your visit is on {{trigger.date}}");
+            values.put("count", "{{trigger.count}}");
+
+            for (int j = 1; j <= dataSourceCount; ++j) {
+                values.put("object" + j, String.format("{{ad.%d.%s#%d.name}}", PROVIDER_ID, OBJECT_TYPE, j));
+            }
+
+            task.addAction(new TaskActionInformation("Benchmark action", "benchmark", MODULE_NAME, MODULE_VERSION,
+                    ACTION_SUBJECT, values));
+        }
+
+        return task;
+    }
+
+    private static Filter createFilter(int number) {
+        switch (number % 3) {
+            case 0:
+                return new Filter(new EventParameter("Name", "name"), true, CONTAINS.getValue(), "benchmark");
+            case 1:
+                return new Filter(new EventParameter("Count", "count", INTEGER), true, GT.getValue(), "-1");
+            default:
+                return new Filter(new EventParameter("External ID", "externalId"), true, EXIST.getValue(), "");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.motechproject.tasks.benchmark;
+
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.service.TaskActivityService;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Activity service counting the activities instead of storing them. The last error is kept, so that a benchmark with
+ * a broken task set can report why the tasks fail.
+ */
+public class InMemoryActivityService implements TaskActivityService {
+
+    private final Map<TaskActivityType, AtomicLong> counts = new EnumMap<>(TaskActivityType.class);
+    private volatile TaskHandlerException lastError;
+
+    public InMemoryActivityService() {
+        for (TaskActivityType type : TaskActivityType.values()) {
+            counts.put(type, new AtomicLong());
+        }
+    }
+
+    @Override
+    public void addError(Task task, TaskHandlerException e) {
+        lastError = e;
+        counts.get(TaskActivityType.ERROR).incrementAndGet();
+    }
+
+    @Override
+    public void addSuccess(Task task) {
+        counts.get(TaskActivityType.SUCCESS).incrementAndGet();
+    }
+
+    @Override
+    public void addWarning(Task task) {
+        counts.get(TaskActivityType.WARNING).incrementAndGet();
+    }
+
+    @Override
+    public void addWarning(Task task, String key, String value) {
+        counts.get(TaskActivityType.WARNING).incrementAndGet();
+    }
+
+    @Override
+    public void addWarning(Task task, String key, String field, Exception e) {
+        counts.get(TaskActivityType.WARNING).incrementAndGet();
+    }
+
+    @Override
+    public void deleteActivitiesForTask(Long taskId) {
+        // nothing is stored
+    }
+
+    @Override
+    public List<TaskActivity> getLatestActivities() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<TaskActivity> getTaskActivities(Long taskId, Set<TaskActivityType> activityTypeSet,
+                                                QueryParams queryParams) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public long getTaskActivitiesCount(Long taskId, Set<TaskActivityType> activityTypes) {
+        long count = 0;
+
+        for (TaskActivityType type : activityTypes) {
+            count += getCount(type);
+        }
+
+        return count;
+    }
+
+    @Override
+    public long getTaskActivitiesCount(Long taskId, TaskActivityType type) {
+        return getCount(type);
+    }
+
+    public long getCount(TaskActivityType type) {
+        return counts.get(type).get();
+    }
+
+    public TaskHandlerException getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,41 @@
+package org.motechproject.tasks.benchmark;
+
+import org.motechproject.commons.api.DataProvider;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Data provider returning a new {@link BenchmarkObject} for every lookup, without touching any storage.
+ */
+public class InMemoryDataProvider implements DataProvider {
+
+    private final AtomicLong lookups = new AtomicLong();
+
+    @Override
+    public String getName() {
+        return BenchmarkTaskSet.PROVIDER_NAME;
+    }
+
+    @Override
+    public String toJSON() {
+        return "{}";
+    }
+
+    @Override
+    public Object lookup(String type, String lookupName, Map<String, String> lookupFields) {
+        lookups.incrementAndGet();
+
+        String id = lookupFields.get("id");
+        return new BenchmarkObject(id, "object " + id, new BenchmarkObject("parent-" + id, "parent", null));
+    }
+
+    @Override
+    public boolean supports(String type) {
+        return BenchmarkTaskSet.OBJECT_TYPE.equals(type);
+    }
+
+    public long getLookups() {
+        return lookups.get();
+    }
+}
@@ -0,0 +1,65 @@
+package org.motechproject.tasks.benchmark;
+
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.EventListenerRegistryService;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Listener registry keeping the listeners in memory. The listeners are never called, the benchmarks call the task
+ * trigger handler directly.
+ */
+public class InMemoryEventListenerRegistry implements EventListenerRegistryService {
+
+    private final Map<String, Set<EventListener>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerListener(EventListener listener, List<String> subjects) {
+        for (String subject : subjects) {
+            registerListener(listener, subject);
+        }
+    }
+
+    @Override
+    public synchronized void registerListener(EventListener listener, String subject) {
+        Set<EventListener> set = listeners.get(subject);
+
+        if (set == null) {
+            set = new HashSet<>();
+            listeners.put(subject, set);
+        }
+
+        set.add(listener);
+    }
+
+    @Override
+    public Set<EventListener> getListeners(String subject) {
+        Set<EventListener> set = listeners.get(subject);
+        return set == null ? new HashSet<EventListener>() : set;
+    }
+
+    @Override
+    public boolean hasListener(String subject) {
+        return listeners.containsKey(subject);
+    }
+
+    @Override
+    public int getListenerCount(String subject) {
+        return getListeners(subject).size();
+    }
+
+    @Override
+    public synchronized void clearListenersForBean(String beanName) {
+        for (Set<EventListener> set : listeners.values()) {
+            for (EventListener listener : new HashSet<>(set)) {
+                if (beanName.equals(listener.getIdentifier())) {
+                    set.remove(listener);
+                }
+            }
+        }
+    }
+}
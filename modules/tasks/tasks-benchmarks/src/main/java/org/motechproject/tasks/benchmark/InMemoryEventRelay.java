@@ -0,0 +1,37 @@
+package org.motechproject.tasks.benchmark;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event relay counting the sent events instead of sending them.
+ */
+public class InMemoryEventRelay implements EventRelay {
+
+    private final AtomicLong actionEvents = new AtomicLong();
+    private final AtomicLong otherEvents = new AtomicLong();
+
+    @Override
+    public void sendEventMessage(MotechEvent motechEvent) {
+        if (BenchmarkTaskSet.ACTION_SUBJECT.equals(motechEvent.getSubject())) {
+            actionEvents.incrementAndGet();
+        } else {
+            otherEvents.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void broadcastEventMessage(MotechEvent motechEvent) {
+        otherEvents.incrementAndGet();
+    }
+
+    public long getActionEvents() {
+        return actionEvents.get();
+    }
+
+    public long getOtherEvents() {
+        return otherEvents.get();
+    }
+}
@@ -0,0 +1,103 @@
+package org.motechproject.tasks.benchmark;
+
+import org.motechproject.commons.api.TasksEventParser;
+import org.motechproject.tasks.domain.ActionEvent;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.domain.TriggerEvent;
+import org.motechproject.tasks.service.TaskService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Task service serving the tasks of a {@link BenchmarkTaskSet}. Every subject resolves to the trigger of the set, so
+ * recorded events with any subject execute all the tasks. Saving a task does nothing.
+ */
+public class InMemoryTaskService implements TaskService {
+
+    private final BenchmarkTaskSet taskSet;
+
+    public InMemoryTaskService(BenchmarkTaskSet taskSet) {
+        this.taskSet = taskSet;
+    }
+
+    @Override
+    public void save(Task task) {
+        // the tasks are kept in memory
+    }
+
+    @Override
+    public ActionEvent getActionEventFor(TaskActionInformation taskActionInformation) {
+        return taskSet.getActionEvent();
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return taskSet.getTasks();
+    }
+
+    @Override
+    public List<Task> findTasksByName(String name) {
+        List<Task> tasks = new ArrayList<>();
+
+        for (Task task : taskSet.getTasks()) {
+            if (task.getName().equals(name)) {
+                tasks.add(task);
+            }
+        }
+
+        return tasks;
+    }
+
+    @Override
+    public List<Task> findActiveTasksForTrigger(TriggerEvent trigger) {
+        return taskSet.getTasks();
+    }
+
+    @Override
+    public List<Task> findActiveTasksForTriggerSubject(String subject) {
+        return taskSet.getTasks();
+    }
+
+    @Override
+    public List<Task> findTasksDependentOnModule(String moduleName) {
+        return taskSet.getTasks();
+    }
+
+    @Override
+    public TriggerEvent findTrigger(String subject) {
+        return taskSet.getTriggerEvent();
+    }
+
+    @Override
+    public TasksEventParser findCustomParser(String name) {
+        return null;
+    }
+
+    @Override
+    public Task getTask(Long taskId) {
+        for (Task task : taskSet.getTasks()) {
+            if (task.getId().equals(taskId)) {
+                return task;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void deleteTask(Long taskId) {
+        throw new UnsupportedOperationException("Tasks cannot be deleted from the benchmark task set");
+    }
+
+    @Override
+    public String exportTask(Long taskId) {
+        throw new UnsupportedOperationException("Tasks cannot be exported from the benchmark task set");
+    }
+
+    @Override
+    public Task importTask(String json) {
+        throw new UnsupportedOperationException("Tasks cannot be imported to the benchmark task set");
+    }
+}
@@ -0,0 +1,75 @@
+package org.motechproject.tasks.benchmark;
+
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.motechproject.event.MotechEvent;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads recorded events from a file. Every line of the file holds a single event as a JSON object with the
+ * <code>subject</code> and <code>parameters</code> properties, for example:
+ * <pre>{"subject": "org.motechproject.sms.inbound", "parameters": {"sender": "48123456789", "message": "hi"}}</pre>
+ * Blank lines and lines starting with <code>#</code> are skipped.
+ */
+public final class RecordedEvents {
+
+    private static final String SUBJECT = "subject";
+    private static final String PARAMETERS = "parameters";
+
+    private RecordedEvents() {
+    }
+
+    /**
+     * Reads the events from the given file.
+     *
+     * @param file  the file, not null
+     * @return the events in the order they were recorded
+     * @throws IOException if the file could not be read or contains invalid JSON
+     */
+    public static List<MotechEvent> read(File file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<MotechEvent> events = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isBlank(line) || line.trim().startsWith("#")) {
+                    continue;
+                }
+
+                Map<String, Object> event = mapper.readValue(line, new TypeReference<Map<String, Object>>() { });
+                Object parameters = event.get(PARAMETERS);
+
+                events.add(new MotechEvent((String) event.get(SUBJECT), parameters instanceof Map
+                        ? (Map<String, Object>) parameters
+                        : new HashMap<String, Object>()));
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * Returns a copy of the given event, so that it can be handled more than once. The task trigger handler adds
+     * error information to the parameters of the handled events.
+     *
+     * @param event  the event to copy, not null
+     * @return the copy
+     */
+    public static MotechEvent copy(MotechEvent event) {
+        return new MotechEvent(event.getSubject(), new HashMap<>(event.getParameters()));
+    }
+}
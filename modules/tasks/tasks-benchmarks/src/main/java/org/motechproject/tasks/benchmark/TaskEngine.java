@@ -0,0 +1,69 @@
+package org.motechproject.tasks.benchmark;
+
+import org.motechproject.tasks.metrics.TaskMetrics;
+import org.motechproject.tasks.service.TaskActionExecutor;
+import org.motechproject.tasks.service.TaskTriggerHandler;
+
+import java.util.Properties;
+
+/**
+ * A task trigger handler wired with in-memory stubs, executing the tasks of a {@link BenchmarkTaskSet}.
+ */
+public class TaskEngine {
+
+    private final BenchmarkTaskSet taskSet;
+    private final InMemoryActivityService activityService = new InMemoryActivityService();
+    private final InMemoryEventRelay eventRelay = new InMemoryEventRelay();
+    private final InMemoryDataProvider dataProvider = new InMemoryDataProvider();
+    private final TaskMetrics metrics = new TaskMetrics();
+    private final TaskActionExecutor actionExecutor;
+    private final TaskTriggerHandler handler;
+
+    /**
+     * Creates the engine.
+     *
+     * @param taskSet  the tasks to execute, not null
+     */
+    public TaskEngine(BenchmarkTaskSet taskSet) {
+        this.taskSet = taskSet;
+
+        Properties properties = new Properties();
+        properties.setProperty("task.possible.errors", String.valueOf(Integer.MAX_VALUE));
+
+        InMemoryTaskService taskService = new InMemoryTaskService(taskSet);
+
+        actionExecutor = new TaskActionExecutor(taskService, activityService, eventRelay);
+        handler = new TaskTriggerHandler(taskService, activityService, new InMemoryEventListenerRegistry(),
+                eventRelay, actionExecutor, new BenchmarkSettings(properties));
+        handler.setMetrics(metrics);
+        handler.addDataProvider(dataProvider);
+    }
+
+    public BenchmarkTaskSet getTaskSet() {
+        return taskSet;
+    }
+
+    public TaskTriggerHandler getHandler() {
+        return handler;
+    }
+
+    public TaskActionExecutor getActionExecutor() {
+        return actionExecutor;
+    }
+
+    public InMemoryActivityService getActivityService() {
+        return activityService;
+    }
+
+    public InMemoryEventRelay getEventRelay() {
+        return eventRelay;
+    }
+
+    public InMemoryDataProvider getDataProvider() {
+        return dataProvider;
+    }
+
+    public TaskMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,259 @@
+package org.motechproject.tasks.benchmark;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.ex.TriggerNotFoundException;
+import org.motechproject.tasks.metrics.LatencyHistogram;
+import org.motechproject.tasks.metrics.LatencySnapshot;
+import org.motechproject.tasks.metrics.TaskStep;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load harness for the task engine. Drives {@link org.motechproject.tasks.service.TaskTriggerHandler#handle} with a
+ * stream of synthetic or recorded events against a synthetic task set and reports the throughput, the latency of
+ * handling a single event and the memory allocated per event. The benchmark is configured with system properties:
+ * <ul>
+ * <li><b>tasks.benchmark.tasks</b> - the number of tasks listening on the trigger, 10 by default,</li>
+ * <li><b>tasks.benchmark.filters</b> - the number of filters of every task, 3 by default,</li>
+ * <li><b>tasks.benchmark.dataSources</b> - the number of data sources of every task, 2 by default,</li>
+ * <li><b>tasks.benchmark.actions</b> - the number of actions of every task, 2 by default,</li>
+ * <li><b>tasks.benchmark.events</b> - the number of measured events, 100000 by default,</li>
+ * <li><b>tasks.benchmark.warmup</b> - the number of events handled before measuring, 20000 by default,</li>
+ * <li><b>tasks.benchmark.threads</b> - the number of threads handling the events, 1 by default,</li>
+ * <li><b>tasks.benchmark.eventsFile</b> - the file with recorded events (see {@link RecordedEvents}), replayed in a
+ * loop instead of the synthetic events.</li>
+ * </ul>
+ */
+public class TaskEngineBenchmark {
+
+    private static final String PREFIX = "tasks.benchmark.";
+    private static final double NANOS_IN_SECOND = 1000000000.0;
+
+    private final TaskEngine engine;
+    private final List<MotechEvent> recordedEvents;
+    private final int threads;
+
+    /**
+     * Creates the benchmark.
+     *
+     * @param engine  the engine to benchmark, not null
+     * @param recordedEvents  the events to replay, null to use synthetic events
+     * @param threads  the number of threads handling the events
+     */
+    public TaskEngineBenchmark(TaskEngine engine, List<MotechEvent> recordedEvents, int threads) {
+        this.engine = engine;
+        this.recordedEvents = recordedEvents;
+        this.threads = Math.max(threads, 1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        BenchmarkTaskSet taskSet = new BenchmarkTaskSet(getInt("tasks", 10), getInt("filters", 3),
+                getInt("dataSources", 2), getInt("actions", 2));
+
+        String eventsFile = System.getProperty(PREFIX + "eventsFile");
+        List<MotechEvent> recorded = StringUtils.isBlank(eventsFile) ? null : RecordedEvents.read(new File(eventsFile));
+
+        TaskEngineBenchmark benchmark = new TaskEngineBenchmark(new TaskEngine(taskSet), recorded,
+                getInt("threads", 1));
+
+        benchmark.run(getInt("warmup", 20000));
+        BenchmarkResult result = benchmark.run(getInt("events", 100000));
+
+        System.out.println(result.describe()); // NOPMD - the report is the output of the harness
+    }
+
+    /**
+     * Handles the given number of events and measures the execution.
+     *
+     * @param eventCount  the number of events to handle
+     * @return the result of the run
+     * @throws InterruptedException if the run was interrupted
+     * @throws ExecutionException if handling an event failed with an unexpected exception
+     */
+    public BenchmarkResult run(int eventCount) throws InterruptedException, ExecutionException {
+        final LatencyHistogram latency = new LatencyHistogram();
+        long successBefore = engine.getActivityService().getCount(TaskActivityType.SUCCESS);
+        long errorsBefore = engine.getActivityService().getCount(TaskActivityType.ERROR);
+
+        engine.getMetrics().reset();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> allocations = new ArrayList<>(threads);
+        long start = System.nanoTime();
+
+        try {
+            for (int i = 0; i < threads; ++i) {
+                final int first = i;
+                final int count = eventCount / threads + (i < eventCount % threads ? 1 : 0);
+
+                allocations.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws TriggerNotFoundException {
+                        return handleEvents(first, count, latency);
+                    }
+                }));
+            }
+
+            long allocated = 0;
+            for (Future<Long> future : allocations) {
+                allocated = future.get() < 0 || allocated < 0 ? -1 : allocated + future.get();
+            }
+
+            long elapsed = System.nanoTime() - start;
+
+            return new BenchmarkResult(eventCount, engine.getTaskSet().getTasks().size(), elapsed,
+                    latency.getSnapshot(), allocated,
+                    engine.getActivityService().getCount(TaskActivityType.SUCCESS) - successBefore,
+                    engine.getActivityService().getCount(TaskActivityType.ERROR) - errorsBefore,
+                    engine.getMetrics().getTaskTimes());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long handleEvents(int first, int count, LatencyHistogram latency) throws TriggerNotFoundException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = threadBean instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threadBean
+                : null;
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+
+        for (int i = 0; i < count; ++i) {
+            MotechEvent event = nextEvent(first + i * threads);
+            long allocatedBefore = allocationBean == null ? 0 : allocationBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+
+            engine.getHandler().handle(event);
+
+            latency.record(System.nanoTime() - start);
+
+            if (allocationBean != null) {
+                allocated += allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            }
+        }
+
+        return allocationBean == null ? -1 : allocated;
+    }
+
+    private MotechEvent nextEvent(int number) {
+        return recordedEvents == null
+                ? engine.getTaskSet().createEvent(number)
+                : RecordedEvents.copy(recordedEvents.get(number % recordedEvents.size()));
+    }
+
+    private static int getInt(String name, int defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        return StringUtils.isBlank(value) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * The result of a benchmark run.
+     */
+    public static class BenchmarkResult {
+
+        private final int events;
+        private final int tasksPerEvent;
+        private final long elapsedNanos;
+        private final LatencySnapshot latency;
+        private final long allocatedBytes;
+        private final long successes;
+        private final long errors;
+        private final Map<Long, Map<TaskStep, LatencySnapshot>> stepTimes;
+
+        public BenchmarkResult(int events, int tasksPerEvent, long elapsedNanos, LatencySnapshot latency, // NO CHECKSTYLE More than 7 parameters (found 8).
+                               long allocatedBytes, long successes, long errors,
+                               Map<Long, Map<TaskStep, LatencySnapshot>> stepTimes) {
+            this.events = events;
+            this.tasksPerEvent = tasksPerEvent;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+            this.allocatedBytes = allocatedBytes;
+            this.successes = successes;
+            this.errors = errors;
+            this.stepTimes = stepTimes;
+        }
+
+        public double getEventsPerSecond() {
+            return elapsedNanos == 0 ? 0 : events * NANOS_IN_SECOND / elapsedNanos;
+        }
+
+        public LatencySnapshot getLatency() {
+            return latency;
+        }
+
+        /**
+         * Returns the average number of bytes allocated while handling a single event.
+         *
+         * @return the number of bytes, -1 if the JVM does not support measuring allocations
+         */
+        public long getAllocatedBytesPerEvent() {
+            return allocatedBytes < 0 || events == 0 ? -1 : allocatedBytes / events;
+        }
+
+        /**
+         * Returns the average number of bytes allocated by a single task execution.
+         *
+         * @return the number of bytes, -1 if the JVM does not support measuring allocations
+         */
+        public long getAllocatedBytesPerExecution() {
+            long executions = (long) events * tasksPerEvent;
+            return allocatedBytes < 0 || executions == 0 ? -1 : allocatedBytes / executions;
+        }
+
+        public long getSuccesses() {
+            return successes;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public Map<Long, Map<TaskStep, LatencySnapshot>> getStepTimes() {
+            return stepTimes;
+        }
+
+        /**
+         * Returns the human readable report of the run.
+         *
+         * @return the report
+         */
+        public String describe() {
+            StringBuilder sb = new StringBuilder();
+
+            sb.append(String.format("events: %d, task executions: %d (successful: %d, failed: %d)%n",
+                    events, (long) events * tasksPerEvent, successes, errors));
+            sb.append(String.format("throughput: %.1f events/s%n", getEventsPerSecond()));
+            sb.append(String.format("latency per event [ms]: mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n",
+                    latency.getMean(), latency.getP50(), latency.getP90(), latency.getP99(), latency.getMax()));
+            sb.append(String.format("allocated per event: %d B, per task execution: %d B%n",
+                    getAllocatedBytesPerEvent(), getAllocatedBytesPerExecution()));
+
+            Map<TaskStep, LatencySnapshot> firstTask = stepTimes.isEmpty() ? null : stepTimes.values().iterator().next();
+
+            if (firstTask != null) {
+                sb.append("step times of the first task [ms]:").append(String.format("%n"));
+
+                for (Map.Entry<TaskStep, LatencySnapshot> entry : firstTask.entrySet()) {
+                    sb.append(String.format("  %-14s p50 %.3f, p99 %.3f%n", entry.getKey(),
+                            entry.getValue().getP50(), entry.getValue().getP99()));
+                }
+            }
+
+            return sb.toString();
+        }
+    }
+}
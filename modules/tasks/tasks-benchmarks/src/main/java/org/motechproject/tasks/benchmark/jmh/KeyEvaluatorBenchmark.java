@@ -0,0 +1,71 @@
+package org.motechproject.tasks.benchmark.jmh;
+
+import org.motechproject.tasks.benchmark.BenchmarkObject;
+import org.motechproject.tasks.benchmark.BenchmarkTaskSet;
+import org.motechproject.tasks.benchmark.InMemoryActivityService;
+import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.service.KeyEvaluator;
+import org.motechproject.tasks.service.TaskContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of task templates with trigger keys, data source keys and manipulations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyEvaluatorBenchmark {
+
+    private static final String PLAIN = "A message without any keys";
+    private static final String TRIGGER_KEYS = "Hello {{trigger.name}}, your visit is on {{trigger.date}}";
+    private static final String DATA_SOURCE_KEYS = "{{ad.1.BenchmarkObject#1.name}} / {{ad.1.BenchmarkObject#1.parent.id}}";
+    private static final String MANIPULATIONS = "{{trigger.name?toUpper?substring(0,9)}} {{trigger.name?join(-)}}";
+
+    private KeyEvaluator keyEvaluator;
+
+    @Setup
+    public void setUp() {
+        BenchmarkTaskSet taskSet = new BenchmarkTaskSet(1, 0, 1, 1);
+
+        TaskContext taskContext = new TaskContext(taskSet.getTasks().get(0), taskSet.createEvent(1).getParameters(),
+                new InMemoryActivityService());
+        taskContext.addDataSourceObject("1", new BenchmarkObject("1", "object 1", new BenchmarkObject("2", "parent", null)),
+                true);
+
+        keyEvaluator = new KeyEvaluator(taskContext);
+    }
+
+    @Benchmark
+    public String plainTemplate() throws TaskHandlerException {
+        return keyEvaluator.evaluateTemplateString(PLAIN);
+    }
+
+    @Benchmark
+    public String triggerKeys() throws TaskHandlerException {
+        return keyEvaluator.evaluateTemplateString(TRIGGER_KEYS);
+    }
+
+    @Benchmark
+    public String dataSourceKeys() throws TaskHandlerException {
+        return keyEvaluator.evaluateTemplateString(DATA_SOURCE_KEYS);
+    }
+
+    @Benchmark
+    public String manipulations() throws TaskHandlerException {
+        return keyEvaluator.evaluateTemplateString(MANIPULATIONS);
+    }
+}
@@ -0,0 +1,67 @@
+package org.motechproject.tasks.benchmark.jmh;
+
+import org.motechproject.tasks.benchmark.BenchmarkObject;
+import org.motechproject.tasks.benchmark.BenchmarkTaskSet;
+import org.motechproject.tasks.benchmark.TaskEngine;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.service.TaskActionExecutor;
+import org.motechproject.tasks.service.TaskContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the execution of a single event action. The action event is sent to an in-memory relay, so the time is
+ * spent almost entirely on creating the action parameters (evaluating and converting the templates), which is a
+ * private step of {@link TaskActionExecutor#execute}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskActionExecutorBenchmark {
+
+    @Param({ "0", "2", "5" })
+    private int dataSources;
+
+    private TaskActionExecutor actionExecutor;
+    private Task task;
+    private TaskActionInformation action;
+    private TaskContext taskContext;
+
+    @Setup
+    public void setUp() {
+        BenchmarkTaskSet taskSet = new BenchmarkTaskSet(1, 0, dataSources, 1);
+        TaskEngine engine = new TaskEngine(taskSet);
+
+        actionExecutor = engine.getActionExecutor();
+        task = taskSet.getTasks().get(0);
+        action = task.getActions().get(0);
+        taskContext = new TaskContext(task, taskSet.createEvent(1).getParameters(), engine.getActivityService());
+
+        for (int i = 1; i <= dataSources; ++i) {
+            taskContext.addDataSourceObject(String.valueOf(i), new BenchmarkObject(String.valueOf(i), "object " + i,
+                    null), true);
+        }
+    }
+
+    @Benchmark
+    public TaskContext execute() throws TaskHandlerException {
+        actionExecutor.execute(task, action, taskContext);
+        return taskContext;
+    }
+}
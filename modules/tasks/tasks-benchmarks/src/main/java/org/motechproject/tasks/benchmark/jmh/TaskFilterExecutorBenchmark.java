@@ -0,0 +1,56 @@
+package org.motechproject.tasks.benchmark.jmh;
+
+import org.motechproject.tasks.benchmark.BenchmarkTaskSet;
+import org.motechproject.tasks.benchmark.InMemoryActivityService;
+import org.motechproject.tasks.domain.FilterSet;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.service.TaskContext;
+import org.motechproject.tasks.service.TaskFilterExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of a filter set with the given number of filters on trigger values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskFilterExecutorBenchmark {
+
+    @Param({ "1", "3", "10" })
+    private int filters;
+
+    private TaskFilterExecutor filterExecutor;
+    private TaskContext taskContext;
+    private FilterSet filterSet;
+
+    @Setup
+    public void setUp() {
+        BenchmarkTaskSet taskSet = new BenchmarkTaskSet(1, filters, 0, 1);
+        Task task = taskSet.getTasks().get(0);
+
+        filterExecutor = new TaskFilterExecutor();
+        taskContext = new TaskContext(task, taskSet.createEvent(1).getParameters(), new InMemoryActivityService());
+        filterSet = task.getTaskConfig().getFilters().get(0);
+    }
+
+    @Benchmark
+    public boolean checkFilters() throws TaskHandlerException {
+        return filterExecutor.checkFilters(filterSet.getFilters(), filterSet.getOperator(), taskContext);
+    }
+}
@@ -0,0 +1,62 @@
+package org.motechproject.tasks.benchmark;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.motechproject.event.MotechEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaskEngineBenchmarkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldExecuteAllTasksForSyntheticEvents() throws Exception {
+        TaskEngine engine = new TaskEngine(new BenchmarkTaskSet(5, 3, 2, 2));
+
+        TaskEngineBenchmark.BenchmarkResult result = new TaskEngineBenchmark(engine, null, 2).run(10);
+
+        assertNull(engine.getActivityService().getLastError());
+        assertEquals(50, result.getSuccesses());
+        assertEquals(0, result.getErrors());
+        assertEquals(100, engine.getEventRelay().getActionEvents());
+        assertEquals(100, engine.getDataProvider().getLookups());
+        assertEquals(10, result.getLatency().getCount());
+        assertEquals(5, result.getStepTimes().size());
+        assertTrue(result.getEventsPerSecond() > 0);
+    }
+
+    @Test
+    public void shouldReplayRecordedEvents() throws Exception {
+        File file = folder.newFile("events.json");
+        writeLines(file, "# recorded events",
+                "{\"subject\": \"some.subject\", \"parameters\": {\"externalId\": \"1\", \"name\": \"benchmark a\", \"count\": 1}}",
+                "",
+                "{\"subject\": \"some.subject\", \"parameters\": {\"externalId\": \"2\", \"name\": \"benchmark b\", \"count\": 2}}");
+
+        List<MotechEvent> events = RecordedEvents.read(file);
+        assertEquals(2, events.size());
+        assertEquals("some.subject", events.get(0).getSubject());
+
+        TaskEngine engine = new TaskEngine(new BenchmarkTaskSet(1, 3, 1, 1));
+        TaskEngineBenchmark.BenchmarkResult result = new TaskEngineBenchmark(engine, events, 1).run(4);
+
+        assertEquals(4, result.getSuccesses());
+        assertEquals(4, engine.getEventRelay().getActionEvents());
+    }
+
+    private void writeLines(File file, String... lines) throws IOException {
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -65,6 +65,15 @@ public class Task {
     @Field
     private boolean hasRegisteredChannel;
 
+    @Field
+    private int rateLimit;
+
+    @Field
+    private int maxConcurrentExecutions;
+
+    @Field
+    private TaskOverflowPolicy overflowPolicy;
+
     /**
      * Constructor.
      */
@@ -222,6 +231,50 @@ public class Task {
         return isNotEmpty(validationErrors);
     }
 
+    /**
+     * Returns the maximum number of executions of this task per second, 0 if the rate is not limited.
+     *
+     * @return the rate limit
+     */
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Returns the maximum number of concurrent executions of this task, 0 if the concurrency is not limited.
+     *
+     * @return the concurrency cap
+     */
+    public int getMaxConcurrentExecutions() {
+        return maxConcurrentExecutions;
+    }
+
+    public void setMaxConcurrentExecutions(int maxConcurrentExecutions) {
+        this.maxConcurrentExecutions = maxConcurrentExecutions;
+    }
+
+    /**
+     * Returns the way of handling executions exceeding the limits of this task, {@link TaskOverflowPolicy#DROP} if
+     * not set.
+     *
+     * @return the overflow policy
+     */
+    public TaskOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy == null ? TaskOverflowPolicy.DROP : overflowPolicy;
+    }
+
+    public void setOverflowPolicy(TaskOverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public boolean hasExecutionLimits() {
+        return rateLimit > 0 || maxConcurrentExecutions > 0;
+    }
+
     public TaskConfig getTaskConfig() {
         return taskConfig;
     }
@@ -233,7 +286,8 @@ public class Task {
     @Override
     public int hashCode() {
         return Objects.hash(
-                id, description, name, getActions(), trigger, enabled, taskConfig
+                id, description, name, getActions(), trigger, enabled, taskConfig, rateLimit,
+                maxConcurrentExecutions, getOverflowPolicy()
         );
     }
 
@@ -256,14 +310,19 @@ public class Task {
                 && Objects.equals(this.trigger, other.trigger)
                 && Objects.equals(this.enabled, other.enabled)
                 && Objects.equals(this.hasRegisteredChannel, other.hasRegisteredChannel)
-                && Objects.equals(this.taskConfig, other.taskConfig);
+                && Objects.equals(this.taskConfig, other.taskConfig)
+                && Objects.equals(this.rateLimit, other.rateLimit)
+                && Objects.equals(this.maxConcurrentExecutions, other.maxConcurrentExecutions)
+                && Objects.equals(getOverflowPolicy(), other.getOverflowPolicy());
     }
 
     @Override
     public String toString() {
         return String.format(
-                "Task{id=%d, description='%s', name='%s', actions=%s, trigger=%s, enabled=%s, taskConfig=%s, hasRegisteredChannel=%s} ",
-                id, description, name, getActions(), trigger, enabled, taskConfig, hasRegisteredChannel
+                "Task{id=%d, description='%s', name='%s', actions=%s, trigger=%s, enabled=%s, taskConfig=%s, hasRegisteredChannel=%s, " +
+                        "rateLimit=%d, maxConcurrentExecutions=%d, overflowPolicy=%s} ",
+                id, description, name, getActions(), trigger, enabled, taskConfig, hasRegisteredChannel, rateLimit,
+                maxConcurrentExecutions, overflowPolicy
         );
     }
 
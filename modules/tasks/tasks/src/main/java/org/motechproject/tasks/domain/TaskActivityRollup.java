@@ -0,0 +1,165 @@
+package org.motechproject.tasks.domain;
+
+import org.joda.time.LocalDate;
+import org.motechproject.mds.annotations.Access;
+import org.motechproject.mds.annotations.CrudEvents;
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.Field;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.util.SecurityMode;
+import org.motechproject.tasks.constants.TasksRoles;
+
+import java.util.Objects;
+
+/**
+ * Represents the daily number of task activities of each type for a single task. Rollups are kept after the
+ * activities themselves have been purged, so that task statistics do not depend on the raw activity rows.
+ */
+@Entity(nonEditable = true)
+@CrudEvents(CrudEventType.NONE)
+@Access(value = SecurityMode.PERMISSIONS, members = {TasksRoles.MANAGE_TASKS})
+public class TaskActivityRollup {
+
+    @Field(displayName = "Task", required = true)
+    private Long task;
+
+    @Field(displayName = "Day", required = true)
+    private LocalDate day;
+
+    @Field(displayName = "Success count")
+    private long successCount;
+
+    @Field(displayName = "Warning count")
+    private long warningCount;
+
+    @Field(displayName = "Error count")
+    private long errorCount;
+
+    /**
+     * Constructor.
+     */
+    public TaskActivityRollup() {
+        this(null, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param task  the task ID
+     * @param day  the day of the rollup
+     */
+    public TaskActivityRollup(Long task, LocalDate day) {
+        this.task = task;
+        this.day = day;
+    }
+
+    /**
+     * Adds the given number to the counter of the given activity type.
+     *
+     * @param activityType  the type of the activity, not null
+     * @param count  the number to add
+     */
+    public void increment(TaskActivityType activityType, long count) {
+        switch (activityType) {
+            case SUCCESS:
+                successCount += count;
+                break;
+            case WARNING:
+                warningCount += count;
+                break;
+            case ERROR:
+                errorCount += count;
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Returns the counter of the given activity type.
+     *
+     * @param activityType  the type of the activity, not null
+     * @return the number of activities of the given type
+     */
+    public long getCount(TaskActivityType activityType) {
+        switch (activityType) {
+            case SUCCESS:
+                return successCount;
+            case WARNING:
+                return warningCount;
+            case ERROR:
+                return errorCount;
+            default:
+                return 0;
+        }
+    }
+
+    public Long getTask() {
+        return task;
+    }
+
+    public void setTask(Long task) {
+        this.task = task;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public long getSuccessCount() {
+        return successCount;
+    }
+
+    public void setSuccessCount(long successCount) {
+        this.successCount = successCount;
+    }
+
+    public long getWarningCount() {
+        return warningCount;
+    }
+
+    public void setWarningCount(long warningCount) {
+        this.warningCount = warningCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(long errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final TaskActivityRollup other = (TaskActivityRollup) obj;
+
+        return Objects.equals(this.task, other.task) &&
+                Objects.equals(this.day, other.day) &&
+                this.successCount == other.successCount &&
+                this.warningCount == other.warningCount &&
+                this.errorCount == other.errorCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(task, day, successCount, warningCount, errorCount);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TaskActivityRollup{task=%d, day=%s, success=%d, warning=%d, error=%d}",
+                task, day, successCount, warningCount, errorCount);
+    }
+}
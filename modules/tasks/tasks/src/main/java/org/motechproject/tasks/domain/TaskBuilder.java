@@ -11,6 +11,9 @@ public class TaskBuilder {
     private TaskTriggerInformation trigger;
     private boolean enabled;
     private TaskConfig taskConfig;
+    private int rateLimit;
+    private int maxConcurrentExecutions;
+    private TaskOverflowPolicy overflowPolicy;
 
     public TaskBuilder() {
         taskConfig = new TaskConfig();
@@ -72,6 +75,24 @@ public class TaskBuilder {
         return this;
     }
 
+    public TaskBuilder withRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+
+        return this;
+    }
+
+    public TaskBuilder withMaxConcurrentExecutions(int maxConcurrentExecutions) {
+        this.maxConcurrentExecutions = maxConcurrentExecutions;
+
+        return this;
+    }
+
+    public TaskBuilder withOverflowPolicy(TaskOverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+
+        return this;
+    }
+
     public TaskBuilder clear() {
         name = "";
         description = "";
@@ -79,6 +100,9 @@ public class TaskBuilder {
         trigger = null;
         enabled = false;
         taskConfig.removeAll();
+        rateLimit = 0;
+        maxConcurrentExecutions = 0;
+        overflowPolicy = null;
 
         return this;
     }
@@ -91,6 +115,9 @@ public class TaskBuilder {
         task.setEnabled(enabled);
         task.setActions(actions);
         task.setTaskConfig(taskConfig);
+        task.setRateLimit(rateLimit);
+        task.setMaxConcurrentExecutions(maxConcurrentExecutions);
+        task.setOverflowPolicy(overflowPolicy);
 
         if (null != id) {
             task.setId(id);
@@ -8,6 +8,7 @@ public enum TaskErrorType {
     BLANK("task.validation.error.blank"),
     EMPTY_COLLECTION("task.validation.error.emptyCollection"),
     NULL("task.validation.error.null"),
+    NEGATIVE("task.validation.error.negative"),
     VERSION("task.validation.error.version");
 
     private String message;
@@ -0,0 +1,26 @@
+package org.motechproject.tasks.domain;
+
+/**
+ * The <code>TaskOverflowPolicy</code> enumerates the ways of handling task executions exceeding the rate limit or the
+ * concurrency cap of a task.
+ *
+ * @see org.motechproject.tasks.domain.Task
+ */
+public enum TaskOverflowPolicy {
+    /**
+     * The execution is deferred until the limits allow it to proceed and is then run by a separate thread. If the
+     * queue of deferred executions of the task is full, or the limits do not allow the execution within the configured
+     * maximum wait time, the execution is dropped.
+     */
+    QUEUE,
+
+    /**
+     * The execution is skipped and a warning is added to the task activities.
+     */
+    DROP,
+
+    /**
+     * The execution is skipped silently, it is only counted in the task metrics.
+     */
+    SHED
+}
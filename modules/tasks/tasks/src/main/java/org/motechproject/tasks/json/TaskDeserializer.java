@@ -14,6 +14,7 @@ import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActionInformation;
 import org.motechproject.tasks.domain.TaskConfig;
 import org.motechproject.tasks.domain.TaskError;
+import org.motechproject.tasks.domain.TaskOverflowPolicy;
 import org.motechproject.tasks.domain.TaskTriggerInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +64,9 @@ public class TaskDeserializer extends JsonDeserializer<Task> {
         setProperty("name", stringType);
         setProperty("enabled", stringType);
         setProperty("hasRegisteredChannel", stringType);
+        setProperty("rateLimit", stringType);
+        setProperty("maxConcurrentExecutions", stringType);
+        setProperty("overflowPolicy", typeFactory.constructType(TaskOverflowPolicy.class));
         setProperty("taskConfig", typeFactory.constructType(TaskConfig.class));
         setProperty("trigger", typeFactory.constructType(TaskTriggerInformation.class));
 
@@ -0,0 +1,100 @@
+package org.motechproject.tasks.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe histogram of execution times. Times are counted in buckets with exponentially growing upper bounds
+ * (1 µs, 2 µs, 4 µs and so on), so percentiles are approximated by the upper bound of the bucket they fall into.
+ * Recording a time does not allocate and does not lock.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+    private static final long NANOS_IN_MICRO = 1000L;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a single execution time.
+     *
+     * @param nanos  the execution time in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+
+        buckets.incrementAndGet(bucketFor(value));
+        count.incrementAndGet();
+        totalNanos.addAndGet(value);
+
+        long currentMax = maxNanos.get();
+        while (value > currentMax && !maxNanos.compareAndSet(currentMax, value)) {
+            currentMax = maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded executions.
+     *
+     * @return the number of recorded executions
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the approximate execution time below which the given percent of executions fall.
+     *
+     * @param percentile  the percentile, from 0 to 100
+     * @return the time in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+
+            if (seen >= rank) {
+                return Math.min((1L << i) * NANOS_IN_MICRO, maxNanos.get());
+            }
+        }
+
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the current state of this histogram.
+     *
+     * @return the snapshot of this histogram
+     */
+    public LatencySnapshot getSnapshot() {
+        long executions = count.get();
+        long mean = executions == 0 ? 0 : totalNanos.get() / executions;
+
+        return new LatencySnapshot(executions, mean, maxNanos.get(), getPercentileNanos(50),
+                getPercentileNanos(90), getPercentileNanos(99));
+    }
+
+    private static int bucketFor(long nanos) {
+        long micros = nanos / NANOS_IN_MICRO;
+        int bucket = micros <= 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(micros - 1);
+
+        return Math.min(bucket, BUCKETS - 1);
+    }
+}
@@ -0,0 +1,69 @@
+package org.motechproject.tasks.metrics;
+
+import java.io.Serializable;
+
+/**
+ * The state of a {@link LatencyHistogram} at a given point in time. All times are in milliseconds.
+ */
+public class LatencySnapshot implements Serializable {
+
+    private static final long serialVersionUID = 3582190245713427810L;
+
+    private static final double NANOS_IN_MILLI = 1000000.0;
+
+    private final long count;
+    private final double mean;
+    private final double max;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+
+    /**
+     * Constructor.
+     *
+     * @param count  the number of recorded executions
+     * @param meanNanos  the mean execution time in nanoseconds
+     * @param maxNanos  the maximum execution time in nanoseconds
+     * @param p50Nanos  the median execution time in nanoseconds
+     * @param p90Nanos  the 90th percentile of execution times in nanoseconds
+     * @param p99Nanos  the 99th percentile of execution times in nanoseconds
+     */
+    public LatencySnapshot(long count, long meanNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos) {
+        this.count = count;
+        this.mean = meanNanos / NANOS_IN_MILLI;
+        this.max = maxNanos / NANOS_IN_MILLI;
+        this.p50 = p50Nanos / NANOS_IN_MILLI;
+        this.p90 = p90Nanos / NANOS_IN_MILLI;
+        this.p99 = p99Nanos / NANOS_IN_MILLI;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencySnapshot{count=%d, mean=%.3f, max=%.3f, p50=%.3f, p90=%.3f, p99=%.3f}",
+                count, mean, max, p50, p90, p99);
+    }
+}
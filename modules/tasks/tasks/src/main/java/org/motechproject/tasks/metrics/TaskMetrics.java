@@ -0,0 +1,232 @@
+package org.motechproject.tasks.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the execution time metrics of the task engine. The metrics are also available over JMX, under the
+ * {@value #OBJECT_NAME} name. Execution times are recorded for every execution, whether the slow execution tracing
+ * of the trigger handler is enabled or not.
+ */
+@Component
+public class TaskMetrics implements TaskMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.motechproject.tasks:type=TaskMetrics";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskMetrics.class);
+
+    private final ConcurrentMap<String, LatencyHistogram> parserTimes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, StepHistograms> taskTimes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, AtomicLong> throttledExecutions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                // left behind by a previous instance of the module
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            LOGGER.error("Unable to register the task metrics MBean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.error("Unable to unregister the task metrics MBean", e);
+        }
+    }
+
+    /**
+     * Records the time spent by a custom event parser on a single event.
+     *
+     * @param parserName  the name of the parser, not null
+     * @param nanos  the parsing time in nanoseconds
+     */
+    public void recordParserTime(String parserName, long nanos) {
+        getHistogram(parserTimes, parserName).record(nanos);
+    }
+
+    /**
+     * Records the step times of a single task execution. Steps which were not executed are not recorded.
+     *
+     * @param taskId  the ID of the task, not null
+     * @param trace  the trace of the execution, not null
+     */
+    public void recordTaskExecution(Long taskId, TaskTrace trace) {
+        StepHistograms histograms = taskTimes.get(taskId);
+
+        if (histograms == null) {
+            StepHistograms created = new StepHistograms();
+            histograms = taskTimes.putIfAbsent(taskId, created);
+
+            if (histograms == null) {
+                histograms = created;
+            }
+        }
+
+        for (TaskStep step : TaskStep.values()) {
+            if (step == TaskStep.TOTAL || trace.getSpans(step) > 0) {
+                histograms.get(step).record(trace.getNanos(step));
+            }
+        }
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getParserTimes() {
+        return getSnapshots(parserTimes);
+    }
+
+    @Override
+    public Map<Long, Map<TaskStep, LatencySnapshot>> getTaskTimes() {
+        Map<Long, Map<TaskStep, LatencySnapshot>> times = new TreeMap<>();
+
+        for (Map.Entry<Long, StepHistograms> entry : taskTimes.entrySet()) {
+            times.put(entry.getKey(), entry.getValue().getSnapshots());
+        }
+
+        return times;
+    }
+
+    /**
+     * Returns the execution times of the steps of the given task.
+     *
+     * @param taskId  the ID of the task, not null
+     * @return the execution times of the task steps, empty if the task was not executed
+     */
+    public Map<TaskStep, LatencySnapshot> getTaskTimes(Long taskId) {
+        StepHistograms histograms = taskTimes.get(taskId);
+        return histograms == null ? new EnumMap<TaskStep, LatencySnapshot>(TaskStep.class) : histograms.getSnapshots();
+    }
+
+    /**
+     * Counts a task execution skipped because of the rate limit or the concurrency cap of the task.
+     *
+     * @param taskId  the ID of the task, not null
+     */
+    public void recordThrottledExecution(Long taskId) {
+        AtomicLong counter = throttledExecutions.get(taskId);
+
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = throttledExecutions.putIfAbsent(taskId, created);
+
+            if (counter == null) {
+                counter = created;
+            }
+        }
+
+        counter.incrementAndGet();
+    }
+
+    @Override
+    public Map<Long, Long> getThrottledExecutions() {
+        Map<Long, Long> counts = new TreeMap<>();
+
+        for (Map.Entry<Long, AtomicLong> entry : throttledExecutions.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+
+        return counts;
+    }
+
+    /**
+     * Removes the metrics of the given task.
+     *
+     * @param taskId  the ID of the task, not null
+     */
+    public void removeTask(Long taskId) {
+        taskTimes.remove(taskId);
+        throttledExecutions.remove(taskId);
+    }
+
+    @Override
+    public void reset() {
+        parserTimes.clear();
+        taskTimes.clear();
+        throttledExecutions.clear();
+    }
+
+    static <K> LatencyHistogram getHistogram(ConcurrentMap<K, LatencyHistogram> histograms, K key) {
+        LatencyHistogram histogram = histograms.get(key);
+
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(key, created);
+
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+
+        return histogram;
+    }
+
+    static <K> Map<K, LatencySnapshot> getSnapshots(Map<K, LatencyHistogram> histograms) {
+        Map<K, LatencySnapshot> snapshots = new TreeMap<>();
+
+        for (Map.Entry<K, LatencyHistogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+        }
+
+        return snapshots;
+    }
+
+    private static final class StepHistograms {
+
+        private final LatencyHistogram[] histograms = new LatencyHistogram[TaskStep.values().length];
+
+        private StepHistograms() {
+            for (int i = 0; i < histograms.length; ++i) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        private LatencyHistogram get(TaskStep step) {
+            return histograms[step.ordinal()];
+        }
+
+        private Map<TaskStep, LatencySnapshot> getSnapshots() {
+            Map<TaskStep, LatencySnapshot> snapshots = new EnumMap<>(TaskStep.class);
+
+            for (TaskStep step : TaskStep.values()) {
+                if (get(step).getCount() > 0) {
+                    snapshots.put(step, get(step).getSnapshot());
+                }
+            }
+
+            return snapshots;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.motechproject.tasks.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX interface of the {@link TaskMetrics}. All times are in milliseconds.
+ */
+public interface TaskMetricsMXBean {
+
+    /**
+     * Returns the parsing times of the custom event parsers, keyed by parser name.
+     *
+     * @return the parsing times
+     */
+    Map<String, LatencySnapshot> getParserTimes();
+
+    /**
+     * Returns the execution times of the task steps, keyed by task ID.
+     *
+     * @return the execution times of the task steps
+     */
+    Map<Long, Map<TaskStep, LatencySnapshot>> getTaskTimes();
+
+    /**
+     * Returns the numbers of task executions skipped because of the task rate limits or concurrency caps, keyed by
+     * task ID.
+     *
+     * @return the numbers of skipped executions
+     */
+    Map<Long, Long> getThrottledExecutions();
+
+    /**
+     * Clears all collected metrics.
+     */
+    void reset();
+}
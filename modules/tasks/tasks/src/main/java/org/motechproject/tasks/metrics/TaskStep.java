@@ -0,0 +1,37 @@
+package org.motechproject.tasks.metrics;
+
+/**
+ * The steps of a task execution, for which the execution time is measured.
+ */
+public enum TaskStep {
+
+    /**
+     * Finding the trigger and the active tasks for the handled event.
+     */
+    TRIGGER_LOOKUP,
+
+    /**
+     * Retrieving objects from the data providers.
+     */
+    DATA_SOURCE,
+
+    /**
+     * Evaluating the task filters.
+     */
+    FILTER,
+
+    /**
+     * Evaluating the templates of data source lookups and action parameters.
+     */
+    TEMPLATE,
+
+    /**
+     * Calling the action service or sending the action event.
+     */
+    ACTION,
+
+    /**
+     * The whole task execution.
+     */
+    TOTAL
+}
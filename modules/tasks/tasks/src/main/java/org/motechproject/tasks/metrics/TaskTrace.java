@@ -0,0 +1,125 @@
+package org.motechproject.tasks.metrics;
+
+/**
+ * Measures the time spent in the steps of a single task execution. A step can be measured more than once, for
+ * example when the task has several data sources or actions, in which case the times are summed up. Not thread safe,
+ * a trace is used only by the thread executing the task.
+ */
+public class TaskTrace {
+
+    private static final double NANOS_IN_MILLI = 1000000.0;
+
+    private final long startNanos;
+    private long endNanos = -1;
+    private final long[] nanos = new long[TaskStep.values().length];
+    private final int[] spans = new int[TaskStep.values().length];
+
+    /**
+     * Starts a new trace.
+     */
+    public TaskTrace() {
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the current time to be passed later to {@link #record(TaskStep, long)}.
+     *
+     * @return the current value of the system timer in nanoseconds
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time of a step which started at the given time and has just finished.
+     *
+     * @param step  the step, not null
+     * @param spanStartNanos  the start of the step, as returned by {@link #start()}
+     */
+    public void record(TaskStep step, long spanStartNanos) {
+        add(step, System.nanoTime() - spanStartNanos);
+    }
+
+    /**
+     * Adds the given time to the step.
+     *
+     * @param step  the step, not null
+     * @param spanNanos  the time of the step in nanoseconds
+     */
+    public void add(TaskStep step, long spanNanos) {
+        nanos[step.ordinal()] += spanNanos;
+        spans[step.ordinal()]++;
+    }
+
+    /**
+     * Returns the total time of the given step.
+     *
+     * @param step  the step, not null
+     * @return the time in nanoseconds, 0 if the step was not executed
+     */
+    public long getNanos(TaskStep step) {
+        return step == TaskStep.TOTAL ? getTotalNanos() : nanos[step.ordinal()];
+    }
+
+    /**
+     * Returns the number of times the given step was executed.
+     *
+     * @param step  the step, not null
+     * @return the number of executions
+     */
+    public int getSpans(TaskStep step) {
+        return spans[step.ordinal()];
+    }
+
+    /**
+     * Stops the trace. The total time is not growing after the trace was stopped.
+     */
+    public void stop() {
+        if (endNanos < 0) {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns the time elapsed between starting and stopping the trace (or now, if the trace was not stopped),
+     * including the trigger lookup time, which is measured once for all tasks handling the event and then added to
+     * their traces.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTotalNanos() {
+        long end = endNanos < 0 ? System.nanoTime() : endNanos;
+        return end - startNanos + nanos[TaskStep.TRIGGER_LOOKUP.ordinal()];
+    }
+
+    /**
+     * Returns the trace in a human readable form, for example
+     * <code>total=12.500ms, TRIGGER_LOOKUP=0.300ms, DATA_SOURCE=10.100ms(2), ACTION=2.000ms</code>.
+     * Steps which were not executed are omitted and the number of spans is given when a step was executed more
+     * than once.
+     *
+     * @return the trace description
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder(String.format("total=%.3fms", getTotalNanos() / NANOS_IN_MILLI));
+
+        for (TaskStep step : TaskStep.values()) {
+            int count = step == TaskStep.TOTAL ? 0 : spans[step.ordinal()];
+
+            if (count > 0) {
+                sb.append(String.format(", %s=%.3fms", step, nanos[step.ordinal()] / NANOS_IN_MILLI));
+
+                if (count > 1) {
+                    sb.append('(').append(count).append(')');
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TaskTrace{%s}", describe());
+    }
+}
@@ -0,0 +1,38 @@
+package org.motechproject.tasks.repository;
+
+import org.joda.time.LocalDate;
+import org.motechproject.mds.annotations.Lookup;
+import org.motechproject.mds.annotations.LookupField;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.tasks.domain.TaskActivityRollup;
+
+import java.util.List;
+
+/**
+ * Data service for daily task activity rollups.
+ */
+public interface TaskActivityRollupsDataService extends MotechDataService<TaskActivityRollup> {
+
+    String TASK = "task";
+    String DAY = "day";
+
+    /**
+     * Returns the list of rollups for the given task id.
+     *
+     * @param task  the id of the task, null returns empty list
+     * @return the list of matching rollups
+     */
+    @Lookup(name = "By Task")
+    List<TaskActivityRollup> byTask(@LookupField(name = TASK) final Long task);
+
+    /**
+     * Returns the rollup for the given task id and day.
+     *
+     * @param task  the id of the task
+     * @param day  the day of the rollup
+     * @return the matching rollup, null if it does not exist
+     */
+    @Lookup(name = "By Task and Day")
+    TaskActivityRollup byTaskAndDay(@LookupField(name = TASK) final Long task,
+                                    @LookupField(name = DAY) final LocalDate day);
+}
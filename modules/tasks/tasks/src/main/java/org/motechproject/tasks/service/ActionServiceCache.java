@@ -0,0 +1,186 @@
+package org.motechproject.tasks.service;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the OSGi services and the service methods used by {@link TaskActionExecutor}. Each service interface gets
+ * its own {@link ServiceTracker}, so the service is resolved once and released by the tracker when it goes away.
+ * Service methods are resolved once per service class, method name and parameter types and kept as
+ * {@link MethodHandle}s. Method handles are dropped whenever a tracked service or any bundle changes.
+ */
+class ActionServiceCache implements BundleListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionServiceCache.class);
+
+    private final BundleContext bundleContext;
+    private final ConcurrentMap<String, ServiceTracker> trackers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<MethodKey, MethodHandle> methodHandles = new ConcurrentHashMap<>();
+
+    /**
+     * Class constructor.
+     *
+     * @param bundleContext  the bundle context used for tracking services, not null
+     */
+    public ActionServiceCache(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+        this.bundleContext.addBundleListener(this);
+    }
+
+    /**
+     * Returns the service registered under the given interface, or null if no such service is available.
+     *
+     * @param serviceInterface  the name of the service interface
+     * @return the service, null if not available
+     */
+    public Object getService(String serviceInterface) {
+        ServiceTracker tracker = trackers.get(serviceInterface);
+
+        if (tracker == null) {
+            tracker = openTracker(serviceInterface);
+        }
+
+        return tracker.getService();
+    }
+
+    /**
+     * Returns the method handle for the public method with the given name and parameter types declared by the class
+     * of the given service. The returned handle has the {@code (Object, Object[])void} type, the first argument
+     * being the service instance and the second the method arguments. The value returned by the method is discarded.
+     *
+     * @param service  the service instance, not null
+     * @param methodName  the name of the method
+     * @param parameterTypes  the parameter types of the method
+     * @return the method handle
+     * @throws NoSuchMethodException if the service class has no matching method
+     * @throws IllegalAccessException if the method is not accessible
+     */
+    public MethodHandle getMethodHandle(Object service, String methodName, Class[] parameterTypes)
+            throws NoSuchMethodException, IllegalAccessException {
+        MethodKey key = new MethodKey(service.getClass(), methodName, parameterTypes);
+        MethodHandle handle = methodHandles.get(key);
+
+        if (handle == null) {
+            handle = createMethodHandle(service.getClass(), methodName, parameterTypes);
+            methodHandles.put(key, handle);
+        }
+
+        return handle;
+    }
+
+    /**
+     * Closes all service trackers and clears the caches.
+     */
+    public void close() {
+        bundleContext.removeBundleListener(this);
+
+        for (ServiceTracker tracker : trackers.values()) {
+            tracker.close();
+        }
+
+        trackers.clear();
+        methodHandles.clear();
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        switch (event.getType()) {
+            case BundleEvent.STOPPED:
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNINSTALLED:
+            case BundleEvent.UNRESOLVED:
+                LOGGER.debug("Bundle {} changed, clearing action method cache", event.getBundle());
+                methodHandles.clear();
+                break;
+            default:
+        }
+    }
+
+    private synchronized ServiceTracker openTracker(String serviceInterface) {
+        ServiceTracker tracker = trackers.get(serviceInterface);
+
+        if (tracker == null) {
+            tracker = new ActionServiceTracker(serviceInterface);
+            tracker.open();
+            trackers.put(serviceInterface, tracker);
+        }
+
+        return tracker;
+    }
+
+    private MethodHandle createMethodHandle(Class<?> serviceClass, String methodName, Class[] parameterTypes)
+            throws NoSuchMethodException, IllegalAccessException {
+        Method method = serviceClass.getMethod(methodName, parameterTypes);
+        method.setAccessible(true);
+
+        return MethodHandles.publicLookup().unreflect(method)
+                .asType(MethodType.genericMethodType(parameterTypes.length + 1).changeReturnType(void.class))
+                .asSpreader(Object[].class, parameterTypes.length);
+    }
+
+    private class ActionServiceTracker extends ServiceTracker {
+
+        public ActionServiceTracker(String serviceInterface) {
+            super(bundleContext, serviceInterface, null);
+        }
+
+        @Override
+        public void modifiedService(ServiceReference reference, Object service) {
+            methodHandles.clear();
+            super.modifiedService(reference, service);
+        }
+
+        @Override
+        public void removedService(ServiceReference reference, Object service) {
+            methodHandles.clear();
+            super.removedService(reference, service);
+        }
+    }
+
+    private static final class MethodKey {
+        private final Class<?> serviceClass;
+        private final String methodName;
+        private final Class[] parameterTypes;
+
+        private MethodKey(Class<?> serviceClass, String methodName, Class[] parameterTypes) {
+            this.serviceClass = serviceClass;
+            this.methodName = methodName;
+            this.parameterTypes = Arrays.copyOf(parameterTypes, parameterTypes.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serviceClass, methodName, Arrays.hashCode(parameterTypes));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            final MethodKey other = (MethodKey) obj;
+
+            return serviceClass == other.serviceClass && Objects.equals(methodName, other.methodName) &&
+                    Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+    }
+}
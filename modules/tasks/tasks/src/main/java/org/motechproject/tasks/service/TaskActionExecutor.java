@@ -1,9 +1,11 @@
 package org.motechproject.tasks.service;
 
 import com.google.common.collect.Multimap;
+import org.apache.commons.lang.StringUtils;
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.listener.annotations.MotechListener;
 import org.motechproject.tasks.domain.ActionEvent;
 import org.motechproject.tasks.domain.ActionParameter;
 import org.motechproject.tasks.domain.KeyInformation;
@@ -12,34 +14,47 @@ import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActionInformation;
 import org.motechproject.tasks.ex.ActionNotFoundException;
 import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.metrics.TaskStep;
+import org.motechproject.tasks.metrics.TaskTrace;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.motechproject.tasks.domain.ParameterType.LIST;
 import static org.motechproject.tasks.domain.ParameterType.MAP;
+import static org.motechproject.tasks.events.constants.EventDataKeys.CHANNEL_MODULE_NAME;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.events.constants.TaskFailureCause.ACTION;
 import static org.motechproject.tasks.events.constants.TaskFailureCause.TRIGGER;
 
 /**
  * Builds action parameters from  {@link TaskContext} and executes the action by invoking its service or raising its event.
+ * Action events, action services and their methods are cached, so that executing an action does not require
+ * reloading the channel or looking up the service again.
  */
 @Component
 public class TaskActionExecutor {
 
-    private BundleContext bundleContext;
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActionExecutor.class);
+
+    private volatile ActionServiceCache serviceCache;
     private EventRelay eventRelay;
 
+    private final ConcurrentMap<String, ActionEvent> actionEvents = new ConcurrentHashMap<>();
+
     private TaskService taskService;
     private TaskActivityService activityService;
     private KeyEvaluator keyEvaluator;
@@ -63,10 +78,27 @@ public class TaskActionExecutor {
     public void execute(Task task, TaskActionInformation actionInformation, TaskContext taskContext) throws TaskHandlerException {
         this.keyEvaluator = new KeyEvaluator(taskContext);
         ActionEvent action = getActionEvent(actionInformation);
+
+        TaskTrace trace = taskContext.getTrace();
+        long start = trace.start();
+
         Map<String, Object> parameters = createParameters(actionInformation, action);
 
-        if (action.hasService() && bundleContext != null) {
-            if (callActionServiceMethod(action, parameters)) {
+        trace.record(TaskStep.TEMPLATE, start);
+        start = trace.start();
+
+        try {
+            callAction(task, action, parameters);
+        } finally {
+            trace.record(TaskStep.ACTION, start);
+        }
+    }
+
+    private void callAction(Task task, ActionEvent action, Map<String, Object> parameters) throws TaskHandlerException {
+        ActionServiceCache cache = serviceCache;
+
+        if (action.hasService() && cache != null) {
+            if (callActionServiceMethod(cache, action, parameters)) {
                 return;
             }
             activityService.addWarning(task, "task.warning.serviceUnavailable", action.getServiceInterface());
@@ -81,12 +113,17 @@ public class TaskActionExecutor {
 
     private ActionEvent getActionEvent(TaskActionInformation actionInformation)
             throws TaskHandlerException {
-        ActionEvent action;
+        String key = getActionKey(actionInformation);
+        ActionEvent action = actionEvents.get(key);
 
-        try {
-            action = taskService.getActionEventFor(actionInformation);
-        } catch (ActionNotFoundException e) {
-            throw new TaskHandlerException(TRIGGER, "task.error.actionNotFound", e);
+        if (action == null) {
+            try {
+                action = taskService.getActionEventFor(actionInformation);
+            } catch (ActionNotFoundException e) {
+                throw new TaskHandlerException(TRIGGER, "task.error.actionNotFound", e);
+            }
+
+            actionEvents.put(key, action);
         }
 
         return action;
@@ -208,30 +245,28 @@ public class TaskActionExecutor {
         return result;
     }
 
-    private boolean callActionServiceMethod(ActionEvent action, Map<String, Object> parameters)
-            throws TaskHandlerException {
-        ServiceReference reference = bundleContext.getServiceReference(
-                action.getServiceInterface()
-        );
-        boolean serviceAvailable = reference != null;
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    private boolean callActionServiceMethod(ActionServiceCache cache, ActionEvent action,
+                                            Map<String, Object> parameters) throws TaskHandlerException {
+        Object service = cache.getService(action.getServiceInterface());
+        boolean serviceAvailable = service != null;
 
         if (serviceAvailable) {
-            Object service = bundleContext.getService(reference);
             String serviceMethod = action.getServiceMethod();
             MethodHandler methodHandler = new MethodHandler(action, parameters);
 
             try {
-                Method method = service.getClass().getMethod(serviceMethod, methodHandler.getClasses());
+                MethodHandle method = cache.getMethodHandle(service, serviceMethod, methodHandler.getClasses());
 
                 try {
-                    method.invoke(service, methodHandler.getObjects());
-                } catch (IllegalAccessException | InvocationTargetException e) {
+                    method.invokeExact(service, methodHandler.getObjects());
+                } catch (Throwable e) {
                     throw new TaskHandlerException(
                             ACTION, "task.error.serviceMethodInvokeError", e,
                             serviceMethod, action.getServiceInterface()
                     );
                 }
-            } catch (NoSuchMethodException e) {
+            } catch (NoSuchMethodException | IllegalAccessException e) {
                 throw new TaskHandlerException(
                         ACTION, "task.error.notFoundMethodForService", e,
                         serviceMethod, action.getServiceInterface()
@@ -242,7 +277,32 @@ public class TaskActionExecutor {
         return serviceAvailable;
     }
 
-    void setBundleContext(BundleContext bundleContext) {
-        this.bundleContext = bundleContext;
+    /**
+     * Clears the cached action events after the channel they come from has been updated or unregistered.
+     *
+     * @param event  the channel update or deregister event
+     */
+    @MotechListener(subjects = { CHANNEL_UPDATE_SUBJECT, CHANNEL_DEREGISTER_SUBJECT })
+    public void handleChannelChange(MotechEvent event) {
+        LOGGER.debug("Channel {} changed, clearing cached action events", event.getParameters().get(CHANNEL_MODULE_NAME));
+        actionEvents.clear();
+    }
+
+    private static String getActionKey(TaskActionInformation info) {
+        return StringUtils.join(new Object[] {
+                info.getModuleName(), info.getModuleVersion(), info.getName(), info.getSubject(),
+                info.getServiceInterface(), info.getServiceMethod()
+        }, '|');
+    }
+
+    synchronized void setBundleContext(BundleContext bundleContext) {
+        if (serviceCache != null) {
+            serviceCache.close();
+            serviceCache = null;
+        }
+
+        if (bundleContext != null) {
+            serviceCache = new ActionServiceCache(bundleContext);
+        }
     }
 }
@@ -89,7 +89,8 @@ public interface TaskActivityService {
     long getTaskActivitiesCount(Long taskId, Set<TaskActivityType> activityTypes);
 
     /**
-     * Returns the count of all activities for the given task, of the specified type.
+     * Returns the count of all activities ever recorded for the given task, of the specified type. The count is a
+     * historical total, it includes the activities already removed by the retention policy.
      *
      * @param taskId the task ID
      * @param type the type of activity to include in count
@@ -5,6 +5,7 @@ import org.motechproject.commons.api.MotechException;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.events.constants.TaskFailureCause;
 import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.metrics.TaskTrace;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -21,6 +22,7 @@ public class TaskContext {
     private Map<String, Object> parameters;
     private TaskActivityService activityService;
     private Set<DataSourceObject> dataSourceObjects;
+    private TaskTrace trace;
 
     /**
      * Class constructor.
@@ -34,6 +36,7 @@ public class TaskContext {
         this.parameters = parameters;
         this.activityService = activityService;
         this.dataSourceObjects = new HashSet<>();
+        this.trace = new TaskTrace();
     }
 
     /**
@@ -145,4 +148,13 @@ public class TaskContext {
 
         return current;
     }
+
+    /**
+     * Returns the trace measuring the step times of this task execution.
+     *
+     * @return the trace of this execution
+     */
+    public TaskTrace getTrace() {
+        return trace;
+    }
 }
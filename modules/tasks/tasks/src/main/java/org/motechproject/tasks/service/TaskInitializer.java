@@ -6,6 +6,8 @@ import org.motechproject.tasks.domain.FilterSet;
 import org.motechproject.tasks.domain.Lookup;
 import org.motechproject.tasks.domain.TaskConfigStep;
 import org.motechproject.tasks.ex.TaskHandlerException;
+import org.motechproject.tasks.metrics.TaskStep;
+import org.motechproject.tasks.metrics.TaskTrace;
 
 import java.util.HashMap;
 import java.util.Iterator;
@@ -51,6 +53,7 @@ class TaskInitializer {
         boolean result = true;
 
         TaskFilterExecutor taskFilterExecutor = new TaskFilterExecutor();
+        TaskTrace trace = taskContext.getTrace();
 
         while (result && iterator.hasNext()) {
             TaskConfigStep step = iterator.next();
@@ -61,7 +64,9 @@ class TaskInitializer {
             } else if (step instanceof FilterSet) {
                 try {
                     FilterSet filterSet = (FilterSet) step;
+                    long start = trace.start();
                     result = taskFilterExecutor.checkFilters(filterSet.getFilters(), filterSet.getOperator(), taskContext);
+                    trace.record(TaskStep.FILTER, start);
                 } catch (RuntimeException e) {
                     throw new TaskHandlerException(FILTER, "task.error.filterError", e);
                 }
@@ -86,12 +91,22 @@ class TaskInitializer {
             );
         }
 
+        TaskTrace trace = taskContext.getTrace();
+        long start = trace.start();
+
         KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
         Map<String, String> lookupFields = new HashMap<>();
         for (Lookup lookup : dataSource.getLookup()) {
             lookupFields.put(lookup.getField(), keyEvaluator.evaluateTemplateString(lookup.getValue()));
         }
 
-        return provider.lookup(dataSource.getType(), dataSource.getName(), lookupFields);
+        trace.record(TaskStep.TEMPLATE, start);
+        start = trace.start();
+
+        Object object = provider.lookup(dataSource.getType(), dataSource.getName(), lookupFields);
+
+        trace.record(TaskStep.DATA_SOURCE, start);
+
+        return object;
     }
 }
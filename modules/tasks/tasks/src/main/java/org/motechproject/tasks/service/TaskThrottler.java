@@ -0,0 +1,351 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskOverflowPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>TaskThrottler</code> enforces the rate limits and the concurrency caps of tasks. The rate is limited with
+ * a token bucket holding up to one second worth of executions, the concurrency is limited with a semaphore. Tasks
+ * without limits are not tracked at all.
+ * <p>
+ * Acquiring a permit never blocks. Executions of tasks with the {@link TaskOverflowPolicy#QUEUE} policy, which
+ * exceed the limits, can be deferred instead. They are kept in a bounded queue of the task and run later by the
+ * threads of the throttler, so that the thread handling the trigger event is not held up.
+ *
+ * @see Task#getRateLimit()
+ * @see Task#getMaxConcurrentExecutions()
+ * @see Task#getOverflowPolicy()
+ */
+@Component
+public class TaskThrottler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskThrottler.class);
+
+    private static final long NANOS_IN_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long SLOT_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int DEFERRED_EXECUTION_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final Permit NO_LIMITS = new Permit() {
+        @Override
+        public void release() {
+            // nothing to release
+        }
+    };
+
+    private final ConcurrentMap<Long, TaskLimiter> limiters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService deferredExecutor;
+
+    public TaskThrottler() {
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(DEFERRED_EXECUTION_THREADS,
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "tasks-throttler-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        deferredExecutor = pool;
+    }
+
+    /**
+     * Acquires a permit to execute the given task, without waiting. The returned permit must be released once the
+     * execution finishes. An execution of a task with the {@link TaskOverflowPolicy#QUEUE} policy gets no permit
+     * while earlier executions of the task are deferred, so that it does not overtake them.
+     *
+     * @param task  the task to execute, not null
+     * @return the permit, null if the execution exceeds the limits of the task
+     */
+    public Permit acquire(Task task) {
+        if (!task.hasExecutionLimits() || task.getId() == null) {
+            return NO_LIMITS;
+        }
+
+        TaskLimiter limiter = getLimiter(task);
+
+        if (task.getOverflowPolicy() == TaskOverflowPolicy.QUEUE && limiter.deferred.get() > 0) {
+            return null;
+        }
+
+        return limiter.tryAcquire() == 0 ? limiter : null;
+    }
+
+    /**
+     * Defers an execution of the given task, which exceeded the limits of the task. The execution is run by a thread
+     * of the throttler once the limits allow it, or expires if that does not happen within the given time. Returns
+     * right away, without running the execution, if the queue of the task is full.
+     *
+     * @param task  the task to execute, not null
+     * @param maxWaitMillis  the maximum time the execution waits for the limits, in milliseconds
+     * @param queueCapacity  the maximum number of deferred executions of the task
+     * @param execution  the deferred execution, not null
+     * @return true if the execution was deferred, false if the queue of the task is full
+     */
+    public boolean defer(Task task, long maxWaitMillis, int queueCapacity, DeferredExecution execution) {
+        if (task.getId() == null) {
+            return false;
+        }
+
+        TaskLimiter limiter = getLimiter(task);
+
+        if (limiter.deferred.incrementAndGet() > queueCapacity) {
+            limiter.deferred.decrementAndGet();
+            return false;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(maxWaitMillis, 0));
+
+        try {
+            deferredExecutor.execute(new DeferredAttempt(limiter, deadline, execution));
+        } catch (RejectedExecutionException e) {
+            // the throttler was shut down
+            limiter.deferred.decrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops the threads running the deferred executions. Executions still waiting for the limits are discarded.
+     */
+    @PreDestroy
+    public void shutdown() {
+        int discarded = deferredExecutor.shutdownNow().size();
+
+        if (discarded > 0) {
+            LOGGER.warn("Discarded {} deferred task executions on shutdown", discarded);
+        }
+    }
+
+    /**
+     * Counts an execution of the given task skipped because of its limits, and decides whether the skipped executions
+     * should be reported now. The first skipped execution is reported right away, the following ones are counted and
+     * reported together with the first execution skipped after the given interval has passed, so that a task flooded
+     * with triggers does not produce a report for every execution.
+     *
+     * @param task  the skipped task, not null
+     * @param reportIntervalMillis  the minimum time between two reports for the task, in milliseconds
+     * @return the number of executions skipped since the last report, 0 if they should not be reported yet
+     */
+    public long skip(Task task, long reportIntervalMillis) {
+        if (task.getId() == null) {
+            return 1;
+        }
+
+        return getLimiter(task).skip(TimeUnit.MILLISECONDS.toNanos(Math.max(reportIntervalMillis, 0)));
+    }
+
+    /**
+     * Forgets the limits of the given task, for example after the task was removed.
+     *
+     * @param taskId  the ID of the task, not null
+     */
+    public void remove(Long taskId) {
+        limiters.remove(taskId);
+    }
+
+    private TaskLimiter getLimiter(Task task) {
+        TaskLimiter limiter = limiters.get(task.getId());
+
+        if (limiter == null || !limiter.hasLimitsOf(task)) {
+            // the limits of the task were changed, permits of the old limiter are still released to the old one
+            TaskLimiter created = new TaskLimiter(task.getRateLimit(), task.getMaxConcurrentExecutions());
+
+            if (limiter == null) {
+                limiter = limiters.putIfAbsent(task.getId(), created);
+                limiter = limiter == null ? created : limiter;
+            } else {
+                limiter = limiters.replace(task.getId(), limiter, created) ? created : limiters.get(task.getId());
+            }
+        }
+
+        return limiter;
+    }
+
+    /**
+     * A permit to execute a task.
+     */
+    public interface Permit {
+
+        /**
+         * Releases the permit after the task execution has finished.
+         */
+        void release();
+    }
+
+    /**
+     * An execution of a task deferred because of the limits of the task.
+     */
+    public interface DeferredExecution {
+
+        /**
+         * Runs the execution. The permit is held until this method returns and is released by the throttler.
+         */
+        void execute();
+
+        /**
+         * Called instead of {@link #execute()}, if the limits did not allow the execution within the maximum wait
+         * time.
+         */
+        void expire();
+    }
+
+    /**
+     * A single attempt to run a deferred execution. Reschedules itself until it gets a permit or expires.
+     */
+    private final class DeferredAttempt implements Runnable {
+
+        private final TaskLimiter limiter;
+        private final long deadline;
+        private final DeferredExecution execution;
+
+        private DeferredAttempt(TaskLimiter limiter, long deadline, DeferredExecution execution) {
+            this.limiter = limiter;
+            this.deadline = deadline;
+            this.execution = execution;
+        }
+
+        @Override
+        public void run() {
+            long wait = limiter.tryAcquire();
+
+            if (wait == 0) {
+                limiter.deferred.decrementAndGet();
+
+                try {
+                    execution.execute();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error in a deferred task execution", e);
+                } finally {
+                    limiter.release();
+                }
+                return;
+            }
+
+            long remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0) {
+                limiter.deferred.decrementAndGet();
+                execution.expire();
+                return;
+            }
+
+            try {
+                deferredExecutor.schedule(this, Math.min(wait, remaining), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // the throttler was shut down
+                limiter.deferred.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class TaskLimiter implements Permit {
+
+        private final int rateLimit;
+        private final int maxConcurrentExecutions;
+        private final Semaphore slots;
+
+        private double tokens;
+        private long lastRefill;
+
+        private final AtomicInteger deferred = new AtomicInteger();
+
+        private long skipped;
+        private long lastReport;
+        private boolean reported;
+
+        private TaskLimiter(int rateLimit, int maxConcurrentExecutions) {
+            this.rateLimit = rateLimit;
+            this.maxConcurrentExecutions = maxConcurrentExecutions;
+            this.slots = maxConcurrentExecutions > 0 ? new Semaphore(maxConcurrentExecutions, true) : null;
+            this.tokens = rateLimit;
+            this.lastRefill = System.nanoTime();
+        }
+
+        private boolean hasLimitsOf(Task task) {
+            return rateLimit == task.getRateLimit() && maxConcurrentExecutions == task.getMaxConcurrentExecutions();
+        }
+
+        /**
+         * Takes a concurrency slot and a token, if both are available.
+         *
+         * @return 0 if the execution may proceed, otherwise the time in nanoseconds after which it is worth trying
+         * again
+         */
+        private long tryAcquire() {
+            if (slots != null && !slots.tryAcquire()) {
+                return SLOT_POLL_NANOS;
+            }
+
+            long wait = rateLimit > 0 ? tryTakeToken() : 0;
+
+            if (wait > 0) {
+                release();
+            }
+
+            return wait;
+        }
+
+        /**
+         * Takes a token from the bucket, if there is one.
+         *
+         * @return 0 if the token was taken, otherwise the time in nanoseconds until the next token is available
+         */
+        private synchronized long tryTakeToken() {
+            long now = System.nanoTime();
+
+            tokens = Math.min(rateLimit, tokens + (double) (now - lastRefill) * rateLimit / NANOS_IN_SECOND);
+            lastRefill = now;
+
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+
+            return Math.max((long) ((1 - tokens) * NANOS_IN_SECOND / rateLimit), 1);
+        }
+
+        private synchronized long skip(long reportIntervalNanos) {
+            long now = System.nanoTime();
+            ++skipped;
+
+            if (reported && now - lastReport < reportIntervalNanos) {
+                return 0;
+            }
+
+            long count = skipped;
+
+            skipped = 0;
+            lastReport = now;
+            reported = true;
+
+            return count;
+        }
+
+        @Override
+        public void release() {
+            if (slots != null) {
+                slots.release();
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.motechproject.tasks.service;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.joda.time.DateTime;
 import org.motechproject.commons.api.DataProvider;
@@ -10,13 +11,18 @@ import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
 import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.listener.annotations.MotechListener;
 import org.motechproject.event.listener.annotations.MotechListenerEventProxy;
 import org.motechproject.server.config.SettingsFacade;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.domain.TaskOverflowPolicy;
 import org.motechproject.tasks.domain.TriggerEvent;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.ex.TriggerNotFoundException;
+import org.motechproject.tasks.metrics.TaskMetrics;
+import org.motechproject.tasks.metrics.TaskStep;
+import org.motechproject.tasks.metrics.TaskTrace;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +35,10 @@ import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.motechproject.config.core.constants.ConfigurationConstants.BUNDLE_SETTINGS_CHANGED_EVENT_SUBJECT;
+import static org.motechproject.config.core.constants.ConfigurationConstants.BUNDLE_SYMBOLIC_NAME;
 import static org.motechproject.tasks.events.constants.EventDataKeys.HANDLER_ERROR_PARAM;
 import static org.motechproject.tasks.events.constants.EventDataKeys.TASK_FAIL_FAILURE_DATE;
 import static org.motechproject.tasks.events.constants.EventDataKeys.TASK_FAIL_FAILURE_NUMBER;
@@ -51,6 +60,13 @@ import static org.motechproject.tasks.service.HandlerPredicates.withServiceName;
 public class TaskTriggerHandler implements TriggerHandler {
 
     private static final String TASK_POSSIBLE_ERRORS_KEY = "task.possible.errors";
+    private static final String TASK_SLOW_THRESHOLD_KEY = "task.trace.slowThreshold";
+    private static final String TASK_SLOW_SAMPLE_RATE_KEY = "task.trace.sampleRate";
+    private static final String TASK_THROTTLE_MAX_WAIT_KEY = "task.throttle.maxWait";
+    private static final String TASK_THROTTLE_QUEUE_CAPACITY_KEY = "task.throttle.queueCapacity";
+    private static final String TASK_THROTTLE_WARNING_INTERVAL_KEY = "task.throttle.warningInterval";
+
+    private static final long NANOS_IN_MILLI = 1000000L;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskTriggerHandler.class);
 
@@ -62,6 +78,10 @@ public class TaskTriggerHandler implements TriggerHandler {
     private Map<String, DataProvider> dataProviders;
 
     private TaskActionExecutor executor;
+    private TaskMetrics metrics = new TaskMetrics();
+    private TaskThrottler throttler = new TaskThrottler();
+    private final AtomicLong slowExecutions = new AtomicLong();
+    private volatile HandlerSettings handlerSettings;
 
     @Autowired
     public TaskTriggerHandler(TaskService taskService, TaskActivityService activityService,
@@ -114,30 +134,119 @@ public class TaskTriggerHandler implements TriggerHandler {
         }
 
         // Use custom event parser, if it exists, to modify event
-        TriggerEvent trigger = taskService.findTrigger(parser == null ? event.getSubject() : parser.parseEventSubject(event.getSubject(), event.getParameters()));
-        Map<String, Object> parameters = parser == null ? event.getParameters() : parser.parseEventParameters(event.getSubject(), event.getParameters());
+        String subject = event.getSubject();
+        Map<String, Object> parameters = event.getParameters();
+
+        if (parser != null) {
+            long start = System.nanoTime();
+
+            subject = parser.parseEventSubject(event.getSubject(), event.getParameters());
+            parameters = parser.parseEventParameters(event.getSubject(), event.getParameters());
+
+            metrics.recordParserTime(parser.getName(), System.nanoTime() - start);
+        }
+
+        long lookupStart = System.nanoTime();
+
+        TriggerEvent trigger = taskService.findTrigger(subject);
 
         List<Task> tasks = taskService.findActiveTasksForTrigger(trigger);
 
+        long lookupNanos = System.nanoTime() - lookupStart;
+        HandlerSettings current = getHandlerSettings();
+
         for (Task task : tasks) {
-            TaskContext taskContext = new TaskContext(task, parameters, activityService);
-            TaskInitializer initializer = new TaskInitializer(taskContext);
+            TaskThrottler.Permit permit = throttler.acquire(task);
 
-            try {
-                if (initializer.evalConfigSteps(dataProviders)) {
-                    for (TaskActionInformation action : task.getActions()) {
-                        executor.execute(task, action, taskContext);
+            if (permit != null) {
+                try {
+                    execute(task, parameters, lookupNanos);
+                } finally {
+                    permit.release();
+                }
+            } else if (task.getOverflowPolicy() != TaskOverflowPolicy.QUEUE
+                    || !defer(task, parameters, lookupNanos, current)) {
+                handleThrottled(task);
+            }
+        }
+    }
+
+    private boolean defer(final Task task, final Map<String, Object> parameters, final long lookupNanos,
+                          HandlerSettings current) {
+        // the execution is run later by the throttler, so that this thread is not held up by the limits of the task
+        return throttler.defer(task, current.throttleMaxWait, current.throttleQueueCapacity,
+                new TaskThrottler.DeferredExecution() {
+                    @Override
+                    public void execute() {
+                        TaskTriggerHandler.this.execute(task, parameters, lookupNanos);
+                    }
+
+                    @Override
+                    public void expire() {
+                        handleThrottled(task);
                     }
-                    handleSuccess(parameters, task);
+                });
+    }
+
+    private void execute(Task task, Map<String, Object> parameters, long lookupNanos) {
+        TaskContext taskContext = new TaskContext(task, parameters, activityService);
+        TaskInitializer initializer = new TaskInitializer(taskContext);
+        TaskTrace trace = taskContext.getTrace();
+
+        trace.add(TaskStep.TRIGGER_LOOKUP, lookupNanos);
+
+        try {
+            if (initializer.evalConfigSteps(dataProviders)) {
+                for (TaskActionInformation action : task.getActions()) {
+                    executor.execute(task, action, taskContext);
                 }
-            } catch (TaskHandlerException e) {
-                handleError(parameters, task, e);
-            } catch (RuntimeException e) {
-                handleError(parameters, task, new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e));
+                handleSuccess(parameters, task);
+            }
+        } catch (TaskHandlerException e) {
+            handleError(parameters, task, e);
+        } catch (RuntimeException e) {
+            handleError(parameters, task, new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e));
+        } finally {
+            trace.stop();
+        }
+
+        metrics.recordTaskExecution(task.getId(), trace);
+
+        long slowThreshold = getHandlerSettings().slowThresholdNanos;
+
+        if (slowThreshold > 0 && trace.getTotalNanos() >= slowThreshold) {
+            handleSlowExecution(task, trace);
+        }
+    }
+
+    private void handleThrottled(Task task) {
+        metrics.recordThrottledExecution(task.getId());
+
+        String limits = String.format("rateLimit=%d, maxConcurrentExecutions=%d",
+                task.getRateLimit(), task.getMaxConcurrentExecutions());
+        LOGGER.debug("Skipped execution of task with ID: {} exceeding its limits: {}", task.getId(), limits);
+
+        if (task.getOverflowPolicy() != TaskOverflowPolicy.SHED) {
+            long skipped = throttler.skip(task, getHandlerSettings().throttleWarningInterval);
+
+            if (skipped > 0) {
+                activityService.addWarning(task, "task.warning.executionThrottled",
+                        String.format("skipped=%d, %s", skipped, limits));
             }
         }
     }
 
+    private void handleSlowExecution(Task task, TaskTrace trace) {
+        String description = trace.describe();
+        LOGGER.warn("Slow execution of task with ID: {}, {}", task.getId(), description);
+
+        long sampleRate = getHandlerSettings().slowSampleRate;
+
+        if (slowExecutions.getAndIncrement() % sampleRate == 0) {
+            activityService.addWarning(task, "task.warning.slowExecution", description);
+        }
+    }
+
     private void handleError(Map<String, Object> params, Task task, TaskHandlerException e) {
         LOGGER.debug(String.format("Omitted task with ID: %s because: ", task.getId()), e);
 
@@ -212,6 +321,57 @@ public class TaskTriggerHandler implements TriggerHandler {
         eventRelay.sendEventMessage(new MotechEvent("org.motechproject.message", params));
     }
 
+    /**
+     * Reloads the tracing and throttling settings, which are otherwise read once, when the settings of the tasks
+     * module change.
+     *
+     * @param event  the settings change event
+     */
+    @MotechListener(subjects = BUNDLE_SETTINGS_CHANGED_EVENT_SUBJECT)
+    public void handleSettingsChange(MotechEvent event) {
+        Object bundle = event.getParameters().get(BUNDLE_SYMBOLIC_NAME);
+
+        if (bundle == null || bundle.equals(settings.getBundleSymbolicName())) {
+            handlerSettings = loadHandlerSettings();
+        }
+    }
+
+    private HandlerSettings getHandlerSettings() {
+        HandlerSettings current = handlerSettings;
+
+        if (current == null) {
+            current = loadHandlerSettings();
+            handlerSettings = current;
+        }
+
+        return current;
+    }
+
+    private HandlerSettings loadHandlerSettings() {
+        return new HandlerSettings(
+                getLongProperty(TASK_SLOW_THRESHOLD_KEY) * NANOS_IN_MILLI,
+                Math.max(getLongProperty(TASK_SLOW_SAMPLE_RATE_KEY), 1),
+                getLongProperty(TASK_THROTTLE_MAX_WAIT_KEY),
+                (int) getLongProperty(TASK_THROTTLE_QUEUE_CAPACITY_KEY),
+                getLongProperty(TASK_THROTTLE_WARNING_INTERVAL_KEY)
+        );
+    }
+
+    private long getLongProperty(String key) {
+        String property = settings.getProperty(key);
+        long value = 0;
+
+        if (StringUtils.isNotBlank(property)) {
+            try {
+                value = Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("The value of key: {} is not a number. Using zero.", key);
+            }
+        }
+
+        return value;
+    }
+
     private int getPossibleErrorsNumber() {
         String property = settings.getProperty(TASK_POSSIBLE_ERRORS_KEY);
         int number;
@@ -229,9 +389,40 @@ public class TaskTriggerHandler implements TriggerHandler {
         return number;
     }
 
+    @Autowired
+    public void setMetrics(TaskMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Autowired
+    public void setThrottler(TaskThrottler throttler) {
+        this.throttler = throttler;
+    }
+
     @Autowired(required = false)
     public void setBundleContext(BundleContext bundleContext) {
         this.executor.setBundleContext(bundleContext);
     }
 
+    /**
+     * The settings read on every event, cached until the settings of the module change.
+     */
+    private static final class HandlerSettings {
+
+        private final long slowThresholdNanos;
+        private final long slowSampleRate;
+        private final long throttleMaxWait;
+        private final int throttleQueueCapacity;
+        private final long throttleWarningInterval;
+
+        private HandlerSettings(long slowThresholdNanos, long slowSampleRate, long throttleMaxWait,
+                                int throttleQueueCapacity, long throttleWarningInterval) {
+            this.slowThresholdNanos = slowThresholdNanos;
+            this.slowSampleRate = slowSampleRate;
+            this.throttleMaxWait = throttleMaxWait;
+            this.throttleQueueCapacity = throttleQueueCapacity;
+            this.throttleWarningInterval = throttleWarningInterval;
+        }
+    }
+
 }
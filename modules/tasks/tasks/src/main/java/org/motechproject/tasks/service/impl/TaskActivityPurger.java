@@ -0,0 +1,295 @@
+package org.motechproject.tasks.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.server.config.SettingsFacade;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActivityRollup;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityRollupsDataService;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jdo.Query;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>TaskActivityPurger</code> applies the task activity retention policy. It flushes the activity rollups
+ * every minute by default and on shutdown, and periodically removes activities that are older than the configured number of days or exceed the
+ * configured number of activities per task. Both limits are set separately for each activity type, a value of
+ * zero disables the limit. Activities are removed in batches, each batch being a single delete statement.
+ */
+@Component
+public class TaskActivityPurger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityPurger.class);
+
+    static final String PURGE_INTERVAL = "task.activity.purge.interval";
+    static final String PURGE_BATCH_SIZE = "task.activity.purge.batchSize";
+    static final String ROLLUP_FLUSH_INTERVAL = "task.activity.rollup.flushInterval";
+    static final String MAX_AGE = "task.activity.retention.maxAge.";
+    static final String MAX_COUNT = "task.activity.retention.maxCount.";
+
+    private static final int DEFAULT_PURGE_INTERVAL = 60;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_FLUSH_INTERVAL = 60;
+
+    private TaskActivitiesDataService activitiesDataService;
+    private TaskActivityRollupsDataService rollupsDataService;
+    private TasksDataService tasksDataService;
+    private TaskActivityRollupBuffer rollupBuffer;
+    private SettingsFacade settings;
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public TaskActivityPurger(TaskActivitiesDataService activitiesDataService,
+                              TaskActivityRollupsDataService rollupsDataService, TasksDataService tasksDataService,
+                              TaskActivityRollupBuffer rollupBuffer, @Qualifier("tasksSettings") SettingsFacade settings) {
+        this.activitiesDataService = activitiesDataService;
+        this.rollupsDataService = rollupsDataService;
+        this.tasksDataService = tasksDataService;
+        this.rollupBuffer = rollupBuffer;
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    public void start() {
+        int interval = getIntProperty(PURGE_INTERVAL, DEFAULT_PURGE_INTERVAL);
+        int flushInterval = getIntProperty(ROLLUP_FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL);
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "tasks-activity-purger");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                initializeRollups();
+            }
+        });
+
+        if (flushInterval > 0) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushRollups();
+                }
+            }, flushInterval, flushInterval, TimeUnit.SECONDS);
+        }
+
+        if (interval > 0) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    purge();
+                }
+            }, interval, interval, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+
+        // the counters not flushed yet would be lost otherwise
+        flushRollups();
+    }
+
+    /**
+     * Writes the activity counters collected in memory to the rollups.
+     */
+    public void flushRollups() {
+        try {
+            rollupBuffer.flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Error while flushing the task activity rollups", e);
+        }
+    }
+
+    /**
+     * Flushes the activity rollups and removes the activities that exceed the retention limits.
+     */
+    public void purge() {
+        try {
+            rollupBuffer.flush();
+
+            int batchSize = getIntProperty(PURGE_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+
+            for (TaskActivityType type : TaskActivityType.values()) {
+                String suffix = type.getValue().toLowerCase();
+                int maxAge = getIntProperty(MAX_AGE + suffix, 0);
+                int maxCount = getIntProperty(MAX_COUNT + suffix, 0);
+
+                if (maxAge > 0) {
+                    long deleted = purgeByAge(type, DateUtil.now().minusDays(maxAge), batchSize);
+                    LOGGER.info("Purged {} {} activities older than {} days", deleted, type, maxAge);
+                }
+
+                if (maxCount > 0) {
+                    long deleted = purgeByCount(type, maxCount, batchSize);
+                    LOGGER.info("Purged {} {} activities exceeding {} per task", deleted, type, maxCount);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Error while purging task activities", e);
+        }
+    }
+
+    long purgeByAge(TaskActivityType type, DateTime olderThan, int batchSize) {
+        long total = 0;
+        List<Long> ids;
+
+        do {
+            ids = findIds("activityType == type && date < olderThan",
+                    TaskActivityType.class.getName() + " type, " + DateTime.class.getName() + " olderThan",
+                    "id ascending", 0, batchSize, type, olderThan);
+            total += deleteByIds(ids);
+        } while (ids.size() >= batchSize);
+
+        return total;
+    }
+
+    long purgeByCount(TaskActivityType type, int maxCount, int batchSize) {
+        long total = 0;
+
+        for (Long task : findTasksWithActivities()) {
+            List<Long> ids;
+
+            do {
+                ids = findIds("task == taskId && activityType == type",
+                        "java.lang.Long taskId, " + TaskActivityType.class.getName() + " type",
+                        "date descending, id descending", maxCount, maxCount + batchSize, task, type);
+                total += deleteByIds(ids);
+            } while (ids.size() >= batchSize);
+        }
+
+        return total;
+    }
+
+    private List<Long> findIds(final String filter, final String parameters, final String ordering,
+                               final long fromIncl, final long toExcl, final Object... values) {
+        return activitiesDataService.executeQuery(new QueryExecution<List<Long>>() {
+            @Override
+            public List<Long> execute(Query query, InstanceSecurityRestriction restriction) {
+                query.setFilter(filter);
+                query.declareParameters(parameters);
+                query.setOrdering(ordering);
+                query.setRange(fromIncl, toExcl);
+                query.setResult("id");
+
+                return (List<Long>) query.executeWithArray(values);
+            }
+        });
+    }
+
+    private long deleteByIds(final Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        return activitiesDataService.executeQuery(new QueryExecution<Long>() {
+            @Override
+            public Long execute(Query query, InstanceSecurityRestriction restriction) {
+                query.setFilter("param.contains(id)");
+                query.declareParameters(String.format("%s param", Collection.class.getName()));
+
+                return query.deletePersistentAll(ids);
+            }
+        });
+    }
+
+    private List<Long> findTasksWithActivities() {
+        List<Long> tasks = activitiesDataService.executeQuery(new QueryExecution<List<Long>>() {
+            @Override
+            public List<Long> execute(Query query, InstanceSecurityRestriction restriction) {
+                query.setResult("distinct task");
+                return (List<Long>) query.execute();
+            }
+        });
+
+        return tasks == null ? Collections.<Long>emptyList() : tasks;
+    }
+
+    /**
+     * Creates the initial rollups from the existing activities, if no rollups were created so far. The counts are
+     * attributed to the current day, since the activities are not grouped by day. Only the activities recorded
+     * before the rollup buffer was created are counted, the later ones are already counted by the buffer.
+     */
+    void initializeRollups() {
+        try {
+            if (rollupsDataService.count() > 0) {
+                return;
+            }
+
+            DateTime countedSince = rollupBuffer.getCountedSince();
+
+            for (Task task : tasksDataService.retrieveAll()) {
+                TaskActivityRollup rollup = new TaskActivityRollup(task.getId(), DateUtil.today());
+
+                for (TaskActivityType type : TaskActivityType.values()) {
+                    rollup.increment(type, countActivitiesBefore(task.getId(), type, countedSince));
+                }
+
+                rollupsDataService.create(rollup);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to initialize the task activity rollups", e);
+        }
+    }
+
+    private long countActivitiesBefore(Long task, TaskActivityType type, DateTime before) {
+        final Object[] values = { task, type, before };
+
+        Long count = activitiesDataService.executeQuery(new QueryExecution<Long>() {
+            @Override
+            public Long execute(Query query, InstanceSecurityRestriction restriction) {
+                query.setFilter("task == taskId && activityType == type && date < before");
+                query.declareParameters("java.lang.Long taskId, " + TaskActivityType.class.getName() + " type, " +
+                        DateTime.class.getName() + " before");
+                query.setResult("count(this)");
+
+                return (Long) query.executeWithArray(values);
+            }
+        });
+
+        return count == null ? 0 : count;
+    }
+
+    private int getIntProperty(String key, int defaultValue) {
+        String property = settings.getProperty(key);
+        int value = defaultValue;
+
+        if (StringUtils.isNotBlank(property)) {
+            try {
+                value = Integer.parseInt(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("The value of key: {} is not a number. Using the default value: {}", key, defaultValue);
+            }
+        }
+
+        return value;
+    }
+}
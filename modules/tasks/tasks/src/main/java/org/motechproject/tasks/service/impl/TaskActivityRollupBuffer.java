@@ -0,0 +1,211 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.tasks.domain.TaskActivityRollup;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivityRollupsDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import javax.jdo.Query;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the daily task activity counters. Recorded activities are counted in memory and periodically flushed to
+ * {@link TaskActivityRollup} instances by the {@link TaskActivityPurger}, so that recording an activity does not
+ * require an additional database write.
+ * <p>
+ * The rollups are historical totals. They count every activity recorded for a task and are not decreased when the
+ * activities are removed by the retention policy, only removing the task itself removes its rollups.
+ */
+@Component
+public class TaskActivityRollupBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityRollupBuffer.class);
+
+    private final ConcurrentMap<RollupKey, AtomicLong> pending = new ConcurrentHashMap<>();
+    private final DateTime countedSince = DateUtil.now();
+
+    private TaskActivityRollupsDataService rollupsDataService;
+
+    @Autowired
+    public TaskActivityRollupBuffer(TaskActivityRollupsDataService rollupsDataService) {
+        this.rollupsDataService = rollupsDataService;
+    }
+
+    /**
+     * Counts a single activity of the given type for the given task.
+     *
+     * @param task  the ID of the task, not null
+     * @param activityType  the type of the activity, not null
+     */
+    public void increment(Long task, TaskActivityType activityType) {
+        RollupKey key = new RollupKey(task, DateUtil.today(), activityType);
+        AtomicLong counter = pending.get(key);
+
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = pending.putIfAbsent(key, created);
+
+            if (counter == null) {
+                counter = created;
+            }
+        }
+
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Returns the time from which the recorded activities are counted by this buffer. Activities recorded earlier
+     * are not included in the counters and have to be rolled up from the stored activities.
+     *
+     * @return the time the buffer was created
+     */
+    public DateTime getCountedSince() {
+        return countedSince;
+    }
+
+    /**
+     * Returns the number of activities of the given type recorded for the given task, including the ones that were
+     * not yet flushed.
+     *
+     * @param task  the ID of the task
+     * @param activityType  the type of the activity, not null
+     * @return the number of activities
+     */
+    public long getCount(Long task, TaskActivityType activityType) {
+        long count = 0;
+
+        for (Map.Entry<RollupKey, AtomicLong> entry : pending.entrySet()) {
+            RollupKey key = entry.getKey();
+
+            if (Objects.equals(key.task, task) && key.activityType == activityType) {
+                count += entry.getValue().get();
+            }
+        }
+
+        for (TaskActivityRollup rollup : rollupsDataService.byTask(task)) {
+            count += rollup.getCount(activityType);
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes the counted activities to the rollups. Counters from the previous days are dropped once flushed.
+     */
+    public synchronized void flush() {
+        LocalDate today = DateUtil.today();
+        Iterator<Map.Entry<RollupKey, AtomicLong>> iterator = pending.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<RollupKey, AtomicLong> entry = iterator.next();
+            RollupKey key = entry.getKey();
+            long delta = entry.getValue().getAndSet(0);
+
+            if (delta > 0) {
+                try {
+                    addToRollup(key, delta);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unable to update the activity rollup for task {}", key.task, e);
+                    entry.getValue().addAndGet(delta);
+                    continue;
+                }
+            }
+
+            if (key.day.isBefore(today)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all counters and rollups of the given task.
+     *
+     * @param task  the ID of the task, not null
+     */
+    public synchronized void deleteForTask(final Long task) {
+        Iterator<RollupKey> iterator = pending.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (Objects.equals(iterator.next().task, task)) {
+                iterator.remove();
+            }
+        }
+
+        rollupsDataService.executeQuery(new QueryExecution<Long>() {
+            @Override
+            public Long execute(Query query, InstanceSecurityRestriction restriction) {
+                query.setFilter("task == param");
+                query.declareParameters("java.lang.Long param");
+
+                return QueryExecutor.executeDelete(query, task, restriction);
+            }
+        });
+    }
+
+    private void addToRollup(final RollupKey key, final long delta) {
+        rollupsDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                TaskActivityRollup rollup = rollupsDataService.byTaskAndDay(key.task, key.day);
+
+                if (rollup == null) {
+                    rollup = new TaskActivityRollup(key.task, key.day);
+                    rollup.increment(key.activityType, delta);
+                    rollupsDataService.create(rollup);
+                } else {
+                    rollup.increment(key.activityType, delta);
+                    rollupsDataService.update(rollup);
+                }
+            }
+        });
+    }
+
+    private static final class RollupKey {
+        private final Long task;
+        private final LocalDate day;
+        private final TaskActivityType activityType;
+
+        private RollupKey(Long task, LocalDate day, TaskActivityType activityType) {
+            this.task = task;
+            this.day = day;
+            this.activityType = activityType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(task, day, activityType);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            final RollupKey other = (RollupKey) obj;
+
+            return Objects.equals(task, other.task) && Objects.equals(day, other.day) &&
+                    activityType == other.activityType;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package org.motechproject.tasks.service.impl;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
 import org.motechproject.mds.util.Order;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
@@ -12,9 +15,9 @@ import org.motechproject.tasks.service.TaskActivityService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -22,47 +25,58 @@ import java.util.Set;
 public class TaskActivityServiceImpl implements TaskActivityService {
 
     private TaskActivitiesDataService taskActivitiesDataService;
+    private TaskActivityRollupBuffer rollupBuffer;
 
     @Autowired
-    public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService) {
+    public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService,
+                                   TaskActivityRollupBuffer rollupBuffer) {
         this.taskActivitiesDataService = taskActivitiesDataService;
+        this.rollupBuffer = rollupBuffer;
     }
 
     @Override
     public void addError(Task task, TaskHandlerException e) {
-        taskActivitiesDataService.create(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
+        addActivity(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
                 TaskActivityType.ERROR, ExceptionUtils.getStackTrace(e)));
     }
 
     @Override
     public void addSuccess(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.success.ok", task.getId(),
+        addActivity(new TaskActivity("task.success.ok", task.getId(),
                 TaskActivityType.SUCCESS));
     }
 
     @Override
     public void addWarning(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.warning.taskDisabled", task.getId(),
+        addActivity(new TaskActivity("task.warning.taskDisabled", task.getId(),
                 TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field) {
-        taskActivitiesDataService.create(new TaskActivity(key, field, task.getId(),
+        addActivity(new TaskActivity(key, field, task.getId(),
                 TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field, Exception e) {
-        taskActivitiesDataService.create(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
+        addActivity(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
                 task.getId(), TaskActivityType.WARNING, ExceptionUtils.getStackTrace(e.getCause())));
     }
 
     @Override
-    public void deleteActivitiesForTask(Long taskId) {
-        for (TaskActivity msg : taskActivitiesDataService.byTask(taskId)) {
-            taskActivitiesDataService.delete(msg);
-        }
+    public void deleteActivitiesForTask(final Long taskId) {
+        taskActivitiesDataService.executeQuery(new QueryExecution<Long>() {
+            @Override
+            public Long execute(Query query, InstanceSecurityRestriction restriction) {
+                query.setFilter("task == param");
+                query.declareParameters("java.lang.Long param");
+
+                return QueryExecutor.executeDelete(query, taskId, restriction);
+            }
+        });
+
+        rollupBuffer.deleteForTask(taskId);
     }
 
     @Override
@@ -82,6 +96,11 @@ public class TaskActivityServiceImpl implements TaskActivityService {
 
     @Override
     public long getTaskActivitiesCount(Long taskId, TaskActivityType type) {
-        return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, new HashSet<>(Arrays.asList(type)));
+        return rollupBuffer.getCount(taskId, type);
+    }
+
+    private void addActivity(TaskActivity activity) {
+        taskActivitiesDataService.create(activity);
+        rollupBuffer.increment(activity.getTask(), activity.getActivityType());
     }
 }
@@ -32,14 +32,15 @@ import org.motechproject.tasks.ex.CustomParserNotFoundException;
 import org.motechproject.tasks.ex.TaskNotFoundException;
 import org.motechproject.tasks.ex.TriggerNotFoundException;
 import org.motechproject.tasks.ex.ValidationException;
+import org.motechproject.tasks.metrics.TaskMetrics;
 import org.motechproject.tasks.repository.TasksDataService;
 import org.motechproject.tasks.service.ChannelService;
 import org.motechproject.tasks.service.TaskDataProviderService;
 import org.motechproject.tasks.service.TaskService;
+import org.motechproject.tasks.service.TaskThrottler;
 import org.motechproject.tasks.service.TriggerHandler;
 import org.motechproject.tasks.validation.TaskValidator;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,10 +49,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
+import javax.annotation.PreDestroy;
 import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -60,6 +61,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.lang.String.format;
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
@@ -84,7 +87,10 @@ public class TaskServiceImpl implements TaskService {
     private ChannelService channelService;
     private TaskDataProviderService providerService;
     private EventRelay eventRelay;
-    private BundleContext bundleContext;
+    private volatile BundleContext bundleContext;
+    private final ConcurrentMap<BundleContext, TasksEventParserTracker> parserTrackers = new ConcurrentHashMap<>();
+    private TaskThrottler throttler = new TaskThrottler();
+    private TaskMetrics metrics = new TaskMetrics();
 
 
     private static final String[] TASK_TRIGGER_VALIDATION_ERRORS = new String[]{"task.validation.error.triggerNotExist",
@@ -235,23 +241,15 @@ public class TaskServiceImpl implements TaskService {
             return null;
         }
 
-        try {
-            Collection<ServiceReference<TasksEventParser>> references = bundleContext.getServiceReferences(TasksEventParser.class, null);
-
-            for (ServiceReference<TasksEventParser> ref : references) {
-                TasksEventParser parser = bundleContext.getService(ref);
-                if (parser.getName().equals(name)) {
-                    return parser;
-                }
-            }
-        } catch (InvalidSyntaxException e) {
-            //Should never happen
-            LOGGER.error("Passed filter expression is incorrect.");
-        }
+        TasksEventParser parser = getParserTracker().getParser(name);
 
         // If a non-null parser name has been found in the event parameter, yet it cannot be found in
         // the running context, this indicates an error
-        throw new CustomParserNotFoundException(name);
+        if (parser == null) {
+            throw new CustomParserNotFoundException(name);
+        }
+
+        return parser;
     }
 
     @Override
@@ -271,6 +269,8 @@ public class TaskServiceImpl implements TaskService {
         }
 
         tasksDataService.delete(t);
+        throttler.remove(taskId);
+        metrics.removeTask(taskId);
     }
 
     @MotechListener(subjects = CHANNEL_UPDATE_SUBJECT)
@@ -611,6 +611,9 @@ public class TaskServiceImpl implements TaskService {
                 Task existing = tasksDataService.findById(task.getId());
 
                 if (null != existing) {
+                    boolean limitsChanged = existing.getRateLimit() != task.getRateLimit() ||
+                            existing.getMaxConcurrentExecutions() != task.getMaxConcurrentExecutions();
+
                     existing.setActions(task.getActions());
                     existing.setDescription(task.getDescription());
                     existing.setFailuresInRow(task.getFailuresInRow());
@@ -625,10 +628,18 @@ public class TaskServiceImpl implements TaskService {
                     existing.setTrigger(task.getTrigger());
                     existing.setName(task.getName());
                     existing.setValidationErrors(task.getValidationErrors());
+                    existing.setRateLimit(task.getRateLimit());
+                    existing.setMaxConcurrentExecutions(task.getMaxConcurrentExecutions());
+                    existing.setOverflowPolicy(task.getOverflowPolicy());
 
                     checkChannelAvailableInTask(existing);
 
                     tasksDataService.update(existing);
+
+                    if (limitsChanged) {
+                        // executions in progress release their permits to the old limiter
+                        throttler.remove(existing.getId());
+                    }
                 } else {
                     checkChannelAvailableInTask(task);
 
@@ -638,6 +649,38 @@ public class TaskServiceImpl implements TaskService {
         });
     }
 
+    private TasksEventParserTracker getParserTracker() {
+        BundleContext context = bundleContext;
+        TasksEventParserTracker tracker = parserTrackers.get(context);
+
+        if (tracker == null) {
+            // opened before it is published, so that no thread looks up parsers in a tracker that is not open yet
+            TasksEventParserTracker created = new TasksEventParserTracker(context);
+            created.open();
+
+            tracker = parserTrackers.putIfAbsent(context, created);
+
+            if (tracker == null) {
+                tracker = created;
+            } else {
+                created.close();
+            }
+        }
+
+        return tracker;
+    }
+
+    @PreDestroy
+    public void closeParserTracker() {
+        for (BundleContext context : parserTrackers.keySet()) {
+            TasksEventParserTracker tracker = parserTrackers.remove(context);
+
+            if (tracker != null) {
+                tracker.close();
+            }
+        }
+    }
+
     private void registerHandler(String effectiveListenerSubject) {
         // We cannot simply autowire trigger handler bean, since that would create
         // circular dependency between TaskService and TriggerHandler
@@ -695,8 +738,19 @@ public class TaskServiceImpl implements TaskService {
         this.eventRelay = eventRelay;
     }
 
+    @Autowired
+    public void setThrottler(TaskThrottler throttler) {
+        this.throttler = throttler;
+    }
+
+    @Autowired
+    public void setMetrics(TaskMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Autowired
     public void setBundleContext(BundleContext bundleContext) {
+        closeParserTracker();
         this.bundleContext = bundleContext;
     }
 }
@@ -0,0 +1,151 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.commons.api.TasksEventParser;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks the {@link TasksEventParser} services and keeps them in a map keyed by parser name, so that finding the
+ * parser for an event does not require going through all registered parsers. If more services register a parser
+ * with the same name, the one with the highest service ranking is used, and the next one takes its place once it is
+ * unregistered.
+ */
+class TasksEventParserTracker extends ServiceTracker<TasksEventParser, TasksEventParser> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TasksEventParserTracker.class);
+
+    private final ConcurrentMap<String, TasksEventParser> parsers = new ConcurrentHashMap<>();
+    private final Map<String, List<RankedParser>> rankedParsers = new HashMap<>();
+
+    /**
+     * Class constructor.
+     *
+     * @param context  the bundle context used for tracking the parsers, not null
+     */
+    public TasksEventParserTracker(BundleContext context) {
+        super(context, TasksEventParser.class, null);
+    }
+
+    /**
+     * Returns the parser with the given name. If there are more parsers with that name, the one with the highest
+     * service ranking is returned.
+     *
+     * @param name  the name of the parser
+     * @return the parser, null if there is no parser with the given name
+     */
+    public TasksEventParser getParser(String name) {
+        return parsers.get(name);
+    }
+
+    @Override
+    public TasksEventParser addingService(ServiceReference<TasksEventParser> reference) {
+        TasksEventParser parser = super.addingService(reference);
+
+        if (parser != null) {
+            LOGGER.debug("Registering custom tasks event parser: {}", parser.getName());
+            addParser(reference, parser);
+        }
+
+        return parser;
+    }
+
+    @Override
+    public void modifiedService(ServiceReference<TasksEventParser> reference, TasksEventParser parser) {
+        // the ranking of the service may have changed
+        removeParser(reference);
+        addParser(reference, parser);
+    }
+
+    @Override
+    public void removedService(ServiceReference<TasksEventParser> reference, TasksEventParser parser) {
+        LOGGER.debug("Unregistering custom tasks event parser: {}", parser.getName());
+        removeParser(reference);
+        super.removedService(reference, parser);
+    }
+
+    private synchronized void addParser(ServiceReference<TasksEventParser> reference, TasksEventParser parser) {
+        String name = parser.getName();
+        List<RankedParser> ranked = rankedParsers.get(name);
+
+        if (ranked == null) {
+            ranked = new ArrayList<>();
+            rankedParsers.put(name, ranked);
+        }
+
+        ranked.add(new RankedParser(reference, parser));
+        Collections.sort(ranked);
+
+        parsers.put(name, ranked.get(0).parser);
+    }
+
+    private synchronized void removeParser(ServiceReference<TasksEventParser> reference) {
+        Iterator<Map.Entry<String, List<RankedParser>>> entries = rankedParsers.entrySet().iterator();
+
+        while (entries.hasNext()) {
+            Map.Entry<String, List<RankedParser>> entry = entries.next();
+            List<RankedParser> ranked = entry.getValue();
+            Iterator<RankedParser> iterator = ranked.iterator();
+
+            while (iterator.hasNext()) {
+                if (iterator.next().reference.equals(reference)) {
+                    iterator.remove();
+                }
+            }
+
+            if (ranked.isEmpty()) {
+                parsers.remove(entry.getKey());
+                entries.remove();
+            } else {
+                parsers.put(entry.getKey(), ranked.get(0).parser);
+            }
+        }
+    }
+
+    /**
+     * A tracked parser, ordered by the service ranking, highest first, and then by the service id, lowest first,
+     * as the framework orders the services.
+     */
+    private static final class RankedParser implements Comparable<RankedParser> {
+
+        private final ServiceReference<TasksEventParser> reference;
+        private final TasksEventParser parser;
+        private final int ranking;
+        private final long serviceId;
+
+        private RankedParser(ServiceReference<TasksEventParser> reference, TasksEventParser parser) {
+            Object rankingProperty = reference.getProperty(Constants.SERVICE_RANKING);
+            Object idProperty = reference.getProperty(Constants.SERVICE_ID);
+
+            this.reference = reference;
+            this.parser = parser;
+            this.ranking = rankingProperty instanceof Integer ? (Integer) rankingProperty : 0;
+            this.serviceId = idProperty instanceof Long ? (Long) idProperty : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int compareTo(RankedParser other) {
+            if (ranking != other.ranking) {
+                return ranking > other.ranking ? -1 : 1;
+            }
+
+            if (serviceId != other.serviceId) {
+                return serviceId < other.serviceId ? -1 : 1;
+            }
+
+            return 0;
+        }
+    }
+}
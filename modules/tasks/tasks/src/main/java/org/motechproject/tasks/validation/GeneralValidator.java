@@ -18,6 +18,7 @@ import static org.apache.commons.collections.CollectionUtils.isEmpty;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.motechproject.tasks.domain.TaskErrorType.BLANK;
 import static org.motechproject.tasks.domain.TaskErrorType.EMPTY_COLLECTION;
+import static org.motechproject.tasks.domain.TaskErrorType.NEGATIVE;
 import static org.motechproject.tasks.domain.TaskErrorType.NULL;
 import static org.motechproject.tasks.domain.TaskErrorType.VERSION;
 
@@ -122,6 +123,21 @@ public abstract class GeneralValidator {
         }
     }
 
+    /**
+     * Checks whether given value is negative. If it is negative, new {@code TaskError} will be added to the
+     * {@code errors}.
+     *
+     * @param errors  the set of errors, not null
+     * @param objectName  the name of the object, not null
+     * @param field  the name of the field, not null
+     * @param value  the value to check
+     */
+    protected static void checkNotNegative(Set<TaskError> errors, String objectName, String field, long value) {
+        if (value < 0) {
+            errors.add(new TaskError(NEGATIVE, field, objectName));
+        }
+    }
+
     /**
      * Checks whether the given collection is empty. If it is empty, new {@code TaskError} will be added to the
      * {@code errors}.
@@ -59,6 +59,8 @@ public final class TaskValidator extends GeneralValidator {
         Set<TaskError> errors = new HashSet<>();
 
         checkBlankValue(errors, TASK, "name", task.getName());
+        checkNotNegative(errors, TASK, "rateLimit", task.getRateLimit());
+        checkNotNegative(errors, TASK, "maxConcurrentExecutions", task.getMaxConcurrentExecutions());
 
         errors.addAll(validateTrigger(task.getTrigger()));
 
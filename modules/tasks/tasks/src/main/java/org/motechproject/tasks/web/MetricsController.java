@@ -0,0 +1,91 @@
+package org.motechproject.tasks.web;
+
+import org.motechproject.tasks.constants.TasksRoles;
+import org.motechproject.tasks.metrics.LatencySnapshot;
+import org.motechproject.tasks.metrics.TaskMetrics;
+import org.motechproject.tasks.metrics.TaskStep;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Map;
+
+/**
+ * Controller for reading the execution time metrics of the task engine. All times are in milliseconds.
+ */
+@PreAuthorize(TasksRoles.HAS_ROLE_MANAGE_TASKS)
+@Controller
+public class MetricsController {
+
+    private TaskMetrics metrics;
+
+    /**
+     * Controller constructor.
+     *
+     * @param metrics  the task metrics, not null
+     */
+    @Autowired
+    public MetricsController(TaskMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the parsing times of the custom event parsers, keyed by parser name.
+     *
+     * @return the parsing times
+     */
+    @RequestMapping(value = "/metrics/parsers", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, LatencySnapshot> getParserTimes() {
+        return metrics.getParserTimes();
+    }
+
+    /**
+     * Returns the execution times of the task steps, keyed by task ID.
+     *
+     * @return the execution times of the task steps
+     */
+    @RequestMapping(value = "/metrics/tasks", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<Long, Map<TaskStep, LatencySnapshot>> getTaskTimes() {
+        return metrics.getTaskTimes();
+    }
+
+    /**
+     * Returns the execution times of the steps of the given task.
+     *
+     * @param taskId  the ID of the task
+     * @return the execution times of the task steps
+     */
+    @RequestMapping(value = "/metrics/tasks/{taskId}", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<TaskStep, LatencySnapshot> getTaskTimes(@PathVariable Long taskId) {
+        return metrics.getTaskTimes(taskId);
+    }
+
+    /**
+     * Returns the numbers of task executions skipped because of the task limits, keyed by task ID.
+     *
+     * @return the numbers of skipped executions
+     */
+    @RequestMapping(value = "/metrics/throttled", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<Long, Long> getThrottledExecutions() {
+        return metrics.getThrottledExecutions();
+    }
+
+    /**
+     * Clears all collected metrics.
+     */
+    @RequestMapping(value = "/metrics", method = RequestMethod.DELETE)
+    @ResponseStatus(HttpStatus.OK)
+    public void resetMetrics() {
+        metrics.reset();
+    }
+}
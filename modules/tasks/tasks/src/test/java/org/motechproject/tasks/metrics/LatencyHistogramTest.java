@@ -0,0 +1,39 @@
+package org.motechproject.tasks.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    private static final long MILLI = 1000000L;
+
+    @Test
+    public void shouldReturnZerosForEmptyHistogram() {
+        LatencySnapshot snapshot = new LatencyHistogram().getSnapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0.0, snapshot.getMean(), 0.0);
+        assertEquals(0.0, snapshot.getP99(), 0.0);
+    }
+
+    @Test
+    public void shouldApproximatePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 0; i < 99; ++i) {
+            histogram.record(MILLI);
+        }
+        histogram.record(100 * MILLI);
+
+        LatencySnapshot snapshot = histogram.getSnapshot();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(100.0, snapshot.getMax(), 0.0);
+        assertEquals(1.99, snapshot.getMean(), 0.001);
+        assertTrue(snapshot.getP50() >= 1.0 && snapshot.getP50() < 2.1);
+        assertTrue(snapshot.getP99() >= 1.0 && snapshot.getP99() < 2.1);
+        assertEquals(histogram.getPercentileNanos(100), 100 * MILLI);
+    }
+}
@@ -15,15 +15,18 @@ import org.motechproject.tasks.domain.TaskBuilder;
 import org.motechproject.tasks.ex.ActionNotFoundException;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 
 import java.util.HashMap;
 import java.util.TreeSet;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -58,14 +61,14 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod").setActionParameters(new TreeSet<ActionParameter>()).createActionEvent();
         actionEvent.setActionParameters(new TreeSet<ActionParameter>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(null);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(null);
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
 
@@ -78,7 +81,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldNotRaiseEventIfActionHasSubjectAndService_IfServiceIsAvailable() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldNotRaiseEventIfActionHasSubjectAndService_IfServiceIsAvailable() throws ActionNotFoundException, TaskHandlerException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -86,7 +89,7 @@ public class TaskActionExecutorTest {
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
         ServiceReference serviceReference = mock(ServiceReference.class);
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference[] {serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(new TestService());
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
@@ -100,7 +103,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldInvokeServiceIfActionHasService() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldInvokeServiceIfActionHasService() throws ActionNotFoundException, TaskHandlerException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -108,7 +111,7 @@ public class TaskActionExecutorTest {
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
         ServiceReference serviceReference = mock(ServiceReference.class);
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference[] {serviceReference});
         TestService testService = new TestService();
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
@@ -122,6 +125,32 @@ public class TaskActionExecutorTest {
         assertTrue(testService.serviceMethodInvoked());
     }
 
+    @Test
+    public void shouldResolveActionEventAndServiceOnlyOnce() throws ActionNotFoundException, TaskHandlerException, InvalidSyntaxException {
+        TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
+        ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action")
+                .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
+                .setActionParameters(new TreeSet<ActionParameter>()).createActionEvent();
+        when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
+
+        ServiceReference serviceReference = mock(ServiceReference.class);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference[] {serviceReference});
+        TestService testService = new TestService();
+        when(bundleContext.getService(serviceReference)).thenReturn(testService);
+
+        Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
+
+        TaskActionExecutor taskActionExecutor = new TaskActionExecutor(taskService, activityService, eventRelay);
+        taskActionExecutor.setBundleContext(bundleContext);
+
+        taskActionExecutor.execute(task, actionInformation, new TaskContext(task, new HashMap(), activityService));
+        taskActionExecutor.execute(task, actionInformation, new TaskContext(task, new HashMap(), activityService));
+
+        assertEquals(2, testService.invocations);
+        verify(taskService, times(1)).getActionEventFor(actionInformation);
+        verify(bundleContext, times(1)).getService(serviceReference);
+    }
+
     @Test(expected = TaskHandlerException.class)
     public void shouldThrowExceptionIfBundleContextIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
@@ -155,7 +184,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldAddActivityNotificationIfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldAddActivityNotificationIfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -163,7 +192,7 @@ public class TaskActionExecutorTest {
         actionEvent.setActionParameters(new TreeSet<ActionParameter>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(null);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(null);
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
 
@@ -178,6 +207,7 @@ public class TaskActionExecutorTest {
     private class TestService {
 
         private boolean invoked;
+        private int invocations;
 
         private boolean serviceMethodInvoked() {
             return invoked;
@@ -185,6 +215,7 @@ public class TaskActionExecutorTest {
 
         public void serviceMethod() {
             invoked = true;
+            invocations++;
         }
     }
 }
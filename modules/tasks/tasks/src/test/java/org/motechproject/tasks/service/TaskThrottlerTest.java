@@ -0,0 +1,159 @@
+package org.motechproject.tasks.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskBuilder;
+import org.motechproject.tasks.domain.TaskOverflowPolicy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaskThrottlerTest {
+
+    private TaskThrottler throttler;
+
+    @Before
+    public void setUp() {
+        throttler = new TaskThrottler();
+    }
+
+    @After
+    public void tearDown() {
+        throttler.shutdown();
+    }
+
+    @Test
+    public void shouldNotLimitTaskWithoutLimits() {
+        Task task = new TaskBuilder().withId(1L).build();
+
+        for (int i = 0; i < 1000; ++i) {
+            assertNotNull(throttler.acquire(task));
+        }
+    }
+
+    @Test
+    public void shouldLimitRate() {
+        Task task = new TaskBuilder().withId(1L).withRateLimit(2).withOverflowPolicy(TaskOverflowPolicy.DROP).build();
+
+        assertNotNull(throttler.acquire(task));
+        assertNotNull(throttler.acquire(task));
+        assertNull(throttler.acquire(task));
+    }
+
+    @Test
+    public void shouldDeferExecutionsExceedingRate() throws InterruptedException {
+        Task task = new TaskBuilder().withId(1L).withRateLimit(20).withOverflowPolicy(TaskOverflowPolicy.QUEUE).build();
+
+        for (int i = 0; i < 20; ++i) {
+            assertNotNull(throttler.acquire(task));
+        }
+
+        assertNull(throttler.acquire(task));
+
+        RecordingExecution execution = new RecordingExecution();
+        assertTrue(throttler.defer(task, 1000, 1, execution));
+
+        // a later execution does not overtake the deferred one
+        assertNull(throttler.acquire(task));
+
+        assertTrue(execution.done.await(1, TimeUnit.SECONDS));
+        assertTrue(execution.executed);
+    }
+
+    @Test
+    public void shouldRejectDeferredExecutionsOverQueueCapacity() {
+        Task task = new TaskBuilder().withId(1L).withRateLimit(1).withOverflowPolicy(TaskOverflowPolicy.QUEUE).build();
+
+        assertNotNull(throttler.acquire(task));
+
+        assertTrue(throttler.defer(task, 1000, 1, new RecordingExecution()));
+        assertFalse(throttler.defer(task, 1000, 1, new RecordingExecution()));
+    }
+
+    @Test
+    public void shouldExpireDeferredExecutionAfterMaxWait() throws InterruptedException {
+        Task task = new TaskBuilder().withId(1L).withMaxConcurrentExecutions(1)
+                .withOverflowPolicy(TaskOverflowPolicy.QUEUE).build();
+
+        TaskThrottler.Permit permit = throttler.acquire(task);
+        assertNotNull(permit);
+
+        RecordingExecution execution = new RecordingExecution();
+        assertTrue(throttler.defer(task, 50, 1, execution));
+
+        assertTrue(execution.done.await(1, TimeUnit.SECONDS));
+        assertFalse(execution.executed);
+
+        permit.release();
+        assertNotNull(throttler.acquire(task));
+    }
+
+    @Test
+    public void shouldLimitConcurrentExecutions() {
+        Task task = new TaskBuilder().withId(1L).withMaxConcurrentExecutions(1).build();
+
+        TaskThrottler.Permit permit = throttler.acquire(task);
+        assertNotNull(permit);
+        assertNull(throttler.acquire(task));
+
+        permit.release();
+        assertNotNull(throttler.acquire(task));
+    }
+
+    @Test
+    public void shouldApplyChangedLimits() {
+        Task task = new TaskBuilder().withId(1L).withRateLimit(1).build();
+
+        assertNotNull(throttler.acquire(task));
+        assertNull(throttler.acquire(task));
+
+        task.setRateLimit(5);
+        assertNotNull(throttler.acquire(task));
+    }
+
+    @Test
+    public void shouldReportSkippedExecutionsOncePerInterval() throws InterruptedException {
+        Task task = new TaskBuilder().withId(1L).withRateLimit(1).withOverflowPolicy(TaskOverflowPolicy.DROP).build();
+
+        assertEquals(1, throttler.skip(task, 50));
+        assertEquals(0, throttler.skip(task, 50));
+        assertEquals(0, throttler.skip(task, 50));
+
+        Thread.sleep(60);
+        assertEquals(3, throttler.skip(task, 50));
+        assertEquals(0, throttler.skip(task, 50));
+    }
+
+    @Test
+    public void shouldReportEverySkippedExecutionWithoutInterval() {
+        Task task = new TaskBuilder().withId(1L).withRateLimit(1).withOverflowPolicy(TaskOverflowPolicy.DROP).build();
+
+        assertEquals(1, throttler.skip(task, 0));
+        assertEquals(1, throttler.skip(task, 0));
+    }
+
+    private static class RecordingExecution implements TaskThrottler.DeferredExecution {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean executed;
+
+        @Override
+        public void execute() {
+            executed = true;
+            done.countDown();
+        }
+
+        @Override
+        public void expire() {
+            done.countDown();
+        }
+    }
+}
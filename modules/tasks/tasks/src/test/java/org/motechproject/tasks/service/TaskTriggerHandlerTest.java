@@ -9,6 +9,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.commons.api.DataProvider;
 import org.motechproject.commons.api.TasksEventParser;
 import org.motechproject.event.MotechEvent;
@@ -30,11 +32,15 @@ import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActionInformation;
 import org.motechproject.tasks.domain.TaskActivity;
 import org.motechproject.tasks.domain.TaskConfig;
+import org.motechproject.tasks.domain.TaskOverflowPolicy;
 import org.motechproject.tasks.domain.TaskTriggerInformation;
 import org.motechproject.tasks.domain.TriggerEvent;
 import org.motechproject.tasks.ex.ActionNotFoundException;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.ex.TriggerNotFoundException;
+import org.motechproject.tasks.metrics.LatencySnapshot;
+import org.motechproject.tasks.metrics.TaskMetrics;
+import org.motechproject.tasks.metrics.TaskStep;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
@@ -61,12 +67,15 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.config.core.constants.ConfigurationConstants.BUNDLE_SETTINGS_CHANGED_EVENT_SUBJECT;
+import static org.motechproject.config.core.constants.ConfigurationConstants.BUNDLE_SYMBOLIC_NAME;
 import static org.motechproject.tasks.domain.OperatorType.CONTAINS;
 import static org.motechproject.tasks.domain.OperatorType.ENDSWITH;
 import static org.motechproject.tasks.domain.OperatorType.EQUALS;
@@ -1185,7 +1194,7 @@ public class TaskTriggerHandlerTest {
         when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
         when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference(anyString())).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
@@ -1221,7 +1230,7 @@ public class TaskTriggerHandlerTest {
         when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
         when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[] {serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -1257,7 +1266,7 @@ public class TaskTriggerHandlerTest {
         when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
         when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[] {serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -1293,7 +1302,7 @@ public class TaskTriggerHandlerTest {
         when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
         when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[] {serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -1325,7 +1334,7 @@ public class TaskTriggerHandlerTest {
         when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
         when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
@@ -1358,7 +1367,7 @@ public class TaskTriggerHandlerTest {
         when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
         when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
@@ -1424,7 +1433,8 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskService).getActionEventFor(task.getActions().get(1));
+        // both actions come from the same channel action, so the second one uses the cached action event
+        verify(taskService, never()).getActionEventFor(task.getActions().get(1));
         verify(eventRelay, times(3)).sendEventMessage(captor.capture());
         verify(taskActivityService).addSuccess(task);
 
@@ -1492,6 +1502,108 @@ public class TaskTriggerHandlerTest {
         assertEquals("123456789 || 6789 || YourName", event.getParameters().get("format"));
     }
 
+    @Test
+    public void shouldRecordStepTimesAndStoreSlowExecutionTrace() throws Exception {
+        setTriggerEvent();
+        setActionEvent();
+
+        TaskMetrics metrics = new TaskMetrics();
+        handler.setMetrics(metrics);
+
+        when(settingsFacade.getProperty("task.trace.slowThreshold")).thenReturn("1");
+        when(settingsFacade.getProperty("task.trace.sampleRate")).thenReturn("1");
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                Thread.sleep(5);
+                return null;
+            }
+        }).when(eventRelay).sendEventMessage(any(MotechEvent.class));
+
+        handler.handle(createEvent());
+
+        Map<TaskStep, LatencySnapshot> times = metrics.getTaskTimes(task.getId());
+
+        assertEquals(1, times.get(TaskStep.TRIGGER_LOOKUP).getCount());
+        assertEquals(1, times.get(TaskStep.TEMPLATE).getCount());
+        assertEquals(1, times.get(TaskStep.ACTION).getCount());
+        assertEquals(1, times.get(TaskStep.TOTAL).getCount());
+        assertTrue(times.get(TaskStep.ACTION).getMax() >= 5.0);
+        assertFalse(times.containsKey(TaskStep.DATA_SOURCE));
+
+        verify(taskActivityService).addWarning(eq(task), eq("task.warning.slowExecution"), anyString());
+    }
+
+    @Test
+    public void shouldRecordExecutionTimesIfTracingIsDisabled() throws Exception {
+        setTriggerEvent();
+        setActionEvent();
+
+        TaskMetrics metrics = new TaskMetrics();
+        handler.setMetrics(metrics);
+
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+
+        handler.handle(createEvent());
+
+        assertEquals(1, metrics.getTaskTimes(task.getId()).get(TaskStep.TOTAL).getCount());
+        verify(taskActivityService, never()).addWarning(eq(task), eq("task.warning.slowExecution"), anyString());
+    }
+
+    @Test
+    public void shouldStoreOneWarningForExecutionsSkippedWithinInterval() throws Exception {
+        setTriggerEvent();
+        setActionEvent();
+
+        task.setRateLimit(1);
+        task.setOverflowPolicy(TaskOverflowPolicy.DROP);
+
+        when(settingsFacade.getProperty("task.throttle.warningInterval")).thenReturn("60000");
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+
+        handler.handle(createEvent());
+        handler.handle(createEvent());
+        handler.handle(createEvent());
+        handler.handle(createEvent());
+
+        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addWarning(task, "task.warning.executionThrottled",
+                "skipped=1, rateLimit=1, maxConcurrentExecutions=0");
+        verify(taskActivityService, times(1)).addWarning(eq(task), eq("task.warning.executionThrottled"), anyString());
+    }
+
+    @Test
+    public void shouldReadTraceSettingsAgainOnlyAfterTheyChange() throws Exception {
+        setTriggerEvent();
+        setActionEvent();
+
+        when(settingsFacade.getBundleSymbolicName()).thenReturn("org.motechproject.motech-tasks");
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+
+        handler.handle(createEvent());
+        handler.handle(createEvent());
+
+        verify(settingsFacade, times(1)).getProperty("task.trace.slowThreshold");
+
+        handler.handleSettingsChange(createSettingsChangeEvent("org.motechproject.other"));
+
+        verify(settingsFacade, times(1)).getProperty("task.trace.slowThreshold");
+
+        handler.handleSettingsChange(createSettingsChangeEvent("org.motechproject.motech-tasks"));
+        handler.handle(createEvent());
+
+        verify(settingsFacade, times(2)).getProperty("task.trace.slowThreshold");
+    }
+
     @Test
     public void shouldHandleTriggerWithCustomParser() throws Exception {
         setTriggerEvent();
@@ -1679,6 +1791,13 @@ public class TaskTriggerHandlerTest {
                 .setType(DATE).setRequired(false).createActionParameter(), true);
     }
 
+    private MotechEvent createSettingsChangeEvent(String bundleSymbolicName) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(BUNDLE_SYMBOLIC_NAME, bundleSymbolicName);
+
+        return new MotechEvent(BUNDLE_SETTINGS_CHANGED_EVENT_SUBJECT, params);
+    }
+
     private MotechEvent createEvent() {
         return createEvent(false);
     }
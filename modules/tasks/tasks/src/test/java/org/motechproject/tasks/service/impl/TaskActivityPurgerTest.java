@@ -0,0 +1,194 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.server.config.SettingsFacade;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActivityRollup;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityRollupsDataService;
+import org.motechproject.tasks.repository.TasksDataService;
+
+import javax.jdo.Query;
+import java.util.Collection;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.domain.TaskActivityType.ERROR;
+import static org.motechproject.tasks.domain.TaskActivityType.SUCCESS;
+import static org.motechproject.tasks.domain.TaskActivityType.WARNING;
+
+public class TaskActivityPurgerTest {
+
+    private static final Long TASK_ID = 12345L;
+
+    @Mock
+    private TaskActivitiesDataService activitiesDataService;
+
+    @Mock
+    private TaskActivityRollupsDataService rollupsDataService;
+
+    @Mock
+    private TasksDataService tasksDataService;
+
+    @Mock
+    private TaskActivityRollupBuffer rollupBuffer;
+
+    @Mock
+    private SettingsFacade settings;
+
+    @Mock
+    private Query query;
+
+    private TaskActivityPurger purger;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(activitiesDataService.executeQuery(any(QueryExecution.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                QueryExecution execution = (QueryExecution) invocation.getArguments()[0];
+                return execution.execute(query, null);
+            }
+        });
+
+        when(query.deletePersistentAll((Object[]) anyVararg())).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return (long) ((Collection) invocation.getArguments()[0]).size();
+            }
+        });
+
+        purger = new TaskActivityPurger(activitiesDataService, rollupsDataService, tasksDataService, rollupBuffer,
+                settings);
+    }
+
+    @Test
+    public void shouldPurgeActivitiesOlderThanMaxAgeInBatches() {
+        DateTime olderThan = DateUtil.now().minusDays(10);
+        when(query.executeWithArray((Object[]) anyVararg())).thenReturn(asList(1L, 2L), asList(3L));
+
+        assertEquals(3, purger.purgeByAge(WARNING, olderThan, 2));
+
+        verify(query, times(2)).setFilter("activityType == type && date < olderThan");
+        verify(query, times(2)).setRange(0, 2);
+        verify(query, times(2)).executeWithArray(WARNING, olderThan);
+        verify(query).deletePersistentAll(asList(1L, 2L));
+        verify(query).deletePersistentAll(asList(3L));
+    }
+
+    @Test
+    public void shouldNotDeleteAnythingIfNoActivitiesAreOlderThanMaxAge() {
+        DateTime olderThan = DateUtil.now().minusDays(10);
+        when(query.executeWithArray((Object[]) anyVararg())).thenReturn(asList());
+
+        assertEquals(0, purger.purgeByAge(SUCCESS, olderThan, 2));
+
+        verify(query).executeWithArray(SUCCESS, olderThan);
+        verify(query, never()).deletePersistentAll((Object[]) anyVararg());
+    }
+
+    @Test
+    public void shouldPurgeActivitiesExceedingMaxCountForEachTask() {
+        when(query.execute()).thenReturn(asList(TASK_ID, TASK_ID + 1));
+        when(query.executeWithArray((Object[]) anyVararg())).thenReturn(asList(5L, 6L), asList(7L), asList());
+
+        assertEquals(3, purger.purgeByCount(ERROR, 3, 2));
+
+        verify(query).setResult("distinct task");
+        verify(query, times(3)).setFilter("task == taskId && activityType == type");
+        verify(query, times(3)).setOrdering("date descending, id descending");
+        verify(query, times(3)).setRange(3, 5);
+        verify(query, times(2)).executeWithArray(TASK_ID, ERROR);
+        verify(query).executeWithArray(TASK_ID + 1, ERROR);
+        verify(query).deletePersistentAll(asList(5L, 6L));
+        verify(query).deletePersistentAll(asList(7L));
+    }
+
+    @Test
+    public void shouldPurgeOnlyActivityTypesWithRetentionLimits() {
+        when(settings.getProperty(TaskActivityPurger.MAX_AGE + "error")).thenReturn("30");
+        when(settings.getProperty(TaskActivityPurger.MAX_COUNT + "warning")).thenReturn("100");
+        when(query.execute()).thenReturn(asList(TASK_ID));
+        when(query.executeWithArray((Object[]) anyVararg())).thenReturn(asList());
+
+        purger.purge();
+
+        verify(rollupBuffer).flush();
+        verify(query).setFilter("activityType == type && date < olderThan");
+        verify(query).executeWithArray(eq(ERROR), any(DateTime.class));
+        verify(query).setFilter("task == taskId && activityType == type");
+        verify(query).executeWithArray(TASK_ID, WARNING);
+        verify(query, times(2)).executeWithArray((Object[]) anyVararg());
+    }
+
+    @Test
+    public void shouldFlushRollupsOnStop() {
+        purger.stop();
+
+        verify(rollupBuffer).flush();
+    }
+
+    @Test
+    public void shouldNotPurgeAnythingByDefault() {
+        purger.purge();
+
+        verify(rollupBuffer).flush();
+        verify(activitiesDataService, never()).executeQuery(any(QueryExecution.class));
+    }
+
+    @Test
+    public void shouldInitializeRollupsFromActivitiesRecordedBeforeTheBuffer() {
+        DateTime countedSince = DateUtil.now();
+        Task task = new Task();
+        task.setId(TASK_ID);
+
+        when(rollupBuffer.getCountedSince()).thenReturn(countedSince);
+        when(tasksDataService.retrieveAll()).thenReturn(asList(task));
+        when(query.executeWithArray(TASK_ID, SUCCESS, countedSince)).thenReturn(10L);
+        when(query.executeWithArray(TASK_ID, WARNING, countedSince)).thenReturn(2L);
+        when(query.executeWithArray(TASK_ID, ERROR, countedSince)).thenReturn(5L);
+
+        purger.initializeRollups();
+
+        verify(query, times(3)).setFilter("task == taskId && activityType == type && date < before");
+        verify(query, times(3)).setResult("count(this)");
+
+        ArgumentCaptor<TaskActivityRollup> captor = ArgumentCaptor.forClass(TaskActivityRollup.class);
+        verify(rollupsDataService).create(captor.capture());
+
+        TaskActivityRollup rollup = captor.getValue();
+        assertEquals(TASK_ID, rollup.getTask());
+        assertEquals(DateUtil.today(), rollup.getDay());
+        assertEquals(10, rollup.getSuccessCount());
+        assertEquals(2, rollup.getWarningCount());
+        assertEquals(5, rollup.getErrorCount());
+    }
+
+    @Test
+    public void shouldNotInitializeRollupsIfTheyExist() {
+        when(rollupsDataService.count()).thenReturn(1L);
+
+        purger.initializeRollups();
+
+        verify(tasksDataService, never()).retrieveAll();
+        verify(rollupsDataService, never()).create(any(TaskActivityRollup.class));
+    }
+}
@@ -0,0 +1,99 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.tasks.domain.TaskActivityRollup;
+import org.motechproject.tasks.repository.TaskActivityRollupsDataService;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.util.ArrayList;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.domain.TaskActivityType.ERROR;
+import static org.motechproject.tasks.domain.TaskActivityType.SUCCESS;
+import static org.motechproject.tasks.domain.TaskActivityType.WARNING;
+
+public class TaskActivityRollupBufferTest {
+
+    private static final Long TASK_ID = 12345L;
+
+    @Mock
+    private TaskActivityRollupsDataService rollupsDataService;
+
+    private TaskActivityRollupBuffer rollupBuffer;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        rollupBuffer = new TaskActivityRollupBuffer(rollupsDataService);
+    }
+
+    @Test
+    public void shouldCountPendingAndStoredActivities() {
+        TaskActivityRollup stored = new TaskActivityRollup(TASK_ID, DateUtil.today().minusDays(1));
+        stored.increment(SUCCESS, 10);
+        stored.increment(ERROR, 2);
+        when(rollupsDataService.byTask(TASK_ID)).thenReturn(asList(stored));
+
+        rollupBuffer.increment(TASK_ID, SUCCESS);
+        rollupBuffer.increment(TASK_ID, SUCCESS);
+        rollupBuffer.increment(TASK_ID, WARNING);
+        rollupBuffer.increment(TASK_ID + 1, SUCCESS);
+
+        assertEquals(12, rollupBuffer.getCount(TASK_ID, SUCCESS));
+        assertEquals(1, rollupBuffer.getCount(TASK_ID, WARNING));
+        assertEquals(2, rollupBuffer.getCount(TASK_ID, ERROR));
+    }
+
+    @Test
+    public void shouldWritePendingCountsOnFlush() {
+        rollupBuffer.increment(TASK_ID, ERROR);
+        rollupBuffer.increment(TASK_ID, ERROR);
+
+        rollupBuffer.flush();
+
+        ArgumentCaptor<TransactionCallback> captor = ArgumentCaptor.forClass(TransactionCallback.class);
+        verify(rollupsDataService).doInTransaction(captor.capture());
+
+        captor.getValue().doInTransaction(null);
+
+        ArgumentCaptor<TaskActivityRollup> rollupCaptor = ArgumentCaptor.forClass(TaskActivityRollup.class);
+        verify(rollupsDataService).create(rollupCaptor.capture());
+
+        assertEquals(TASK_ID, rollupCaptor.getValue().getTask());
+        assertEquals(DateUtil.today(), rollupCaptor.getValue().getDay());
+        assertEquals(2, rollupCaptor.getValue().getErrorCount());
+
+        when(rollupsDataService.byTask(TASK_ID)).thenReturn(new ArrayList<TaskActivityRollup>());
+        assertEquals(0, rollupBuffer.getCount(TASK_ID, ERROR));
+    }
+
+    @Test
+    public void shouldNotWriteAnythingIfNothingWasCounted() {
+        rollupBuffer.flush();
+
+        verify(rollupsDataService, never()).doInTransaction(any(TransactionCallback.class));
+    }
+
+    @Test
+    public void shouldDropPendingCountsWhenDeletingTaskRollups() {
+        when(rollupsDataService.byTask(TASK_ID)).thenReturn(new ArrayList<TaskActivityRollup>());
+        rollupBuffer.increment(TASK_ID, SUCCESS);
+
+        rollupBuffer.deleteForTask(TASK_ID);
+
+        assertEquals(0, rollupBuffer.getCount(TASK_ID, SUCCESS));
+
+        rollupBuffer.flush();
+        verify(rollupsDataService, never()).doInTransaction(any(TransactionCallback.class));
+    }
+}
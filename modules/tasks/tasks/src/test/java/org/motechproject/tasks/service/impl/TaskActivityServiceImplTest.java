@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
@@ -25,7 +26,6 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -44,6 +44,9 @@ public class TaskActivityServiceImplTest {
     @Mock
     TaskActivitiesDataService taskActivitiesDataService;
 
+    @Mock
+    TaskActivityRollupBuffer rollupBuffer;
+
     TaskActivityService activityService;
 
     Task task;
@@ -52,7 +55,7 @@ public class TaskActivityServiceImplTest {
     public void setup() throws Exception {
         initMocks(this);
 
-        activityService = new TaskActivityServiceImpl(taskActivitiesDataService);
+        activityService = new TaskActivityServiceImpl(taskActivitiesDataService, rollupBuffer);
         activities = createTaskActivities();
 
         task = new Task();
@@ -130,21 +133,32 @@ public class TaskActivityServiceImplTest {
     }
 
     @Test
-    public void shouldDeleteAllTaskActivitiesForGivenTask() {
-        when(taskActivitiesDataService.byTask(TASK_ID)).thenReturn(activities);
-
-        activityService.deleteActivitiesForTask(TASK_ID);
+    public void shouldCountAddedActivitiesInRollups() {
+        activityService.addSuccess(task);
+        activityService.addWarning(task);
+        activityService.addError(task, new TaskHandlerException(TRIGGER, "error.notFoundTrigger"));
 
-        verify(taskActivitiesDataService, times(activities.size())).delete(any(TaskActivity.class));
+        verify(rollupBuffer).increment(TASK_ID, SUCCESS);
+        verify(rollupBuffer).increment(TASK_ID, WARNING);
+        verify(rollupBuffer).increment(TASK_ID, ERROR);
     }
 
     @Test
-    public void shouldNotRemoveAnyActivitiesWhenTaskHasNotActivities() {
-        when(taskActivitiesDataService.byTask(TASK_ID)).thenReturn(new ArrayList<TaskActivity>());
-
+    public void shouldDeleteAllTaskActivitiesForGivenTaskWithSingleQuery() {
         activityService.deleteActivitiesForTask(TASK_ID);
 
+        verify(taskActivitiesDataService).executeQuery(any(QueryExecution.class));
+        verify(taskActivitiesDataService, never()).byTask(TASK_ID);
         verify(taskActivitiesDataService, never()).delete(any(TaskActivity.class));
+        verify(rollupBuffer).deleteForTask(TASK_ID);
+    }
+
+    @Test
+    public void shouldReturnActivityCountFromRollups() {
+        when(rollupBuffer.getCount(TASK_ID, ERROR)).thenReturn(7L);
+
+        assertEquals(7L, activityService.getTaskActivitiesCount(TASK_ID, ERROR));
+        verify(taskActivitiesDataService, never()).countByTaskAndActivityTypes(any(Long.class), any(Set.class));
     }
 
     @Test
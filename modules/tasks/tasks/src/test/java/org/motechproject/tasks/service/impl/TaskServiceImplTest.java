@@ -15,6 +15,7 @@ import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.verification.VerificationMode;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.commons.api.TasksEventParser;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.tasks.domain.ActionEventBuilder;
@@ -41,12 +42,15 @@ import org.motechproject.tasks.domain.TaskEventInformation;
 import org.motechproject.tasks.domain.TaskTriggerInformation;
 import org.motechproject.tasks.domain.TriggerEvent;
 import org.motechproject.tasks.ex.ActionNotFoundException;
+import org.motechproject.tasks.ex.CustomParserNotFoundException;
 import org.motechproject.tasks.ex.TaskNotFoundException;
 import org.motechproject.tasks.ex.TriggerNotFoundException;
 import org.motechproject.tasks.ex.ValidationException;
+import org.motechproject.tasks.metrics.TaskMetrics;
 import org.motechproject.tasks.repository.TasksDataService;
 import org.motechproject.tasks.service.ChannelService;
 import org.motechproject.tasks.service.TaskDataProviderService;
+import org.motechproject.tasks.service.TaskThrottler;
 import org.motechproject.tasks.service.TriggerHandler;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -68,10 +72,12 @@ import static org.hamcrest.Matchers.hasProperty;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -115,6 +121,12 @@ public class TaskServiceImplTest {
     @Mock
     TriggerHandler triggerHandler;
 
+    @Mock
+    TaskThrottler throttler;
+
+    @Mock
+    TaskMetrics metrics;
+
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
@@ -130,6 +142,8 @@ public class TaskServiceImplTest {
         taskService.setEventRelay(eventRelay);
         taskService.setProviderService(providerService);
         taskService.setTasksDataService(tasksDataService);
+        taskService.setThrottler(throttler);
+        taskService.setMetrics(metrics);
 
         when(bundleContext.getBundles()).thenReturn(new Bundle[]{bundleTrigger, bundleAction});
         when(bundleTrigger.getSymbolicName()).thenReturn("test-trigger");
@@ -428,6 +442,28 @@ public class TaskServiceImplTest {
 
         verify(tasksDataService).findById(expected.getId());
         verify(tasksDataService).delete(expected);
+        verify(throttler).remove(expected.getId());
+        verify(metrics).removeTask(expected.getId());
+    }
+
+    @Test
+    public void shouldForgetTaskLimitsWhenTheyAreChanged() {
+        when(tasksDataService.findById(12345L)).thenReturn(taskWithRateLimit(10));
+
+        taskService.save(taskWithRateLimit(5));
+
+        assertEquals(5, verifyUpdateAndCaptureTask().getRateLimit());
+        verify(throttler).remove(12345L);
+    }
+
+    @Test
+    public void shouldKeepTaskLimitsWhenTheyAreNotChanged() {
+        when(tasksDataService.findById(12345L)).thenReturn(taskWithRateLimit(10));
+
+        taskService.save(taskWithRateLimit(10));
+
+        verifyUpdateAndCaptureTask();
+        verify(throttler, never()).remove(12345L);
     }
 
     @Test(expected = TaskNotFoundException.class)
@@ -773,6 +809,37 @@ public class TaskServiceImplTest {
         taskService.save(fooTask);
     }
 
+    @Test
+    public void shouldFindCustomParserByName() throws Exception {
+        ServiceReference parserReference = mock(ServiceReference.class);
+        TasksEventParser parser = mock(TasksEventParser.class);
+        when(parser.getName()).thenReturn("custom");
+        when(bundleContext.getServiceReferences(TasksEventParser.class.getName(), null))
+                .thenReturn(new ServiceReference[]{parserReference});
+        when(bundleContext.getService(parserReference)).thenReturn(parser);
+
+        assertEquals(parser, taskService.findCustomParser("custom"));
+    }
+
+    @Test
+    public void shouldReturnNullIfCustomParserNameIsEmpty() {
+        assertNull(taskService.findCustomParser(null));
+        assertNull(taskService.findCustomParser(""));
+    }
+
+    @Test(expected = CustomParserNotFoundException.class)
+    public void shouldThrowExceptionIfCustomParserIsNotRegistered() {
+        taskService.findCustomParser("custom");
+    }
+
+    private Task taskWithRateLimit(int rateLimit) {
+        Task task = new Task("name", trigger, asList(action), new TaskConfig(), false, false);
+        task.setId(12345L);
+        task.setRateLimit(rateLimit);
+
+        return task;
+    }
+
     private Task verifyUpdateAndCaptureTask() {
         return captureTask(true, null);
     }
@@ -0,0 +1,117 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.commons.api.TasksEventParser;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TasksEventParserTrackerTest {
+
+    private static final String PARSER_NAME = "custom";
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private ServiceReference<TasksEventParser> firstReference;
+
+    @Mock
+    private ServiceReference<TasksEventParser> secondReference;
+
+    private TasksEventParser firstParser;
+    private TasksEventParser secondParser;
+
+    private TasksEventParserTracker tracker;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        firstParser = parser(PARSER_NAME);
+        secondParser = parser(PARSER_NAME);
+
+        when(bundleContext.getService(firstReference)).thenReturn(firstParser);
+        when(bundleContext.getService(secondReference)).thenReturn(secondParser);
+        when(firstReference.getProperty(Constants.SERVICE_ID)).thenReturn(1L);
+        when(secondReference.getProperty(Constants.SERVICE_ID)).thenReturn(2L);
+
+        tracker = new TasksEventParserTracker(bundleContext);
+    }
+
+    @Test
+    public void shouldFindAddedParserByName() {
+        assertNull(tracker.getParser(PARSER_NAME));
+
+        tracker.addingService(firstReference);
+
+        assertSame(firstParser, tracker.getParser(PARSER_NAME));
+        assertNull(tracker.getParser("other"));
+    }
+
+    @Test
+    public void shouldNotFindRemovedParser() {
+        tracker.addingService(firstReference);
+        tracker.removedService(firstReference, firstParser);
+
+        assertNull(tracker.getParser(PARSER_NAME));
+        verify(bundleContext).ungetService(firstReference);
+    }
+
+    @Test
+    public void shouldUseParserWithHighestRanking() {
+        when(secondReference.getProperty(Constants.SERVICE_RANKING)).thenReturn(10);
+
+        tracker.addingService(firstReference);
+        tracker.addingService(secondReference);
+
+        assertSame(secondParser, tracker.getParser(PARSER_NAME));
+    }
+
+    @Test
+    public void shouldUseFirstRegisteredParserIfRankingsAreEqual() {
+        tracker.addingService(secondReference);
+        tracker.addingService(firstReference);
+
+        assertSame(firstParser, tracker.getParser(PARSER_NAME));
+    }
+
+    @Test
+    public void shouldFallBackToRemainingParserWithSameName() {
+        tracker.addingService(firstReference);
+        tracker.addingService(secondReference);
+
+        tracker.removedService(firstReference, firstParser);
+        assertSame(secondParser, tracker.getParser(PARSER_NAME));
+
+        tracker.removedService(secondReference, secondParser);
+        assertNull(tracker.getParser(PARSER_NAME));
+    }
+
+    @Test
+    public void shouldReorderParsersWhenRankingIsModified() {
+        tracker.addingService(firstReference);
+        tracker.addingService(secondReference);
+        assertSame(firstParser, tracker.getParser(PARSER_NAME));
+
+        when(secondReference.getProperty(Constants.SERVICE_RANKING)).thenReturn(10);
+        tracker.modifiedService(secondReference, secondParser);
+
+        assertSame(secondParser, tracker.getParser(PARSER_NAME));
+    }
+
+    private TasksEventParser parser(String name) {
+        TasksEventParser parser = mock(TasksEventParser.class);
+        when(parser.getName()).thenReturn(name);
+        return parser;
+    }
+}
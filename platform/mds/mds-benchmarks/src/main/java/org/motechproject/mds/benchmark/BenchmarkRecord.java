@@ -0,0 +1,55 @@
+package org.motechproject.mds.benchmark;
+
+import org.joda.time.DateTime;
+
+/**
+ * A simple bean with the kind of properties entity classes have.
+ */
+public class BenchmarkRecord {
+
+    private Long id;
+    private String name;
+    private Integer count;
+    private boolean active;
+    private DateTime modificationDate;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public DateTime getModificationDate() {
+        return modificationDate;
+    }
+
+    public void setModificationDate(DateTime modificationDate) {
+        this.modificationDate = modificationDate;
+    }
+}
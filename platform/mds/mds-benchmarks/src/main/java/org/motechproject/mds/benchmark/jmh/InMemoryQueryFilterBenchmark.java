@@ -0,0 +1,98 @@
+package org.motechproject.mds.benchmark.jmh;
+
+import org.motechproject.mds.query.InMemoryQueryFilter;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the in memory ordering and paging of related instances, as done for the related instances of a field
+ * in the data browser. The first page and the last page of the collection are retrieved, as well as the whole
+ * collection without paging.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemoryQueryFilterBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+
+    @Param({ "100", "1000", "10000" })
+    private int instances;
+
+    private List<RelatedInstance> collection;
+    private QueryParams firstPage;
+    private QueryParams lastPage;
+    private QueryParams noPaging;
+
+    @Setup
+    public void setUp() {
+        collection = new ArrayList<>(instances);
+        for (long id = 1; id <= instances; id++) {
+            collection.add(new RelatedInstance(id, "name " + (id * 31 % instances)));
+        }
+        Collections.shuffle(collection, new Random(instances));
+
+        Order order = new Order("name", Order.Direction.ASC);
+
+        firstPage = new QueryParams(1, PAGE_SIZE, order);
+        lastPage = new QueryParams(instances / PAGE_SIZE, PAGE_SIZE, order);
+        noPaging = new QueryParams(order);
+    }
+
+    @Benchmark
+    public List<RelatedInstance> firstPage() {
+        return InMemoryQueryFilter.filter(collection, firstPage);
+    }
+
+    @Benchmark
+    public List<RelatedInstance> lastPage() {
+        return InMemoryQueryFilter.filter(collection, lastPage);
+    }
+
+    @Benchmark
+    public List<RelatedInstance> noPaging() {
+        return InMemoryQueryFilter.filter(collection, noPaging);
+    }
+
+    /**
+     * A related instance, ordered by its name.
+     */
+    public static class RelatedInstance {
+
+        private final Long id;
+        private final String name;
+
+        public RelatedInstance(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
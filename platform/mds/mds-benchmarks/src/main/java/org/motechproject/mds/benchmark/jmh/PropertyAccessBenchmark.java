@@ -0,0 +1,82 @@
+package org.motechproject.mds.benchmark.jmh;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.joda.time.DateTime;
+import org.motechproject.mds.benchmark.BenchmarkRecord;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
+import org.motechproject.mds.util.PropertyUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading and writing properties through the reflection, as done by {@link PropertyUtil} for classes
+ * without an accessor, with the generated {@link PropertyAccessor}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyAccessBenchmark {
+
+    private BenchmarkRecord record;
+    private PropertyAccessor accessor;
+    private DateTime date;
+
+    @Setup
+    public void setUp() {
+        date = DateTime.now();
+
+        record = new BenchmarkRecord();
+        record.setId(1L);
+        record.setName("name");
+        record.setCount(5);
+        record.setActive(true);
+        record.setModificationDate(date);
+
+        accessor = PropertyAccessors.generate(BenchmarkRecord.class);
+    }
+
+    @Benchmark
+    public Object reflectionGet() throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        return PropertyUtils.getProperty(record, "modificationDate");
+    }
+
+    @Benchmark
+    public Object accessorGet() {
+        return accessor.get(record, "modificationDate");
+    }
+
+    @Benchmark
+    public Object safeGetWithoutAccessor() {
+        return PropertyUtil.safeGetProperty(record, "modificationDate");
+    }
+
+    @Benchmark
+    public BenchmarkRecord reflectionSet() throws IllegalAccessException, NoSuchMethodException,
+            InvocationTargetException {
+        PropertyUtils.setProperty(record, "modificationDate", date);
+        PropertyUtils.setProperty(record, "active", Boolean.TRUE);
+        return record;
+    }
+
+    @Benchmark
+    public BenchmarkRecord accessorSet() {
+        accessor.set(record, "modificationDate", date);
+        accessor.set(record, "active", Boolean.TRUE);
+        return record;
+    }
+}
@@ -12,6 +12,7 @@ import org.motechproject.mds.ex.csv.CsvImportException;
 import org.motechproject.mds.ex.entity.EntityNotFoundException;
 import org.motechproject.mds.filter.Filter;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.ContinuationToken;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvImportExportService;
 import org.motechproject.mds.util.Constants;
@@ -270,7 +271,10 @@ public class InstanceController extends MdsController {
 
         int rowCount = (int) Math.ceil(recordCount / (double) settings.getRows());
 
-        return new Records<>(settings.getPage(), rowCount, (int) recordCount, entityRecords);
+        Records<EntityRecord> records = new Records<>(settings.getPage(), rowCount, (int) recordCount, entityRecords);
+        records.setContinuationToken(nextContinuationToken(queryParams, entityRecords));
+
+        return records;
     }
 
     @RequestMapping(value = "/instances/{entityId}/csvimport", method = RequestMethod.POST)
@@ -289,6 +293,15 @@ public class InstanceController extends MdsController {
     }
 
     private QueryParams gridSettingsToQueryParams(GridSettings settings) {
+        if (StringUtils.isNotBlank(settings.getContinuationToken())) {
+            // the page number is meaningless for the keyset pagination, the token points to the next page
+            if (settings.getPage() == null) {
+                settings.setPage(1);
+                settings.setRows(10);
+            }
+            return ContinuationToken.parse(settings.getContinuationToken(), settings.getRows());
+        }
+
         Order order = null;
         if (StringUtils.isNotBlank(settings.getSortColumn())) {
             order = new Order(settings.getSortColumn(), settings.getSortDirection());
@@ -301,6 +314,26 @@ public class InstanceController extends MdsController {
         return new QueryParams(settings.getPage(), settings.getRows(), order);
     }
 
+    private String nextContinuationToken(QueryParams queryParams, List<EntityRecord> entityRecords) {
+        if (!queryParams.isKeyset() || entityRecords.isEmpty() || entityRecords.size() < queryParams.getPageSize()) {
+            return null;
+        }
+
+        // entity records hold the values of fields instead of the instances, so we look up the last value ourselves
+        EntityRecord last = entityRecords.get(entityRecords.size() - 1);
+        String orderField = queryParams.getOrder().getField();
+        Object lastValue = last.getId();
+
+        for (FieldRecord field : last.getFields()) {
+            if (StringUtils.equals(orderField, field.getName())) {
+                lastValue = field.getValue();
+                break;
+            }
+        }
+
+        return ContinuationToken.create(queryParams.nextPage(lastValue, last.getId()));
+    }
+
     private Map<String, Object> getFields(GridSettings gridSettings) throws IOException {
         if (gridSettings.getFields() == null) {
             return null;
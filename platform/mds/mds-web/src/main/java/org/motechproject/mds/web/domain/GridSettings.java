@@ -14,6 +14,7 @@ public class GridSettings {
     private String fields;
     private String filter;
     private List<String> selectedFields;
+    private String continuationToken;
 
     public Integer getRows() {
         return rows;
@@ -78,4 +79,12 @@ public class GridSettings {
     public void setSelectedFields(List<String> selectedFields) {
         this.selectedFields = selectedFields;
     }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
 }
@@ -10,6 +10,7 @@ public class Records<T> {
     private Integer total; // number of rows per page
     private Integer records; // total number of records
     private List<T> rows; // data to display
+    private String continuationToken; // token for retrieving the next page, when keyset pagination is used
 
     public Records(int page, int rows, int totalRecords, List<T> list) {
         this.page = page;
@@ -52,4 +53,12 @@ public class Records<T> {
     public void setRows(List<T> rows) {
         this.rows = rows;
     }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
 }
@@ -8,14 +8,18 @@ import org.motechproject.mds.ex.rest.RestLookupNotFoundException;
 import org.motechproject.mds.ex.rest.RestNoLookupResultException;
 import org.motechproject.mds.ex.rest.RestNotSupportedException;
 import org.motechproject.mds.ex.rest.RestOperationNotSupportedException;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.AggregationRow;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.rest.MdsRestFacade;
+import org.motechproject.mds.rest.RestStreamFormat;
 import org.motechproject.mds.web.ex.InvalidParameterException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -26,10 +30,14 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 import javax.jdo.JDOUserException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * The main entry point for the MDS Rest api. It delegates requests
@@ -41,35 +49,40 @@ public class MdsRestController  {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MdsRestController.class);
 
+    private static final String ETAG_HEADER = "ETag";
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
     @Autowired
     private MdsRestFacadeRetriever restFacadeRetriever;
 
     @RequestMapping(value = "/{moduleName}/{namespace}/{entityName}", method = RequestMethod.GET)
     @ResponseBody
     public Object get(@PathVariable String moduleName, @PathVariable String namespace,
-                    @PathVariable String entityName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, namespace, requestParams, null);
+                    @PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                    HttpServletRequest request, HttpServletResponse response) {
+        return doGet(entityName, moduleName, namespace, requestParams, null, request, response);
     }
 
     @RequestMapping(value = "/{moduleName}/{entityName}", method = RequestMethod.GET)
     @ResponseBody
     public Object get(@PathVariable String moduleName, @PathVariable String entityName,
-                    @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, null, requestParams, null);
+                    @RequestParam Map<String, String> requestParams,
+                    HttpServletRequest request, HttpServletResponse response) {
+        return doGet(entityName, moduleName, null, requestParams, null, request, response);
     }
 
     @RequestMapping(value = "/lookup/{entityName}/{lookupName}", method = RequestMethod.GET)
     @ResponseBody
     public Object lookupGet(@PathVariable String entityName, @PathVariable String lookupName,
                       @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, null, null, requestParams, lookupName);
+        return doGet(entityName, null, null, requestParams, lookupName, null, null);
     }
 
     @RequestMapping(value = "/lookup/{moduleName}/{entityName}/{lookupName}", method = RequestMethod.GET)
     @ResponseBody
     public Object lookupGet(@PathVariable String moduleName, @PathVariable String entityName,
                       @PathVariable String lookupName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, null, requestParams, lookupName);
+        return doGet(entityName, moduleName, null, requestParams, lookupName, null, null);
     }
 
     @RequestMapping(value = "/lookup/{moduleName}/{namespace}/{entityName}/{lookupName}", method = RequestMethod.GET)
@@ -77,17 +90,18 @@ public class MdsRestController  {
     public Object lookupGet(@PathVariable String moduleName, @PathVariable String namespace,
                       @PathVariable String entityName, @PathVariable String lookupName,
                       @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, namespace, requestParams, lookupName);
+        return doGet(entityName, moduleName, namespace, requestParams, lookupName, null, null);
     }
 
     @RequestMapping(value = "/{entityName}", method = RequestMethod.GET)
     @ResponseBody
-    public Object get(@PathVariable String entityName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, null, null, requestParams, null);
+    public Object get(@PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                      HttpServletRequest request, HttpServletResponse response) {
+        return doGet(entityName, null, null, requestParams, null, request, response);
     }
 
-    private Object doGet(String entityName, String moduleName, String namespace,
-                       Map<String, String> requestParams, String pathLookupName) {
+    private Object doGet(String entityName, String moduleName, String namespace, Map<String, String> requestParams,
+                         String pathLookupName, HttpServletRequest request, HttpServletResponse response) {
         debugRequest("GET", entityName, moduleName, namespace);
 
         QueryParams queryParams = ParamParser.buildQueryParams(requestParams);
@@ -99,19 +113,166 @@ public class MdsRestController  {
         MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
 
         Boolean includeBlob = ParamParser.getIncludeBlob(requestParams);
+        List<String> fields = ParamParser.getFields(requestParams);
+
+        String ifNoneMatch = (request != null) ? request.getHeader(IF_NONE_MATCH_HEADER) : null;
+
+        // the version is computed without retrieving the instances, unchanged instances are not sent again, the
+        // version of all instances needs an aggregate query, so it is only computed for conditional requests
+        if (lookupName == null && response != null && (id != null || ifNoneMatch != null)) {
+            String version = (id != null) ? restFacade.getVersion(id) : restFacade.getVersion();
+
+            if (version != null) {
+                String eTag = buildETag(version, requestParams);
+                response.setHeader(ETAG_HEADER, eTag);
+
+                if (matchesETag(ifNoneMatch, eTag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return null;
+                }
+            }
+        }
 
         if (lookupName != null) {
             // lookup
             return restFacade.executeLookup(lookupName, requestParams, queryParams, includeBlob != null && includeBlob);
         } else if (id != null) {
             // retrieve by id
-            return restFacade.get(id, includeBlob == null || includeBlob);
+            return restFacade.get(id, includeBlob == null || includeBlob, fields);
         } else {
             // get records
-            return restFacade.get(queryParams, includeBlob != null && includeBlob);
+            return restFacade.get(queryParams, includeBlob != null && includeBlob, fields);
+        }
+    }
+
+    private String buildETag(String version, Map<String, String> requestParams) {
+        // the same version is represented differently for different parameters
+        String representation = version + new TreeMap<>(requestParams);
+        return "W/\"" + DigestUtils.md5DigestAsHex(representation.getBytes(Charset.forName("UTF-8"))) + "\"";
+    }
+
+    private boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+
+        // weak comparison, as defined for If-None-Match
+        String opaqueTag = StringUtils.removeStart(eTag, "W/");
+
+        for (String tag : StringUtils.split(ifNoneMatch, ',')) {
+            String trimmed = tag.trim();
+            if ("*".equals(trimmed) || opaqueTag.equals(StringUtils.removeStart(trimmed, "W/"))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @RequestMapping(value = "/{moduleName}/{namespace}/{entityName}", method = RequestMethod.GET,
+            params = ParamParser.STREAM)
+    public void stream(@PathVariable String moduleName, @PathVariable String namespace,
+                       @PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                       HttpServletResponse response) throws IOException {
+        doStream(entityName, moduleName, namespace, requestParams, null, response);
+    }
+
+    @RequestMapping(value = "/{moduleName}/{entityName}", method = RequestMethod.GET, params = ParamParser.STREAM)
+    public void stream(@PathVariable String moduleName, @PathVariable String entityName,
+                       @RequestParam Map<String, String> requestParams,
+                       HttpServletResponse response) throws IOException {
+        doStream(entityName, moduleName, null, requestParams, null, response);
+    }
+
+    @RequestMapping(value = "/lookup/{entityName}/{lookupName}", method = RequestMethod.GET,
+            params = ParamParser.STREAM)
+    public void lookupStream(@PathVariable String entityName, @PathVariable String lookupName,
+                             @RequestParam Map<String, String> requestParams,
+                             HttpServletResponse response) throws IOException {
+        doStream(entityName, null, null, requestParams, lookupName, response);
+    }
+
+    @RequestMapping(value = "/lookup/{moduleName}/{entityName}/{lookupName}", method = RequestMethod.GET,
+            params = ParamParser.STREAM)
+    public void lookupStream(@PathVariable String moduleName, @PathVariable String entityName,
+                             @PathVariable String lookupName, @RequestParam Map<String, String> requestParams,
+                             HttpServletResponse response) throws IOException {
+        doStream(entityName, moduleName, null, requestParams, lookupName, response);
+    }
+
+    @RequestMapping(value = "/lookup/{moduleName}/{namespace}/{entityName}/{lookupName}", method = RequestMethod.GET,
+            params = ParamParser.STREAM)
+    public void lookupStream(@PathVariable String moduleName, @PathVariable String namespace,
+                             @PathVariable String entityName, @PathVariable String lookupName,
+                             @RequestParam Map<String, String> requestParams,
+                             HttpServletResponse response) throws IOException {
+        doStream(entityName, moduleName, namespace, requestParams, lookupName, response);
+    }
+
+    @RequestMapping(value = "/{entityName}", method = RequestMethod.GET, params = ParamParser.STREAM)
+    public void stream(@PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                       HttpServletResponse response) throws IOException {
+        doStream(entityName, null, null, requestParams, null, response);
+    }
+
+    private void doStream(String entityName, String moduleName, String namespace, Map<String, String> requestParams,
+                          String pathLookupName, HttpServletResponse response) throws IOException {
+        debugRequest("stream GET", entityName, moduleName, namespace);
+
+        RestStreamFormat format = ParamParser.getStreamFormat(requestParams);
+        QueryParams queryParams = ParamParser.buildStreamQueryParams(requestParams);
+
+        String lookupName = StringUtils.isNotBlank(pathLookupName) ? pathLookupName : ParamParser.getLookupName(requestParams);
+
+        MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
+
+        Boolean includeBlob = ParamParser.getIncludeBlob(requestParams);
+
+        // instances are written to the response as they are retrieved, instead of being collected first
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+
+        if (lookupName != null) {
+            restFacade.streamLookup(lookupName, requestParams, queryParams, includeBlob != null && includeBlob,
+                    format, response.getOutputStream());
+        } else {
+            restFacade.stream(queryParams, includeBlob != null && includeBlob, format, response.getOutputStream());
         }
     }
 
+    @RequestMapping(value = "/aggregate/{moduleName}/{namespace}/{entityName}", method = RequestMethod.GET)
+    @ResponseBody
+    public List<AggregationRow> aggregate(@PathVariable String moduleName, @PathVariable String namespace,
+                                          @PathVariable String entityName,
+                                          @RequestParam Map<String, String> requestParams) {
+        return doAggregate(entityName, moduleName, namespace, requestParams);
+    }
+
+    @RequestMapping(value = "/aggregate/{moduleName}/{entityName}", method = RequestMethod.GET)
+    @ResponseBody
+    public List<AggregationRow> aggregate(@PathVariable String moduleName, @PathVariable String entityName,
+                                          @RequestParam Map<String, String> requestParams) {
+        return doAggregate(entityName, moduleName, null, requestParams);
+    }
+
+    @RequestMapping(value = "/aggregate/{entityName}", method = RequestMethod.GET)
+    @ResponseBody
+    public List<AggregationRow> aggregate(@PathVariable String entityName,
+                                          @RequestParam Map<String, String> requestParams) {
+        return doAggregate(entityName, null, null, requestParams);
+    }
+
+    private List<AggregationRow> doAggregate(String entityName, String moduleName, String namespace,
+                                             Map<String, String> requestParams) {
+        debugRequest("aggregate GET", entityName, moduleName, namespace);
+
+        Aggregation aggregation = ParamParser.buildAggregation(requestParams);
+        Map<String, String> fieldValues = ParamParser.getAggregationFieldValues(requestParams);
+
+        MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
+        return restFacade.aggregate(aggregation, fieldValues);
+    }
+
     @RequestMapping(value = "/{moduleName}/{namespace}/{entityName}", method = RequestMethod.POST)
     @ResponseBody
     public Object post(@PathVariable String moduleName, @PathVariable String namespace,
@@ -206,6 +367,95 @@ public class MdsRestController  {
         restFacade.delete(id);
     }
 
+    @RequestMapping(value = "/bulk/{moduleName}/{namespace}/{entityName}", method = RequestMethod.POST)
+    public void bulkPost(@PathVariable String moduleName, @PathVariable String namespace,
+                         @PathVariable String entityName, HttpServletRequest request,
+                         HttpServletResponse response) {
+        doBulkSave(entityName, moduleName, namespace, false, request, response);
+    }
+
+    @RequestMapping(value = "/bulk/{moduleName}/{entityName}", method = RequestMethod.POST)
+    public void bulkPost(@PathVariable String moduleName, @PathVariable String entityName,
+                         HttpServletRequest request, HttpServletResponse response) {
+        doBulkSave(entityName, moduleName, null, false, request, response);
+    }
+
+    @RequestMapping(value = "/bulk/{entityName}", method = RequestMethod.POST)
+    public void bulkPost(@PathVariable String entityName, HttpServletRequest request,
+                         HttpServletResponse response) {
+        doBulkSave(entityName, null, null, false, request, response);
+    }
+
+    @RequestMapping(value = "/bulk/{moduleName}/{namespace}/{entityName}", method = RequestMethod.PUT)
+    public void bulkPut(@PathVariable String moduleName, @PathVariable String namespace,
+                        @PathVariable String entityName, HttpServletRequest request,
+                        HttpServletResponse response) {
+        doBulkSave(entityName, moduleName, namespace, true, request, response);
+    }
+
+    @RequestMapping(value = "/bulk/{moduleName}/{entityName}", method = RequestMethod.PUT)
+    public void bulkPut(@PathVariable String moduleName, @PathVariable String entityName,
+                        HttpServletRequest request, HttpServletResponse response) {
+        doBulkSave(entityName, moduleName, null, true, request, response);
+    }
+
+    @RequestMapping(value = "/bulk/{entityName}", method = RequestMethod.PUT)
+    public void bulkPut(@PathVariable String entityName, HttpServletRequest request,
+                        HttpServletResponse response) {
+        doBulkSave(entityName, null, null, true, request, response);
+    }
+
+    private void doBulkSave(String entityName, String moduleName, String namespace, boolean update,
+                            HttpServletRequest request, HttpServletResponse response) {
+        debugRequest(update ? "bulk PUT" : "bulk POST", entityName, moduleName, namespace);
+
+        MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
+
+        // the saved instances are written to the response batch by batch, instead of being collected first
+        response.setContentType(RestStreamFormat.JSON.getContentType());
+        response.setCharacterEncoding("UTF-8");
+
+        try (InputStream bodyInStream = request.getInputStream()) {
+            if (update) {
+                restFacade.updateAll(bodyInStream, response.getOutputStream());
+            } else {
+                restFacade.createAll(bodyInStream, response.getOutputStream());
+            }
+        } catch (IOException e) {
+            throw new RestBadBodyFormatException("Unable to read request body", e);
+        }
+    }
+
+    @RequestMapping(value = "/bulk/{moduleName}/{namespace}/{entityName}", method = RequestMethod.DELETE)
+    @ResponseStatus(HttpStatus.OK)
+    public void bulkDelete(@PathVariable String moduleName, @PathVariable String namespace,
+                           @PathVariable String entityName, @RequestParam("id") List<Long> ids) {
+        doBulkDelete(entityName, moduleName, namespace, ids);
+    }
+
+    @RequestMapping(value = "/bulk/{moduleName}/{entityName}", method = RequestMethod.DELETE)
+    @ResponseStatus(HttpStatus.OK)
+    public void bulkDelete(@PathVariable String moduleName, @PathVariable String entityName,
+                           @RequestParam("id") List<Long> ids) {
+        doBulkDelete(entityName, moduleName, null, ids);
+    }
+
+    @RequestMapping(value = "/bulk/{entityName}", method = RequestMethod.DELETE)
+    @ResponseStatus(HttpStatus.OK)
+    public void bulkDelete(@PathVariable String entityName, @RequestParam("id") List<Long> ids) {
+        doBulkDelete(entityName, null, null, ids);
+    }
+
+    private void doBulkDelete(String entityName, String moduleName, String namespace, List<Long> ids) {
+        debugRequest("bulk DELETE", entityName, moduleName, namespace);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Delete request for ids {}", ids);
+        }
+
+        MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
+        restFacade.deleteAll(ids);
+    }
+
     private void debugRequest(String requestType, String entityName, String moduleName, String namespace) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Received {} request for: entity={} module={} namespace={}",
@@ -1,10 +1,17 @@
 package org.motechproject.mds.web.rest;
 
 import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.query.Aggregate;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.ContinuationToken;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.rest.RestStreamFormat;
 import org.motechproject.mds.util.Order;
 import org.motechproject.mds.web.ex.InvalidParameterException;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,6 +27,12 @@ public final class ParamParser {
     public static final String LOOKUP_NAME = "lookup";
     public static final String ID = "id";
     public static final String INCLUDE_BLOB = "includeBlob";
+    public static final String KEYSET = "keyset";
+    public static final String CONTINUATION_TOKEN = "continuationToken";
+    public static final String GROUP_BY = "groupBy";
+    public static final String AGGREGATE = "aggregate";
+    public static final String STREAM = "stream";
+    public static final String FIELDS = "fields";
 
     public static QueryParams buildQueryParams(Map<String, String> requestParams) {
         Integer page;
@@ -40,14 +53,108 @@ public final class ParamParser {
             throw new InvalidParameterException("Given page size is not a number!", e);
         }
 
+        String continuationToken = requestParams.get(CONTINUATION_TOKEN);
+        if (StringUtils.isNotBlank(continuationToken)) {
+            // the order is kept in the token
+            try {
+                return ContinuationToken.parse(continuationToken, pageSize);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidParameterException("Given continuation token is not valid!", e);
+            }
+        }
+
         sortBy = requestParams.get(SORT_BY);
         orderDir = requestParams.get(ORDER_DIR);
 
         order = buildOrder(sortBy, orderDir);
 
+        if (Boolean.parseBoolean(requestParams.get(KEYSET))) {
+            return QueryParams.keyset(pageSize, order);
+        }
+
         return new QueryParams(page, pageSize, order);
     }
 
+    /**
+     * Builds the query params for streaming instances. Unlike in {@link #buildQueryParams(java.util.Map)}, if
+     * neither a page, page size nor continuation token is given, all instances are streamed.
+     *
+     * @param requestParams the request parameters
+     * @return the query params
+     */
+    public static QueryParams buildStreamQueryParams(Map<String, String> requestParams) {
+        if (requestParams.containsKey(PAGE) || requestParams.containsKey(PAGE_SIZE)
+                || requestParams.containsKey(CONTINUATION_TOKEN)) {
+            return buildQueryParams(requestParams);
+        }
+
+        return new QueryParams(buildOrder(requestParams.get(SORT_BY), requestParams.get(ORDER_DIR)));
+    }
+
+    public static RestStreamFormat getStreamFormat(Map<String, String> requestParams) {
+        RestStreamFormat format = RestStreamFormat.getEnumByName(requestParams.get(STREAM));
+
+        if (format == null) {
+            throw new InvalidParameterException("The \"stream\" is neither \"json\" nor \"ndjson\"");
+        }
+
+        return format;
+    }
+
+    /**
+     * Builds the aggregation from the comma separated group by fields and aggregates, for example
+     * {@code groupBy=status&aggregate=count,sum(amount)}.
+     *
+     * @param requestParams the request parameters
+     * @return the aggregation
+     */
+    public static Aggregation buildAggregation(Map<String, String> requestParams) {
+        Aggregation aggregation = new Aggregation();
+
+        for (String field : split(requestParams.get(GROUP_BY))) {
+            aggregation.groupBy(field);
+        }
+
+        for (String aggregate : split(requestParams.get(AGGREGATE))) {
+            try {
+                aggregation.add(Aggregate.parse(aggregate));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidParameterException("Given aggregate is not valid: " + aggregate, e);
+            }
+        }
+
+        if (aggregation.getAggregates().isEmpty()) {
+            throw new InvalidParameterException("At least one aggregate is required!");
+        }
+
+        return aggregation;
+    }
+
+    /**
+     * Returns the request parameters, which are not aggregation parameters. These are the values of fields,
+     * the aggregated instances have to match.
+     *
+     * @param requestParams the request parameters
+     * @return the field values
+     */
+    public static Map<String, String> getAggregationFieldValues(Map<String, String> requestParams) {
+        Map<String, String> fieldValues = new HashMap<>(requestParams);
+        fieldValues.remove(GROUP_BY);
+        fieldValues.remove(AGGREGATE);
+
+        return fieldValues;
+    }
+
+    /**
+     * Returns the comma separated fields to retrieve, for example {@code fields=name,status}.
+     *
+     * @param requestParams the request parameters
+     * @return the fields, empty if all fields should be retrieved
+     */
+    public static List<String> getFields(Map<String, String> requestParams) {
+        return split(requestParams.get(FIELDS));
+    }
+
     public static String getLookupName(Map<String, String> requestParams) {
         return requestParams.get(LOOKUP_NAME);
     }
@@ -89,6 +196,18 @@ public final class ParamParser {
         return requestParams.containsKey(key) ? Integer.valueOf(requestParams.get(key)) : defaultVal;
     }
 
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+
+        for (String item : StringUtils.split(StringUtils.defaultString(value), ',')) {
+            if (StringUtils.isNotBlank(item)) {
+                values.add(item.trim());
+            }
+        }
+
+        return values;
+    }
+
     private static Order buildOrder(String sortBy, String orderDir) {
         if (StringUtils.isBlank(sortBy) && StringUtils.isBlank(orderDir)) {
             return null;
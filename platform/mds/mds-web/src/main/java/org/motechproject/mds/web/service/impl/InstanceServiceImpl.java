@@ -13,6 +13,7 @@ import org.joda.time.format.DateTimeFormatter;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.mds.web.util.UIRepresentationUtil;
 import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.FieldInstanceDto;
 import org.motechproject.mds.dto.LookupDto;
@@ -189,7 +190,7 @@ public class InstanceServiceImpl implements InstanceService {
     public List<EntityRecord> getEntityRecords(Long entityId, QueryParams queryParams) {
         EntityDto entity = getEntity(entityId);
         validateCredentialsForReading(entity);
-        List<FieldDto> fields = entityService.getEntityFields(entityId);
+        List<FieldDto> fields = entityService.getEntitySnapshot(entityId).getFields();
 
         MotechDataService service = getServiceForEntity(entity);
         List instances = service.retrieveAll(queryParams);
@@ -200,7 +201,7 @@ public class InstanceServiceImpl implements InstanceService {
     @Override
     public List<FieldDto> getEntityFields(Long entityId) {
         validateCredentialsForReading(getEntity(entityId));
-        return entityService.getEntityFields(entityId);
+        return entityService.getEntitySnapshot(entityId).getFields();
     }
 
     @Override
@@ -209,7 +210,7 @@ public class InstanceServiceImpl implements InstanceService {
         validateCredentialsForReading(entity);
 
         MotechDataService service = getServiceForEntity(entity);
-        List<FieldDto> fields = entityService.getEntityFields(entityId);
+        List<FieldDto> fields = entityService.getEntitySnapshot(entityId).getFields();
         Collection collection = trashService.getInstancesFromTrash(entity.getClassName(), queryParams);
 
         return instancesToRecords(collection, entity, fields, service);
@@ -229,7 +230,7 @@ public class InstanceServiceImpl implements InstanceService {
         validateCredentialsForReading(entity);
 
         MotechDataService service = getServiceForEntity(entity);
-        List<FieldDto> fields = entityService.getEntityFields(entityId);
+        List<FieldDto> fields = entityService.getEntitySnapshot(entityId).getFields();
         Object instance = trashService.findTrashById(instanceId, entityId);
 
         return instanceToRecord(instance, entity, fields, service);
@@ -252,9 +253,10 @@ public class InstanceServiceImpl implements InstanceService {
         EntityDto entity = getEntity(entityId);
         validateCredentialsForReading(entity);
 
-        LookupDto lookup = getLookupByName(entityId, lookupName);
-        List<FieldDto> fields = entityService.getEntityFields(entityId);
-        Map<String, FieldDto> fieldMap = entityService.getLookupFieldsMapping(entityId, lookupName);
+        EntitySnapshot snapshot = entityService.getEntitySnapshot(entityId);
+        LookupDto lookup = getLookupByName(snapshot, lookupName);
+        List<FieldDto> fields = snapshot.getFields();
+        Map<String, FieldDto> fieldMap = snapshot.getLookupFieldsMapping(lookupName);
 
         MotechDataService service = getServiceForEntity(entity);
 
@@ -280,7 +282,7 @@ public class InstanceServiceImpl implements InstanceService {
         EntityDto entity = getEntity(entityId);
         validateCredentialsForReading(entity);
 
-        List<FieldDto> fields = entityService.getEntityFields(entityId);
+        List<FieldDto> fields = entityService.getEntitySnapshot(entityId).getFields();
         MotechDataService service = getServiceForEntity(entity);
 
         List instances = service.filter(filters, queryParams);
@@ -311,8 +313,9 @@ public class InstanceServiceImpl implements InstanceService {
         EntityDto entity = getEntity(entityId);
         validateCredentialsForReading(entity);
 
-        LookupDto lookup = getLookupByName(entityId, lookupName);
-        Map<String, FieldDto> fieldMap = entityService.getLookupFieldsMapping(entityId, lookupName);
+        EntitySnapshot snapshot = entityService.getEntitySnapshot(entityId);
+        LookupDto lookup = getLookupByName(snapshot, lookupName);
+        Map<String, FieldDto> fieldMap = snapshot.getLookupFieldsMapping(lookupName);
 
         MotechDataService service = getServiceForEntity(entity);
 
@@ -341,7 +344,7 @@ public class InstanceServiceImpl implements InstanceService {
         EntityDto entity = entityService.getEntity(entityId);
         validateCredentialsForReading(entity);
 
-        List<FieldDto> fields = entityService.getEntityFields(entityId);
+        List<FieldDto> fields = entityService.getEntitySnapshot(entityId).getFields();
 
         List<FieldInstanceDto> result = new ArrayList<>();
         for (FieldDto field : fields) {
@@ -395,7 +398,7 @@ public class InstanceServiceImpl implements InstanceService {
     @Override
     public EntityRecord newInstance(Long entityId) {
         validateCredentials(getEntity(entityId));
-        List<FieldDto> fields = entityService.getEntityFields(entityId);
+        List<FieldDto> fields = entityService.getEntitySnapshot(entityId).getFields();
         List<FieldRecord> fieldRecords = new ArrayList<>();
 
         for (FieldDto field : fields) {
@@ -418,7 +421,7 @@ public class InstanceServiceImpl implements InstanceService {
             throw new ObjectNotFoundException(entity.getName(), instanceId);
         }
 
-        List<FieldDto> fields = entityService.getEntityFields(entityId);
+        List<FieldDto> fields = entityService.getEntitySnapshot(entityId).getFields();
 
         return instanceToRecord(instance, entity, fields, service);
     }
@@ -465,7 +468,7 @@ public class InstanceServiceImpl implements InstanceService {
         List<FieldRecord> fieldRecords = new LinkedList<>();
 
         try {
-            for (FieldDto field : entityService.getEntityFields(entity.getId())) {
+            for (FieldDto field : entityService.getEntitySnapshot(entity.getId()).getFields()) {
                 if (ID_FIELD_NAME.equalsIgnoreCase(field.getBasic().getDisplayName())) {
                     continue;
                 }
@@ -530,10 +533,10 @@ public class InstanceServiceImpl implements InstanceService {
         }
     }
 
-    private LookupDto getLookupByName(Long entityId, String lookupName) {
-        LookupDto lookup = entityService.getLookupByName(entityId, lookupName);
+    private LookupDto getLookupByName(EntitySnapshot snapshot, String lookupName) {
+        LookupDto lookup = snapshot.getLookup(lookupName);
         if (lookup == null) {
-            throw new LookupNotFoundException(entityId, lookupName);
+            throw new LookupNotFoundException(snapshot.getEntityId(), lookupName);
         }
         return lookup;
     }
@@ -681,7 +684,8 @@ public class InstanceServiceImpl implements InstanceService {
                                                  MotechDataService service) {
         Long entityId = entity.getId();
 
-        EntityRecord entityRecord = instanceToRecord(object, entity, entityService.getEntityFields(entityId), service);
+        List<FieldDto> fields = entityService.getEntitySnapshot(entityId).getFields();
+        EntityRecord entityRecord = instanceToRecord(object, entity, fields, service);
         Long historyInstanceSchemaVersion = (Long) PropertyUtil.safeGetProperty(object,
                 HistoryTrashClassHelper.schemaVersion(object.getClass()));
         Long currentSchemaVersion = entityService.getCurrentSchemaVersion(entity.getClassName());
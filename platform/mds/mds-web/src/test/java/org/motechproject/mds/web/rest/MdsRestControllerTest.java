@@ -8,7 +8,9 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.motechproject.mds.ex.rest.RestBadBodyFormatException;
 import org.motechproject.mds.ex.rest.RestEntityNotFoundException;
 import org.motechproject.mds.ex.rest.RestLookupExecutionForbiddenException;
@@ -16,29 +18,45 @@ import org.motechproject.mds.ex.rest.RestLookupNotFoundException;
 import org.motechproject.mds.ex.rest.RestNoLookupResultException;
 import org.motechproject.mds.ex.rest.RestNotSupportedException;
 import org.motechproject.mds.ex.rest.RestOperationNotSupportedException;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.AggregationRow;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.rest.MdsRestFacade;
 import org.motechproject.mds.rest.RestProjection;
 import org.motechproject.mds.rest.RestResponse;
+import org.motechproject.mds.rest.RestStreamFormat;
 import org.motechproject.mds.util.Order;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.server.MockMvc;
 import org.springframework.test.web.server.request.DefaultRequestBuilder;
 import org.springframework.test.web.server.setup.MockMvcBuilders;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.server.request.MockMvcRequestBuilders.delete;
@@ -149,6 +167,212 @@ public class MdsRestControllerTest {
         testDelete(ENTITY_NAME, MODULE_NAME, NAMESPACE);
     }
 
+    // BULK
+
+    @Test
+    public void shouldDoBulkCreateForEude() throws Exception {
+        testBulkCreateUpdate(ENTITY_NAME, null, null, false);
+    }
+
+    @Test
+    public void shouldDoBulkUpdateForEntityWithModuleAndNs() throws Exception {
+        testBulkCreateUpdate(ENTITY_NAME, MODULE_NAME, NAMESPACE, true);
+    }
+
+    @Test
+    public void shouldDoBulkDeleteForEntityWithModule() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, null))
+                .thenReturn(restFacade);
+
+        mockMvc.perform(
+                delete(buildBulkUrl(ENTITY_NAME, MODULE_NAME, null) + "?id=7&id=9")
+        ).andExpect(status().isOk());
+
+        verify(restFacade).deleteAll(asList(7L, 9L));
+    }
+
+    @Test
+    public void shouldRetrieveOnlyRequestedFields() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, null, null))
+                .thenReturn(restFacade);
+
+        mockMvc.perform(
+                get(buildUrl(ENTITY_NAME, null, null) + "?fields=name,%20val&" + PAGINATION_STR)
+        ).andExpect(status().isOk());
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(restFacade).get(captor.capture(), eq(false), eq(asList(NAME_FIELD, VAL_FIELD)));
+
+        verifyQueryParams(captor.getValue());
+    }
+
+    @Test
+    public void shouldReturn304WhenInstancesDidNotChange() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, null, null))
+                .thenReturn(restFacade);
+        when(restFacade.getVersion()).thenReturn("2:1000");
+
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("page", "2");
+
+        // the version is only computed for conditional requests
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        mdsRestController.get(ENTITY_NAME, requestParams, request, response);
+
+        assertNull(response.getHeader("ETag"));
+        verify(restFacade, never()).getVersion();
+
+        request.addHeader("If-None-Match", "\"other\"");
+        response = new MockHttpServletResponse();
+        mdsRestController.get(ENTITY_NAME, requestParams, request, response);
+
+        Object eTag = response.getHeader("ETag");
+        assertNotNull(eTag);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+
+        request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", eTag);
+        response = new MockHttpServletResponse();
+
+        assertNull(mdsRestController.get(ENTITY_NAME, requestParams, request, response));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        verify(restFacade, times(2)).get(any(QueryParams.class), anyBoolean(), anyList());
+
+        // a different page is a different representation
+
+        requestParams.put("page", "3");
+        response = new MockHttpServletResponse();
+        mdsRestController.get(ENTITY_NAME, requestParams, request, response);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertNotEquals(eTag, response.getHeader("ETag"));
+    }
+
+    @Test
+    public void shouldReturn304WhenInstanceDidNotChange() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, null))
+                .thenReturn(restFacade);
+        when(restFacade.getVersion(1L)).thenReturn("1:1000");
+
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("id", "1");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        mdsRestController.get(MODULE_NAME, ENTITY_NAME, requestParams, request, response);
+
+        request.addHeader("If-None-Match", "\"other\", " + response.getHeader("ETag"));
+        response = new MockHttpServletResponse();
+        mdsRestController.get(MODULE_NAME, ENTITY_NAME, requestParams, request, response);
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        verify(restFacade).get(eq(1L), anyBoolean(), anyList());
+    }
+
+    // STREAM
+
+    @Test
+    public void shouldStreamInstancesForEntityWithModule() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, null))
+                .thenReturn(restFacade);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws IOException {
+                ((OutputStream) invocation.getArguments()[3]).write("{\"name\":\"T1\"}\n".getBytes("UTF-8"));
+                return null;
+            }
+        }).when(restFacade).stream(any(QueryParams.class), anyBoolean(), any(RestStreamFormat.class),
+                any(OutputStream.class));
+
+        mockMvc.perform(
+                get(buildUrl(ENTITY_NAME, MODULE_NAME, null) + "?stream=ndjson&sort=name")
+        ).andExpect(status().isOk())
+                .andExpect(content().string("{\"name\":\"T1\"}\n"));
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(restFacade).stream(captor.capture(), eq(false), eq(RestStreamFormat.NDJSON), any(OutputStream.class));
+        verify(restFacade, never()).get(any(QueryParams.class), anyBoolean());
+
+        assertFalse(captor.getValue().isPagingSet());
+        assertEquals(NAME_FIELD, captor.getValue().getOrder().getField());
+    }
+
+    @Test
+    public void shouldStreamLookupResult() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, null, null))
+                .thenReturn(restFacade);
+
+        mockMvc.perform(
+                get(buildUrl(ENTITY_NAME, null, null, LOOKUP_NAME) + "?stream=json&" + LOOKUP_STR)
+        ).andExpect(status().isOk());
+
+        ArgumentCaptor<Map> lookupMapCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(restFacade).streamLookup(eq(LOOKUP_NAME), lookupMapCaptor.capture(), any(QueryParams.class),
+                eq(false), eq(RestStreamFormat.JSON), any(OutputStream.class));
+
+        assertEquals("something", lookupMapCaptor.getValue().get("strField"));
+    }
+
+    @Test
+    public void shouldReturn400ForUnknownStreamFormat() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, null, null))
+                .thenReturn(restFacade);
+
+        mockMvc.perform(
+                get(buildUrl(ENTITY_NAME, null, null) + "?stream=xml")
+        ).andExpect(status().isBadRequest());
+    }
+
+    // AGGREGATE
+
+    @Test
+    public void shouldDoAggregateForEntityWithModule() throws Exception {
+        Map<String, Object> group = new HashMap<>();
+        group.put(NAME_FIELD, "T1");
+        Map<String, Object> values = new HashMap<>();
+        values.put("count", 2L);
+        List<AggregationRow> rows = asList(new AggregationRow(group, values));
+
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, null))
+                .thenReturn(restFacade);
+        when(restFacade.aggregate(any(Aggregation.class), any(Map.class))).thenReturn(rows);
+
+        mockMvc.perform(
+                get(buildAggregateUrl(ENTITY_NAME, MODULE_NAME, null) + "?groupBy=name&aggregate=count,sum(val)&val=3")
+        ).andExpect(status().isOk())
+                .andExpect(content().string(objectMapper.writeValueAsString(rows)));
+
+        ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+        ArgumentCaptor<Map> fieldValuesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(restFacade).aggregate(aggregationCaptor.capture(), fieldValuesCaptor.capture());
+
+        Aggregation aggregation = aggregationCaptor.getValue();
+        assertEquals(asList(NAME_FIELD), aggregation.getGroupBy());
+        assertEquals(2, aggregation.getAggregates().size());
+        assertEquals("count", aggregation.getAggregates().get(0).getLabel());
+        assertEquals("sum(val)", aggregation.getAggregates().get(1).getLabel());
+
+        Map fieldValues = fieldValuesCaptor.getValue();
+        assertEquals(1, fieldValues.size());
+        assertEquals("3", fieldValues.get(VAL_FIELD));
+    }
+
+    @Test
+    public void shouldReturn400ForAggregateWithoutAggregateFunctions() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, null, null))
+                .thenReturn(restFacade);
+
+        mockMvc.perform(
+                get(buildAggregateUrl(ENTITY_NAME, null, null) + "?groupBy=name")
+        ).andExpect(status().isBadRequest());
+
+        mockMvc.perform(
+                get(buildAggregateUrl(ENTITY_NAME, null, null) + "?aggregate=median(val)")
+        ).andExpect(status().isBadRequest());
+    }
+
     // ERRORS
 
     @Test
@@ -194,7 +418,7 @@ public class MdsRestControllerTest {
         when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
                 .thenReturn(restFacade);
 
-        when(restFacade.get(any(QueryParams.class), anyBoolean()))
+        when(restFacade.get(any(QueryParams.class), anyBoolean(), anyList()))
                 .thenThrow(new RestOperationNotSupportedException("not supported"));
         doThrow(new RestOperationNotSupportedException("not supported")).
                 when(restFacade).create(any(InputStream.class));
@@ -345,13 +569,13 @@ public class MdsRestControllerTest {
     public void shouldReturn404ForNonexistantId() throws Exception {
         when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
                 .thenReturn(restFacade);
-        when(restFacade.get(1l, true)).thenThrow(new RestEntityNotFoundException("id", "1l"));
+        when(restFacade.get(eq(1l), eq(true), anyList())).thenThrow(new RestEntityNotFoundException("id", "1l"));
 
         mockMvc.perform(
                 get(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE) + "?id=" + 1l)
         ).andExpect(status().isNotFound());
 
-        verify(restFacade).get(1l, true);
+        verify(restFacade).get(eq(1l), eq(true), anyList());
     }
 
     @Test
@@ -396,9 +620,9 @@ public class MdsRestControllerTest {
 
         when(restFacadeRetriever.getRestFacade(entityName, moduleName, namespace))
                 .thenReturn(restFacade);
-        when(restFacade.get(any(QueryParams.class), anyBoolean())).thenReturn(response);
+        when(restFacade.get(any(QueryParams.class), anyBoolean(), anyList())).thenReturn(response);
 
-        when(restFacade.get(1l, true)).thenReturn(response2);
+        when(restFacade.get(eq(1l), eq(true), anyList())).thenReturn(response2);
 
         mockMvc.perform(
                 get(buildUrl(entityName, moduleName, namespace) +
@@ -413,9 +637,9 @@ public class MdsRestControllerTest {
          .andExpect(content().string(objectMapper.writeValueAsString(response2)));
 
         ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
-        verify(restFacade).get(captor.capture(), anyBoolean());
+        verify(restFacade).get(captor.capture(), anyBoolean(), anyList());
         ArgumentCaptor<Long> longCaptor = ArgumentCaptor.forClass(Long.class);
-        verify(restFacade).get(longCaptor.capture(), anyBoolean());
+        verify(restFacade).get(longCaptor.capture(), anyBoolean(), anyList());
 
         verifyQueryParams(captor.getValue());
     }
@@ -453,6 +677,48 @@ public class MdsRestControllerTest {
         }
     }
 
+    private void testBulkCreateUpdate(String entityName, String moduleName, String namespace, boolean update)
+            throws Exception {
+        final RestProjection record = new RestProjection();
+        record.put(NAME_FIELD, "A name");
+        record.put(VAL_FIELD, -98);
+        final List<RestProjection> records = asList(record, record);
+        final String recordsJson = objectMapper.writeValueAsString(records);
+
+        when(restFacadeRetriever.getRestFacade(entityName, moduleName, namespace))
+                .thenReturn(restFacade);
+
+        Answer<Void> writeRecords = new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws IOException {
+                ((OutputStream) invocation.getArguments()[1]).write(recordsJson.getBytes("UTF-8"));
+                return null;
+            }
+        };
+        doAnswer(writeRecords).when(restFacade).createAll(any(InputStream.class), any(OutputStream.class));
+        doAnswer(writeRecords).when(restFacade).updateAll(any(InputStream.class), any(OutputStream.class));
+
+        String url = buildBulkUrl(entityName, moduleName, namespace);
+        DefaultRequestBuilder requestBuilder = (update) ? put(url) : post(url);
+
+        mockMvc.perform(
+                requestBuilder.body(recordsJson.getBytes())
+        ).andExpect(status().isOk()).andExpect(content().string(recordsJson));
+
+        ArgumentCaptor<InputStream> captor = ArgumentCaptor.forClass(InputStream.class);
+        if (update) {
+            verify(restFacade).updateAll(captor.capture(), any(OutputStream.class));
+        } else {
+            verify(restFacade).createAll(captor.capture(), any(OutputStream.class));
+        }
+
+        try (InputStream in = captor.getValue()) {
+            TestRecord[] testRecords = objectMapper.readValue(in, TestRecord[].class);
+            assertEquals(2, testRecords.length);
+            assertEquals(record.get(NAME_FIELD), testRecords[1].getName());
+        }
+    }
+
     private void testDelete(String entityName, String moduleName, String namespace) throws Exception {
         when(restFacadeRetriever.getRestFacade(entityName, moduleName, namespace))
                 .thenReturn(restFacade);
@@ -546,6 +812,14 @@ public class MdsRestControllerTest {
         return buildUrl(entityName, moduleName, namespace, null);
     }
 
+    private String buildBulkUrl(String entityName, String moduleName, String namespace) {
+        return buildUrl(entityName, moduleName, namespace).replaceFirst("/rest", "/rest/bulk");
+    }
+
+    private String buildAggregateUrl(String entityName, String moduleName, String namespace) {
+        return buildUrl(entityName, moduleName, namespace).replaceFirst("/rest", "/rest/aggregate");
+    }
+
     private String buildUrl(String entityName, String moduleName, String namespace, String lookupName) {
         StringBuilder sb = new StringBuilder("/rest");
 
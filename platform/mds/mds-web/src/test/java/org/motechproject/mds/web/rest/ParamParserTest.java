@@ -1,15 +1,20 @@
 package org.motechproject.mds.web.rest;
 
 import org.junit.Test;
+import org.motechproject.mds.query.ContinuationToken;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.rest.RestStreamFormat;
 import org.motechproject.mds.util.Order;
+import org.motechproject.mds.web.ex.InvalidParameterException;
 
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class ParamParserTest {
 
@@ -49,6 +54,75 @@ public class ParamParserTest {
         assertEquals(Order.Direction.ASC, queryParams.getOrder().getDirection());
     }
 
+    @Test
+    public void shouldBuildKeysetQueryParams() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("pageSize", "50");
+        requestParams.put("sort", "someColumn");
+        requestParams.put("keyset", "true");
+
+        QueryParams queryParams = ParamParser.buildQueryParams(requestParams);
+
+        assertTrue(queryParams.isKeyset());
+        assertFalse(queryParams.isLastSeenSet());
+        assertEquals(Integer.valueOf(1), queryParams.getPage());
+        assertEquals(Integer.valueOf(50), queryParams.getPageSize());
+        assertEquals("someColumn", queryParams.getOrder().getField());
+
+        // the order comes from the token
+
+        String token = ContinuationToken.create(queryParams.nextPage("value", 7L));
+        requestParams.clear();
+        requestParams.put("pageSize", "30");
+        requestParams.put("sort", "anotherColumn");
+        requestParams.put("continuationToken", token);
+
+        queryParams = ParamParser.buildQueryParams(requestParams);
+
+        assertTrue(queryParams.isLastSeenSet());
+        assertEquals(Integer.valueOf(30), queryParams.getPageSize());
+        assertEquals("someColumn", queryParams.getOrder().getField());
+        assertEquals("value", queryParams.getLastValue());
+        assertEquals(Long.valueOf(7), queryParams.getLastId());
+    }
+
+    @Test
+    public void shouldBuildStreamQueryParams() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("stream", "ndjson");
+        requestParams.put("sort", "someColumn");
+
+        QueryParams queryParams = ParamParser.buildStreamQueryParams(requestParams);
+
+        assertFalse(queryParams.isPagingSet());
+        assertEquals("someColumn", queryParams.getOrder().getField());
+        assertEquals(RestStreamFormat.NDJSON, ParamParser.getStreamFormat(requestParams));
+
+        // paging is kept when given
+
+        requestParams.put("pageSize", "50");
+
+        queryParams = ParamParser.buildStreamQueryParams(requestParams);
+
+        assertEquals(Integer.valueOf(50), queryParams.getPageSize());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void shouldRejectUnknownStreamFormats() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("stream", "xml");
+
+        ParamParser.getStreamFormat(requestParams);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void shouldRejectInvalidContinuationTokens() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("continuationToken", "invalid");
+
+        ParamParser.buildQueryParams(requestParams);
+    }
+
     @Test
     public void shouldGetLookupName() {
         Map<String, String> requestParams = new HashMap<>();
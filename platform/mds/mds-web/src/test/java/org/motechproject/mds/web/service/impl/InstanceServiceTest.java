@@ -11,6 +11,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.TypeDto;
@@ -57,6 +58,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -95,8 +97,15 @@ public class InstanceServiceTest {
     @Mock
     private MotechDataService serviceForAnotherSample;
 
+    private List<FieldDto> sampleFields = new ArrayList<>();
+    private List<LookupDto> sampleLookups = new ArrayList<>();
+    private Map<String, Map<String, FieldDto>> sampleLookupMappings = new HashMap<>();
+
     @Before
     public void setUp() {
+        when(entityService.getEntitySnapshot(anyLong())).thenReturn(new EntitySnapshot(entity, 1L,
+                new ArrayList<FieldDto>(), new ArrayList<LookupDto>(), new HashMap<String, Map<String, FieldDto>>(),
+                Collections.<String>emptyList()));
         when(entity.getClassName()).thenReturn(TestSample.class.getName());
         when(entity.getId()).thenReturn(ENTITY_ID);
         when(bundleContext.getBundles()).thenReturn(new Bundle[0]);
@@ -383,7 +392,7 @@ public class InstanceServiceTest {
         when(motechDataService.findById(5l)).thenReturn(test2);
         when(motechDataService.findById(6l)).thenReturn(test3);
 
-        when(entityService.getEntityFields(ANOTHER_ENTITY_ID)).thenReturn(asList(
+        mockFields(ANOTHER_ENTITY_ID, asList(
                 FieldTestHelper.fieldDto(5L, "title", String.class.getName(), "String field", "Default"),
                 FieldTestHelper.fieldDto(6L, "testSamples", TypeDto.ONE_TO_MANY_RELATIONSHIP.getTypeClass(), "Related field", null)
         ));
@@ -517,7 +526,7 @@ public class InstanceServiceTest {
         mockDataService();
         instanceService.getEntityRecords(entityRecord.getId());
 
-        verify(entityService).getEntityFields(ANOTHER_ENTITY_ID);
+        verify(entityService).getEntitySnapshot(ANOTHER_ENTITY_ID);
     }
 
     @Test
@@ -534,7 +543,7 @@ public class InstanceServiceTest {
         mockDataService();
         instanceService.getEntityRecords(entityRecord.getId());
 
-        verify(entityService).getEntityFields(ANOTHER_ENTITY_ID);
+        verify(entityService).getEntitySnapshot(ANOTHER_ENTITY_ID);
     }
 
     @Test
@@ -551,7 +560,7 @@ public class InstanceServiceTest {
         mockDataService();
         instanceService.getEntityRecords(entityRecord.getId());
 
-        verify(entityService).getEntityFields(ANOTHER_ENTITY_ID);
+        verify(entityService).getEntitySnapshot(ANOTHER_ENTITY_ID);
     }
 
     @Test
@@ -559,7 +568,7 @@ public class InstanceServiceTest {
         mockEntity(SubclassSample.class, ENTITY_ID, entity);
         mockDataService(SubclassSample.class, motechDataService);
         when(motechDataService.retrieve("id", INSTANCE_ID)).thenReturn(new SubclassSample());
-        when(entityService.getEntityFields(ENTITY_ID)).thenReturn(asList(
+        mockFields(ENTITY_ID, asList(
                 FieldTestHelper.fieldDto(1L, "superclassInteger", Integer.class.getName(), "Superclass Integer", 7),
                 FieldTestHelper.fieldDto(2L, "subclassString", String.class.getName(), "Subclass String", "test"),
                 FieldTestHelper.fieldDto(3L, "superclassRelation", TypeDto.ONE_TO_ONE_RELATIONSHIP.getTypeClass(), "Superclass Relationship", null)
@@ -687,8 +696,7 @@ public class InstanceServiceTest {
     }
 
     private void mockSampleFields() {
-
-        when(entityService.getEntityFields(ENTITY_ID)).thenReturn(asList(
+        sampleFields = asList(
                 FieldTestHelper.fieldDto(1L, "strField", String.class.getName(), "String field", "Default"),
                 FieldTestHelper.fieldDto(2L, "intField", Integer.class.getName(), "Integer field", 7),
                 FieldTestHelper.fieldDto(3L, "dtField", DateTime.class.getName(), "DateTime field", null),
@@ -698,7 +706,19 @@ public class InstanceServiceTest {
                 // InstanceService should be able to make operations on record regardless of field
                 // starts with a capital letter or not.
                 FieldTestHelper.fieldDto(5L, "LongField", Long.class.getName(), "Long field", null)
-        ));
+        );
+        mockSampleSnapshot();
+    }
+
+    private void mockFields(long entityId, List<FieldDto> fields) {
+        when(entityService.getEntitySnapshot(entityId)).thenReturn(new EntitySnapshot(entity, 1L, fields,
+                new ArrayList<LookupDto>(), new HashMap<String, Map<String, FieldDto>>(),
+                Collections.<String>emptyList()));
+    }
+
+    private void mockSampleSnapshot() {
+        when(entityService.getEntitySnapshot(ENTITY_ID)).thenReturn(new EntitySnapshot(entity, 1L, sampleFields,
+                sampleLookups, sampleLookupMappings, Collections.<String>emptyList()));
     }
 
     private void mockEntity() {
@@ -712,24 +732,27 @@ public class InstanceServiceTest {
     }
 
     private void mockLookups() {
-        LookupDto lookup = new LookupDto(TestDataService.LOOKUP_1_NAME, true, true,
+        Map<String, Map<String, FieldDto>> mappings = new HashMap<>();
+
+        LookupDto singleLookup = new LookupDto(TestDataService.LOOKUP_1_NAME, true, true,
                 asList(FieldTestHelper.lookupFieldDto(1L, "strField")), true, "singleObject", asList("strField"));
-        when(entityService.getLookupByName(ENTITY_ID, TestDataService.LOOKUP_1_NAME)).thenReturn(lookup);
         Map<String, FieldDto> mapping = new HashMap<>();
         mapping.put("strField", FieldTestHelper.fieldDto(1L, "strField", String.class.getName(), "String field", "Default"));
-        when(entityService.getLookupFieldsMapping(ENTITY_ID, TestDataService.LOOKUP_1_NAME)).thenReturn(mapping);
+        mappings.put(TestDataService.LOOKUP_1_NAME, mapping);
 
-        lookup = new LookupDto(TestDataService.LOOKUP_2_NAME, false, true,
+        LookupDto multiLookup = new LookupDto(TestDataService.LOOKUP_2_NAME, false, true,
                 asList(FieldTestHelper.lookupFieldDto(1L, "strField")), false, "multiObject", asList("strField"));
-        when(entityService.getLookupByName(ENTITY_ID, TestDataService.LOOKUP_2_NAME)).thenReturn(lookup);
-        when(entityService.getLookupFieldsMapping(ENTITY_ID, TestDataService.LOOKUP_2_NAME)).thenReturn(mapping);
+        mappings.put(TestDataService.LOOKUP_2_NAME, mapping);
 
-        lookup = new LookupDto(TestDataService.NULL_EXPECTING_LOOKUP_NAME, false, true,
+        LookupDto nullExpectingLookup = new LookupDto(TestDataService.NULL_EXPECTING_LOOKUP_NAME, false, true,
                 asList(FieldTestHelper.lookupFieldDto(3L, "dtField")), false, "nullParamExpected", asList("dtField"));
-        when(entityService.getLookupByName(ENTITY_ID, TestDataService.NULL_EXPECTING_LOOKUP_NAME)).thenReturn(lookup);
         mapping = new HashMap<>();
         mapping.put("dtField", FieldTestHelper.fieldDto(3L, "dtField", DateTime.class.getName(), "DateTime field", null));
-        when(entityService.getLookupFieldsMapping(ENTITY_ID, TestDataService.NULL_EXPECTING_LOOKUP_NAME)).thenReturn(mapping);
+        mappings.put(TestDataService.NULL_EXPECTING_LOOKUP_NAME, mapping);
+
+        sampleLookups = asList(singleLookup, multiLookup, nullExpectingLookup);
+        sampleLookupMappings = mappings;
+        mockSampleSnapshot();
     }
 
     private void mockLookupService() {
@@ -6,6 +6,7 @@ import org.motechproject.commons.api.AbstractDataProvider;
 import org.motechproject.commons.api.DataProvider;
 import org.motechproject.mds.builder.MDSDataProviderBuilder;
 import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.ex.dataprovider.DataProviderException;
@@ -87,17 +88,17 @@ public class MDSDataProvider extends AbstractDataProvider {
         Object obj = null;
 
         LookupDto lookup = null;
-        EntityDto entity = entityService.getEntityByClassName(type);
-        if (entity != null) {
-            lookup = entityService.getLookupByName(entity.getId(), lookupName);
+        EntitySnapshot snapshot = entityService.getEntitySnapshot(type);
+        if (snapshot != null) {
+            lookup = snapshot.getLookup(lookupName);
         }
 
-        if (entity != null && lookup != null) {
+        if (snapshot != null && lookup != null) {
             String serviceName = MotechClassPool.getInterfaceName(type);
             MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
 
             if (service != null) {
-                Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
+                Map<String, FieldDto> fieldsByName = snapshot.getLookupFieldsMapping(lookupName);
 
                 LookupExecutor executor = new LookupExecutor(service, lookup, fieldsByName);
 
@@ -1,6 +1,7 @@
 package org.motechproject.mds.annotations;
 
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.IdStrategy;
 
 import javax.jdo.annotations.IdentityType;
 import javax.jdo.annotations.PersistenceCapable;
@@ -79,4 +80,23 @@ public @interface Entity {
      * @return the maximum fetch depth that will be used for the given entity
      */
     int maxFetchDepth() default Constants.FetchDepth.MDS_DEFAULT;
+
+    /**
+     * Sets whether instances of this entity should be kept in the level 2 cache shared by all
+     * persistence managers. Caching should only be enabled for entities that are read often
+     * and rarely changed, such as reference data.
+     *
+     * @return true if instances of the entity should be cached, otherwise false
+     */
+    boolean cacheable() default false;
+
+    /**
+     * Sets how the values of the id field of this entity are generated. The {@link IdStrategy#IDENTITY}
+     * strategy lets the database generate the values, which is faster when instances of the entity are
+     * inserted concurrently. The strategy is not used by entities extending
+     * {@link org.motechproject.mds.domain.MdsEntity}.
+     *
+     * @return the strategy used for generating the ids of the entity
+     */
+    IdStrategy idStrategy() default IdStrategy.INCREMENT;
 }
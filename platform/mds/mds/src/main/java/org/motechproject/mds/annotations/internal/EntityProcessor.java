@@ -16,6 +16,7 @@ import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.TypeService;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.IdStrategy;
 import org.motechproject.mds.util.SecurityMode;
 import org.motechproject.osgi.web.util.BundleHeaders;
 import org.slf4j.Logger;
@@ -35,7 +36,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static org.motechproject.mds.util.Constants.AnnotationFields.CACHEABLE;
 import static org.motechproject.mds.util.Constants.AnnotationFields.HISTORY;
+import static org.motechproject.mds.util.Constants.AnnotationFields.ID_STRATEGY;
 import static org.motechproject.mds.util.Constants.AnnotationFields.MAX_FETCH_DEPTH;
 import static org.motechproject.mds.util.Constants.AnnotationFields.MODULE;
 import static org.motechproject.mds.util.Constants.AnnotationFields.NAME;
@@ -142,6 +145,12 @@ class EntityProcessor extends AbstractListProcessor<Entity, EntityDto> {
             // per entity maxFetchDepth that will be passed to the Persistence Manager
             setMaxFetchDepth(entity, annotation);
 
+            // the annotation does not override the cacheable option changed by the user in the advanced settings
+            if (!entity.isCacheableModified()) {
+                entity.setCacheable(Boolean.parseBoolean(ReflectionsUtil.getAnnotationValue(annotation, CACHEABLE)));
+            }
+            setIdStrategy(entity, annotation);
+
             entityProcessorOutput.setEntityProcessingResult(entity);
 
             fields = findFields(clazz, entity);
@@ -167,6 +176,11 @@ class EntityProcessor extends AbstractListProcessor<Entity, EntityDto> {
         }
     }
 
+    private void setIdStrategy(EntityDto entity, Annotation annotation) {
+        IdStrategy idStrategy = IdStrategy.getEnumByName(ReflectionsUtil.getAnnotationValue(annotation, ID_STRATEGY));
+        entity.setIdStrategy(null == idStrategy ? IdStrategy.INCREMENT : idStrategy);
+    }
+
     private void addDefaultFields(EntityDto entity, Collection<FieldDto> fields) {
         if (!MdsEntity.class.getName().equalsIgnoreCase(entity.getSuperClass())) {
             fields.addAll(EntityDefaultFieldsHelper.defaultFields(typeService));
@@ -20,6 +20,9 @@ public interface MDSConstructor {
      * <p/>
      * An interface related with class definition should be created only for entities from outside
      * bundles and if the bundle does not define its own interface.
+     * <p/>
+     * The enhanced classes are cached between calls. Only the entities that changed since the previous call
+     * and the entities that depend on them, through relationships or inheritance, are built and enhanced again.
      *
      * @param buildDDE {@code true} if class definitions for entities from outside bundles should
      *                 also be created; otherwise {@code false}.
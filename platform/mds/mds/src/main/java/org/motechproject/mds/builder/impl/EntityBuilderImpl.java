@@ -33,9 +33,12 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.Collection;
+import java.util.Date;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.uncapitalize;
+import static org.motechproject.mds.util.Constants.Util.SCHEMA_VERSION_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.TRASH_DATE_FIELD_NAME;
 
 /**
  * The <code>EntityBuilderImpl</code> is used to build classes for a given entity.
@@ -136,7 +139,10 @@ public class EntityBuilderImpl implements EntityBuilder {
                     break;
                 case TRASH:
                     // this field contains information about the schema version of an entity
-                    addProperty(declaring, Long.class.getName(), "schemaVersion", null);
+                    addProperty(declaring, Long.class.getName(), SCHEMA_VERSION_FIELD_NAME, null);
+
+                    // this field contains the date when the instance was moved to trash
+                    addProperty(declaring, Date.class.getName(), TRASH_DATE_FIELD_NAME, null);
                     break;
                 default:
             }
@@ -0,0 +1,188 @@
+package org.motechproject.mds.builder.impl;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.motechproject.mds.domain.ClassData;
+import org.motechproject.mds.domain.Entity;
+import org.motechproject.mds.helper.EntityHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * The <code>EntityClassCache</code> keeps the enhanced bytecode of the entity classes, together with their history
+ * and trash classes, built by the {@link MDSConstructorImpl}. Each entry holds a fingerprint of the entity
+ * definition the classes were built from. When the entities are constructed again, only the entities with a
+ * changed fingerprint and the entities that depend on them - through a relationship or inheritance - have to be
+ * built and enhanced, the cached bytecode is used for the others.
+ */
+class EntityClassCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityClassCache.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Map<String, CachedClasses> cache = new HashMap<>();
+
+    /**
+     * Returns the class names of the entities that have to be built. These are the entities without cached
+     * classes, the entities whose definition changed since their classes were cached and all the entities that
+     * depend on any of them, directly or not.
+     *
+     * @param entities the entities that will be constructed
+     * @param fingerprints the current fingerprints of the entities, by class name
+     * @return the class names of the entities to build
+     */
+    synchronized Set<String> getEntitiesToBuild(List<Entity> entities, Map<String, String> fingerprints) {
+        Map<String, Set<String>> dependents = getDependents(entities);
+        Set<String> toBuild = new HashSet<>();
+        Queue<String> queue = new LinkedList<>();
+
+        for (Entity entity : entities) {
+            String className = entity.getClassName();
+            CachedClasses cached = cache.get(className);
+            String fingerprint = fingerprints.get(className);
+
+            if (null == cached || null == fingerprint || !fingerprint.equals(cached.fingerprint)) {
+                queue.add(className);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            String className = queue.poll();
+
+            if (toBuild.add(className) && dependents.containsKey(className)) {
+                queue.addAll(dependents.get(className));
+            }
+        }
+
+        return toBuild;
+    }
+
+    /**
+     * @param className the name of the entity class
+     * @return the cached classes of the entity, or null if there are none
+     */
+    synchronized CachedClasses get(String className) {
+        return cache.get(className);
+    }
+
+    /**
+     * Caches the enhanced classes of the entity.
+     *
+     * @param fingerprint the fingerprint of the entity definition the classes were built from
+     * @param classData the enhanced entity class
+     * @param historyClassData the enhanced history class, null if the entity does not record history
+     * @param trashClassData the enhanced trash class
+     */
+    synchronized void put(String fingerprint, ClassData classData, ClassData historyClassData,
+                          ClassData trashClassData) {
+        cache.put(classData.getClassName(),
+                new CachedClasses(fingerprint, classData, historyClassData, trashClassData));
+    }
+
+    /**
+     * Removes the classes of all entities other than the given ones.
+     *
+     * @param classNames the class names of the entities, whose classes should be kept
+     */
+    synchronized void retain(Collection<String> classNames) {
+        cache.keySet().retainAll(classNames);
+    }
+
+    /**
+     * Removes all cached classes, the next construction will build all entities.
+     */
+    synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Creates the fingerprint of the entity definition - the entity, its fields and lookups. For entities
+     * declared in a module, the time the declaring bundle was last modified is included as well, since their
+     * classes are built from the classes of the bundle.
+     *
+     * @param entity the entity
+     * @param bundleLastModified the time the declaring bundle was last modified, null for entities created by users
+     * @return the fingerprint, or null if it cannot be created, in which case the entity will always be built
+     */
+    static String fingerprint(Entity entity, Long bundleLastModified) {
+        List<Object> definition = new ArrayList<>();
+
+        definition.add(entity.toDto());
+        definition.add(entity.getFieldDtos());
+        definition.add(entity.getLookupDtos());
+        definition.add(bundleLastModified);
+
+        try {
+            return DigestUtils.md5DigestAsHex(OBJECT_MAPPER.writeValueAsBytes(definition));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Unable to create the fingerprint of {}, its classes will not be cached",
+                    entity.getClassName(), e);
+            return null;
+        }
+    }
+
+    private Map<String, Set<String>> getDependents(List<Entity> entities) {
+        Map<String, Set<String>> dependents = new HashMap<>();
+
+        for (Entity entity : entities) {
+            List<String> dependencies = EntityHelper.getRelatedEntityClasses(entity);
+            dependencies.add(entity.getSuperClass());
+
+            for (String dependency : dependencies) {
+                if (null == dependency || Objects.equals(dependency, entity.getClassName())) {
+                    continue;
+                }
+                if (!dependents.containsKey(dependency)) {
+                    dependents.put(dependency, new HashSet<String>());
+                }
+                dependents.get(dependency).add(entity.getClassName());
+            }
+        }
+
+        return dependents;
+    }
+
+    /**
+     * The enhanced classes of a single entity.
+     */
+    static final class CachedClasses {
+
+        private final String fingerprint;
+        private final ClassData classData;
+        private final ClassData historyClassData;
+        private final ClassData trashClassData;
+
+        private CachedClasses(String fingerprint, ClassData classData, ClassData historyClassData,
+                              ClassData trashClassData) {
+            this.fingerprint = fingerprint;
+            this.classData = classData;
+            this.historyClassData = historyClassData;
+            this.trashClassData = trashClassData;
+        }
+
+        ClassData getClassData() {
+            return classData;
+        }
+
+        ClassData getHistoryClassData() {
+            return historyClassData;
+        }
+
+        ClassData getTrashClassData() {
+            return trashClassData;
+        }
+    }
+}
@@ -4,9 +4,11 @@ import javassist.CtClass;
 import javassist.NotFoundException;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang.reflect.FieldUtils;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.mds.builder.EntityMetadataBuilder;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.domain.ClassData;
 import org.motechproject.mds.domain.ComboboxHolder;
 import org.motechproject.mds.domain.Entity;
@@ -16,11 +18,14 @@ import org.motechproject.mds.domain.FieldSetting;
 import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.domain.Type;
 import org.motechproject.mds.helper.ClassTableName;
+import org.motechproject.mds.helper.LookupIndexHelper;
 import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.jdo.Level2CacheRegistry;
 import org.motechproject.mds.reflections.ReflectionsUtil;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.IdStrategy;
 import org.motechproject.mds.util.TypeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +52,7 @@ import javax.jdo.metadata.ColumnMetadata;
 import javax.jdo.metadata.ElementMetadata;
 import javax.jdo.metadata.FieldMetadata;
 import javax.jdo.metadata.ForeignKeyMetadata;
+import javax.jdo.metadata.IndexMetadata;
 import javax.jdo.metadata.InheritanceMetadata;
 import javax.jdo.metadata.JDOMetadata;
 import javax.jdo.metadata.JoinMetadata;
@@ -54,10 +60,13 @@ import javax.jdo.metadata.MapMetadata;
 import javax.jdo.metadata.MemberMetadata;
 import javax.jdo.metadata.PackageMetadata;
 import javax.jdo.metadata.ValueMetadata;
+import java.util.List;
 import java.util.Map;
 
 import static org.apache.commons.lang.StringUtils.defaultIfBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static org.motechproject.mds.util.Constants.Config.MDS_ID_ALLOCATION_SIZE;
+import static org.motechproject.mds.util.Constants.Config.MODULE_FILE;
 import static org.motechproject.mds.util.Constants.MetadataKeys.DATABASE_COLUMN_NAME;
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
@@ -87,6 +96,7 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
     };
 
     private AllEntities allEntities;
+    private MdsConfig mdsConfig;
 
     @Override
     public void addEntityMetadata(JDOMetadata jdoMetadata, Entity entity, Class<?> definition) {
@@ -101,6 +111,9 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
         cmd.setDetachable(true);
         cmd.setIdentityType(IdentityType.APPLICATION);
         cmd.setPersistenceModifier(ClassPersistenceModifier.PERSISTENCE_CAPABLE);
+        cmd.setCacheable(entity.isCacheable());
+
+        Level2CacheRegistry.setCacheable(className, entity.isCacheable());
 
         addInheritanceMetadata(cmd, definition);
 
@@ -109,6 +122,7 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
         }
 
         addMetadataForFields(cmd, null, entity, EntityType.STANDARD, definition);
+        addLookupIndexes(cmd, entity, tableName);
     }
 
     @Override
@@ -126,6 +140,8 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
         cmd.setDetachable(true);
         cmd.setIdentityType(IdentityType.APPLICATION);
         cmd.setPersistenceModifier(ClassPersistenceModifier.PERSISTENCE_CAPABLE);
+        // history and trash instances are rarely read, there is no point in caching them
+        cmd.setCacheable(false);
 
         InheritanceMetadata imd = cmd.newInheritanceMetadata();
         imd.setCustomStrategy("complete-table");
@@ -267,6 +283,34 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
         }
     }
 
+    private void addLookupIndexes(ClassMetadata cmd, Entity entity, String tableName) {
+        // lookups on multiple fields get an index on all of them, besides the indexes on single fields
+        for (Map.Entry<String, List<String>> index : LookupIndexHelper.getLookupIndexes(entity, tableName).entrySet()) {
+            List<String> fieldNames = index.getValue();
+
+            if (areFieldsNotInherited(fieldNames, entity)) {
+                IndexMetadata imd = cmd.newIndexMetadata();
+                imd.setName(index.getKey());
+
+                for (String fieldName : fieldNames) {
+                    imd.newFieldMetadata(StringUtils.uncapitalize(fieldName));
+                }
+            } else {
+                LOGGER.debug("Skipping index {} of entity {}, since it contains inherited fields",
+                        index.getKey(), entity.getClassName());
+            }
+        }
+    }
+
+    private boolean areFieldsNotInherited(List<String> fieldNames, Entity entity) {
+        for (String fieldName : fieldNames) {
+            if (!isFieldNotInherited(StringUtils.uncapitalize(fieldName), entity)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean isFieldRequired(Field field, EntityType entityType) {
         return field.isRequired() && !(entityType.equals(EntityType.TRASH) && field.getType().isRelationship());
     }
@@ -605,7 +649,7 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
 
         if (containsID && isBaseClass) {
             FieldMetadata metadata = cmd.newFieldMetadata(ID_FIELD_NAME);
-            metadata.setValueStrategy(IdGeneratorStrategy.INCREMENT);
+            setIdValueStrategy(metadata, entity.getIdStrategy());
             metadata.setPrimaryKey(true);
             metadata.setIndexed(true);
         }
@@ -626,12 +670,33 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
 
         if (containsID && isBaseClass) {
             FieldMetadata metadata = cmd.newFieldMetadata(ID_FIELD_NAME);
-            metadata.setValueStrategy(IdGeneratorStrategy.INCREMENT);
+            // history and trash ids are never exposed, they always come from the sequence table
+            setIdValueStrategy(metadata, IdStrategy.INCREMENT);
             metadata.setPrimaryKey(true);
             metadata.setIndexed(true);
         }
     }
 
+    private void setIdValueStrategy(FieldMetadata metadata, IdStrategy idStrategy) {
+        if (idStrategy == IdStrategy.IDENTITY) {
+            // DataNucleus creates an AUTO_INCREMENT column on MySQL and a serial column on PostgreSQL
+            metadata.setValueStrategy(IdGeneratorStrategy.IDENTITY);
+        } else {
+            metadata.setValueStrategy(IdGeneratorStrategy.INCREMENT);
+
+            int allocationSize = getIdAllocationSize();
+            if (allocationSize > 0) {
+                // the number of ids reserved with a single update of the sequence table
+                metadata.newExtensionMetadata(DATANUCLEUS, "key-cache-size", String.valueOf(allocationSize));
+            }
+        }
+    }
+
+    private int getIdAllocationSize() {
+        return null == mdsConfig ? 0
+                : NumberUtils.toInt(mdsConfig.getProperties(MODULE_FILE).getProperty(MDS_ID_ALLOCATION_SIZE));
+    }
+
     private CollectionMetadata getOrCreateCollectionMetadata(FieldMetadata fmd) {
         CollectionMetadata collMd = fmd.getCollectionMetadata();
         if (collMd == null) {
@@ -675,4 +740,9 @@ public class EntityMetadataBuilderImpl implements EntityMetadataBuilder {
     public void setAllEntities(AllEntities allEntities) {
         this.allEntities = allEntities;
     }
+
+    @Autowired
+    public void setMdsConfig(MdsConfig mdsConfig) {
+        this.mdsConfig = mdsConfig;
+    }
 }
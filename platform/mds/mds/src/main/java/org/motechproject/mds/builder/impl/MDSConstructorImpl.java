@@ -50,12 +50,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Default implementation of {@link org.motechproject.mds.builder.MDSConstructor} interface.
@@ -76,8 +78,20 @@ public class MDSConstructorImpl implements MDSConstructor {
     private PersistenceManagerFactory persistenceManagerFactory;
     private SqlDBManager sqlDBManager;
 
+    private final EntityClassCache classCache = new EntityClassCache();
+
     @Override
     public synchronized boolean constructEntities() {
+        try {
+            return doConstructEntities();
+        } catch (RuntimeException e) {
+            // we don't know which classes were left in an inconsistent state
+            classCache.clear();
+            throw e;
+        }
+    }
+
+    private boolean doConstructEntities() {
         // To be able to register updated class, we need to reload class loader
         // and therefore add all the classes again
         MotechClassPool.clearEnhancedData();
@@ -94,6 +108,13 @@ public class MDSConstructorImpl implements MDSConstructor {
         filterEntities(entities);
         sortEntities(entities);
 
+        // only the changed entities and the entities depending on them are built and enhanced again
+        Map<String, String> fingerprints = getFingerprints(entities);
+        Set<String> toBuild = classCache.getEntitiesToBuild(entities, fingerprints);
+
+        LOGGER.info("Building classes for {} out of {} entities, cached classes will be used for the others",
+                toBuild.size(), entities.size());
+
         // create enum for appropriate combobox fields
         for (Entity entity : entities) {
             buildEnum(loader, enhancer, entity);
@@ -111,6 +132,9 @@ public class MDSConstructorImpl implements MDSConstructor {
         // (We don't have to generate it for main class,
         // since we just fetch fields from existing definition
         for (Entity entity : entities) {
+            if (!toBuild.contains(entity.getClassName())) {
+                continue;
+            }
             if (entity.isRecordHistory()) {
                 entityBuilder.prepareHistoryClass(entity);
             }
@@ -118,23 +142,26 @@ public class MDSConstructorImpl implements MDSConstructor {
         }
 
         // Build classes
-        Map<String, ClassData> classDataMap = buildClasses(entities);
+        Map<String, ClassData> classDataMap = buildClasses(entities, toBuild);
         List<Class> classes = new ArrayList<>();
 
         // We add the java classes to both
-        // the temporary ClassLoader and enhancer
+        // the temporary ClassLoader and enhancer,
+        // the cached classes are already enhanced,
+        // so they are only added to the ClassLoader
         for (Entity entity : entities) {
             String className = entity.getClassName();
+            boolean build = toBuild.contains(className);
 
-            Class<?> definition = addClassData(loader, enhancer, classDataMap.get(className));
+            Class<?> definition = addClassData(loader, enhancer, classDataMap.get(className), build);
             if (entity.isRecordHistory()) {
-                addClassData(loader, enhancer, classDataMap.get(ClassName.getHistoryClassName(className)));
+                addClassData(loader, enhancer, classDataMap.get(ClassName.getHistoryClassName(className)), build);
             }
-            addClassData(loader, enhancer, classDataMap.get(ClassName.getTrashClassName(className)));
+            addClassData(loader, enhancer, classDataMap.get(ClassName.getTrashClassName(className)), build);
 
             classes.add(definition);
 
-            LOGGER.debug("Generated classes for {}", entity.getClassName());
+            LOGGER.debug("{} classes for {}", build ? "Generated" : "Loaded cached", entity.getClassName());
         }
 
         for (Class<?> definition : classes) {
@@ -148,28 +175,43 @@ public class MDSConstructorImpl implements MDSConstructor {
         enhancer.registerMetadata(jdoMetadata);
 
         // then, we commence with enhancement
-        enhancer.enhance();
+        if (!toBuild.isEmpty()) {
+            enhancer.enhance();
+        }
 
         // we register the enhanced class bytes
         // and build the infrastructure classes
-        registerEnhancedClassBytes(entities, enhancer);
+        registerEnhancedClassBytes(entities, enhancer, classDataMap, toBuild, fingerprints);
 
         metadataBuilder.fixEnhancerIssuesInMetadata(jdoMetadata);
 
         return CollectionUtils.isNotEmpty(entities);
     }
 
-    private void registerEnhancedClassBytes(List<Entity> entities, MdsJDOEnhancer enhancer) {
+    private void registerEnhancedClassBytes(List<Entity> entities, MdsJDOEnhancer enhancer,
+                                            Map<String, ClassData> classDataMap, Set<String> toBuild,
+                                            Map<String, String> fingerprints) {
         for (Entity entity : entities) {
             // register
             String className = entity.getClassName();
             LOGGER.debug("Registering {}", className);
 
-            registerClass(enhancer, entity);
-            if (entity.isRecordHistory()) {
-                registerHistoryClass(enhancer, className);
+            if (toBuild.contains(className)) {
+                ClassData classData = registerClass(enhancer, entity);
+                ClassData historyClassData = null;
+                if (entity.isRecordHistory()) {
+                    historyClassData = registerHistoryClass(enhancer, entity);
+                }
+                ClassData trashClassData = registerTrashClass(enhancer, entity);
+
+                classCache.put(fingerprints.get(className), classData, historyClassData, trashClassData);
+            } else {
+                registerClassData(classDataMap.get(className));
+                if (entity.isRecordHistory()) {
+                    registerClassData(classDataMap.get(ClassName.getHistoryClassName(className)));
+                }
+                registerClassData(classDataMap.get(ClassName.getTrashClassName(className)));
             }
-            registerTrashClass(enhancer, className);
 
             LOGGER.debug("Building infrastructure for {}", className);
             buildInfrastructure(entity);
@@ -186,19 +228,49 @@ public class MDSConstructorImpl implements MDSConstructor {
         entities.addAll(byHasARelation);
     }
 
-    private Map<String, ClassData> buildClasses(List<Entity> entities) {
-        Map<String, ClassData> classDataMap = new LinkedHashMap<>();
+    private Map<String, String> getFingerprints(List<Entity> entities) {
+        Map<String, String> fingerprints = new HashMap<>();
 
-        //We build classes for all entities
         for (Entity entity : entities) {
-            ClassData classData = buildClass(entity);
-            ClassData historyClassData = null;
-            if (entity.isRecordHistory()) {
-                historyClassData = entityBuilder.buildHistory(entity);
+            Long bundleLastModified = null;
+
+            if (entity.isDDE()) {
+                Bundle declaringBundle = MdsBundleHelper.searchForBundle(bundleContext, entity);
+                bundleLastModified = null == declaringBundle ? null : declaringBundle.getLastModified();
             }
-            ClassData trashClassData = entityBuilder.buildTrash(entity);
 
+            fingerprints.put(entity.getClassName(), EntityClassCache.fingerprint(entity, bundleLastModified));
+        }
+
+        // the classes of entities that no longer exist are not needed anymore
+        classCache.retain(fingerprints.keySet());
+
+        return fingerprints;
+    }
+
+    private Map<String, ClassData> buildClasses(List<Entity> entities, Set<String> toBuild) {
+        Map<String, ClassData> classDataMap = new LinkedHashMap<>();
+
+        //We build classes for the changed entities, the enhanced classes of the other entities are cached
+        for (Entity entity : entities) {
             String className = entity.getClassName();
+            ClassData classData;
+            ClassData historyClassData = null;
+            ClassData trashClassData;
+
+            if (toBuild.contains(className)) {
+                classData = buildClass(entity);
+                if (entity.isRecordHistory()) {
+                    historyClassData = entityBuilder.buildHistory(entity);
+                }
+                trashClassData = entityBuilder.buildTrash(entity);
+            } else {
+                EntityClassCache.CachedClasses cached = classCache.get(className);
+
+                classData = cached.getClassData();
+                historyClassData = cached.getHistoryClassData();
+                trashClassData = cached.getTrashClassData();
+            }
 
             classDataMap.put(className, classData);
             if (historyClassData != null) {
@@ -304,43 +376,65 @@ public class MDSConstructorImpl implements MDSConstructor {
         }
     }
 
-    private void registerHistoryClass(MdsJDOEnhancer enhancer, String className) {
-        String historyClassName = ClassName.getHistoryClassName(className);
+    private ClassData registerHistoryClass(MdsJDOEnhancer enhancer, Entity entity) {
+        String historyClassName = ClassName.getHistoryClassName(entity.getClassName());
 
         byte[] enhancedBytes = enhancer.getEnhancedBytes(historyClassName);
-        ClassData classData = new ClassData(historyClassName, enhancedBytes);
+        ClassData classData = new ClassData(historyClassName, entity.getModule(), entity.getNamespace(),
+                enhancedBytes, EntityType.HISTORY);
 
-        // register with the classloader so that we avoid issues with the persistence manager
-        MDSClassLoader.getInstance().safeDefineClass(classData.getClassName(), classData.getBytecode());
+        registerClassData(classData);
 
-        MotechClassPool.registerHistoryClassData(classData);
+        return classData;
     }
 
-    private void registerTrashClass(MdsJDOEnhancer enhancer, String className) {
-        String trashClassName = ClassName.getTrashClassName(className);
+    private ClassData registerTrashClass(MdsJDOEnhancer enhancer, Entity entity) {
+        String trashClassName = ClassName.getTrashClassName(entity.getClassName());
 
         byte[] enhancedBytes = enhancer.getEnhancedBytes(trashClassName);
-        ClassData classData = new ClassData(trashClassName, enhancedBytes);
+        ClassData classData = new ClassData(trashClassName, entity.getModule(), entity.getNamespace(),
+                enhancedBytes, EntityType.TRASH);
 
-        // register with the classloader so that we avoid issues with the persistence manager
-        MDSClassLoader.getInstance().safeDefineClass(classData.getClassName(), classData.getBytecode());
+        registerClassData(classData);
 
-        MotechClassPool.registerTrashClassData(classData);
+        return classData;
     }
 
-    private void registerClass(MdsJDOEnhancer enhancer, Entity entity) {
+    private ClassData registerClass(MdsJDOEnhancer enhancer, Entity entity) {
         byte[] enhancedBytes = enhancer.getEnhancedBytes(entity.getClassName());
         ClassData classData = new ClassData(entity, enhancedBytes);
 
+        registerClassData(classData);
+
+        return classData;
+    }
+
+    private void registerClassData(ClassData classData) {
         // register with the classloader so that we avoid issues with the persistence manager
         MDSClassLoader.getInstance().safeDefineClass(classData.getClassName(), classData.getBytecode());
 
-        MotechClassPool.registerEnhancedClassData(classData);
+        switch (EntityType.forClassName(classData.getClassName())) {
+            case HISTORY:
+                MotechClassPool.registerHistoryClassData(classData);
+                break;
+            case TRASH:
+                MotechClassPool.registerTrashClassData(classData);
+                break;
+            default:
+                MotechClassPool.registerEnhancedClassData(classData);
+        }
     }
 
     private Class<?> addClassData(JavassistLoader loader, MdsJDOEnhancer enhancer, ClassData data) {
+        return addClassData(loader, enhancer, data, true);
+    }
+
+    private Class<?> addClassData(JavassistLoader loader, MdsJDOEnhancer enhancer, ClassData data,
+                                  boolean enhance) {
         Class<?> definition = loader.loadClass(data);
-        enhancer.addClass(data);
+        if (enhance) {
+            enhancer.addClass(data);
+        }
         return definition;
     }
 
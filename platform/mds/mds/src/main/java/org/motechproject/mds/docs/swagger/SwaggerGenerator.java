@@ -49,6 +49,8 @@ import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.API_DESC
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ARRAY_TYPE;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.BASE_PATH_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.BLOB_DESC_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CONTINUATION_TOKEN_DESC_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CONTINUATION_TOKEN_PARAM;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_BODY_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_ID_KEY;
@@ -62,6 +64,8 @@ import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INCLUDE_
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INT32_FORMAT;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INT64_FORMAT;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INTEGER_TYPE;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.KEYSET_DESC_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.KEYSET_PARAM;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.LICENSE_NAME_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.LICENSE_URL_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.LOOKUP_DESC_KEY;
@@ -350,6 +354,8 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         parameters.add(pageSizeParameter(locale));
         parameters.add(sortParameter(restExposedFields, locale));
         parameters.add(orderParameter(locale));
+        parameters.add(keysetParameter(locale));
+        parameters.add(continuationTokenParameter(locale));
         if (hasBlobField(restExposedFields)) {
             parameters.add(includeBlobParameter(locale));
         }
@@ -407,6 +413,16 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         return orderParameter;
     }
 
+    private Parameter keysetParameter(Locale locale) {
+        Parameter keysetParameter = queryParameter(KEYSET_PARAM, msg(locale, KEYSET_DESC_KEY), STRING_TYPE);
+        keysetParameter.setEnumValues(Arrays.asList("true", "false"));
+        return keysetParameter;
+    }
+
+    private Parameter continuationTokenParameter(Locale locale) {
+        return queryParameter(CONTINUATION_TOKEN_PARAM, msg(locale, CONTINUATION_TOKEN_DESC_KEY), STRING_TYPE);
+    }
+
     private Parameter includeBlobParameter(Locale locale) {
         Parameter includeBlobParameter = queryParameter(INCLUDE_BLOB_PARAM, msg(locale, BLOB_DESC_KEY), STRING_TYPE);
         includeBlobParameter.setEnumValues(Arrays.asList("true", "false"));
@@ -563,6 +579,7 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         properties.put("totalCount", new Property(INTEGER_TYPE, INT64_FORMAT));
         properties.put("page", new Property(INTEGER_TYPE, INT32_FORMAT));
         properties.put("pageSize", new Property(INTEGER_TYPE, INT32_FORMAT));
+        properties.put("continuationToken", new Property(STRING_TYPE));
 
         final List<String> required = new ArrayList<>();
         required.add("totalCount");
@@ -10,6 +10,7 @@ import org.motechproject.mds.dto.LookupFieldDto;
 import org.motechproject.mds.dto.RestOptionsDto;
 import org.motechproject.mds.dto.TrackingDto;
 import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.IdStrategy;
 import org.motechproject.mds.util.LookupName;
 import org.motechproject.mds.util.SecurityMode;
 import org.motechproject.mds.util.ValidationUtil;
@@ -87,6 +88,15 @@ public class Entity {
     @Persistent
     private Integer maxFetchDepth;
 
+    @Persistent
+    private boolean cacheable;
+
+    @Persistent
+    private boolean cacheableModified;
+
+    @Persistent
+    private IdStrategy idStrategy = IdStrategy.INCREMENT;
+
     @Persistent(mappedBy = ENTITY)
     @Element(dependent = TRUE)
     private List<Lookup> lookups;
@@ -149,6 +159,9 @@ public class Entity {
                 securityMode, securityMembers, readOnlySecurityMode, readOnlySecurityMembers, superClass, abstractClass, securityOptionsModified, bundleSymbolicName);
 
         dto.setMaxFetchDepth(maxFetchDepth);
+        dto.setCacheable(cacheable);
+        dto.setCacheableModified(cacheableModified);
+        dto.setIdStrategy(idStrategy);
         dto.setNonEditable(getTracking() != null ? getTracking().isNonEditable() : false);
         dto.setReadOnlyAccess(dto.checkIfUserHasOnlyReadAccessAuthorization());
 
@@ -352,6 +365,30 @@ public class Entity {
         this.maxFetchDepth = maxFetchDepth;
     }
 
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    public boolean isCacheableModified() {
+        return cacheableModified;
+    }
+
+    public void setCacheableModified(boolean cacheableModified) {
+        this.cacheableModified = cacheableModified;
+    }
+
+    public IdStrategy getIdStrategy() {
+        return idStrategy;
+    }
+
+    public void setIdStrategy(IdStrategy idStrategy) {
+        this.idStrategy = idStrategy;
+    }
+
     @NotPersistent
     public boolean isBaseEntity() {
         return Object.class.getName().equalsIgnoreCase(getSuperClass()) ||
@@ -499,6 +536,11 @@ public class Entity {
             securityOptionsModified = true;
         }
 
+        if (cacheable != draft.isCacheable()) {
+            cacheable = draft.isCacheable();
+            cacheableModified = true;
+        }
+
         if (draft.getRestOptions() != null) {
             if (restOptions != draft.getRestOptions().copy()) {
                 restOptions = draft.getRestOptions().copy();
@@ -565,6 +607,7 @@ public class Entity {
         advancedSettingsDto.setBrowsing(getBrowsingSettings().toDto());
         advancedSettingsDto.setRestOptions(restDto);
         advancedSettingsDto.setTracking(trackingDto);
+        advancedSettingsDto.setCacheable(isCacheable());
 
         return advancedSettingsDto;
     }
@@ -574,6 +617,7 @@ public class Entity {
         updateBrowsingSettings(advancedSettings);
         updateRestOptions(advancedSettings);
         updateTracking(advancedSettings);
+        setCacheable(advancedSettings.isCacheable());
     }
 
     private void updateRestOptions(AdvancedSettingsDto advancedSettings) {
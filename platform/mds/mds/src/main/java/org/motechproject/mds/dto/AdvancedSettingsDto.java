@@ -18,6 +18,7 @@ public class AdvancedSettingsDto {
     private List<LookupDto> indexes = new ArrayList<>();
     private RestOptionsDto restOptions = new RestOptionsDto();
     private BrowsingSettingsDto browsing = new BrowsingSettingsDto();
+    private boolean cacheable;
 
     public Long getId() {
         return id;
@@ -77,6 +78,14 @@ public class AdvancedSettingsDto {
         this.browsing = browsing;
     }
 
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,82 @@
+package org.motechproject.mds.dto;
+
+import java.io.Serializable;
+
+/**
+ * This class holds the statistics of the MDS level 2 cache - the number of cached instances, the maximum
+ * number of instances the cache can hold and the number of cache hits, misses and evictions.
+ */
+public class CacheStatisticsDto implements Serializable {
+
+    private static final long serialVersionUID = -2380527312417046263L;
+
+    private final long size;
+    private final long maxSize;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    /**
+     * @param size the number of instances currently held by the cache
+     * @param maxSize the maximum number of instances the cache can hold
+     * @param hits the number of lookups that found the instance in the cache
+     * @param misses the number of lookups that did not find the instance in the cache
+     * @param evictions the number of instances removed from the cache because it was full
+     */
+    public CacheStatisticsDto(long size, long maxSize, long hits, long misses, long evictions) {
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    /**
+     * @return the number of instances currently held by the cache
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the maximum number of instances the cache can hold
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of lookups that found the instance in the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find the instance in the cache
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of instances removed from the cache because it was full
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the ratio of hits to all lookups, 0 if there were no lookups
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStatisticsDto{size=%d, maxSize=%d, hits=%d, misses=%d, evictions=%d}",
+                size, maxSize, hits, misses, evictions);
+    }
+}
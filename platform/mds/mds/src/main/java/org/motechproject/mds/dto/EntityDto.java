@@ -7,6 +7,7 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.IdStrategy;
 import org.motechproject.mds.util.SecurityMode;
 
 import java.util.HashSet;
@@ -42,6 +43,9 @@ public class EntityDto {
     private boolean abstractClass;
     private boolean securityOptionsModified;
     private Integer maxFetchDepth;
+    private boolean cacheable;
+    private boolean cacheableModified;
+    private IdStrategy idStrategy = IdStrategy.INCREMENT;
     private boolean readOnlyAccess;
 
     public EntityDto() {
@@ -256,6 +260,30 @@ public class EntityDto {
         this.maxFetchDepth = maxFetchDepth;
     }
 
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    public boolean isCacheableModified() {
+        return cacheableModified;
+    }
+
+    public void setCacheableModified(boolean cacheableModified) {
+        this.cacheableModified = cacheableModified;
+    }
+
+    public IdStrategy getIdStrategy() {
+        return idStrategy;
+    }
+
+    public void setIdStrategy(IdStrategy idStrategy) {
+        this.idStrategy = idStrategy;
+    }
+
     public boolean isNonEditable() {
         return nonEditable;
     }
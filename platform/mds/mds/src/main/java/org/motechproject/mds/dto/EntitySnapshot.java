@@ -0,0 +1,165 @@
+package org.motechproject.mds.dto;
+
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of the committed schema of an entity - the entity itself, its fields and its lookups, taken
+ * at the given entity version. Snapshots are shared between callers, so the returned objects must not be modified.
+ * The entity in the snapshot does not carry user specific flags, such as the read only access flag.
+ *
+ * @see org.motechproject.mds.service.EntityService#getEntitySnapshot(Long)
+ */
+public class EntitySnapshot {
+
+    private final EntityDto entity;
+    private final Long entityVersion;
+    private final List<FieldDto> fields;
+    private final Map<String, FieldDto> fieldsByName;
+    private final List<LookupDto> lookups;
+    private final Map<String, LookupDto> lookupsByName;
+    private final Map<String, Map<String, FieldDto>> lookupFieldsMappings;
+    private final List<String> stringComboboxFieldNames;
+    private final Map<String, Set<String>> stringComboboxValues;
+
+    /**
+     * @param entity the entity
+     * @param entityVersion the version of the entity at the time the snapshot was taken
+     * @param fields the fields of the entity, in their UI display order
+     * @param lookups the lookups of the entity
+     * @param lookupFieldsMappings the fields used by the lookups, mapped by the lookup names
+     * @param stringComboboxFieldNames the names of combobox fields that allow user supplied values
+     */
+    public EntitySnapshot(EntityDto entity, Long entityVersion, List<FieldDto> fields, List<LookupDto> lookups,
+                          Map<String, Map<String, FieldDto>> lookupFieldsMappings, List<String> stringComboboxFieldNames) {
+        this(entity, entityVersion, fields, lookups, lookupFieldsMappings, emptyValues(stringComboboxFieldNames));
+    }
+
+    /**
+     * @param entity the entity
+     * @param entityVersion the version of the entity at the time the snapshot was taken
+     * @param fields the fields of the entity, in their UI display order
+     * @param lookups the lookups of the entity
+     * @param lookupFieldsMappings the fields used by the lookups, mapped by the lookup names
+     * @param stringComboboxValues the values of combobox fields that allow user supplied values, mapped by the
+     *                             field names
+     */
+    public EntitySnapshot(EntityDto entity, Long entityVersion, List<FieldDto> fields, List<LookupDto> lookups,
+                          Map<String, Map<String, FieldDto>> lookupFieldsMappings,
+                          Map<String, Set<String>> stringComboboxValues) {
+        this.entity = entity;
+        this.entityVersion = entityVersion;
+        this.fields = Collections.unmodifiableList(fields);
+        this.lookups = Collections.unmodifiableList(lookups);
+        this.stringComboboxFieldNames = Collections.unmodifiableList(new ArrayList<>(stringComboboxValues.keySet()));
+
+        Map<String, Set<String>> comboboxValues = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : stringComboboxValues.entrySet()) {
+            comboboxValues.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+        this.stringComboboxValues = Collections.unmodifiableMap(comboboxValues);
+
+        Map<String, FieldDto> fieldMap = new HashMap<>();
+        for (FieldDto field : fields) {
+            fieldMap.put(field.getBasic().getName(), field);
+        }
+        this.fieldsByName = Collections.unmodifiableMap(fieldMap);
+
+        Map<String, LookupDto> lookupMap = new HashMap<>();
+        for (LookupDto lookup : lookups) {
+            lookupMap.put(lookup.getLookupName(), lookup);
+        }
+        this.lookupsByName = Collections.unmodifiableMap(lookupMap);
+
+        Map<String, Map<String, FieldDto>> mappings = new HashMap<>();
+        for (Map.Entry<String, Map<String, FieldDto>> entry : lookupFieldsMappings.entrySet()) {
+            mappings.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+        }
+        this.lookupFieldsMappings = Collections.unmodifiableMap(mappings);
+    }
+
+    public EntityDto getEntity() {
+        return entity;
+    }
+
+    public Long getEntityId() {
+        return entity.getId();
+    }
+
+    public String getClassName() {
+        return entity.getClassName();
+    }
+
+    public Long getEntityVersion() {
+        return entityVersion;
+    }
+
+    /**
+     * @return the fields of the entity, in their UI display order
+     */
+    public List<FieldDto> getFields() {
+        return fields;
+    }
+
+    /**
+     * @param fieldName the name of the field
+     * @return the field with the given name, or null if the entity has no such field
+     */
+    public FieldDto getField(String fieldName) {
+        return fieldsByName.get(fieldName);
+    }
+
+    /**
+     * @return the lookups of the entity
+     */
+    public List<LookupDto> getLookups() {
+        return lookups;
+    }
+
+    /**
+     * @param lookupName the name of the lookup
+     * @return the lookup with the given name, or null if the entity has no such lookup
+     */
+    public LookupDto getLookup(String lookupName) {
+        return lookupsByName.get(lookupName);
+    }
+
+    /**
+     * @param lookupName the name of the lookup
+     * @return the fields used by the lookup, mapped by their names in the lookup, or null if the entity
+     * has no such lookup
+     */
+    public Map<String, FieldDto> getLookupFieldsMapping(String lookupName) {
+        return lookupFieldsMappings.get(lookupName);
+    }
+
+    /**
+     * @return the names of combobox fields of the entity that allow user supplied values
+     */
+    public List<String> getStringComboboxFieldNames() {
+        return stringComboboxFieldNames;
+    }
+
+    /**
+     * @param fieldName the name of the combobox field
+     * @return the values of the combobox field that allows user supplied values, or an empty set if the entity
+     * has no such field
+     */
+    public Set<String> getStringComboboxValues(String fieldName) {
+        Set<String> values = stringComboboxValues.get(fieldName);
+        return (values == null) ? Collections.<String>emptySet() : values;
+    }
+
+    private static Map<String, Set<String>> emptyValues(List<String> fieldNames) {
+        Map<String, Set<String>> values = new LinkedHashMap<>();
+        for (String fieldName : fieldNames) {
+            values.put(fieldName, Collections.<String>emptySet());
+        }
+        return values;
+    }
+}
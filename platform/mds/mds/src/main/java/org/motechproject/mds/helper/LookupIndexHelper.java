@@ -0,0 +1,261 @@
+package org.motechproject.mds.helper;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.motechproject.mds.domain.ComboboxHolder;
+import org.motechproject.mds.domain.Entity;
+import org.motechproject.mds.domain.Field;
+import org.motechproject.mds.domain.FieldSetting;
+import org.motechproject.mds.domain.Lookup;
+import org.motechproject.mds.domain.Type;
+import org.motechproject.mds.util.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The <code>LookupIndexHelper</code> class derives composite database indexes from the lookups of an entity.
+ * Every lookup field is already indexed on its own, but a lookup on multiple fields is much faster with an index
+ * on all of them. The columns of such an index are ordered the way the database can use them - fields compared
+ * for equality first, then fields matched against a set of values and fields compared with a range last, since
+ * an index cannot be used for columns following a range condition. Fields that cannot be indexed or that use
+ * operators which cannot use an index are left out. Indexes, which are a prefix of another index, are dropped.
+ * <p>
+ * MySQL limits the length of an index key to 3072 bytes, and string columns take up to 3 bytes per character in it,
+ * so five strings of the default length of 255 characters already exceed the limit. The trailing columns of an index which would exceed that limit
+ * are left out, and if less than two columns remain, the index is not created at all.
+ */
+public final class LookupIndexHelper {
+
+    /**
+     * The prefix of the names of indexes created for lookups.
+     */
+    public static final String INDEX_NAME_PREFIX = "LKP_";
+
+    // keeps the index names below the identifier length limits of the supported databases
+    private static final int MAX_TABLE_NAME_LENGTH = 42;
+
+    // the index key limit of InnoDB and the size of a character in the utf8 charset
+    private static final int MAX_INDEX_KEY_BYTES = 3072;
+    private static final int BYTES_PER_CHAR = 3;
+    private static final int DEFAULT_STRING_LENGTH = 255;
+    // an upper estimate for numbers, dates and other fixed size columns
+    private static final int FIXED_COLUMN_BYTES = 8;
+
+    private static final int EQUALITY = 0;
+    private static final int SET = 1;
+    private static final int RANGE = 2;
+    private static final int NOT_INDEXABLE = -1;
+
+    private static final List<String> RANGE_OPERATORS = Arrays.asList(
+            Constants.Operators.LT, Constants.Operators.LT_EQ, Constants.Operators.GT, Constants.Operators.GT_EQ,
+            Constants.Operators.STARTS_WITH
+    );
+
+    /**
+     * Returns the composite indexes for the lookups of the given entity.
+     *
+     * @param entity the entity
+     * @param tableName the name of the entity table
+     * @return the names of the fields of each index, in the index column order, mapped by the index names
+     */
+    public static Map<String, List<String>> getLookupIndexes(Entity entity, String tableName) {
+        // lookups on the same fields share the index
+        Set<List<String>> candidates = new LinkedHashSet<>();
+
+        for (Lookup lookup : entity.getLookups()) {
+            List<String> fields = limitKeyLength(lookup, getIndexFields(lookup));
+
+            // single fields are indexed on their own
+            if (fields.size() > 1) {
+                candidates.add(fields);
+            }
+        }
+
+        Map<String, List<String>> indexesByName = new LinkedHashMap<>();
+        for (List<String> fields : removeCoveredIndexes(candidates)) {
+            indexesByName.put(getIndexName(tableName, fields), fields);
+        }
+
+        return indexesByName;
+    }
+
+    /**
+     * Returns the fields of the given lookup that can be used in an index, in the order the database can use them.
+     *
+     * @param lookup the lookup
+     * @return the names of the indexable fields
+     */
+    public static List<String> getIndexFields(Lookup lookup) {
+        List<String> fieldNames = lookup.getFieldsOrder().isEmpty() ? fieldNames(lookup.getFields())
+                : lookup.getFieldsOrder();
+
+        List<String> equality = new ArrayList<>();
+        List<String> set = new ArrayList<>();
+        List<String> range = new ArrayList<>();
+
+        for (String fieldName : fieldNames) {
+            switch (getColumnKind(lookup, fieldName)) {
+                case EQUALITY:
+                    addOnce(equality, fieldName);
+                    break;
+                case SET:
+                    addOnce(set, fieldName);
+                    break;
+                case RANGE:
+                    addOnce(range, fieldName);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        List<String> indexFields = new ArrayList<>(equality);
+        addAll(indexFields, set);
+        addAll(indexFields, range);
+
+        return indexFields;
+    }
+
+    /**
+     * Builds the name of the index. The name depends on the table and the indexed fields, so an index on
+     * different fields gets a new name.
+     *
+     * @param tableName the name of the table
+     * @param fields the indexed fields, in the index column order
+     * @return the name of the index
+     */
+    public static String getIndexName(String tableName, List<String> fields) {
+        String definition = tableName + ':' + StringUtils.join(fields, ',');
+        String hash = Integer.toHexString(definition.hashCode()).toUpperCase();
+        return INDEX_NAME_PREFIX + StringUtils.left(tableName, MAX_TABLE_NAME_LENGTH) + '_' + hash;
+    }
+
+    private static List<String> limitKeyLength(Lookup lookup, List<String> fieldNames) {
+        int keyLength = 0;
+
+        for (int i = 0; i < fieldNames.size(); ++i) {
+            keyLength += getKeyLength(lookup.getLookupFieldByName(fieldNames.get(i)));
+
+            if (keyLength > MAX_INDEX_KEY_BYTES) {
+                // the database can still use the leading columns of the index
+                return fieldNames.subList(0, i);
+            }
+        }
+
+        return fieldNames;
+    }
+
+    private static int getKeyLength(Field field) {
+        Type type = field.getType();
+
+        if (!String.class.equals(type.getTypeClass()) && !type.isCombobox()) {
+            return FIXED_COLUMN_BYTES;
+        }
+
+        FieldSetting maxLength = field.getSettingByName(Constants.Settings.STRING_MAX_LENGTH);
+        int length = null == maxLength
+                ? DEFAULT_STRING_LENGTH
+                : NumberUtils.toInt(maxLength.getValue(), DEFAULT_STRING_LENGTH);
+
+        return length * BYTES_PER_CHAR;
+    }
+
+    private static int getColumnKind(Lookup lookup, String fieldName) {
+        // fields of related entities are stored in other tables
+        if (fieldName.contains(".")) {
+            return NOT_INDEXABLE;
+        }
+
+        Field field = lookup.getLookupFieldByName(fieldName);
+        if (field == null || !isIndexable(field)) {
+            return NOT_INDEXABLE;
+        }
+
+        String operator = lookup.getCustomOperators().get(fieldName);
+
+        if (lookup.isRangeParam(fieldName)) {
+            return RANGE;
+        } else if (lookup.isSetParam(fieldName)) {
+            return SET;
+        } else if (StringUtils.isBlank(operator) || Constants.Operators.EQ.equals(operator)) {
+            return EQUALITY;
+        } else if (RANGE_OPERATORS.contains(operator)) {
+            return RANGE;
+        } else {
+            // matching, ends with or case insensitive comparison cannot use an index
+            return NOT_INDEXABLE;
+        }
+    }
+
+    private static boolean isIndexable(Field field) {
+        Type type = field.getType();
+
+        if (type == null || type.isRelationship() || type.isMap() || type.isBlob() || type.isTextArea()) {
+            return false;
+        } else if (type.isCombobox()) {
+            // multi-select comboboxes are stored in separate tables
+            return !new ComboboxHolder(field).isCollection();
+        } else if (Collection.class.isAssignableFrom(type.getTypeClass())) {
+            return false;
+        }
+
+        FieldSetting textArea = field.getSettingByName(Constants.Settings.STRING_TEXT_AREA);
+        return textArea == null || !Constants.Util.TRUE.equalsIgnoreCase(textArea.getValue());
+    }
+
+    private static List<List<String>> removeCoveredIndexes(Collection<List<String>> candidates) {
+        List<List<String>> indexes = new ArrayList<>();
+
+        for (List<String> index : candidates) {
+            if (!isPrefixOfAnother(index, candidates)) {
+                indexes.add(index);
+            }
+        }
+
+        return indexes;
+    }
+
+    private static boolean isPrefixOfAnother(List<String> index, Collection<List<String>> indexes) {
+        for (List<String> other : indexes) {
+            // an index can be used for queries on any prefix of its columns
+            if (other.size() > index.size() && other.subList(0, index.size()).equals(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> fieldNames(List<Field> fields) {
+        List<String> names = new ArrayList<>();
+
+        if (fields != null) {
+            for (Field field : fields) {
+                names.add(field.getName());
+            }
+        }
+
+        return names;
+    }
+
+    private static void addOnce(List<String> list, String fieldName) {
+        if (!list.contains(fieldName)) {
+            list.add(fieldName);
+        }
+    }
+
+    private static void addAll(List<String> list, List<String> fieldNames) {
+        for (String fieldName : fieldNames) {
+            addOnce(list, fieldName);
+        }
+    }
+
+    private LookupIndexHelper() {
+    }
+}
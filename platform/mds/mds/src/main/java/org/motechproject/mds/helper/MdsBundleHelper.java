@@ -11,7 +11,10 @@ import org.motechproject.osgi.web.util.BundleHeaders;
 import org.motechproject.osgi.web.util.WebBundleUtil;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +22,9 @@ import javax.jdo.JDOFatalUserException;
 import javax.jdo.spi.JDOImplHelper;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper class, that provides utility methods for MDS OSGi bundles.
@@ -125,6 +131,41 @@ public final class MdsBundleHelper {
         }
     }
 
+    /**
+     * Refreshes the wiring of the given bundles and waits until the framework reports that the refresh has finished,
+     * instead of waiting for a fixed amount of time.
+     *
+     * @param bundleContext the context used for accessing the framework
+     * @param bundles the bundles to refresh
+     * @param timeout the maximum time to wait, in milliseconds
+     * @return true if the refresh has finished, false if the timeout elapsed first
+     */
+    public static boolean refreshBundles(BundleContext bundleContext, Collection<Bundle> bundles, long timeout) {
+        final CountDownLatch refreshed = new CountDownLatch(1);
+
+        FrameworkWiring frameworkWiring = bundleContext.getBundle(0).adapt(FrameworkWiring.class);
+        frameworkWiring.refreshBundles(bundles, new FrameworkListener() {
+            @Override
+            public void frameworkEvent(FrameworkEvent event) {
+                if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED) {
+                    refreshed.countDown();
+                }
+            }
+        });
+
+        try {
+            if (refreshed.await(timeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            LOGGER.warn("The refresh of bundles {} did not finish within {} ms", bundles, timeout);
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for the refresh of bundles {}", bundles, e);
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
     private static JDOImplHelper getJDOImplHelper() {
         return (JDOImplHelper) AccessController.doPrivileged(new PrivilegedAction() {
             public Object run() {
@@ -0,0 +1,123 @@
+package org.motechproject.mds.jdo;
+
+import org.motechproject.mds.dto.CacheStatisticsDto;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The <code>Level2CacheRegistry</code> keeps track of the entity classes which instances can be kept in the
+ * level 2 cache and of the {@link MdsLevel2Cache} instances created by the persistence manager factories.
+ * It is static, since the caches are created by DataNucleus, outside of the Spring context.
+ */
+public final class Level2CacheRegistry {
+
+    private static final String INSTANCE_ID = UUID.randomUUID().toString();
+
+    private static final Set<String> CACHEABLE_CLASSES = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private static final List<MdsLevel2Cache> CACHES = new CopyOnWriteArrayList<>();
+
+    /**
+     * Marks the class with the given name as cacheable or not. If the class is no longer cacheable, its instances
+     * are removed from the caches.
+     *
+     * @param className the name of the entity class
+     * @param cacheable true if instances of the class can be cached, otherwise false
+     */
+    public static void setCacheable(String className, boolean cacheable) {
+        if (cacheable) {
+            CACHEABLE_CLASSES.add(className);
+        } else if (CACHEABLE_CLASSES.remove(className)) {
+            evict(className);
+        }
+    }
+
+    /**
+     * Checks whether instances of the class with the given name can be kept in the level 2 cache.
+     *
+     * @param className the name of the entity class
+     * @return true if instances of the class can be cached, otherwise false
+     */
+    public static boolean isCacheable(String className) {
+        return CACHEABLE_CLASSES.contains(className);
+    }
+
+    /**
+     * Removes all instances of the class with the given name from the caches.
+     *
+     * @param className the name of the entity class
+     */
+    public static void evict(String className) {
+        for (MdsLevel2Cache cache : CACHES) {
+            cache.evictAll(className);
+        }
+    }
+
+    /**
+     * Removes all instances from the caches.
+     */
+    public static void evictAll() {
+        for (MdsLevel2Cache cache : CACHES) {
+            cache.evictAll();
+        }
+    }
+
+    /**
+     * Returns the statistics of all caches combined.
+     *
+     * @return the combined statistics of the caches
+     */
+    public static CacheStatisticsDto getStatistics() {
+        long size = 0;
+        long maxSize = 0;
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+
+        for (MdsLevel2Cache cache : CACHES) {
+            CacheStatisticsDto statistics = cache.getStatistics();
+
+            size += statistics.getSize();
+            maxSize += statistics.getMaxSize();
+            hits += statistics.getHits();
+            misses += statistics.getMisses();
+            evictions += statistics.getEvictions();
+        }
+
+        return new CacheStatisticsDto(size, maxSize, hits, misses, evictions);
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters of all caches.
+     */
+    public static void resetStatistics() {
+        for (MdsLevel2Cache cache : CACHES) {
+            cache.resetStatistics();
+        }
+    }
+
+    /**
+     * Returns the identifier of this Motech instance, used for recognizing the eviction requests
+     * broadcast by this instance.
+     *
+     * @return the identifier of this instance
+     */
+    public static String getInstanceId() {
+        return INSTANCE_ID;
+    }
+
+    static void register(MdsLevel2Cache cache) {
+        CACHES.add(cache);
+    }
+
+    static void unregister(MdsLevel2Cache cache) {
+        CACHES.remove(cache);
+    }
+
+    private Level2CacheRegistry() {
+    }
+}
@@ -0,0 +1,305 @@
+package org.motechproject.mds.jdo;
+
+import org.datanucleus.NucleusContext;
+import org.datanucleus.cache.CachedPC;
+import org.datanucleus.cache.Level2Cache.PinnedClass;
+import org.datanucleus.cache.WeakLevel2Cache;
+import org.motechproject.mds.dto.CacheStatisticsDto;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The level 2 cache used by MDS, registered in DataNucleus under the {@value #NAME} name. It only holds instances
+ * of entities marked as cacheable in the {@link Level2CacheRegistry}. The cache is bounded - once it is full,
+ * the least recently used instance is removed to make room for the new one. Pinned instances are kept by the
+ * parent {@link WeakLevel2Cache} and do not count towards the bound. The cache counts hits, misses and evictions,
+ * which are available through the {@link Level2CacheRegistry}.
+ */
+public class MdsLevel2Cache extends WeakLevel2Cache {
+
+    public static final String NAME = "mds";
+    public static final String MAX_SIZE_PROPERTY = "datanucleus.cache.level2.maxSize";
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static final long serialVersionUID = -4624981256218213493L;
+
+    private final int maxCachedInstances;
+    private final Map<Object, CachedPC> store;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public MdsLevel2Cache(NucleusContext nucleusCtx) {
+        this(nucleusCtx, nucleusCtx.getConfiguration().getIntProperty(MAX_SIZE_PROPERTY));
+    }
+
+    MdsLevel2Cache(NucleusContext nucleusCtx, int maxSize) {
+        super(nucleusCtx);
+
+        this.maxCachedInstances = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+        this.store = new LinkedHashMap<Object, CachedPC>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2978645331023364817L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CachedPC> eldest) {
+                boolean full = size() > maxCachedInstances;
+                if (full) {
+                    evictions.incrementAndGet();
+                }
+                return full;
+            }
+        };
+
+        Level2CacheRegistry.register(this);
+    }
+
+    @Override
+    public CachedPC get(Object oid) {
+        CachedPC pc = getPinned(oid);
+        if (pc == null) {
+            synchronized (store) {
+                pc = store.get(oid);
+            }
+        }
+
+        if (pc == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return pc;
+    }
+
+    @Override
+    public Map<Object, CachedPC> getAll(Collection oids) {
+        Map<Object, CachedPC> result = new HashMap<>();
+
+        if (oids != null) {
+            for (Object oid : oids) {
+                CachedPC pc = get(oid);
+                if (pc != null) {
+                    result.put(oid, pc);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public CachedPC put(Object oid, CachedPC pc) {
+        if (oid == null || pc == null || !Level2CacheRegistry.isCacheable(pc.getObjectClass().getName())) {
+            return null;
+        }
+
+        synchronized (this) {
+            if (isPinned(oid, pc.getObjectClass())) {
+                removeFromStore(oid);
+                return (CachedPC) pinnedCache.put(oid, pc);
+            }
+        }
+
+        synchronized (store) {
+            return store.put(oid, pc);
+        }
+    }
+
+    @Override
+    public void putAll(Map<Object, CachedPC> objs) {
+        if (objs != null) {
+            for (Map.Entry<Object, CachedPC> entry : objs.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public boolean containsOid(Object oid) {
+        if (getPinned(oid) != null) {
+            return true;
+        }
+
+        synchronized (store) {
+            return store.containsKey(oid);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (store) {
+            return store.size() + getNumberOfPinnedObjects();
+        }
+    }
+
+    @Override
+    public synchronized void pin(Object oid) {
+        super.pin(oid);
+
+        CachedPC pc = removeFromStore(oid);
+        if (pc != null) {
+            pinnedCache.put(oid, pc);
+        }
+    }
+
+    @Override
+    public synchronized void unpin(Object oid) {
+        super.unpin(oid);
+        moveUnpinnedToStore();
+    }
+
+    @Override
+    public synchronized void unpinAll(Class pcClass, boolean subclasses) {
+        super.unpinAll(pcClass, subclasses);
+        moveUnpinnedToStore();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public void evict(Object oid) {
+        synchronized (store) {
+            store.remove(oid);
+        }
+        super.evict(oid);
+    }
+
+    @Override
+    public void evictAll(Collection oids) {
+        if (oids != null) {
+            for (Object oid : oids) {
+                evict(oid);
+            }
+        }
+    }
+
+    @Override
+    public void evictAll(Object[] oids) {
+        if (oids != null) {
+            for (Object oid : oids) {
+                evict(oid);
+            }
+        }
+    }
+
+    @Override
+    public void evictAll(Class pcClass, boolean subclasses) {
+        synchronized (store) {
+            Iterator<CachedPC> it = store.values().iterator();
+            while (it.hasNext()) {
+                Class cachedClass = it.next().getObjectClass();
+                if (cachedClass.equals(pcClass) || (subclasses && pcClass.isAssignableFrom(cachedClass))) {
+                    it.remove();
+                }
+            }
+        }
+        super.evictAll(pcClass, subclasses);
+    }
+
+    /**
+     * Removes all instances of the class with the given name from this cache. The class is referenced by name,
+     * since the requests for eviction can come from other Motech instances.
+     *
+     * @param className the name of the class which instances should be removed
+     */
+    public void evictAll(String className) {
+        synchronized (store) {
+            Iterator<CachedPC> it = store.values().iterator();
+            while (it.hasNext()) {
+                if (className.equals(it.next().getObjectClass().getName())) {
+                    it.remove();
+                }
+            }
+        }
+        evictPinned(className);
+    }
+
+    @Override
+    public void evictAll() {
+        synchronized (store) {
+            store.clear();
+        }
+        super.evictAll();
+    }
+
+    @Override
+    public void close() {
+        Level2CacheRegistry.unregister(this);
+        evictAll();
+        super.close();
+    }
+
+    /**
+     * @return the current statistics of this cache
+     */
+    public CacheStatisticsDto getStatistics() {
+        return new CacheStatisticsDto(getSize(), maxCachedInstances, hits.get(), misses.get(), evictions.get());
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters of this cache.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    private synchronized CachedPC getPinned(Object oid) {
+        return oid == null ? null : (CachedPC) pinnedCache.get(oid);
+    }
+
+    private synchronized boolean isPinned(Object oid, Class<?> pcClass) {
+        if (pinnedIds != null && pinnedIds.contains(oid)) {
+            return true;
+        }
+
+        if (pinnedClasses == null || pinnedClasses.isEmpty()) {
+            return false;
+        }
+
+        if (pinnedClasses.contains(new PinnedClass(pcClass, false))) {
+            return true;
+        }
+
+        for (Class<?> clazz = pcClass; clazz != null; clazz = clazz.getSuperclass()) {
+            if (pinnedClasses.contains(new PinnedClass(clazz, true))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private synchronized void evictPinned(String className) {
+        Iterator<CachedPC> it = pinnedCache.values().iterator();
+        while (it.hasNext()) {
+            if (className.equals(it.next().getObjectClass().getName())) {
+                it.remove();
+            }
+        }
+    }
+
+    private CachedPC removeFromStore(Object oid) {
+        synchronized (store) {
+            return store.remove(oid);
+        }
+    }
+
+    // instances unpinned by the parent are moved to its weak map, they are kept in the bounded store instead
+    private void moveUnpinnedToStore() {
+        synchronized (store) {
+            store.putAll(unpinnedCache);
+        }
+        unpinnedCache.clear();
+    }
+}
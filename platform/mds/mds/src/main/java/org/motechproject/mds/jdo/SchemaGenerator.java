@@ -3,14 +3,17 @@ package org.motechproject.mds.jdo;
 
 import com.googlecode.flyway.core.Flyway;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.datanucleus.StoreNucleusContext;
 import org.datanucleus.api.jdo.JDOPersistenceManagerFactory;
 import org.datanucleus.store.rdbms.datasource.dbcp.BasicDataSource;
 import org.datanucleus.store.schema.SchemaAwareStoreManager;
 import org.motechproject.mds.config.MdsConfig;
+import org.motechproject.mds.helper.LookupIndexHelper;
 import org.motechproject.mds.service.JarGeneratorService;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.IdStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -18,19 +21,34 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.ClassPathResource;
 
+import javax.jdo.PersistenceManager;
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.datastore.JDOConnection;
+import javax.jdo.metadata.IndexMetadata;
+import javax.jdo.metadata.MemberMetadata;
+import javax.jdo.metadata.TypeMetadata;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
 
+import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
+
 /**
  * The schema generator class is responsible for generating the table schema
  * for entities and for running entities migrations upon start. Schema for
  * all entity classes has to be generated, otherwise issues might arise in
- * foreign key generation for example. This code runs in the generated entities
- * bundle.
+ * foreign key generation for example. After the schema is generated, the id columns
+ * of existing tables are converted for entities that switched to database generated ids
+ * and the lookup indexes are compared with the database. This code runs in the generated
+ * entities bundle.
  */
 public class SchemaGenerator implements InitializingBean {
 
@@ -70,11 +88,197 @@ public class SchemaGenerator implements InitializingBean {
         if (!classNames.isEmpty()) {
             SchemaAwareStoreManager storeManager = getStoreManager();
             storeManager.createSchemaForClasses(classNames, new Properties());
+
+            migrateIdColumns(classNames);
+            reportLookupIndexes(classNames);
         }
 
         LOGGER.info("Entity schema generation completed.");
     }
 
+    /**
+     * Converts the id columns of existing tables of entities using the {@link IdStrategy#IDENTITY} strategy, so
+     * that the database generates the ids. DataNucleus creates such columns only for new tables. The ids generated
+     * for the converted tables start after the highest id in the table, so existing instances keep their ids.
+     *
+     * @param classNames the names of the classes to check
+     */
+    public void migrateIdColumns(Set<String> classNames) {
+        PersistenceManager persistenceManager = persistenceManagerFactory.getPersistenceManager();
+        JDOConnection jdoConnection = persistenceManager.getDataStoreConnection();
+
+        try {
+            Connection connection = (Connection) jdoConnection.getNativeConnection();
+            DatabaseMetaData metaData = connection.getMetaData();
+
+            for (String className : classNames) {
+                TypeMetadata typeMetadata = persistenceManagerFactory.getMetadata(className);
+
+                if (null != typeMetadata && StringUtils.isNotBlank(typeMetadata.getTable())
+                        && isIdentity(typeMetadata)) {
+                    String tableName = getTableName(metaData, typeMetadata.getTable());
+
+                    if (!isAutoIncrement(metaData, tableName)) {
+                        LOGGER.info("Converting the id column of table {} of {} to a database generated column",
+                                tableName, className);
+                        migrateIdColumn(connection, metaData.getIdentifierQuoteString(), tableName);
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.error("Unable to convert the id columns of entities with database generated ids", e);
+        } finally {
+            jdoConnection.close();
+            persistenceManager.close();
+        }
+    }
+
+    /**
+     * Compares the indexes created for lookups with the indexes present in the database and logs the indexes
+     * that are missing and the indexes that are no longer used by any lookup. Unused indexes are not dropped,
+     * since they might have been created by an administrator on purpose.
+     *
+     * @param classNames the names of the classes to check
+     */
+    public void reportLookupIndexes(Set<String> classNames) {
+        PersistenceManager persistenceManager = persistenceManagerFactory.getPersistenceManager();
+        JDOConnection jdoConnection = persistenceManager.getDataStoreConnection();
+
+        try {
+            DatabaseMetaData metaData = ((Connection) jdoConnection.getNativeConnection()).getMetaData();
+
+            for (String className : classNames) {
+                TypeMetadata typeMetadata = persistenceManagerFactory.getMetadata(className);
+
+                // history and trash tables have no lookups
+                if (ClassName.trimTrashHistorySuffix(className).equals(className) && null != typeMetadata
+                        && StringUtils.isNotBlank(typeMetadata.getTable())) {
+                    reportLookupIndexes(metaData, className, typeMetadata);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.warn("Unable to compare the lookup indexes with the database indexes", e);
+        } finally {
+            jdoConnection.close();
+            persistenceManager.close();
+        }
+    }
+
+    private void reportLookupIndexes(DatabaseMetaData metaData, String className, TypeMetadata typeMetadata)
+            throws SQLException {
+        Set<String> expected = new HashSet<>();
+        for (IndexMetadata index : typeMetadata.getIndices()) {
+            if (isLookupIndex(index.getName())) {
+                expected.add(index.getName().toUpperCase());
+            }
+        }
+
+        Set<String> existing = new HashSet<>();
+        try (ResultSet indexInfo = metaData.getIndexInfo(null, null, getTableName(metaData, typeMetadata.getTable()),
+                false, true)) {
+            while (indexInfo.next()) {
+                String indexName = indexInfo.getString("INDEX_NAME");
+                if (isLookupIndex(indexName)) {
+                    existing.add(indexName.toUpperCase());
+                }
+            }
+        }
+
+        for (String indexName : expected) {
+            if (!existing.contains(indexName)) {
+                LOGGER.warn("The lookup index {} of {} is missing in table {}", indexName, className,
+                        typeMetadata.getTable());
+            }
+        }
+
+        for (String indexName : existing) {
+            if (!expected.contains(indexName)) {
+                LOGGER.warn("The index {} in table {} is not used by any lookup of {} and can be dropped", indexName,
+                        typeMetadata.getTable(), className);
+            }
+        }
+    }
+
+    private boolean isIdentity(TypeMetadata typeMetadata) {
+        for (MemberMetadata member : typeMetadata.getMembers()) {
+            if (ID_FIELD_NAME.equals(member.getName())) {
+                return member.getValueStrategy() == IdGeneratorStrategy.IDENTITY;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAutoIncrement(DatabaseMetaData metaData, String tableName) throws SQLException {
+        try (ResultSet columns = metaData.getColumns(null, null, tableName, null)) {
+            while (columns.next()) {
+                if (ID_FIELD_NAME.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                    return "YES".equalsIgnoreCase(columns.getString("IS_AUTOINCREMENT"));
+                }
+            }
+        }
+
+        // the table was not created, there is nothing to convert
+        return true;
+    }
+
+    private void migrateIdColumn(Connection connection, String quote, String tableName) throws SQLException {
+        String table = quote + tableName + quote;
+        String column = quote + ID_FIELD_NAME + quote;
+        boolean mysql = Constants.Config.MYSQL_DRIVER_CLASSNAME.equals(
+                mdsSqlProperties.getProperty(CONNECTION_DRIVER_KEY));
+
+        try (Statement statement = connection.createStatement()) {
+            if (mysql) {
+                // MySQL continues after the highest id, the foreign keys referencing the column are not changed
+                statement.execute("SET FOREIGN_KEY_CHECKS = 0");
+                try {
+                    statement.execute("ALTER TABLE " + table + " MODIFY " + column + " BIGINT NOT NULL AUTO_INCREMENT");
+                } finally {
+                    statement.execute("SET FOREIGN_KEY_CHECKS = 1");
+                }
+            } else {
+                // the sequence is named the way PostgreSQL names the sequences of serial columns
+                String sequence = quote + tableName + '_' + ID_FIELD_NAME + "_seq" + quote;
+
+                statement.execute("CREATE SEQUENCE " + sequence);
+                statement.execute("SELECT setval('" + sequence + "', COALESCE(MAX(" + column + "), 0) + 1, false) FROM "
+                        + table);
+                statement.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " SET DEFAULT nextval('"
+                        + sequence + "')");
+                statement.execute("ALTER SEQUENCE " + sequence + " OWNED BY " + table + '.' + column);
+            }
+        }
+
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    private boolean isLookupIndex(String indexName) {
+        return StringUtils.startsWithIgnoreCase(indexName, LookupIndexHelper.INDEX_NAME_PREFIX);
+    }
+
+    private String getTableName(DatabaseMetaData metaData, String tableName) throws SQLException {
+        // quoted identifiers keep their case, others are stored in the case used by the database
+        try (ResultSet tables = metaData.getTables(null, null, tableName, null)) {
+            if (tables.next()) {
+                return tableName;
+            }
+        }
+
+        return toDatabaseCase(metaData, tableName);
+    }
+
+    private String toDatabaseCase(DatabaseMetaData metaData, String identifier) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return identifier.toUpperCase();
+        } else if (metaData.storesLowerCaseIdentifiers()) {
+            return identifier.toLowerCase();
+        } else {
+            return identifier;
+        }
+    }
+
     public void runMigrations() {
         LOGGER.debug("Starting the flyway modules migrations.");
         File migrationDirectory = mdsConfig.getFlywayMigrationDirectory();
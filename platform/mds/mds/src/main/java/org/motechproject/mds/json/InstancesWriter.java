@@ -6,6 +6,8 @@ import org.motechproject.mds.domain.ComboboxHolder;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.query.KeysetIterator;
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.PropertyUtil;
@@ -15,6 +17,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -46,8 +49,22 @@ public class InstancesWriter {
 
     public void writeInstances() throws IOException {
         jsonWriter.beginArray();
-        for (Object instance : dataService.retrieveAll()) {
-            writeInstance(instance);
+
+        // instances are read in chunks, so that we never hold the whole table in memory
+        Iterator<Object> instances = new KeysetIterator<Object>(null) {
+            @Override
+            protected List<Object> retrieveChunk(QueryParams queryParams) {
+                return dataService.retrieveAll(queryParams);
+            }
+
+            @Override
+            protected void chunkProcessed() {
+                dataService.evictInstances();
+            }
+        };
+
+        while (instances.hasNext()) {
+            writeInstance(instances.next());
         }
         jsonWriter.endArray();
     }
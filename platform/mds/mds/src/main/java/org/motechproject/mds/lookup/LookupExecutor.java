@@ -1,41 +1,47 @@
 package org.motechproject.mds.lookup;
 
-import org.apache.commons.lang.reflect.MethodUtils;
-import org.motechproject.commons.api.Range;
-import org.motechproject.mds.domain.ComboboxHolder;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
-import org.motechproject.mds.dto.LookupFieldDto;
-import org.motechproject.mds.dto.LookupFieldType;
-import org.motechproject.mds.ex.field.FieldNotFoundException;
 import org.motechproject.mds.ex.lookup.LookupExecutorException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.LookupName;
-import org.motechproject.mds.util.MDSClassLoader;
-import org.motechproject.mds.util.TypeHelper;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
+import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class allows executing lookups by providing the lookup name
  * as a string and the lookup params in name-value map. Used both
  * by the REST api and the Databrowser UI for executing lookups based
  * on only metadata. The dataservice and metadata must be provided during
- * construction.
+ * construction. The conversion of the lookup parameters and the lookup
+ * methods are resolved once per data service class and lookup definition
+ * and shared by all executors.
  */
 public class LookupExecutor {
 
+    // plans are kept per data service class, so they are released with the entities bundle
+    private static final ClassValue<ConcurrentMap<String, LookupPlan>> PLANS =
+            new ClassValue<ConcurrentMap<String, LookupPlan>>() {
+                @Override
+                protected ConcurrentMap<String, LookupPlan> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
     private final MotechDataService dataService;
     private final LookupDto lookup;
     private final Map<String, FieldDto> fieldsByName;
     private final Class entityClass;
     private final ClassLoader classLoader;
 
+    private LookupPlan plan;
+
     public LookupExecutor(MotechDataService dataService, LookupDto lookup, Map<String, FieldDto> fieldsByName) {
         this.dataService = dataService;
         this.lookup = lookup;
@@ -49,141 +55,62 @@ public class LookupExecutor {
     }
 
     public Object execute(Map<String, ?> lookupMap, QueryParams queryParams) {
-        List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
+        LookupPlan lookupPlan = getPlan();
+        List<Object> args = lookupPlan.getArgs(lookupMap);
+        Method method = lookupPlan.getLookupMethod();
 
         if (queryParams != null) {
             args.add(queryParams);
-            argTypes.add(QueryParams.class);
+            method = lookupPlan.getLookupWithParamsMethod();
         }
 
         try {
-            return MethodUtils.invokeMethod(dataService, lookup.getMethodName(),
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
+            return invoke(method, lookup.getMethodName(), args);
         } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
             throw new LookupExecutorException("Unable to execute lookup " + lookup.getLookupName(), e);
         }
     }
 
+    public boolean isSingleObjectReturn() {
+        return lookup.isSingleObjectReturn();
+    }
+
     public long executeCount(Map<String, ?> lookupMap) {
-        List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
+        LookupPlan lookupPlan = getPlan();
+        List<Object> args = lookupPlan.getArgs(lookupMap);
 
         String countMethodName = LookupName.lookupCountMethod(lookup.getMethodName());
 
         try {
-            return (long) MethodUtils.invokeMethod(dataService, countMethodName,
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
+            return (long) invoke(lookupPlan.getCountMethod(), countMethodName, args);
         } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
             throw new LookupExecutorException("Unable to execute count lookup " + lookup.getLookupName(), e);
         }
     }
 
-
-    private List<Object> getLookupArgs(Map<String, ?> paramMap) {
-        List<Object> args = new ArrayList<>();
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-            FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-            if (field == null) {
-                throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-            }
-
-            Object val = paramMap.get(lookupField.getLookupFieldName());
-
-            String typeClass = getTypeClass(field);
-            String genericType = getGenericTypeClass(field);
-
-            Object arg;
-            if (lookupField.getType() == LookupFieldType.RANGE) {
-                arg = TypeHelper.toRange(val, typeClass);
-            } else if (lookupField.getType() == LookupFieldType.SET) {
-                arg = TypeHelper.toSet(val, typeClass, classLoader);
-            } else {
-                arg = TypeHelper.parse(val, lookupField.isUseGenericParam() ? genericType : typeClass, classLoader);
-            }
-
-            args.add(arg);
-        }
-        return args;
-    }
-
-    private String getTypeClass(FieldDto field) {
-        String typeClass = null;
-
-        if (field.getType().isCombobox()) {
-            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
-            typeClass = holder.getTypeClassName();
-        } else {
-            typeClass = (field.getType().isTextArea()) ? "java.lang.String" : field.getType().getTypeClass();
+    private Object invoke(Method method, String methodName, List<Object> args)
+            throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+        if (null == method) {
+            throw new NoSuchMethodException("No such accessible method: " + methodName + "() on object: " +
+                    dataService.getClass().getName());
         }
 
-        return typeClass;
+        return method.invoke(dataService, args.toArray(new Object[args.size()]));
     }
 
-    private String getGenericTypeClass(FieldDto field) {
-        String genericType = null;
+    private LookupPlan getPlan() {
+        if (null == plan) {
+            ConcurrentMap<String, LookupPlan> plans = PLANS.get(dataService.getClass());
+            LookupPlan cached = plans.get(lookup.getLookupName());
 
-        if (field.getType().isCombobox()) {
-            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
-
-            if (holder.isCollection()) {
-                genericType = holder.getUnderlyingType();
+            if (null == cached || !cached.isBuiltFor(lookup, fieldsByName)) {
+                cached = LookupPlan.build(dataService.getClass(), entityClass, classLoader, lookup, fieldsByName);
+                plans.put(lookup.getLookupName(), cached);
             }
-        }
 
-        return genericType;
-    }
-
-    private List<Class> buildArgTypes() {
-        List<Class> argTypes = new ArrayList<>();
-
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-
-            switch (lookupField.getType()) {
-                case RANGE:
-                    argTypes.add(Range.class);
-                    break;
-                case SET:
-                    argTypes.add(Set.class);
-                    break;
-                default:
-                    FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-                    if (field == null) {
-                        throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-                    }
-
-                    String typeClassName = getTypeClassName(lookupField, field);
-
-                    try {
-                        ClassLoader safeClassLoader = null == classLoader
-                                ? MDSClassLoader.getInstance()
-                                : classLoader;
-
-                        argTypes.add(safeClassLoader.loadClass(typeClassName));
-                    } catch (ClassNotFoundException e) {
-                        throw new IllegalStateException("Type not found " + typeClassName, e);
-                    }
-            }
-        }
-
-        return argTypes;
-    }
-
-    private String getTypeClassName(LookupFieldDto lookupField, FieldDto field) {
-        String typeClassName = (field.getType().isTextArea()) ? "java.lang.String" : field.getType().getTypeClass();
-
-        if (field.getType().isCombobox()) {
-            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
-            
-            if (holder.isCollection() && lookupField.isUseGenericParam()) {
-                typeClassName = holder.getUnderlyingType();
-            } else {
-                typeClassName = holder.getTypeClassName();
-            }
+            plan = cached;
         }
 
-        return typeClassName;
+        return plan;
     }
 }
@@ -0,0 +1,238 @@
+package org.motechproject.mds.lookup;
+
+import org.apache.commons.lang.reflect.MethodUtils;
+import org.motechproject.commons.api.Range;
+import org.motechproject.mds.domain.ComboboxHolder;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.dto.LookupFieldDto;
+import org.motechproject.mds.dto.LookupFieldType;
+import org.motechproject.mds.ex.field.FieldNotFoundException;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.LookupName;
+import org.motechproject.mds.util.MDSClassLoader;
+import org.motechproject.mds.util.TypeHelper;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The <code>LookupPlan</code> holds everything that is required for invoking a lookup, which does not depend
+ * on the lookup parameters - the types the parameters are converted to and the lookup methods of the data service.
+ * Plans are immutable and built once for a data service class and a lookup definition, so that executing a lookup
+ * only requires converting the parameters and invoking the method.
+ */
+final class LookupPlan {
+
+    private final LookupDto lookup;
+    private final Map<String, FieldDto> fieldsByName;
+    private final List<Argument> arguments;
+    private final Method lookupMethod;
+    private final Method lookupWithParamsMethod;
+    private final Method countMethod;
+
+    private LookupPlan(LookupDto lookup, Map<String, FieldDto> fieldsByName, List<Argument> arguments,
+                       Method lookupMethod, Method lookupWithParamsMethod, Method countMethod) {
+        this.lookup = lookup;
+        this.fieldsByName = fieldsByName;
+        this.arguments = Collections.unmodifiableList(arguments);
+        this.lookupMethod = lookupMethod;
+        this.lookupWithParamsMethod = lookupWithParamsMethod;
+        this.countMethod = countMethod;
+    }
+
+    /**
+     * Builds the plan for the given lookup.
+     *
+     * @param serviceClass the class of the data service executing the lookup
+     * @param entityClass the class of the entity
+     * @param classLoader the class loader used for loading the types of the parameters, can be null
+     * @param lookup the lookup definition
+     * @param fieldsByName the fields used by the lookup, mapped by their names in the lookup
+     * @return the plan for the lookup
+     * @throws FieldNotFoundException if a field used by the lookup is missing in the given mapping
+     */
+    static LookupPlan build(Class<?> serviceClass, Class<?> entityClass, ClassLoader classLoader, LookupDto lookup,
+                            Map<String, FieldDto> fieldsByName) {
+        List<Argument> arguments = new ArrayList<>();
+        List<Class> argTypes = new ArrayList<>();
+
+        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
+            FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
+            if (field == null) {
+                throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
+            }
+
+            arguments.add(new Argument(lookupField, getTypeClass(entityClass, field),
+                    getGenericTypeClass(entityClass, field), classLoader));
+            argTypes.add(getArgType(entityClass, classLoader, lookupField, field));
+        }
+
+        Class[] types = argTypes.toArray(new Class[argTypes.size()]);
+
+        argTypes.add(QueryParams.class);
+        Class[] typesWithParams = argTypes.toArray(new Class[argTypes.size()]);
+
+        String methodName = lookup.getMethodName();
+        String countMethodName = LookupName.lookupCountMethod(methodName);
+
+        return new LookupPlan(lookup, fieldsByName, arguments,
+                MethodUtils.getMatchingAccessibleMethod(serviceClass, methodName, types),
+                MethodUtils.getMatchingAccessibleMethod(serviceClass, methodName, typesWithParams),
+                MethodUtils.getMatchingAccessibleMethod(serviceClass, countMethodName, types));
+    }
+
+    /**
+     * Checks whether this plan was built for the given lookup definition. The lookups and field mappings from
+     * entity snapshots are the same instances for a given entity version, so this is usually an identity check.
+     *
+     * @param otherLookup the lookup definition
+     * @param otherFieldsByName the fields used by the lookup, mapped by their names in the lookup
+     * @return true if this plan can be used for the given lookup
+     */
+    boolean isBuiltFor(LookupDto otherLookup, Map<String, FieldDto> otherFieldsByName) {
+        boolean sameLookup = lookup == otherLookup || lookup.equals(otherLookup);
+        boolean sameFields = fieldsByName == otherFieldsByName || fieldsByName.equals(otherFieldsByName);
+
+        return sameLookup && sameFields;
+    }
+
+    /**
+     * Converts the given lookup parameters to the arguments of the lookup methods.
+     *
+     * @param lookupMap the lookup parameters, mapped by the names of the lookup fields
+     * @return the arguments of the lookup methods
+     */
+    List<Object> getArgs(Map<String, ?> lookupMap) {
+        List<Object> args = new ArrayList<>(arguments.size() + 1);
+
+        for (Argument argument : arguments) {
+            args.add(argument.convert(lookupMap));
+        }
+
+        return args;
+    }
+
+    /**
+     * @return the lookup method, or null if the data service has no matching method
+     */
+    Method getLookupMethod() {
+        return lookupMethod;
+    }
+
+    /**
+     * @return the lookup method taking query parameters, or null if the data service has no matching method
+     */
+    Method getLookupWithParamsMethod() {
+        return lookupWithParamsMethod;
+    }
+
+    /**
+     * @return the count method of the lookup, or null if the data service has no matching method
+     */
+    Method getCountMethod() {
+        return countMethod;
+    }
+
+    private static String getTypeClass(Class<?> entityClass, FieldDto field) {
+        String typeClass;
+
+        if (field.getType().isCombobox()) {
+            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
+            typeClass = holder.getTypeClassName();
+        } else {
+            typeClass = (field.getType().isTextArea()) ? "java.lang.String" : field.getType().getTypeClass();
+        }
+
+        return typeClass;
+    }
+
+    private static String getGenericTypeClass(Class<?> entityClass, FieldDto field) {
+        String genericType = null;
+
+        if (field.getType().isCombobox()) {
+            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
+
+            if (holder.isCollection()) {
+                genericType = holder.getUnderlyingType();
+            }
+        }
+
+        return genericType;
+    }
+
+    private static Class<?> getArgType(Class<?> entityClass, ClassLoader classLoader, LookupFieldDto lookupField,
+                                       FieldDto field) {
+        switch (lookupField.getType()) {
+            case RANGE:
+                return Range.class;
+            case SET:
+                return Set.class;
+            default:
+                String typeClassName = getTypeClassName(entityClass, lookupField, field);
+
+                try {
+                    ClassLoader safeClassLoader = null == classLoader
+                            ? MDSClassLoader.getInstance()
+                            : classLoader;
+
+                    return safeClassLoader.loadClass(typeClassName);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Type not found " + typeClassName, e);
+                }
+        }
+    }
+
+    private static String getTypeClassName(Class<?> entityClass, LookupFieldDto lookupField, FieldDto field) {
+        String typeClassName = (field.getType().isTextArea()) ? "java.lang.String" : field.getType().getTypeClass();
+
+        if (field.getType().isCombobox()) {
+            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
+
+            if (holder.isCollection() && lookupField.isUseGenericParam()) {
+                typeClassName = holder.getUnderlyingType();
+            } else {
+                typeClassName = holder.getTypeClassName();
+            }
+        }
+
+        return typeClassName;
+    }
+
+    /**
+     * Converts the value of a single lookup field to the argument of the lookup methods.
+     */
+    private static final class Argument {
+
+        private final String lookupFieldName;
+        private final LookupFieldType type;
+        private final String typeClass;
+        private final String valueTypeClass;
+        private final ClassLoader classLoader;
+
+        private Argument(LookupFieldDto lookupField, String typeClass, String genericTypeClass,
+                         ClassLoader classLoader) {
+            this.lookupFieldName = lookupField.getLookupFieldName();
+            this.type = lookupField.getType();
+            this.typeClass = typeClass;
+            this.valueTypeClass = lookupField.isUseGenericParam() ? genericTypeClass : typeClass;
+            this.classLoader = classLoader;
+        }
+
+        private Object convert(Map<String, ?> lookupMap) {
+            Object val = lookupMap.get(lookupFieldName);
+
+            if (type == LookupFieldType.RANGE) {
+                return TypeHelper.toRange(val, typeClass);
+            } else if (type == LookupFieldType.SET) {
+                return TypeHelper.toSet(val, typeClass, classLoader);
+            } else {
+                return TypeHelper.parse(val, valueTypeClass, classLoader);
+            }
+        }
+    }
+}
@@ -108,6 +108,9 @@ public class EntitiesBundleMonitor implements BundleListener, ServiceListener {
                 bundleStarted = type == BundleEvent.STARTED;
                 bundleInstalled = type == BundleEvent.INSTALLED;
                 bundleUninstalled = type == BundleEvent.UNINSTALLED;
+
+                // wake up the threads waiting for the status, instead of letting them wait until the next check
+                lock.notifyAll();
             }
         }
     }
@@ -139,6 +142,8 @@ public class EntitiesBundleMonitor implements BundleListener, ServiceListener {
                     } else {
                         LOGGER.info("The entities bundle context has been unregistered");
                     }
+
+                    lock.notifyAll();
                 }
             }
         }
@@ -19,7 +19,6 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.SynchronousBundleListener;
-import org.osgi.framework.wiring.FrameworkWiring;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,6 +53,7 @@ public class MdsBundleWatcher implements SynchronousBundleListener {
 
     private static final int MAX_WAIT_TO_RESOLVE = 10;
     private static final int WAIT_TIME = 500;
+    private static final long REFRESH_TIMEOUT = 60000;
 
     private MDSAnnotationProcessor processor;
     private JarGeneratorService jarGeneratorService;
@@ -288,11 +288,8 @@ public class MdsBundleWatcher implements SynchronousBundleListener {
         // will refresh bundles
         jarGeneratorService.regenerateMdsDataBundle(false);
 
-        FrameworkWiring framework = bundleContext.getBundle(0).adapt(FrameworkWiring.class);
-        framework.refreshBundles(bundles);
-
-        // give the framework 3 seconds to do a refresh
-        ThreadSuspender.sleep(3000);
+        // wait until the framework finishes the refresh
+        MdsBundleHelper.refreshBundles(bundleContext, bundles, REFRESH_TIMEOUT);
 
         // after refreshing all bundles we can start the entities bundle
         monitor.start();
@@ -321,6 +318,8 @@ public class MdsBundleWatcher implements SynchronousBundleListener {
             entityService.updateSecurityOptions(entity.getId(), processedEntity.getSecurityMode(),
                     processedEntity.getSecurityMembers(), processedEntity.getReadOnlySecurityMode(), processedEntity.getReadOnlySecurityMembers());
             entityService.updateMaxFetchDepth(entity.getId(), processedEntity.getMaxFetchDepth());
+            entityService.updateCacheable(entity.getId(), processedEntity.isCacheable());
+            entityService.updateIdStrategy(entity.getId(), processedEntity.getIdStrategy());
             entityService.addNonEditableFields(entity, result.getNonEditableProcessingResult());
         }
 
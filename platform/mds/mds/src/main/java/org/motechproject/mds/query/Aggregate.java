@@ -0,0 +1,96 @@
+package org.motechproject.mds.query;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.Serializable;
+
+/**
+ * The <code>Aggregate</code> class represents a single aggregate function of an {@link Aggregation}, computed
+ * for the given field. Only {@link AggregateFunction#COUNT} can be computed without a field, in which case
+ * it counts instances.
+ */
+public class Aggregate implements Serializable {
+
+    private static final long serialVersionUID = -2453802451937262710L;
+
+    private final AggregateFunction function;
+    private final String field;
+
+    /**
+     * Creates an aggregate.
+     *
+     * @param function the aggregate function
+     * @param field the field, can be null for {@link AggregateFunction#COUNT}
+     * @throws IllegalArgumentException if the function is null or it requires a field and the field is blank
+     */
+    public Aggregate(AggregateFunction function, String field) {
+        if (function == null) {
+            throw new IllegalArgumentException("The aggregate function cannot be null");
+        }
+        if (function != AggregateFunction.COUNT && StringUtils.isBlank(field)) {
+            throw new IllegalArgumentException("The " + function.getName() + " function requires a field");
+        }
+
+        this.function = function;
+        this.field = StringUtils.isBlank(field) ? null : field.trim();
+    }
+
+    public AggregateFunction getFunction() {
+        return function;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Returns the label of the aggregate, under which its values are returned - the name of the function
+     * followed by the field in parentheses, for example {@code sum(amount)}, or just {@code count} for
+     * the number of instances.
+     *
+     * @return the label of the aggregate
+     */
+    public String getLabel() {
+        return field == null ? function.getName() : String.format("%s(%s)", function.getName(), field);
+    }
+
+    /**
+     * @return the aggregate in the form used in the result clause of a JDO query
+     */
+    public String asResult() {
+        return String.format("%s(%s)", function.getName(), field == null ? "this" : field);
+    }
+
+    /**
+     * Parses an aggregate from its label.
+     *
+     * @param label the label of the aggregate, for example {@code max(date)} or {@code count}
+     * @return the aggregate
+     * @throws IllegalArgumentException if the label is not a valid aggregate
+     * @see #getLabel()
+     */
+    public static Aggregate parse(String label) {
+        String value = StringUtils.trimToEmpty(label);
+        String name = StringUtils.substringBefore(value, "(");
+        String field = null;
+
+        if (value.contains("(")) {
+            if (!value.endsWith(")")) {
+                throw new IllegalArgumentException("Invalid aggregate: " + label);
+            }
+            field = StringUtils.substringBetween(value, "(", ")");
+        }
+
+        AggregateFunction function = AggregateFunction.getEnumByName(name);
+        if (function == null) {
+            throw new IllegalArgumentException("Unknown aggregate function: " + name);
+        }
+
+        return new Aggregate(function, field);
+    }
+
+    @Override
+    public String toString() {
+        return getLabel();
+    }
+}
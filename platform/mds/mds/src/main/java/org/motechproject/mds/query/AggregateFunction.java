@@ -0,0 +1,62 @@
+package org.motechproject.mds.query;
+
+/**
+ * The <code>AggregateFunction</code> enum represents the aggregate functions, which can be used in an
+ * {@link Aggregation}.
+ */
+public enum AggregateFunction {
+    /**
+     * The number of instances, or the number of instances with a non null value of the field.
+     */
+    COUNT(false),
+    /**
+     * The sum of the values of a numeric field.
+     */
+    SUM(true),
+    /**
+     * The average of the values of a numeric field.
+     */
+    AVG(true),
+    /**
+     * The lowest value of the field.
+     */
+    MIN(false),
+    /**
+     * The highest value of the field.
+     */
+    MAX(false);
+
+    private final boolean numeric;
+
+    AggregateFunction(boolean numeric) {
+        this.numeric = numeric;
+    }
+
+    /**
+     * @return true if the function can only be computed for numeric fields
+     */
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    /**
+     * @return the name of the function in a query
+     */
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    public static AggregateFunction getEnumByName(String value) {
+        if (null == value) {
+            return null;
+        }
+
+        for (AggregateFunction function : values()) {
+            if (function.name().equalsIgnoreCase(value.trim())) {
+                return function;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,131 @@
+package org.motechproject.mds.query;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>Aggregation</code> class describes an aggregation query - the fields by which instances are grouped
+ * and the aggregate functions computed for every group. The aggregates are computed by the database, instances
+ * are not retrieved. Without group by fields the aggregates are computed for all matching instances and a single
+ * row is returned. Rows are ordered by the group by fields.
+ * <p>
+ * For example, {@code new Aggregation().groupBy("status").count().sum("amount")} returns the number of
+ * instances and the sum of their amounts for every status.
+ *
+ * @see org.motechproject.mds.service.MotechDataService#aggregate(Aggregation)
+ * @see AggregationRow
+ */
+public class Aggregation implements Serializable {
+
+    private static final long serialVersionUID = 4407929462434117003L;
+
+    private final List<String> groupBy = new ArrayList<>();
+    private final List<Aggregate> aggregates = new ArrayList<>();
+
+    /**
+     * Adds fields by which the instances will be grouped.
+     *
+     * @param fields names of the fields
+     * @return this aggregation
+     */
+    public Aggregation groupBy(String... fields) {
+        groupBy.addAll(Arrays.asList(fields));
+        return this;
+    }
+
+    /**
+     * Adds the number of instances.
+     *
+     * @return this aggregation
+     */
+    public Aggregation count() {
+        return add(AggregateFunction.COUNT, null);
+    }
+
+    /**
+     * Adds the number of instances with a non null value of the given field.
+     *
+     * @param field name of the field
+     * @return this aggregation
+     */
+    public Aggregation count(String field) {
+        return add(AggregateFunction.COUNT, field);
+    }
+
+    /**
+     * Adds the sum of the values of the given numeric field.
+     *
+     * @param field name of the field
+     * @return this aggregation
+     */
+    public Aggregation sum(String field) {
+        return add(AggregateFunction.SUM, field);
+    }
+
+    /**
+     * Adds the average of the values of the given numeric field.
+     *
+     * @param field name of the field
+     * @return this aggregation
+     */
+    public Aggregation avg(String field) {
+        return add(AggregateFunction.AVG, field);
+    }
+
+    /**
+     * Adds the lowest value of the given field.
+     *
+     * @param field name of the field
+     * @return this aggregation
+     */
+    public Aggregation min(String field) {
+        return add(AggregateFunction.MIN, field);
+    }
+
+    /**
+     * Adds the highest value of the given field.
+     *
+     * @param field name of the field
+     * @return this aggregation
+     */
+    public Aggregation max(String field) {
+        return add(AggregateFunction.MAX, field);
+    }
+
+    /**
+     * Adds the given aggregate function.
+     *
+     * @param function the aggregate function
+     * @param field name of the field, can be null for {@link AggregateFunction#COUNT}
+     * @return this aggregation
+     */
+    public Aggregation add(AggregateFunction function, String field) {
+        return add(new Aggregate(function, field));
+    }
+
+    /**
+     * Adds the given aggregate.
+     *
+     * @param aggregate the aggregate
+     * @return this aggregation
+     */
+    public Aggregation add(Aggregate aggregate) {
+        aggregates.add(aggregate);
+        return this;
+    }
+
+    public List<String> getGroupBy() {
+        return Collections.unmodifiableList(groupBy);
+    }
+
+    public List<Aggregate> getAggregates() {
+        return Collections.unmodifiableList(aggregates);
+    }
+
+    public boolean isGroupBySet() {
+        return !groupBy.isEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+package org.motechproject.mds.query;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The <code>AggregationRow</code> class represents a single row of an {@link Aggregation} result - the values
+ * of the group by fields, shared by all instances in the group, and the values of the aggregates computed for
+ * the group. Aggregates are identified by their labels, for example {@code count} or {@code sum(amount)}.
+ *
+ * @see Aggregate#getLabel()
+ */
+public class AggregationRow {
+
+    private final Map<String, Object> group;
+    private final Map<String, Object> values;
+
+    /**
+     * @param group the values of the group by fields, mapped by the field names
+     * @param values the values of the aggregates, mapped by the aggregate labels
+     */
+    public AggregationRow(Map<String, Object> group, Map<String, Object> values) {
+        this.group = Collections.unmodifiableMap(group);
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * @return the values of the group by fields, mapped by the field names
+     */
+    public Map<String, Object> getGroup() {
+        return group;
+    }
+
+    /**
+     * @return the values of the aggregates, mapped by the aggregate labels
+     */
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    /**
+     * @param field name of the group by field
+     * @return the value of the field in this group
+     */
+    public Object getGroupValue(String field) {
+        return group.get(field);
+    }
+
+    /**
+     * @param label label of the aggregate
+     * @return the value of the aggregate in this group
+     */
+    public Object getValue(String label) {
+        return values.get(label);
+    }
+
+    /**
+     * @param aggregate the aggregate
+     * @return the value of the aggregate in this group
+     */
+    public Object getValue(Aggregate aggregate) {
+        return values.get(aggregate.getLabel());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AggregationRow{group=%s, values=%s}", group, values);
+    }
+}
@@ -0,0 +1,155 @@
+package org.motechproject.mds.query;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.TypeHelper;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The <code>ContinuationToken</code> util class turns keyset {@link QueryParams} into opaque tokens, which
+ * can be handed to clients, and back. A token holds the order of the instances and the order field value
+ * and id of the last instance returned to the client. The value of the order field is kept as a string and
+ * converted back to the type of the field with {@link #parseValue(Object, String)}, once the type is known.
+ */
+public final class ContinuationToken {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SEPARATOR = "\n";
+    private static final int PARTS = 4;
+
+    /**
+     * Creates the token pointing to the page following the given instances, if there might be such page. The token
+     * is only created for keyset query parameters and only if the given page of instances is full.
+     *
+     * @param queryParams the keyset query parameters used for retrieving the instances
+     * @param instances the retrieved instances
+     * @return the token for the next page, or null if there is no next page
+     */
+    public static String next(QueryParams queryParams, Collection<?> instances) {
+        if (queryParams == null || !queryParams.isKeyset() || instances == null || instances.isEmpty()) {
+            return null;
+        }
+        if (queryParams.getPageSize() == null || instances.size() < queryParams.getPageSize()) {
+            return null;
+        }
+
+        Object last = (instances instanceof List) ? ((List) instances).get(instances.size() - 1) : lastOf(instances);
+
+        return create(queryParams.nextPage(last));
+    }
+
+    /**
+     * Creates the token from the given keyset query parameters.
+     *
+     * @param queryParams the keyset query parameters pointing to the last seen instance
+     * @return the token representing the parameters
+     * @throws IllegalArgumentException if the parameters do not point to the last seen instance
+     */
+    public static String create(QueryParams queryParams) {
+        if (queryParams == null || !queryParams.isLastSeenSet()) {
+            throw new IllegalArgumentException("Only keyset query parameters pointing to the last seen instance " +
+                    "can be turned into a continuation token");
+        }
+
+        Order order = queryParams.getOrder();
+        Object lastValue = queryParams.getLastValue();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(order.getField()).append(SEPARATOR)
+                .append(order.getDirection().name()).append(SEPARATOR)
+                .append(queryParams.getLastId());
+
+        // a missing value means null, this is why we don't add the separator
+        if (lastValue != null) {
+            sb.append(SEPARATOR).append(formatValue(lastValue));
+        }
+
+        return Base64.encodeBase64URLSafeString(sb.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * Reads the keyset query parameters from the given token.
+     *
+     * @param token the token, created by this class
+     * @param pageSize amount of entries to include, per page
+     * @return the keyset query parameters represented by the token
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static QueryParams parse(String token, Integer pageSize) {
+        if (StringUtils.isBlank(token)) {
+            throw new IllegalArgumentException("The continuation token cannot be empty");
+        }
+
+        String[] parts = new String(Base64.decodeBase64(token), UTF_8).split(SEPARATOR, PARTS);
+        if (parts.length < PARTS - 1 || StringUtils.isBlank(parts[0])) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token);
+        }
+
+        try {
+            Order order = new Order(parts[0], Order.Direction.valueOf(parts[1]));
+            Long lastId = Long.valueOf(parts[2]);
+            String lastValue = (parts.length == PARTS) ? parts[3] : null;
+
+            return QueryParams.keyset(pageSize, order, lastValue, lastId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token, e);
+        }
+    }
+
+    /**
+     * Converts the last seen value, either given directly or read from a token, to the type of the order field.
+     *
+     * @param value the value to convert
+     * @param type the class name of the order field
+     * @return the value converted to the type of the field
+     */
+    public static Object parseValue(Object value, String type) {
+        // dates are kept as milliseconds in the tokens, so that no precision is lost
+        Long millis = (value instanceof String) ? toLong((String) value) : null;
+
+        if (millis != null && DateTime.class.getName().equals(type)) {
+            return new DateTime(millis.longValue());
+        } else if (millis != null && Date.class.getName().equals(type)) {
+            return new Date(millis);
+        } else {
+            return TypeHelper.parse(value, type);
+        }
+    }
+
+    private static String formatValue(Object value) {
+        if (value instanceof DateTime) {
+            return String.valueOf(((DateTime) value).getMillis());
+        } else if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        } else if (value instanceof Enum) {
+            return ((Enum) value).name();
+        } else {
+            return TypeHelper.format(value);
+        }
+    }
+
+    private static Long toLong(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Object lastOf(Collection<?> instances) {
+        Object last = null;
+        for (Object instance : instances) {
+            last = instance;
+        }
+        return last;
+    }
+
+    private ContinuationToken() {
+    }
+}
@@ -1,7 +1,5 @@
 package org.motechproject.mds.query;
 
-import org.apache.commons.beanutils.BeanComparator;
-import org.apache.commons.collections.comparators.ReverseComparator;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.Order;
 
@@ -10,10 +8,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * A utility for performing in memory filtering on collections. This is not performance
  * efficient, since its done on the application level. Filtering at the database level is advised.
+ * The ordered values are read once per object, with readers resolved once per class and property. The ordered
+ * property can be nested, like <code>owner.name</code>. When paging
+ * is set, only the objects up to the end of the requested page are kept in a bounded heap and sorted, instead of
+ * sorting the whole collection.
  */
 public final class InMemoryQueryFilter {
 
@@ -34,18 +37,36 @@ public final class InMemoryQueryFilter {
         final Order.Direction direction = queryParams.isOrderSet() ? queryParams.getOrder().getDirection() :
                 Order.Direction.ASC;
 
-        List<T> result = order(objects, orderProp, direction);
+        List<Entry<T>> entries = entries(objects, orderProp);
 
-        // paginate if required
+        // in the keyset pagination we skip everything up to the last seen instance
+        if (queryParams.isLastSeenSet()) {
+            entries = skipUntilLastSeen(entries, queryParams, direction);
+        }
+
+        Comparator<Entry<T>> comparator = comparator(direction);
+
+        // paginate if required, only the objects up to the end of the page have to be ordered
         if (queryParams.isPagingSet()) {
-            result = paginate(result, queryParams.getPage(), queryParams.getPageSize());
+            long limit = (long) queryParams.getPage() * queryParams.getPageSize();
+
+            if (limit > 0 && limit < entries.size()) {
+                entries = top(entries, (int) limit, comparator);
+            } else {
+                Collections.sort(entries, comparator);
+            }
+
+            return paginate(objects(entries), queryParams.getPage(), queryParams.getPageSize());
         }
 
-        return result;
+        Collections.sort(entries, comparator);
+
+        return objects(entries);
     }
 
     /**
-     * Orders the provided collection using the provided ordering information.
+     * Orders the provided collection using the provided ordering information. Objects with equal values of the
+     * property are ordered by id.
      * @param collection the collection to order
      * @param orderProp the name of the property to order on
      * @param direction the ordering direction
@@ -53,17 +74,10 @@ public final class InMemoryQueryFilter {
      * @return a new list with ordered objects from the provided collection
      */
     public static <T> List<T> order(Collection<T> collection, String orderProp, Order.Direction direction) {
-        Comparator<T> comparator = new BeanComparator<>(orderProp);
-        // reverse it if order is descending
-        if (direction == Order.Direction.DESC) {
-            comparator = new ReverseComparator(comparator);
-        }
-
-        // convert to a list and sort it
-        List<T> result = new ArrayList<>(collection);
-        Collections.sort(result, comparator);
+        List<Entry<T>> entries = entries(collection, orderProp);
+        Collections.sort(entries, InMemoryQueryFilter.<T>comparator(direction));
 
-        return result;
+        return objects(entries);
     }
 
     /**
@@ -87,6 +101,132 @@ public final class InMemoryQueryFilter {
         }
     }
 
+    private static <T> List<Entry<T>> entries(Collection<T> collection, String orderProp) {
+        List<Entry<T>> entries = new ArrayList<>(collection.size());
+        boolean byId = Constants.Util.ID_FIELD_NAME.equals(orderProp);
+
+        Class<?> type = null;
+        PropertyReader valueReader = null;
+        PropertyReader idReader = null;
+
+        for (T object : collection) {
+            // collections hold instances of a single class, so the readers are resolved once
+            if (object.getClass() != type) {
+                type = object.getClass();
+                valueReader = PropertyReader.getReader(type, orderProp);
+                idReader = byId ? valueReader : PropertyReader.getReader(type, Constants.Util.ID_FIELD_NAME);
+            }
+
+            Object value = valueReader.read(object);
+            Object id = byId ? value : idReader.read(object);
+
+            entries.add(new Entry<>(object, value, id));
+        }
+
+        return entries;
+    }
+
+    private static <T> List<Entry<T>> top(List<Entry<T>> entries, int limit, Comparator<Entry<T>> comparator) {
+        // the head of the heap is the last of the objects kept so far
+        PriorityQueue<Entry<T>> heap = new PriorityQueue<>(limit + 1, Collections.reverseOrder(comparator));
+
+        for (Entry<T> entry : entries) {
+            if (heap.size() < limit) {
+                heap.add(entry);
+            } else if (comparator.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        List<Entry<T>> result = new ArrayList<>(heap);
+        Collections.sort(result, comparator);
+
+        return result;
+    }
+
+    private static <T> List<Entry<T>> skipUntilLastSeen(List<Entry<T>> entries, QueryParams queryParams,
+                                                        Order.Direction direction) {
+        List<Entry<T>> result = new ArrayList<>(entries.size());
+        boolean descending = direction == Order.Direction.DESC;
+        Object parsedLastValue = null;
+
+        for (Entry<T> entry : entries) {
+            Object lastValue = queryParams.getLastValue();
+
+            // the last value is kept as a string in the token, it is parsed once to the type of the values
+            if (entry.value != null && lastValue != null) {
+                if (parsedLastValue == null) {
+                    parsedLastValue = ContinuationToken.parseValue(lastValue, entry.value.getClass().getName());
+                }
+                lastValue = parsedLastValue;
+            }
+
+            int comparison = compareValues(entry.value, lastValue);
+            if (comparison == 0) {
+                comparison = compareValues(entry.id, queryParams.getLastId());
+            }
+
+            if (descending ? comparison < 0 : comparison > 0) {
+                result.add(entry);
+            }
+        }
+
+        return result;
+    }
+
+    private static <T> Comparator<Entry<T>> comparator(Order.Direction direction) {
+        // ties are ordered by id, the same way as in database queries, so that the pages are stable
+        Comparator<Entry<T>> comparator = new Comparator<Entry<T>>() {
+            @Override
+            public int compare(Entry<T> first, Entry<T> second) {
+                int result = compareValues(first.value, second.value);
+                return result == 0 ? compareValues(first.id, second.id) : result;
+            }
+        };
+
+        // reverse it if order is descending
+        return direction == Order.Direction.DESC ? Collections.reverseOrder(comparator) : comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object first, Object second) {
+        // null values are ordered last
+        if (first == second) {
+            return 0;
+        } else if (first == null) {
+            return 1;
+        } else if (second == null) {
+            return -1;
+        } else {
+            return ((Comparable<Object>) first).compareTo(second);
+        }
+    }
+
+    private static <T> List<T> objects(List<Entry<T>> entries) {
+        List<T> objects = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries) {
+            objects.add(entry.object);
+        }
+        return objects;
+    }
+
+    /**
+     * An object together with the values it is ordered by.
+     */
+    private static final class Entry<T> {
+
+        private final T object;
+        private final Object value;
+        private final Object id;
+
+        private Entry(T object, Object value, Object id) {
+            this.object = object;
+            this.value = value;
+            this.id = id;
+        }
+    }
+
     private InMemoryQueryFilter() {
     }
 }
@@ -0,0 +1,126 @@
+package org.motechproject.mds.query;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The <code>KeysetIterator</code> iterates over instances retrieved in chunks, using the keyset pagination.
+ * Only a single chunk of instances is kept in memory at a time, which allows processing of tables of any size.
+ * Implementing classes provide the retrieval of a chunk and can release the instances of a chunk, once all of them
+ * were processed, in {@link #chunkProcessed()}.
+ * <p>
+ * The given query parameters are respected - the instances are returned in the given order and at most page size
+ * instances are returned. Query parameters pointing to a page other than the first one cannot be expressed
+ * with the keyset pagination, so the requested page is then retrieved at once.
+ *
+ * @param <T> type of the instances
+ */
+public abstract class KeysetIterator<T> implements Iterator<T> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final int chunkSize;
+    private final Integer limit;
+
+    private QueryParams nextChunk;
+    private Iterator<T> chunk = Collections.<T>emptyList().iterator();
+    private long retrieved;
+
+    /**
+     * @param queryParams the query parameters describing the instances to iterate over, can be null
+     */
+    public KeysetIterator(QueryParams queryParams) {
+        this(queryParams, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param queryParams the query parameters describing the instances to iterate over, can be null
+     * @param chunkSize the amount of instances retrieved at once
+     */
+    public KeysetIterator(QueryParams queryParams, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be greater than zero");
+        }
+        this.chunkSize = chunkSize;
+
+        if (queryParams == null) {
+            this.limit = null;
+            this.nextChunk = QueryParams.keyset(chunkSize, null);
+        } else if (queryParams.isKeyset() || !queryParams.isPagingSet() || queryParams.getPage() <= 1) {
+            this.limit = queryParams.getPageSize();
+            this.nextChunk = QueryParams.keyset(chunkSize(0), queryParams.getOrder(), queryParams.getLastValue(),
+                    queryParams.getLastId());
+        } else {
+            // the offset cannot be expressed with keyset pagination, the page is retrieved as it is
+            this.limit = queryParams.getPageSize();
+            this.nextChunk = queryParams;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!chunk.hasNext()) {
+            if (nextChunk == null) {
+                return false;
+            }
+            readNextChunk();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return chunk.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removing instances is not supported");
+    }
+
+    /**
+     * Retrieves a single chunk of instances.
+     *
+     * @param queryParams the query parameters describing the chunk
+     * @return the instances in the chunk
+     */
+    protected abstract List<T> retrieveChunk(QueryParams queryParams);
+
+    /**
+     * Called after all instances of a chunk were processed and before the next chunk is retrieved. Implementations
+     * can release the processed instances here. Does nothing by default.
+     */
+    protected void chunkProcessed() {
+    }
+
+    private void readNextChunk() {
+        if (retrieved > 0) {
+            chunkProcessed();
+        }
+
+        QueryParams current = nextChunk;
+        List<T> instances = retrieveChunk(current);
+        retrieved += instances.size();
+
+        boolean lastChunk = !current.isKeyset() || instances.size() < current.getPageSize()
+                || (limit != null && retrieved >= limit);
+
+        if (lastChunk) {
+            nextChunk = null;
+        } else {
+            QueryParams following = current.nextPage(instances.get(instances.size() - 1));
+            nextChunk = QueryParams.keyset(chunkSize(retrieved), following.getOrder(), following.getLastValue(),
+                    following.getLastId());
+        }
+        chunk = instances.iterator();
+    }
+
+    private int chunkSize(long alreadyRetrieved) {
+        return (limit == null) ? chunkSize : (int) Math.min(chunkSize, limit - alreadyRetrieved);
+    }
+}
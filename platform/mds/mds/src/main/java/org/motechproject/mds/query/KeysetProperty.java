@@ -0,0 +1,104 @@
+package org.motechproject.mds.query;
+
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The <code>KeysetProperty</code> class represents the condition used by the keyset pagination. It will
+ * match instances that follow the last seen instance in the given order - instances with a greater (or lower,
+ * for the descending order) value of the order field, or with the same value and a greater (lower) id.
+ * Databases do not agree on the position of nulls in the order, so the condition has to know whether the
+ * database sorts nulls lower than any other value (MySQL) or higher (PostgreSQL). Instances with null values
+ * are matched after the last seen value if nulls come last in the order, and instances with non-null values
+ * are matched after the last seen null if nulls come first.
+ *
+ * @param <T> type of the order field
+ */
+public class KeysetProperty<T> extends Property<T> {
+
+    private static final String ID = Constants.Util.ID_FIELD_NAME;
+
+    private final Long lastId;
+    private final Order.Direction direction;
+    private final boolean nullsSortedLow;
+
+    /**
+     * @param name the name of the order field
+     * @param lastValue the value of the order field of the last seen instance, can be null
+     * @param type the type of the order field
+     * @param lastId the id of the last seen instance
+     * @param direction the direction of the order
+     * @param nullsSortedLow true if the database sorts nulls lower than any other value, false if higher
+     */
+    public KeysetProperty(String name, T lastValue, String type, Long lastId, Order.Direction direction,
+                          boolean nullsSortedLow) {
+        super(name, lastValue, type);
+        this.lastId = lastId;
+        this.direction = direction;
+        this.nullsSortedLow = nullsSortedLow;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public Order.Direction getDirection() {
+        return direction;
+    }
+
+    public boolean isNullsSortedLow() {
+        return nullsSortedLow;
+    }
+
+    @Override
+    protected CharSequence generateFilter(int idx) {
+        String operator = (direction == Order.Direction.DESC) ? "<" : ">";
+
+        if (isIdOrder()) {
+            // id{op}param{idx}id
+            return String.format("%s%sparam%did", ID, operator, idx);
+        } else if (getValue() == null) {
+            // ({name} == null && id{op}param{idx}id), followed by the non-null values if nulls come first
+            String filter = String.format("(%s == null && %s%sparam%did)", getName(), ID, operator, idx);
+            return isNullsFirst() ? String.format("(%s || %s != null)", filter, getName()) : filter;
+        } else {
+            // ({name}{op}param{idx} || ({name} == param{idx} && id{op}param{idx}id)), followed by the nulls
+            // if nulls come last
+            return String.format("(%s%sparam%d || (%s == param%d && %s%sparam%did)%s)",
+                    getName(), operator, idx, getName(), idx, ID, operator, idx,
+                    isNullsFirst() ? "" : String.format(" || %s == null", getName()));
+        }
+    }
+
+    @Override
+    protected CharSequence generateDeclareParameter(int idx) {
+        String idParam = String.format("%s param%did", Long.class.getName(), idx);
+
+        return (isIdOrder() || getValue() == null) ? idParam : String.format("%s param%d, %s", getType(), idx, idParam);
+    }
+
+    @Override
+    public Collection unwrap() {
+        List list = new ArrayList();
+
+        if (!isIdOrder() && getValue() != null) {
+            list.add(getValue());
+        }
+        list.add(lastId);
+
+        return list;
+    }
+
+    private boolean isIdOrder() {
+        return ID.equals(getName());
+    }
+
+    private boolean isNullsFirst() {
+        // nulls sorted low come first in the ascending order and last in the descending order
+        return nullsSortedLow == (direction != Order.Direction.DESC);
+    }
+}
@@ -0,0 +1,138 @@
+package org.motechproject.mds.query;
+
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The <code>PropertyReader</code> reads a single property of instances of a single class. Readers are resolved once
+ * per class and property - the generated {@link PropertyAccessor} is used for entity classes, the getter of the
+ * property is used for other classes. Nested properties, like <code>owner.name</code>, are read property by property,
+ * a null value on the path is read as null. Readers are kept with the class itself, so they are released together
+ * with the entities bundle that defined the class.
+ */
+abstract class PropertyReader {
+
+    private static final ClassValue<ConcurrentMap<String, PropertyReader>> READERS =
+            new ClassValue<ConcurrentMap<String, PropertyReader>>() {
+                @Override
+                protected ConcurrentMap<String, PropertyReader> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    /**
+     * Returns the reader of the property of the given class. The reader is resolved on the first call.
+     *
+     * @param type the class of the instances
+     * @param property the name of the property
+     * @return the reader of the property, never null
+     * @throws IllegalArgumentException if the class has no readable property with the given name
+     */
+    static PropertyReader getReader(Class<?> type, String property) {
+        ConcurrentMap<String, PropertyReader> readers = READERS.get(type);
+
+        PropertyReader reader = readers.get(property);
+        if (null == reader) {
+            PropertyReader newReader = createReader(type, property);
+            reader = readers.putIfAbsent(property, newReader);
+            reader = null == reader ? newReader : reader;
+        }
+
+        return reader;
+    }
+
+    /**
+     * @param bean the instance to read from
+     * @return the value of the property, primitive values are wrapped
+     */
+    abstract Object read(Object bean);
+
+    private static PropertyReader createReader(Class<?> type, String property) {
+        int separator = property.indexOf('.');
+        if (separator > 0) {
+            return new NestedReader(getReader(type, property.substring(0, separator)),
+                    property.substring(separator + 1));
+        }
+
+        PropertyAccessor accessor = PropertyAccessors.getAccessor(type);
+        if (accessor.isReadable(property)) {
+            return new AccessorReader(accessor, property);
+        }
+
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                if (property.equals(descriptor.getName()) && null != descriptor.getReadMethod()) {
+                    return new GetterReader(descriptor.getReadMethod());
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Unable to introspect " + type.getName(), e);
+        }
+
+        throw new IllegalArgumentException("Property " + property + " of " + type.getName() + " is not readable");
+    }
+
+    private static final class AccessorReader extends PropertyReader {
+
+        private final PropertyAccessor accessor;
+        private final String property;
+
+        private AccessorReader(PropertyAccessor accessor, String property) {
+            this.accessor = accessor;
+            this.property = property;
+        }
+
+        @Override
+        Object read(Object bean) {
+            return accessor.get(bean, property);
+        }
+    }
+
+    private static final class NestedReader extends PropertyReader {
+
+        private final PropertyReader reader;
+        private final String nestedProperty;
+
+        private NestedReader(PropertyReader reader, String nestedProperty) {
+            this.reader = reader;
+            this.nestedProperty = nestedProperty;
+        }
+
+        @Override
+        Object read(Object bean) {
+            Object value = reader.read(bean);
+            // the nested reader is resolved for the actual class of the value, which can be a subclass
+            return null == value ? null : getReader(value.getClass(), nestedProperty).read(value);
+        }
+    }
+
+    private static final class GetterReader extends PropertyReader {
+
+        private final Method getter;
+
+        private GetterReader(Method getter) {
+            this.getter = getter;
+            // getters of public classes declared in non-public classes are otherwise not accessible
+            this.getter.setAccessible(true);
+        }
+
+        @Override
+        Object read(Object bean) {
+            try {
+                return getter.invoke(bean);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Unable to call " + getter, e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Unable to call " + getter, e.getCause());
+            }
+        }
+    }
+}
@@ -3,12 +3,20 @@ package org.motechproject.mds.query;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.PropertyUtil;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * Utility class containing parameters which control order and size of query results.
  * Used mainly for paging/ordering queries from the UI.
+ * <p>
+ * Besides the regular paging, where the page number is turned into an offset, the parameters can
+ * use keyset pagination, created with {@link #keyset(Integer, Order)}. In that mode the instances are
+ * ordered by the order field and then by id, and the next page starts right after the last seen
+ * instance, no matter how deep the page is. The parameters of the next page can be passed between
+ * requests as a token, using {@link ContinuationToken}.
  */
 public class QueryParams implements Serializable {
     private static final long serialVersionUID = 8635166802886633897L;
@@ -16,6 +24,9 @@ public class QueryParams implements Serializable {
     private final Integer page;
     private final Integer pageSize;
     private final Order order;
+    private final boolean keyset;
+    private final Object lastValue;
+    private final Long lastId;
 
     /**
      * Constant query parameter, that orders records ascending by ID.
@@ -49,9 +60,16 @@ public class QueryParams implements Serializable {
      * @param order specifies order of the records
      */
     public QueryParams(Integer page, Integer pageSize, Order order) {
+        this(page, pageSize, order, false, null, null);
+    }
+
+    private QueryParams(Integer page, Integer pageSize, Order order, boolean keyset, Object lastValue, Long lastId) {
         this.page = page;
         this.pageSize = pageSize;
         this.order = order;
+        this.keyset = keyset;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
     }
 
     public Integer getPage() {
@@ -74,6 +92,97 @@ public class QueryParams implements Serializable {
         return page != null && pageSize != null;
     }
 
+    /**
+     * @return true if these parameters use keyset pagination, otherwise false
+     */
+    public boolean isKeyset() {
+        return keyset;
+    }
+
+    /**
+     * @return true if these parameters use keyset pagination and point to the last seen instance, false
+     * for regular paging and for the first page in the keyset pagination
+     */
+    public boolean isLastSeenSet() {
+        return keyset && lastId != null;
+    }
+
+    /**
+     * @return the value of the order field of the last seen instance, used in the keyset pagination
+     */
+    public Object getLastValue() {
+        return lastValue;
+    }
+
+    /**
+     * @return the id of the last seen instance, used in the keyset pagination
+     */
+    public Long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * Creates query parameters for the page following the given instance, in the keyset pagination.
+     * The order field and id of the instance are read from it. The instance can also be a map of field
+     * names and values, like the rows retrieved with a projection.
+     *
+     * @param lastInstance the last instance of the current page
+     * @return query parameters for the next page
+     * @throws IllegalStateException if these parameters do not use keyset pagination
+     */
+    public QueryParams nextPage(Object lastInstance) {
+        Object value = getValue(lastInstance, order.getField());
+        Number id = (Number) getValue(lastInstance, Constants.Util.ID_FIELD_NAME);
+
+        return nextPage(value, id == null ? null : id.longValue());
+    }
+
+    /**
+     * Creates query parameters for the page following the instance with the given order field value and id,
+     * in the keyset pagination.
+     *
+     * @param value the value of the order field of the last instance of the current page
+     * @param id the id of the last instance of the current page
+     * @return query parameters for the next page
+     * @throws IllegalStateException if these parameters do not use keyset pagination
+     */
+    public QueryParams nextPage(Object value, Long id) {
+        if (!keyset) {
+            throw new IllegalStateException("Only keyset query parameters can point to the next page");
+        }
+        return new QueryParams(1, pageSize, order, true, value, id);
+    }
+
+    /**
+     * Creates query parameters for the first page of the keyset pagination. The instances will be ordered by the
+     * given order and then by id, in the same direction. If no order is given, the instances are ordered by id,
+     * ascending. For the best results, the order field should be indexed and should not contain null values.
+     *
+     * @param pageSize amount of entries to include, per page
+     * @param order specifies order of the records, can be null
+     * @return query parameters for the first page
+     */
+    public static QueryParams keyset(Integer pageSize, Order order) {
+        return keyset(pageSize, order, null, null);
+    }
+
+    /**
+     * Creates query parameters for the keyset pagination, which will return instances that follow the last
+     * seen instance with the given order field value and id.
+     *
+     * @param pageSize amount of entries to include, per page
+     * @param order specifies order of the records, can be null
+     * @param lastValue the value of the order field of the last seen instance
+     * @param lastId the id of the last seen instance, null for the first page
+     * @return query parameters for the page following the last seen instance
+     */
+    public static QueryParams keyset(Integer pageSize, Order order, Object lastValue, Long lastId) {
+        Order keysetOrder = (order != null && StringUtils.isNotBlank(order.getField())) ? order :
+                new Order(Constants.Util.ID_FIELD_NAME, order == null ? Order.Direction.ASC : order.getDirection());
+
+        return new QueryParams(1, pageSize, keysetOrder, true, lastValue, lastId);
+    }
+
     /**
      * Creates query parameter that sorts records ascending, by the given field.
      *
@@ -93,4 +202,8 @@ public class QueryParams implements Serializable {
     public static QueryParams descOrder(String field) {
         return new QueryParams(new Order(field, Order.Direction.DESC));
     }
+
+    private static Object getValue(Object instance, String field) {
+        return instance instanceof Map ? ((Map) instance).get(field) : PropertyUtil.safeGetProperty(instance, field);
+    }
 }
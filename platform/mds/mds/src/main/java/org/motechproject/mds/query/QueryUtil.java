@@ -1,13 +1,18 @@
 package org.motechproject.mds.query;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
 
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -43,19 +48,85 @@ public final class QueryUtil {
                 query.setRange(fromIncl, toExcl);
             }
             if (queryParams.isOrderSet()) {
-                query.setOrdering(queryParams.getOrder().toString());
+                query.setOrdering(ordering(queryParams));
             }
         }
     }
 
+    /**
+     * Creates the keyset pagination condition for the given query parameters. The condition matches instances
+     * following the last seen instance, pointed by the parameters.
+     *
+     * @param queryParams the keyset query parameters
+     * @param fieldTypeMap the map of field names and their types, used for converting the last seen value
+     * @return the condition, or null if the parameters do not point to the last seen instance
+     * @throws IllegalArgumentException if the parameters are ordered by an unknown field
+     */
+    /**
+     * Creates the keyset pagination condition for the given query parameters.
+     *
+     * @param queryParams the query parameters, can be null
+     * @param fieldTypeMap the types of the entity fields, mapped by the field names
+     * @param nullsSortedLow true if the database sorts nulls lower than any other value, false if higher
+     * @return the keyset condition, or null if the parameters do not continue after a last seen instance
+     */
+    public static Property keysetProperty(QueryParams queryParams, Map<String, String> fieldTypeMap,
+                                          boolean nullsSortedLow) {
+        if (queryParams == null || !queryParams.isLastSeenSet()) {
+            return null;
+        }
+
+        Order order = queryParams.getOrder();
+        String field = order.getField();
+        String type = Constants.Util.ID_FIELD_NAME.equals(field) ? Long.class.getName() :
+                (fieldTypeMap == null ? null : fieldTypeMap.get(field));
+
+        if (type == null) {
+            throw new IllegalArgumentException("Unable to use keyset pagination for unknown field: " + field);
+        }
+
+        Object lastValue = ContinuationToken.parseValue(queryParams.getLastValue(), type);
+
+        return new KeysetProperty<>(field, lastValue, type, queryParams.getLastId(), order.getDirection(),
+                nullsSortedLow);
+    }
+
     public static void useFilters(Query query, Filters filters) {
+        useFilters(query, filters, new ArrayList<Property>());
+    }
+
+    public static void useFilters(Query query, Filters filters, Property additionalProperty) {
+        List<Property> additionalProperties = new ArrayList<>();
+        if (additionalProperty != null) {
+            additionalProperties.add(additionalProperty);
+        }
+
+        useFilters(query, filters, additionalProperties);
+    }
+
+    public static void useFilters(Query query, Filters filters, List<Property> additionalProperties) {
         if (query == null) {
             throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
         }
 
         if (filters != null && filters.requiresFiltering()) {
-            query.setFilter(filters.filterForQuery());
-            query.declareParameters(filters.paramsDeclarationForQuery());
+            StringBuilder filter = new StringBuilder(filters.filterForQuery());
+            StringBuilder declareParameters = new StringBuilder(filters.paramsDeclarationForQuery());
+
+            if (!additionalProperties.isEmpty()) {
+                filter.insert(0, '(').append(')');
+            }
+
+            // filters use arg{idx} parameters, so there is no conflict with the param{idx} of the properties
+            for (int i = 0; i < additionalProperties.size(); ++i) {
+                Property property = additionalProperties.get(i);
+
+                filter.append(" && ").append(property.asFilter(i));
+                declareParameters.append(", ").append(property.asDeclareParameter(i));
+            }
+
+            query.setFilter(filter.toString());
+            query.declareParameters(declareParameters.toString());
         }
     }
 
@@ -65,6 +136,11 @@ public final class QueryUtil {
 
     public static void useFilter(Query query, String[] properties, Object[] values, Map<String, String> fieldTypeMap,
                                  InstanceSecurityRestriction restriction) {
+        useFilter(query, properties, values, fieldTypeMap, restriction, null);
+    }
+
+    public static void useFilter(Query query, String[] properties, Object[] values, Map<String, String> fieldTypeMap,
+                                 InstanceSecurityRestriction restriction, Property additionalProperty) {
         if (properties.length != values.length) {
             throw new IllegalArgumentException("properties length must equal to values length");
         }
@@ -83,6 +159,10 @@ public final class QueryUtil {
             }
         }
 
+        if (additionalProperty != null) {
+            list.add(additionalProperty);
+        }
+
         useFilter(query, list, restriction);
     }
 
@@ -147,6 +227,179 @@ public final class QueryUtil {
         query.setResult("count(this)");
     }
 
+    /**
+     * Sets the result of the query to the aggregates of the given aggregation, grouped and ordered by its
+     * group by fields.
+     *
+     * @param query the query
+     * @param aggregation the aggregation
+     * @param fieldTypeMap the map of field names and their types, used for validating the fields of the aggregation
+     * @throws IllegalArgumentException if the aggregation has no aggregates, uses an unknown field or computes
+     * the sum or the average of a field that is not numeric
+     */
+    public static void setAggregationResult(Query query, Aggregation aggregation, Map<String, String> fieldTypeMap) {
+        if (query == null) {
+            throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
+        }
+        if (aggregation == null || aggregation.getAggregates().isEmpty()) {
+            throw new IllegalArgumentException("The aggregation requires at least one aggregate function");
+        }
+
+        List<String> result = new ArrayList<>();
+
+        for (String field : aggregation.getGroupBy()) {
+            getResultFieldType(field, fieldTypeMap);
+            result.add(field);
+        }
+
+        for (Aggregate aggregate : aggregation.getAggregates()) {
+            if (aggregate.getField() != null) {
+                String type = getResultFieldType(aggregate.getField(), fieldTypeMap);
+
+                if (aggregate.getFunction().isNumeric() && !isNumeric(type)) {
+                    throw new IllegalArgumentException(String.format("Unable to compute %s of a field of type %s: %s",
+                            aggregate.getFunction().getName(), type, aggregate.getField()));
+                }
+            }
+            result.add(aggregate.asResult());
+        }
+
+        query.setResult(StringUtils.join(result, ", "));
+
+        if (aggregation.isGroupBySet()) {
+            List<String> ordering = new ArrayList<>();
+            for (String field : aggregation.getGroupBy()) {
+                ordering.add(new Order(field, Order.Direction.ASC).toString());
+            }
+
+            query.setGrouping(StringUtils.join(aggregation.getGroupBy(), ", "));
+            query.setOrdering(StringUtils.join(ordering, ", "));
+        }
+    }
+
+    /**
+     * Converts the result of a query prepared with {@link #setAggregationResult(Query, Aggregation, Map)} to rows.
+     *
+     * @param aggregation the aggregation
+     * @param result the result of the query
+     * @return the rows of the aggregation, one for every group
+     */
+    public static List<AggregationRow> getAggregationRows(Aggregation aggregation, Object result) {
+        List<AggregationRow> rows = new ArrayList<>();
+
+        if (result == null) {
+            return rows;
+        }
+
+        // without grouping the query returns a single row, which is not wrapped in a collection
+        Collection<?> results = result instanceof Collection ? (Collection<?>) result : Collections.singletonList(result);
+
+        for (Object row : results) {
+            Object[] columns = row instanceof Object[] ? (Object[]) row : new Object[]{row};
+            int idx = 0;
+
+            Map<String, Object> group = new LinkedHashMap<>();
+            for (String field : aggregation.getGroupBy()) {
+                group.put(field, columns[idx++]);
+            }
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (Aggregate aggregate : aggregation.getAggregates()) {
+                values.put(aggregate.getLabel(), columns[idx++]);
+            }
+
+            rows.add(new AggregationRow(group, values));
+        }
+
+        return rows;
+    }
+
+    /**
+     * Sets the result of the query to the given fields, so that only their values are retrieved instead of
+     * the whole instances.
+     *
+     * @param query the query
+     * @param fields the fields to retrieve
+     * @param fieldTypeMap the map of field names and their types, used for validating the fields
+     * @throws IllegalArgumentException if no fields are given or an unknown field is used
+     */
+    public static void setProjectionResult(Query query, List<String> fields, Map<String, String> fieldTypeMap) {
+        if (query == null) {
+            throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
+        }
+        if (fields == null || fields.isEmpty()) {
+            throw new IllegalArgumentException("The projection requires at least one field");
+        }
+
+        for (String field : fields) {
+            getResultFieldType(field, fieldTypeMap);
+        }
+
+        query.setResult(StringUtils.join(fields, ", "));
+    }
+
+    /**
+     * Converts the result of a query prepared with {@link #setProjectionResult(Query, List, Map)} to rows.
+     *
+     * @param fields the fields of the projection
+     * @param result the result of the query
+     * @return the rows, maps of the field names and their values, in the order of the fields
+     */
+    public static List<Map<String, Object>> getProjectionRows(List<String> fields, Object result) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+
+        if (result == null) {
+            return rows;
+        }
+
+        Collection<?> results = result instanceof Collection ? (Collection<?>) result : Collections.singletonList(result);
+
+        for (Object row : results) {
+            // a single field is not wrapped in an array, its value can be an array itself
+            Object[] columns = fields.size() == 1 ? new Object[]{row} : (Object[]) row;
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i < fields.size(); ++i) {
+                values.put(fields.get(i), columns[i]);
+            }
+
+            rows.add(values);
+        }
+
+        return rows;
+    }
+
+    private static String ordering(QueryParams queryParams) {
+        Order order = queryParams.getOrder();
+
+        // keyset pagination needs a unique order, so we use the id for ties
+        if (queryParams.isKeyset() && !Constants.Util.ID_FIELD_NAME.equals(order.getField())) {
+            return String.format("%s, %s", order, new Order(Constants.Util.ID_FIELD_NAME, order.getDirection()));
+        }
+
+        return order.toString();
+    }
+
+    private static String getResultFieldType(String field, Map<String, String> fieldTypeMap) {
+        String type = Constants.Util.ID_FIELD_NAME.equals(field) ? Long.class.getName() :
+                (fieldTypeMap == null ? null : fieldTypeMap.get(field));
+
+        // the fields are a part of the query, so only known fields can be used
+        if (type == null) {
+            throw new IllegalArgumentException("Unable to use unknown field in the query result: " + field);
+        }
+
+        return type;
+    }
+
+    private static boolean isNumeric(String type) {
+        try {
+            return Number.class.isAssignableFrom(ClassUtils.getClass(type));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
     private static String getFieldType(String property, Map<String, String> fieldTypeMap, Object value) {
         String type = null;
 
@@ -29,6 +29,8 @@ public class AllEntities extends MotechDataRepository<Entity> {
         entity.setNamespace(dto.getNamespace());
         entity.setTableName(dto.getTableName());
         entity.setMaxFetchDepth(dto.getMaxFetchDepth());
+        entity.setCacheable(dto.isCacheable());
+        entity.setIdStrategy(dto.getIdStrategy());
         entity.setSecurityMode(dto.getSecurityMode());
         entity.setSecurityMembers(dto.getSecurityMembers());
         entity.setReadOnlySecurityMode(dto.getReadOnlySecurityMode());
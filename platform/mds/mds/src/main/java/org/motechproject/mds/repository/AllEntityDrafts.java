@@ -76,6 +76,7 @@ public class AllEntityDrafts extends MotechDataRepository<EntityDraft> {
         draft.setSecurityMembers(new HashSet<>(entity.getSecurityMembers()));
         draft.setReadOnlySecurityMode(entity.getReadOnlySecurityMode());
         draft.setReadOnlySecurityMembers(new HashSet<>(entity.getReadOnlySecurityMembers()));
+        draft.setCacheable(entity.isCacheable());
 
         draft.getFields().clear();
         for (Field field : entity.getFields()) {
@@ -1,10 +1,14 @@
 package org.motechproject.mds.repository;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.AggregationRow;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.query.RestrictionProperty;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
 import org.motechproject.mds.util.PropertyUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +23,12 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import static org.motechproject.mds.util.Constants.Config.MYSQL_DRIVER_CLASSNAME;
+import static org.motechproject.mds.util.Constants.Util.CREATOR_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.OWNER_FIELD_NAME;
+import static org.motechproject.mds.util.SecurityUtil.getUsername;
+
 /**
  * This is a basic repository class with standard CRUD operations. It should be used by other
  * repositories inside this package.
@@ -78,6 +88,10 @@ public abstract class MotechDataRepository<T> {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public Collection<T> createAll(Collection<T> objects) {
+        return getPersistenceManager().makePersistentAll(objects);
+    }
+
     public List<T> retrieveAll() {
         return retrieveAll(new String[0], new Object[0], null);
     }
@@ -103,15 +117,23 @@ public abstract class MotechDataRepository<T> {
 
     public List<T> retrieveAll(String[] properties, Object[] values, QueryParams queryParams,
                                InstanceSecurityRestriction restriction) {
-        Query query = createQuery(properties, values, restriction);
+        Property keysetProperty = QueryUtil.keysetProperty(queryParams, fieldTypeMap, isNullsSortedLow());
+
+        Query query = getPersistenceManager().newQuery(classType);
+        QueryUtil.useFilter(query, properties, values, fieldTypeMap, restriction, keysetProperty);
         QueryUtil.setQueryParams(query, queryParams);
 
-        Collection collection = (Collection) QueryExecutor.executeWithArray(query, values, restriction);
+        Object[] queryValues = (keysetProperty == null) ? values : ArrayUtils.add(values, keysetProperty);
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, queryValues, restriction);
 
         return new ArrayList<T>(collection);
     }
 
     public List<T> retrieveAll(QueryParams queryParams, InstanceSecurityRestriction restriction) {
+        if (queryParams != null && queryParams.isLastSeenSet()) {
+            return retrieveAll(new String[0], new Object[0], queryParams, restriction);
+        }
+
         Query query = createQuery(new String[0], new Object[0], restriction);
         QueryUtil.setQueryParams(query, queryParams);
         Collection collection = (Collection) QueryExecutor.execute(query, restriction);
@@ -119,6 +141,10 @@ public abstract class MotechDataRepository<T> {
         return new ArrayList<T>(collection);
     }
 
+    public void evictAll() {
+        getPersistenceManager().evictAll(false, classType);
+    }
+
     public T retrieve(String property, Object value) {
         return retrieve(new String[]{property}, new Object[]{value}, null);
     }
@@ -150,10 +176,65 @@ public abstract class MotechDataRepository<T> {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public Collection<T> updateAll(Collection<T> objects) {
+        return getPersistenceManager().makePersistentAll(objects);
+    }
+
     public void delete(T object) {
         getPersistenceManager().deletePersistent(object);
     }
 
+    public long deleteByIds(Collection<Long> ids) {
+        return deleteByIds(ids, null);
+    }
+
+    /**
+     * Deletes the instances with the given ids, which can be accessed by the current user. The restriction is
+     * a part of the delete statement, so instances of other users are not deleted.
+     *
+     * @param ids the ids of the instances to delete
+     * @param restriction the restriction for the current user, can be null
+     * @return the number of deleted instances
+     */
+    public long deleteByIds(Collection<Long> ids, InstanceSecurityRestriction restriction) {
+        String username = getUsername();
+        Query query = createIdsQuery(restriction, username);
+
+        return query.deletePersistentAll(accessValues(ids, restriction, username));
+    }
+
+    /**
+     * Retrieves the instance with the given id, if it can be accessed by the current user. The restriction is
+     * a part of the query, so there is no need to check the owner or creator of the retrieved instance.
+     *
+     * @param id the id of the instance
+     * @param restriction the restriction for the current user, can be null
+     * @return the instance, or null if it does not exist or cannot be accessed by the current user
+     */
+    public T retrieveAccessible(Long id, InstanceSecurityRestriction restriction) {
+        String username = getUsername();
+        Query query = createAccessQuery(String.format("%s == param0", ID_FIELD_NAME),
+                String.format("%s param0", Long.class.getName()), restriction, username);
+        query.setUnique(true);
+
+        return (T) query.executeWithArray(accessValues(id, restriction, username));
+    }
+
+    /**
+     * Counts the instances with the given ids, which can be accessed by the current user.
+     *
+     * @param ids the ids of the instances
+     * @param restriction the restriction for the current user, can be null
+     * @return the number of instances that can be accessed
+     */
+    public long countAccessible(Collection<Long> ids, InstanceSecurityRestriction restriction) {
+        String username = getUsername();
+        Query query = createIdsQuery(restriction, username);
+        QueryUtil.setCountResult(query);
+
+        return (long) query.executeWithArray(accessValues(ids, restriction, username));
+    }
+
     public long delete(String property, Object value) {
         return delete(new String[]{property}, new Object[]{value}, null);
     }
@@ -183,11 +264,34 @@ public abstract class MotechDataRepository<T> {
     }
 
     public List<T> filter(Filters filters, QueryParams queryParams, InstanceSecurityRestriction restriction) {
-        Query query = queryForFilters(filters, queryParams, restriction);
+        Property keysetProperty = QueryUtil.keysetProperty(queryParams, fieldTypeMap, isNullsSortedLow());
 
-        Collection collection = (Collection) QueryExecutor.executeWithFilters(query, filters, restriction);
+        if (keysetProperty == null) {
+            Query query = queryForFilters(filters, queryParams, restriction);
+            Collection collection = (Collection) QueryExecutor.executeWithFilters(query, filters, restriction);
 
-        return new ArrayList<T>(collection);
+            return new ArrayList<T>(collection);
+        } else if (filters == null || !filters.requiresFiltering()) {
+            return retrieveAll(queryParams, restriction);
+        } else {
+            // filters replace the whole filter of the query, so the restriction becomes one of their properties
+            List<Property> properties = new ArrayList<>();
+            properties.add(keysetProperty);
+
+            Property restrictionProperty = restrictionProperty(restriction);
+            if (restrictionProperty != null) {
+                properties.add(restrictionProperty);
+            }
+
+            Query query = getPersistenceManager().newQuery(classType);
+            QueryUtil.setQueryParams(query, queryParams);
+            QueryUtil.useFilters(query, filters, properties);
+
+            Object[] values = ArrayUtils.addAll(filters.valuesForQuery(), properties.toArray());
+            Collection collection = (Collection) QueryExecutor.executeWithArray(query, values, null);
+
+            return new ArrayList<T>(collection);
+        }
     }
 
     public long countForFilters(Filters filters, InstanceSecurityRestriction restriction) {
@@ -197,6 +301,90 @@ public abstract class MotechDataRepository<T> {
         return (long) QueryExecutor.executeWithFilters(query, filters, restriction);
     }
 
+    /**
+     * Computes the given aggregation for the instances matching the given properties, which can be accessed
+     * by the current user.
+     *
+     * @param aggregation the aggregation
+     * @param properties the properties the instances must match
+     * @param restriction the restriction for the current user, can be null
+     * @return the rows of the aggregation
+     */
+    public List<AggregationRow> aggregate(Aggregation aggregation, List<Property> properties,
+                                          InstanceSecurityRestriction restriction) {
+        List<Property> queryProperties = new ArrayList<>(properties);
+
+        Property restrictionProperty = restrictionProperty(restriction);
+        if (restrictionProperty != null) {
+            queryProperties.add(restrictionProperty);
+        }
+
+        Query query = createQuery(queryProperties, null);
+        QueryUtil.setAggregationResult(query, aggregation, fieldTypeMap);
+
+        return QueryUtil.getAggregationRows(aggregation, QueryExecutor.executeWithArray(query, queryProperties));
+    }
+
+    /**
+     * Computes the given aggregation for the instances matching the given filters, which can be accessed
+     * by the current user.
+     *
+     * @param aggregation the aggregation
+     * @param filters the filters, can be null
+     * @param restriction the restriction for the current user, can be null
+     * @return the rows of the aggregation
+     */
+    public List<AggregationRow> aggregate(Aggregation aggregation, Filters filters,
+                                          InstanceSecurityRestriction restriction) {
+        if (filters == null || !filters.requiresFiltering()) {
+            return aggregate(aggregation, new ArrayList<Property>(), restriction);
+        }
+
+        // filters use arg{idx} parameters, so the restriction is added as param0
+        Property restrictionProperty = restrictionProperty(restriction);
+
+        Query query = getPersistenceManager().newQuery(classType);
+        QueryUtil.useFilters(query, filters, restrictionProperty);
+        QueryUtil.setAggregationResult(query, aggregation, fieldTypeMap);
+
+        Object[] values = restrictionProperty == null
+                ? filters.valuesForQuery()
+                : ArrayUtils.add(filters.valuesForQuery(), restrictionProperty.getValue());
+
+        return QueryUtil.getAggregationRows(aggregation, QueryExecutor.executeWithArray(query, values, null));
+    }
+
+    /**
+     * Retrieves the values of the given fields of the instances matching the given properties, which can be
+     * accessed by the current user. Only the given fields are selected, the instances are not retrieved.
+     *
+     * @param fields the fields to retrieve
+     * @param properties the properties the instances must match
+     * @param queryParams the query parameters, can be null
+     * @param restriction the restriction for the current user, can be null
+     * @return the values of the fields, one map for every instance
+     */
+    public List<Map<String, Object>> retrieveFields(List<String> fields, List<Property> properties,
+                                                    QueryParams queryParams, InstanceSecurityRestriction restriction) {
+        List<Property> queryProperties = new ArrayList<>(properties);
+
+        Property keysetProperty = QueryUtil.keysetProperty(queryParams, fieldTypeMap, isNullsSortedLow());
+        if (keysetProperty != null) {
+            queryProperties.add(keysetProperty);
+        }
+
+        Property restrictionProperty = restrictionProperty(restriction);
+        if (restrictionProperty != null) {
+            queryProperties.add(restrictionProperty);
+        }
+
+        Query query = createQuery(queryProperties, null);
+        QueryUtil.setQueryParams(query, queryParams);
+        QueryUtil.setProjectionResult(query, fields, fieldTypeMap);
+
+        return QueryUtil.getProjectionRows(fields, QueryExecutor.executeWithArray(query, queryProperties));
+    }
+
     private Query createQuery(String[] properties, Object[] values, InstanceSecurityRestriction restriction) {
         Query query = getPersistenceManager().newQuery(classType);
         QueryUtil.useFilter(query, properties, values, fieldTypeMap, restriction);
@@ -204,6 +392,55 @@ public abstract class MotechDataRepository<T> {
         return query;
     }
 
+    private boolean isNullsSortedLow() {
+        // MySQL sorts nulls lower than any other value, PostgreSQL higher
+        return null != persistenceManagerFactory
+                && MYSQL_DRIVER_CLASSNAME.equals(persistenceManagerFactory.getConnectionDriverName());
+    }
+
+    private Property restrictionProperty(InstanceSecurityRestriction restriction) {
+        String username = getUsername();
+
+        // as in the other queries, the restriction is ignored if no user is logged in
+        return restriction == null || restriction.isEmpty() || username == null
+                ? null
+                : new RestrictionProperty(restriction, username);
+    }
+
+    private Query createIdsQuery(InstanceSecurityRestriction restriction, String username) {
+        return createAccessQuery(String.format("param0.contains(%s)", ID_FIELD_NAME),
+                String.format("%s param0", Collection.class.getName()), restriction, username);
+    }
+
+    private Query createAccessQuery(String filter, String parameters, InstanceSecurityRestriction restriction,
+                                    String username) {
+        Query query = getPersistenceManager().newQuery(classType);
+
+        if (restriction == null || restriction.isEmpty()) {
+            query.setFilter(filter);
+            query.declareParameters(parameters);
+        } else {
+            String field = restriction.isByOwner() ? OWNER_FIELD_NAME : CREATOR_FIELD_NAME;
+
+            if (username == null) {
+                // without a user only instances without an owner or a creator can be accessed
+                query.setFilter(String.format("%s && %s == null", filter, field));
+                query.declareParameters(parameters);
+            } else {
+                query.setFilter(String.format("%s && %s == param1", filter, field));
+                query.declareParameters(String.format("%s, %s param1", parameters, String.class.getName()));
+            }
+        }
+
+        return query;
+    }
+
+    private Object[] accessValues(Object value, InstanceSecurityRestriction restriction, String username) {
+        return restriction == null || restriction.isEmpty() || username == null
+                ? new Object[]{value}
+                : new Object[]{value, username};
+    }
+
     private Query createQuery(List<Property> properties, InstanceSecurityRestriction restriction) {
         Query query = getPersistenceManager().newQuery(classType);
         QueryUtil.useFilter(query, properties, restriction);
@@ -228,10 +465,18 @@ public abstract class MotechDataRepository<T> {
     }
 
     public List<T> retrieveAll(List<Property> properties, QueryParams queryParams, InstanceSecurityRestriction restriction) {
-        Query query = createQuery(properties, restriction);
+        Property keysetProperty = QueryUtil.keysetProperty(queryParams, fieldTypeMap, isNullsSortedLow());
+
+        List<Property> queryProperties = properties;
+        if (keysetProperty != null) {
+            queryProperties = new ArrayList<>(properties);
+            queryProperties.add(keysetProperty);
+        }
+
+        Query query = createQuery(queryProperties, restriction);
         QueryUtil.setQueryParams(query, queryParams);
 
-        Collection collection = (Collection) QueryExecutor.executeWithArray(query, properties);
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, queryProperties);
 
         return new ArrayList<T>(collection);
     }
@@ -1,9 +1,14 @@
 package org.motechproject.mds.rest;
 
 import org.motechproject.mds.ex.rest.RestLookupExecutionForbiddenException;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.AggregationRow;
 import org.motechproject.mds.query.QueryParams;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -38,6 +43,52 @@ public interface MdsRestFacade<T> {
      */
     RestResponse get(Long id, boolean includeBlob);
 
+    /**
+     * Retrieves the given fields of entity instances for REST. Only the values of the fields are retrieved from the
+     * database, instead of whole instances. If no fields are given, this works like
+     * {@link #get(QueryParams, boolean)}. It throws {@link IllegalArgumentException} if a field is not visible
+     * for REST or is a binary object field.
+     *
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields, used only without fields
+     * @param fields the fields to retrieve, can be empty
+     * @return a response that contains metadata and list of instances, in form of a map with the given field names
+     * and their respective values
+     */
+    RestResponse get(QueryParams queryParams, boolean includeBlob, List<String> fields);
+
+    /**
+     * Retrieves the given fields of a single instance for REST. The same rules as in
+     * {@link #get(QueryParams, boolean, List)} apply.
+     *
+     * @param id id of the instance
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields, used only without fields
+     * @param fields the fields to retrieve, can be empty
+     * @return  a response that contains metadata and instance
+     */
+    RestResponse get(Long id, boolean includeBlob, List<String> fields);
+
+    /**
+     * Returns the version of the instances of the entity, which can be accessed by the current user. The version
+     * changes whenever such instance is created, updated or deleted. It is computed from the number of instances
+     * and their latest modification date, without retrieving the instances, so it can be used as an entity tag.
+     * Modification dates are stored with a precision of one second, so no version is returned while the latest
+     * modification is less than a second old, another change within that second would not change the version.
+     *
+     * @return the version of the instances, or null if it can't be determined yet
+     */
+    String getVersion();
+
+    /**
+     * Returns the version of a single instance, which changes whenever the instance is updated. It is computed from
+     * the id and the modification date of the instance, without retrieving the instance. As with
+     * {@link #getVersion()}, no version is returned while the modification is less than a second old.
+     *
+     * @param id id of the instance
+     * @return the version of the instance, or null if it does not exist or can't be determined yet
+     */
+    String getVersion(Long id);
+
     /**
      * Creates an instance in MDS, reading it from the input stream. Only fields that are visible via REST
      * will be set in the created instance. It will fail, if data read from input stream contains fields
@@ -50,6 +101,20 @@ public interface MdsRestFacade<T> {
      */
     RestProjection create(InputStream instanceBody);
 
+    /**
+     * Creates multiple instances in MDS, reading a JSON array of instances or newline delimited JSON from the input
+     * stream. The instances are read one by one and created in batches, each batch is committed in its own
+     * transaction and written to the output stream right away, so neither the body nor the result is kept in memory.
+     * If a batch fails, the batches before it stay committed. The same rules as in {@link #create(InputStream)}
+     * apply to every instance from the body.
+     *
+     * @param instancesBody input stream, containing a JSON array or newline delimited JSON of instance representations
+     * @param output the stream the created instances are written to, as a JSON array of maps with field names and
+     *               their respective values; if a batch fails after the first one was written, an error marker is
+     *               written as the last element and the array is not closed
+     */
+    void createAll(InputStream instancesBody, OutputStream output);
+
     /**
      * Updates an instance in MDS, reading it from the input stream. Only fields that are visible via REST
      * will be set in the updated instance. It will fail, if data read from input stream contains fields
@@ -62,6 +127,20 @@ public interface MdsRestFacade<T> {
      */
     RestProjection update(InputStream instanceBody);
 
+    /**
+     * Updates multiple instances in MDS, reading a JSON array of instances or newline delimited JSON from the input
+     * stream. The instances are read one by one and updated in batches, each batch is committed in its own
+     * transaction and written to the output stream right away. The same rules as in {@link #update(InputStream)}
+     * apply to every instance from the body, but instances that do not exist will not be created. In that case
+     * a {@link org.motechproject.mds.ex.rest.RestEntityNotFoundException} is thrown and nothing from the batch of
+     * the missing instance is updated, the batches before it stay committed.
+     *
+     * @param instancesBody input stream, containing a JSON array or newline delimited JSON of instance representations
+     * @param output the stream the updated instances are written to, in the same way as by
+     *               {@link #createAll(InputStream, OutputStream)}
+     */
+    void updateAll(InputStream instancesBody, OutputStream output);
+
     /**
      * Deletes an instance by id. This works exactly like deleting an instance in any other way,
      * but will throw {@link org.motechproject.mds.ex.rest.RestOperationNotSupportedException} if
@@ -71,6 +150,15 @@ public interface MdsRestFacade<T> {
      */
     void delete(Long id);
 
+    /**
+     * Deletes instances by their ids, in a single transaction. Ids of instances that do not exist are ignored.
+     * It throws {@link org.motechproject.mds.ex.rest.RestOperationNotSupportedException} if the entity settings
+     * do not permit DELETE access via REST.
+     *
+     * @param ids ids of the instances
+     */
+    void deleteAll(Collection<Long> ids);
+
     /**
      * Executes a lookup for REST, given the lookup name, lookup parameters and query parameters. The
      * result will only contain fields that are visible for REST. If requested lookup is not available
@@ -84,4 +172,49 @@ public interface MdsRestFacade<T> {
      * @return lookup result, that can be either a single instance or a collection of instances. Response contains also metadata.
      */
     Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob);
+
+    /**
+     * Writes instances to the output stream, in the given format, as they are retrieved. The instances are
+     * retrieved in chunks from a single transaction, so the whole result is never kept in memory. Only fields that
+     * are visible for REST are written. If no paging is set in the query parameters, all instances are written.
+     * It throws {@link org.motechproject.mds.ex.rest.RestOperationNotSupportedException} if the entity settings
+     * do not permit READ access via REST. If retrieving the instances fails after the first one was written, an
+     * error marker, an object with a single <code>error</code> field, is written as the last element, and a JSON
+     * array is not closed.
+     *
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @param format the format of the written instances
+     * @param output the stream the instances are written to
+     */
+    void stream(QueryParams queryParams, boolean includeBlob, RestStreamFormat format, OutputStream output);
+
+    /**
+     * Writes the result of a lookup to the output stream, in the given format, as it is retrieved. The same rules
+     * as in {@link #executeLookup(String, java.util.Map, QueryParams, boolean)} and
+     * {@link #stream(QueryParams, boolean, RestStreamFormat, OutputStream)} apply. A lookup returning a single
+     * instance writes at most one instance.
+     *
+     * @param lookupName name of the lookup
+     * @param lookupMap map containing field names and their respective values
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @param format the format of the written instances
+     * @param output the stream the instances are written to
+     */
+    void streamLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob,
+                      RestStreamFormat format, OutputStream output);
+
+    /**
+     * Computes an aggregation for REST. Only fields that are visible for REST can be used in the aggregation
+     * and in the field values restricting the aggregated instances. It throws
+     * {@link org.motechproject.mds.ex.rest.RestOperationNotSupportedException} if the entity settings do not
+     * permit READ access via REST and {@link IllegalArgumentException} if the aggregation or the field values
+     * use fields that are not visible for REST.
+     *
+     * @param aggregation the group by fields and the aggregate functions
+     * @param fieldValues map containing field names and values, the aggregated instances must be equal to
+     * @return the rows of the aggregation, one for every group
+     */
+    List<AggregationRow> aggregate(Aggregation aggregation, Map<String, String> fieldValues);
 }
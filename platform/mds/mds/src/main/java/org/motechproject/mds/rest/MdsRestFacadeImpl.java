@@ -4,6 +4,7 @@ import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.module.SimpleModule;
+import org.joda.time.ReadableInstant;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.domain.RelationshipHolder;
@@ -21,23 +22,45 @@ import org.motechproject.mds.ex.rest.RestLookupNotFoundException;
 import org.motechproject.mds.ex.rest.RestNoLookupResultException;
 import org.motechproject.mds.ex.rest.RestOperationNotSupportedException;
 import org.motechproject.mds.lookup.LookupExecutor;
+import org.motechproject.mds.query.Aggregate;
+import org.motechproject.mds.query.AggregateFunction;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.AggregationRow;
+import org.motechproject.mds.query.ContinuationToken;
+import org.motechproject.mds.query.KeysetIterator;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.PropertyBuilder;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.BlobDeserializer;
 import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static java.util.Arrays.asList;
+import static org.motechproject.commons.date.util.DateUtil.now;
+import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.MODIFICATION_DATE_FIELD_NAME;
+
 /**
  * This {@link org.motechproject.mds.rest.MdsRestFacade} implementation
  * retrieves REST related metadata on initialization. It uses an instance of
@@ -49,6 +72,11 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    private static final int BATCH_SIZE = 100;
+
+    // modification dates are stored with a precision of one second
+    private static final long MODIFICATION_DATE_PRECISION_MILLIS = 1000;
+
     private MotechDataService<T> dataService;
     private AllEntities allEntities;
 
@@ -61,6 +89,7 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
     private Map<String, LookupExecutor> lookupExecutors = new HashMap<>();
     private Set<String> forbiddenLookupMethodNames = new HashSet<>();
 
+    private Map<String, FieldDto> fieldsByName;
     private List<String> restFields;
     private List<String> blobFields;
 
@@ -83,11 +112,11 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
         readRestOptions(entity);
 
-        Map<String, FieldDto> fieldMap = DtoHelper.asFieldMapByName(entity.getFieldDtos());
+        fieldsByName = DtoHelper.asFieldMapByName(entity.getFieldDtos());
 
         readLookups(entity);
-        readFieldsExposedByRest(fieldMap);
-        readBlobFieldsExposedByRest(fieldMap);
+        readFieldsExposedByRest(fieldsByName);
+        readBlobFieldsExposedByRest(fieldsByName);
     }
 
     @Override
@@ -102,8 +131,11 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
             }
         }
 
-        return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, dataService.count(), queryParams,
-                RestProjection.createProjectionCollection(values, restFields, blobFields));
+        RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace,
+                dataService.count(), queryParams, RestProjection.createProjectionCollection(values, restFields, blobFields));
+        response.getMetadata().setContinuationToken(ContinuationToken.next(queryParams, values));
+
+        return response;
     }
 
     @Override
@@ -125,6 +157,80 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    @Override
+    public RestResponse get(QueryParams queryParams, boolean includeBlob, List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return get(queryParams, includeBlob);
+        }
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        List<Map<String, Object>> rows = dataService.retrieveFields(projectionQueryFields(queryParams, fields),
+                new ArrayList<Property>(), queryParams);
+
+        RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace,
+                dataService.count(), queryParams, projectRows(rows, fields));
+        response.getMetadata().setContinuationToken(ContinuationToken.next(queryParams, rows));
+
+        return response;
+    }
+
+    @Override
+    public RestResponse get(Long id, boolean includeBlob, List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return get(id, includeBlob);
+        }
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        List<Map<String, Object>> rows = dataService.retrieveFields(projectionQueryFields(null, fields),
+                idProperties(id), null);
+
+        if (rows.isEmpty()) {
+            throw new RestEntityNotFoundException("id", id.toString());
+        }
+
+        return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, 1l, new QueryParams(1, 1),
+                projectRows(rows, fields).get(0));
+    }
+
+    @Override
+    public String getVersion() {
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        // creating or updating an instance changes the latest modification date, deleting one changes the count
+        Aggregate latestModification = new Aggregate(AggregateFunction.MAX, MODIFICATION_DATE_FIELD_NAME);
+        Aggregation aggregation = new Aggregation().count().add(latestModification);
+        List<AggregationRow> rows = dataService.aggregate(aggregation);
+
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Object> values = rows.get(0).getValues();
+        return isRecent(values.get(latestModification.getLabel()))
+                ? null
+                : StringUtils.join(values.values(), ':');
+    }
+
+    @Override
+    public String getVersion(Long id) {
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        List<Map<String, Object>> rows = dataService.retrieveFields(asList(ID_FIELD_NAME, MODIFICATION_DATE_FIELD_NAME),
+                idProperties(id), null);
+
+        return rows.isEmpty() || isRecent(rows.get(0).get(MODIFICATION_DATE_FIELD_NAME))
+                ? null
+                : StringUtils.join(rows.get(0).values(), ':');
+    }
+
     @Override
     public RestProjection create(InputStream instanceBody) {
         if (!restOptions.isCreate()) {
@@ -134,17 +240,21 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         try {
             T instance = OBJECT_MAPPER.readValue(instanceBody, entityClass);
 
-            T filteredInstance = entityClass.newInstance();
-            PropertyUtil.copyProperties(filteredInstance, instance, new HashSet<>(restFields));
-
-            return RestProjection.createProjection(dataService.create(filteredInstance), restFields, blobFields);
+            return RestProjection.createProjection(dataService.create(filteredCopy(instance)), restFields, blobFields);
         } catch (IOException e) {
             throw badBodyFormatException(e);
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new RestInternalException("Unable to create a new instance of " + entityClass.getName(), e);
         }
     }
 
+    @Override
+    public void createAll(InputStream instancesBody, OutputStream output) {
+        if (!restOptions.isCreate()) {
+            throw operationNotSupportedEx("CREATE");
+        }
+
+        saveInBatches(instancesBody, false, output);
+    }
+
     @Override
     public RestProjection update(InputStream instanceBody) {
         if (!restOptions.isUpdate()) {
@@ -162,6 +272,15 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    @Override
+    public void updateAll(InputStream instancesBody, OutputStream output) {
+        if (!restOptions.isUpdate()) {
+            throw operationNotSupportedEx("UPDATE");
+        }
+
+        saveInBatches(instancesBody, true, output);
+    }
+
     @Override
     public void delete(Long id) {
         if (!restOptions.isDelete()) {
@@ -171,6 +290,22 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         dataService.deleteById(id);
     }
 
+    @Override
+    public void deleteAll(final Collection<Long> ids) {
+        if (!restOptions.isDelete()) {
+            throw operationNotSupportedEx("DELETE");
+        }
+
+        // the instances are retrieved with a single query and deleted in the same transaction,
+        // ids of instances that do not exist are skipped
+        dataService.doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                dataService.deleteAll(dataService.findByIds(ids));
+            }
+        });
+    }
+
     @Override
     public Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob) {
         if (lookupExecutors.containsKey(lookupName)) {
@@ -182,8 +317,12 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
                         getBlobs(value);
                     }
                 }
-                return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, executor.executeCount(lookupMap),
-                        queryParams, RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+                RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace,
+                        executor.executeCount(lookupMap), queryParams,
+                        RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+                response.getMetadata().setContinuationToken(ContinuationToken.next(queryParams, (Collection) result));
+
+                return response;
             } else {
                 if (result == null) {
                     throw new RestNoLookupResultException("No result for lookup:" + lookupName);
@@ -201,6 +340,296 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    @Override
+    public void stream(QueryParams queryParams, boolean includeBlob, RestStreamFormat format,
+                       OutputStream output) {
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        writeStream(new KeysetIterator<T>(queryParams) {
+            @Override
+            protected List<T> retrieveChunk(QueryParams chunkParams) {
+                return dataService.retrieveAll(chunkParams);
+            }
+
+            @Override
+            protected void chunkProcessed() {
+                dataService.evictInstances();
+            }
+        }, includeBlob, format, output);
+    }
+
+    @Override
+    public void streamLookup(String lookupName, final Map<String, String> lookupMap, QueryParams queryParams,
+                             boolean includeBlob, RestStreamFormat format, OutputStream output) {
+        final LookupExecutor executor = lookupExecutors.get(lookupName);
+
+        if (executor == null) {
+            if (forbiddenLookupMethodNames.contains(lookupName)) {
+                throw new RestLookupExecutionForbiddenException(lookupName);
+            } else {
+                throw new RestLookupNotFoundException(lookupName);
+            }
+        }
+
+        // lookups returning a single instance do not support paging, the instance is the only chunk
+        Iterator<T> instances = new KeysetIterator<T>(executor.isSingleObjectReturn() ? null : queryParams) {
+            @Override
+            protected List<T> retrieveChunk(QueryParams chunkParams) {
+                if (executor.isSingleObjectReturn()) {
+                    T result = (T) executor.execute(lookupMap);
+                    return (result == null) ? Collections.<T>emptyList() : Collections.singletonList(result);
+                }
+                return new ArrayList<>((Collection<T>) executor.execute(lookupMap, chunkParams));
+            }
+
+            @Override
+            protected void chunkProcessed() {
+                dataService.evictInstances();
+            }
+        };
+
+        writeStream(instances, includeBlob, format, output);
+    }
+
+    @Override
+    public List<AggregationRow> aggregate(Aggregation aggregation, Map<String, String> fieldValues) {
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        for (String field : aggregation.getGroupBy()) {
+            assertExposedByRest(field);
+        }
+        for (Aggregate aggregate : aggregation.getAggregates()) {
+            if (aggregate.getField() != null) {
+                assertExposedByRest(aggregate.getField());
+            }
+        }
+
+        List<Property> properties = new ArrayList<>();
+        for (Map.Entry<String, String> entry : fieldValues.entrySet()) {
+            assertExposedByRest(entry.getKey());
+
+            String type = ID_FIELD_NAME.equals(entry.getKey()) ? Long.class.getName()
+                    : fieldsByName.get(entry.getKey()).getType().getTypeClass();
+            Object value = TypeHelper.parse(entry.getValue(), type, entityClass.getClassLoader());
+
+            properties.add(PropertyBuilder.create(entry.getKey(), value, type));
+        }
+
+        return dataService.aggregate(aggregation, properties);
+    }
+
+    private List<String> projectionQueryFields(QueryParams queryParams, List<String> fields) {
+        Set<String> queryFields = new LinkedHashSet<>();
+
+        for (String field : fields) {
+            // blobs are never retrieved with the instances, so they cannot be a part of the projection
+            assertExposedByRest(field);
+            queryFields.add(field);
+        }
+
+        // the continuation token is created from the order field and the id of the last row
+        if (queryParams != null && queryParams.isKeyset()) {
+            queryFields.add(queryParams.getOrder().getField());
+            queryFields.add(ID_FIELD_NAME);
+        }
+
+        return new ArrayList<>(queryFields);
+    }
+
+    private List<RestProjection> projectRows(List<Map<String, Object>> rows, List<String> fields) {
+        List<RestProjection> projections = new ArrayList<>(rows.size());
+
+        for (Map<String, Object> row : rows) {
+            RestProjection projection = new RestProjection();
+            for (String field : fields) {
+                projection.put(field, row.get(field));
+            }
+            projections.add(projection);
+        }
+
+        return projections;
+    }
+
+    private List<Property> idProperties(Long id) {
+        List<Property> properties = new ArrayList<>();
+        properties.add(PropertyBuilder.create(ID_FIELD_NAME, id, Long.class));
+
+        return properties;
+    }
+
+    private boolean isRecent(Object modificationDate) {
+        // another change within the same second would not change the modification date, so such versions
+        // are not given out until the second has passed
+        long millis;
+        if (modificationDate instanceof ReadableInstant) {
+            millis = ((ReadableInstant) modificationDate).getMillis();
+        } else if (modificationDate instanceof Date) {
+            millis = ((Date) modificationDate).getTime();
+        } else {
+            return false;
+        }
+
+        return now().getMillis() - millis < MODIFICATION_DATE_PRECISION_MILLIS;
+    }
+
+    private void assertExposedByRest(String field) {
+        if (!ID_FIELD_NAME.equals(field) && (!restFields.contains(field) || blobFields.contains(field))) {
+            throw new IllegalArgumentException("Field is not available via REST: " + field);
+        }
+    }
+
+    private void writeStream(final Iterator<T> instances, boolean includeBlob, final RestStreamFormat format,
+                             final OutputStream output) {
+        // blob fields are loaded lazily, so they are left out unless requested
+        final List<String> fields = new ArrayList<>(restFields);
+        if (!includeBlob) {
+            fields.removeAll(blobFields);
+        }
+
+        // the instances are retrieved chunk by chunk, in a single transaction, while the response is written
+        dataService.doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                RestProjectionWriter writer = new RestProjectionWriter(OBJECT_MAPPER, format, output);
+
+                try {
+                    while (instances.hasNext()) {
+                        writer.write(RestProjection.createProjection(instances.next(), fields, blobFields));
+                    }
+                    writer.close();
+                } catch (IOException e) {
+                    writer.writeError(e);
+                    throw new RestInternalException("Unable to write instances of " + entityClass.getName(), e);
+                } catch (RuntimeException e) {
+                    writer.writeError(e);
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private void saveInBatches(InputStream instancesBody, boolean update, OutputStream output) {
+        RestProjectionWriter writer = new RestProjectionWriter(OBJECT_MAPPER, RestStreamFormat.JSON, output);
+
+        try {
+            RestInstanceReader<T> reader = newInstanceReader(instancesBody);
+
+            for (List<T> batch = readBatch(reader); !batch.isEmpty(); batch = readBatch(reader)) {
+                // every batch is committed on its own and written out, so that it can be garbage collected
+                for (RestProjection projection : saveBatch(batch, update)) {
+                    writer.write(projection);
+                }
+                writer.flush();
+            }
+            writer.close();
+        } catch (IOException e) {
+            writer.writeError(e);
+            throw new RestInternalException("Unable to write instances of " + entityClass.getName(), e);
+        } catch (RuntimeException e) {
+            writer.writeError(e);
+            throw e;
+        }
+    }
+
+    private RestInstanceReader<T> newInstanceReader(InputStream instancesBody) {
+        try {
+            return new RestInstanceReader<>(OBJECT_MAPPER, entityClass, instancesBody);
+        } catch (IOException e) {
+            throw badBodyFormatException(e);
+        }
+    }
+
+    private List<T> readBatch(RestInstanceReader<T> reader) {
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+
+        try {
+            for (T instance = reader.read(); instance != null; instance = reader.read()) {
+                batch.add(instance);
+
+                if (batch.size() == BATCH_SIZE) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw badBodyFormatException(e);
+        }
+
+        return batch;
+    }
+
+    private List<RestProjection> saveBatch(final List<T> batch, final boolean update) {
+        return dataService.doInTransaction(new TransactionCallback<List<RestProjection>>() {
+            @Override
+            public List<RestProjection> doInTransaction(TransactionStatus status) {
+                return update ? updateBatch(batch) : createBatch(batch);
+            }
+        });
+    }
+
+    private List<RestProjection> createBatch(List<T> batch) {
+        List<T> filteredBatch = new ArrayList<>(batch.size());
+        for (T instance : batch) {
+            filteredBatch.add(filteredCopy(instance));
+        }
+
+        List<RestProjection> projections = RestProjection.createProjectionCollection(
+                dataService.createAll(filteredBatch), restFields, blobFields);
+
+        return projections;
+    }
+
+    private List<RestProjection> updateBatch(List<T> batch) {
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (T instance : batch) {
+            Object id = PropertyUtil.safeGetProperty(instance, ID_FIELD_NAME);
+
+            if (!(id instanceof Long)) {
+                throw new RestEntityNotFoundException(ID_FIELD_NAME, String.valueOf(id));
+            }
+            ids.add((Long) id);
+        }
+
+        Map<Object, T> fromDbInstancesById = new HashMap<>();
+        for (T fromDbInstance : dataService.findByIds(ids)) {
+            fromDbInstancesById.put(PropertyUtil.safeGetProperty(fromDbInstance, ID_FIELD_NAME), fromDbInstance);
+        }
+
+        List<T> fromDbInstances = new ArrayList<>(batch.size());
+        Set<String> fieldsToUpdate = new HashSet<>(restFields);
+
+        for (T instance : batch) {
+            Object id = PropertyUtil.safeGetProperty(instance, ID_FIELD_NAME);
+            T fromDbInstance = fromDbInstancesById.get(id);
+
+            if (fromDbInstance == null) {
+                throw new RestEntityNotFoundException(ID_FIELD_NAME, String.valueOf(id));
+            }
+
+            PropertyUtil.copyProperties(fromDbInstance, instance, fieldsToUpdate);
+            fromDbInstances.add(fromDbInstance);
+        }
+
+        List<RestProjection> projections = RestProjection.createProjectionCollection(
+                dataService.updateAll(fromDbInstances), restFields, blobFields);
+
+        return projections;
+    }
+
+    private T filteredCopy(T instance) {
+        try {
+            T filteredInstance = entityClass.newInstance();
+            PropertyUtil.copyProperties(filteredInstance, instance, new HashSet<>(restFields));
+
+            return filteredInstance;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RestInternalException("Unable to create a new instance of " + entityClass.getName(), e);
+        }
+    }
+
     private void getBlobs(T value) {
         for (String field : blobFields) {
             PropertyUtil.safeSetProperty(value, field, dataService.getDetachedField(value, field));
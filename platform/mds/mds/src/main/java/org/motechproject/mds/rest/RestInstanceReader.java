@@ -0,0 +1,56 @@
+package org.motechproject.mds.rest;
+
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The <code>RestInstanceReader</code> reads instances one by one from a request body, which is either a JSON array
+ * of instances or a sequence of instances, like newline delimited JSON. Only the instance being read is kept in
+ * memory, so bodies with a large number of instances can be processed in batches.
+ *
+ * @param <T> the type of the instances
+ */
+class RestInstanceReader<T> {
+
+    private final ObjectMapper objectMapper;
+    private final Class<T> type;
+    private final JsonParser parser;
+
+    RestInstanceReader(ObjectMapper objectMapper, Class<T> type, InputStream body) throws IOException {
+        this.objectMapper = objectMapper;
+        this.type = type;
+        this.parser = objectMapper.getJsonFactory().createJsonParser(body);
+
+        // the instances of an array are read the same way as a sequence of instances
+        if (parser.nextToken() == JsonToken.START_ARRAY) {
+            parser.nextToken();
+        }
+    }
+
+    /**
+     * Reads the next instance from the body.
+     *
+     * @return the instance or null, if there are no more instances in the body
+     * @throws IOException if the body is not a valid representation of the instances
+     */
+    T read() throws IOException {
+        JsonToken token = parser.getCurrentToken();
+
+        if (token == null || token == JsonToken.END_ARRAY) {
+            return null;
+        } else if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Expected an instance, but found: " + token,
+                    parser.getCurrentLocation());
+        }
+
+        T instance = objectMapper.readValue(parser, type);
+        parser.nextToken();
+
+        return instance;
+    }
+}
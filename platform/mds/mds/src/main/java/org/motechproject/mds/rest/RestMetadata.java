@@ -4,7 +4,8 @@ import org.motechproject.mds.query.QueryParams;
 
 /**
  * The <code>RestResponse</code> class represents metadata of retrieved instances over REST.
- * It contains entity name, entity class name, module name, namespace and pagination information
+ * It contains entity name, entity class name, module name, namespace and pagination information, including
+ * the continuation token for the keyset pagination
  *
  * @see org.motechproject.mds.rest.MdsRestFacade
  * @see org.motechproject.mds.rest.RestProjection
@@ -26,6 +27,8 @@ public class RestMetadata {
 
     private int pageSize;
 
+    private String continuationToken;
+
     /**
      * Default constructor.
      */
@@ -149,4 +152,19 @@ public class RestMetadata {
     public void setPageSize(int pageSize) {
         this.pageSize = pageSize;
     }
+
+    /**
+     * @return the token to pass in the next request, in order to retrieve the next page in the keyset pagination,
+     * or null if there are no more pages or the keyset pagination was not used
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * @param continuationToken the token to pass in the next request, in order to retrieve the next page
+     */
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
 }
@@ -0,0 +1,104 @@
+package org.motechproject.mds.rest;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The <code>RestProjectionWriter</code> writes projections one by one to a response body, either as a JSON array
+ * or as newline delimited JSON. Nothing is written until the first projection, so a request that fails before
+ * that can still be answered with an error status. If it fails later, {@link #writeError(Exception)} appends an
+ * error marker, an object with a single <code>error</code> field, so that the client can tell a broken response
+ * from a complete one. A JSON array is left unclosed after the marker.
+ */
+class RestProjectionWriter {
+
+    static final String ERROR_FIELD = "error";
+
+    private final ObjectMapper objectMapper;
+    private final RestStreamFormat format;
+    private final OutputStream output;
+
+    private JsonGenerator generator;
+    private boolean started;
+
+    RestProjectionWriter(ObjectMapper objectMapper, RestStreamFormat format, OutputStream output) {
+        this.objectMapper = objectMapper;
+        this.format = format;
+        this.output = output;
+    }
+
+    /**
+     * Writes the given projection.
+     *
+     * @param projection the projection to write
+     * @throws IOException if the projection could not be written
+     */
+    void write(Object projection) throws IOException {
+        started = true;
+
+        if (format == RestStreamFormat.NDJSON) {
+            output.write(objectMapper.writeValueAsBytes(projection));
+            output.write('\n');
+        } else {
+            objectMapper.writeValue(getGenerator(), projection);
+        }
+    }
+
+    /**
+     * Sends the projections written so far to the client.
+     *
+     * @throws IOException if the projections could not be sent
+     */
+    void flush() throws IOException {
+        if (null != generator) {
+            generator.flush();
+        }
+        output.flush();
+    }
+
+    /**
+     * Completes the response body.
+     *
+     * @throws IOException if the body could not be completed
+     */
+    void close() throws IOException {
+        if (format != RestStreamFormat.NDJSON) {
+            getGenerator().writeEndArray();
+        }
+        flush();
+    }
+
+    /**
+     * Appends the error marker, if a part of the response body was already written. Errors of writing the marker
+     * are ignored, since the connection is most likely broken then.
+     *
+     * @param e the exception which broke the response
+     */
+    void writeError(Exception e) {
+        if (!started) {
+            return;
+        }
+
+        try {
+            Map<String, String> marker = Collections.singletonMap(ERROR_FIELD, e.getMessage());
+            write(marker);
+            flush();
+        } catch (IOException | RuntimeException ignored) {
+            // the original exception is reported by the caller
+        }
+    }
+
+    private JsonGenerator getGenerator() throws IOException {
+        if (null == generator) {
+            generator = objectMapper.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+            generator.writeStartArray();
+        }
+        return generator;
+    }
+}
@@ -0,0 +1,43 @@
+package org.motechproject.mds.rest;
+
+/**
+ * The <code>RestStreamFormat</code> enum describes the formats in which instances can be streamed
+ * by the MDS REST API.
+ *
+ * @see org.motechproject.mds.rest.MdsRestFacade
+ */
+public enum RestStreamFormat {
+    /**
+     * A single JSON array of instances.
+     */
+    JSON("application/json"),
+    /**
+     * Newline delimited JSON - every line contains a single instance.
+     */
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    RestStreamFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static RestStreamFormat getEnumByName(String value) {
+        if (null == value) {
+            return null;
+        }
+
+        switch (value.toUpperCase()) {
+            case "JSON":
+                return JSON;
+            case "NDJSON":
+                return NDJSON;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.motechproject.mds.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>BatchCsvImportCustomizer</code> interface extends the {@link CsvImportCustomizer} with retrieval of the
+ * existing instances for a whole batch of imported rows at once. The CSV import uses it, if the given customizer
+ * implements it, in order to avoid running a query for every imported row.
+ *
+ * @see org.motechproject.mds.service.DefaultCsvImportCustomizer
+ */
+public interface BatchCsvImportCustomizer extends CsvImportCustomizer {
+
+    /**
+     * Retrieves the existing instances for the given rows. For rows without a result,
+     * {@link #findExistingInstance(Map, MotechDataService)} will be called, which allows reporting errors
+     * for single rows.
+     *
+     * @param rows the imported rows containing fields of instances
+     * @param dataService the data service of an entity
+     *
+     * @return the list with an existing instance, or null, for every given row, in the order of the rows
+     */
+    List<Object> findExistingInstances(List<Map<String, String>> rows, MotechDataService dataService);
+}
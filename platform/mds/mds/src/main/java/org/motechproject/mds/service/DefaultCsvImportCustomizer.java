@@ -2,18 +2,52 @@ package org.motechproject.mds.service;
 
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.motechproject.mds.ex.csv.CsvImportException;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This is a basic implementation of {@link org.motechproject.mds.service.CsvImportCustomizer}.
  *
  */
-public class DefaultCsvImportCustomizer implements CsvImportCustomizer {
+public class DefaultCsvImportCustomizer implements BatchCsvImportCustomizer {
+
+    @Override
+    public List<Object> findExistingInstances(List<Map<String, String>> rows, MotechDataService dataService) {
+        Set<Long> ids = new HashSet<>();
+        for (Map<String, String> row : rows) {
+            Long id = getId(row);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+
+        Map<Long, Object> instancesById = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Object instance : dataService.findByIds(ids)) {
+                Number id = (Number) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
+                instancesById.put(id.longValue(), instance);
+            }
+        }
+
+        // rows with missing instances get null, so that the error is reported for the row
+        List<Object> instances = new ArrayList<>(rows.size());
+        for (Map<String, String> row : rows) {
+            Long id = getId(row);
+            instances.add(id == null ? null : instancesById.get(id));
+        }
+
+        return instances;
+    }
 
     @Override
     public Object findExistingInstance(Map<String, String> row, MotechDataService dataService) {
@@ -56,4 +90,9 @@ public class DefaultCsvImportCustomizer implements CsvImportCustomizer {
 
         return matchingDisplayNameField != null ? matchingDisplayNameField : matchingNameField;
     }
+
+    private Long getId(Map<String, String> row) {
+        String id = row.get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+        return NumberUtils.isDigits(id) ? Long.valueOf(id) : null;
+    }
 }
@@ -7,6 +7,9 @@ import org.motechproject.mds.event.CrudEventType;
 import org.motechproject.mds.ex.entity.EntityNotFoundException;
 import org.motechproject.mds.ex.object.SecurityException;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.jdo.Level2CacheRegistry;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.AggregationRow;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
@@ -27,22 +30,32 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
 import javax.jdo.Query;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static org.apache.commons.lang.StringUtils.defaultIfBlank;
 import static org.motechproject.commons.date.util.DateUtil.now;
+import static org.motechproject.mds.event.CrudEventBuilder.buildBulkEventParams;
 import static org.motechproject.mds.event.CrudEventBuilder.buildEventParams;
+import static org.motechproject.mds.event.CrudEventBuilder.createBulkSubject;
 import static org.motechproject.mds.event.CrudEventBuilder.createSubject;
 import static org.motechproject.mds.event.CrudEventType.CREATE;
 import static org.motechproject.mds.event.CrudEventType.DELETE;
@@ -76,9 +89,9 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     private SecurityMode securityMode;
     private Long schemaVersion;
     private Long entityId;
-    private List<Field> comboboxStringFields;
     private JdoTransactionManager transactionManager;
     private boolean recordHistory;
+    private boolean cacheable;
     private boolean allowCreateEvent;
     private boolean allowUpdateEvent;
     private boolean allowDeleteEvent;
@@ -100,6 +113,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         schemaVersion = entity.getEntityVersion();
         entityId = entity.getId();
         recordHistory = entity.isRecordHistory();
+        cacheable = entity.isCacheable();
         allowCreateEvent = entity.isAllowCreateEvent();
         allowUpdateEvent = entity.isAllowUpdateEvent();
         allowDeleteEvent = entity.isAllowDeleteEvent();
@@ -123,7 +137,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
         final T createdInstance = repository.create(object);
 
-        if (!getComboboxStringFields().isEmpty()) {
+        if (!getComboboxStringFieldNames().isEmpty()) {
             updateComboList(object);
         }
 
@@ -143,11 +157,43 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return createdInstance;
     }
 
+    @Override
+    @Transactional
+    public List<T> createAll(Collection<T> objects) {
+        validateCredentials();
+
+        final List<T> createdInstances = new ArrayList<>(repository.createAll(objects));
+
+        if (!getComboboxStringFieldNames().isEmpty()) {
+            updateComboList(createdInstances);
+        }
+
+        if (recordHistory) {
+            historyService.recordAll(createdInstances);
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                if (allowCreateEvent) {
+                    sendBulkEvent(getIds(createdInstances), CREATE);
+                }
+            }
+        });
+
+        return createdInstances;
+    }
+
     @Override
     @Transactional
     public T retrieve(String primaryKeyName, Object value) {
         T instance = repository.retrieve(primaryKeyName, value);
-        validateCredentials(instance);
+
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        if (!securityRestriction.isEmpty() && instance != null) {
+            // the instance has just been read, so there is no need to read it again
+            checkAccess(instance, securityRestriction);
+        }
 
         return instance;
     }
@@ -174,7 +220,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         updateModificationData(object);
         final T updatedInstance = repository.update(object);
 
-        if (!getComboboxStringFields().isEmpty()) {
+        if (!getComboboxStringFieldNames().isEmpty()) {
             updateComboList(object);
         }
 
@@ -185,6 +231,8 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
             @Override
             public void afterCommit() {
+                evictFromCachesOfOtherInstances();
+
                 if (allowUpdateEvent) {
                     sendEvent((Long) getId(updatedInstance), UPDATE);
                 }
@@ -194,6 +242,39 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return updatedInstance;
     }
 
+    @Override
+    @Transactional
+    public List<T> updateAll(Collection<T> objects) {
+        validateCredentials(objects);
+
+        for (T object : objects) {
+            updateModificationData(object);
+        }
+
+        final List<T> updatedInstances = new ArrayList<>(repository.updateAll(objects));
+
+        if (!getComboboxStringFieldNames().isEmpty()) {
+            updateComboList(updatedInstances);
+        }
+
+        if (recordHistory) {
+            historyService.recordAll(updatedInstances);
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                evictFromCachesOfOtherInstances();
+
+                if (allowUpdateEvent) {
+                    sendBulkEvent(getIds(updatedInstances), UPDATE);
+                }
+            }
+        });
+
+        return updatedInstances;
+    }
+
     @Override
     @Transactional
     public T createOrUpdate (final T object) {
@@ -215,9 +296,11 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     @Override
     @Transactional
     public T updateFromTransient(final T transientObject, final Set<String> fieldsToUpdate) {
-        validateCredentials(transientObject);
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
 
-        T fromDbInstance = findById((Long) getId(transientObject));
+        T fromDbInstance = securityRestriction.isEmpty()
+                ? findById((Long) getId(transientObject))
+                : retrieveAccessible((Long) getId(transientObject), securityRestriction);
         if (fromDbInstance == null) {
             fromDbInstance = create(transientObject);
         } else {
@@ -226,7 +309,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
         updateModificationData(fromDbInstance);
 
-        if (!getComboboxStringFields().isEmpty()) {
+        if (!getComboboxStringFieldNames().isEmpty()) {
             updateComboList(fromDbInstance);
         }
 
@@ -238,6 +321,8 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
             @Override
             public void afterCommit() {
+                evictFromCachesOfOtherInstances();
+
                 if (allowUpdateEvent) {
                     sendEvent((Long) getId(finalFromDbInstance), UPDATE);
                 }
@@ -258,11 +343,15 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
             throw new IllegalArgumentException("Unable to delete null object");
         }
 
-        validateCredentials(object);
+        final InstanceSecurityRestriction securityRestriction = validateCredentials();
 
-        Long deletedInstanceId = doInTransaction(new TransactionCallback<Long>() {
+        doInTransaction(new TransactionCallbackWithoutResult() {
             @Override
-            public Long doInTransaction(TransactionStatus status) {
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                // We retrieve the object using the current pm, the security restriction is a part of the query
+                final Long id = (Long) getId(object);
+                T existing = securityRestriction.isEmpty() ? findById(id) : retrieveAccessible(id, securityRestriction);
+
                 boolean trashMode = trashService.isTrashMode();
                 if (trashMode) {
                     // move object to trash if trash mode is active
@@ -274,18 +363,22 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
                 // independent of trash mode remove object. If trash mode is active then the same object
                 // exists in the trash so this one is unnecessary.
-                // We retrieve the object using the current pm
-                Long id = (Long) getId(object);
-                T existing = findById(id);
-
                 repository.delete(existing);
-                return id;
+
+                // other instances must not reload the object from the database before the outermost
+                // transaction is committed
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        evictFromCachesOfOtherInstances();
+
+                        if (allowDeleteEvent) {
+                            sendEvent(id, DELETE);
+                        }
+                    }
+                });
             }
         });
-
-        if (allowDeleteEvent) {
-            sendEvent(deletedInstanceId, DELETE);
-        }
     }
 
     @Override
@@ -303,6 +396,70 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         }
     }
 
+    @Override
+    public void deleteAll(final Collection<T> objects) {
+        if (objects == null) {
+            throw new IllegalArgumentException("Unable to delete null collection");
+        }
+
+        if (objects.isEmpty()) {
+            return;
+        }
+
+        final InstanceSecurityRestriction securityRestriction = validateCredentials();
+
+        try {
+            deleteAllInTransaction(objects, securityRestriction);
+        } catch (SecurityException e) {
+            // the transaction was rolled back, the instances are checked one by one, so that a missing
+            // instance is reported the same way as before
+            for (T object : objects) {
+                checkInstanceAccess(object, securityRestriction);
+            }
+            throw e;
+        }
+    }
+
+    private void deleteAllInTransaction(final Collection<T> objects,
+                                        final InstanceSecurityRestriction securityRestriction) {
+        doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                boolean trashMode = trashService.isTrashMode();
+                if (trashMode) {
+                    // move objects to trash if trash mode is active
+                    trashService.moveAllToTrash(objects, schemaVersion, recordHistory);
+                } else if (recordHistory) {
+                    // remove all historical data if history recording is active
+                    historyService.removeAll(objects);
+                }
+
+                // the objects are removed with a single query, so we don't have to retrieve
+                // them one by one using the current pm. The security restriction is a part of the query.
+                final List<Long> ids = getIds(objects);
+                long deleted = repository.deleteByIds(ids, securityRestriction);
+
+                if (!securityRestriction.isEmpty() && deleted != new HashSet<>(ids).size()) {
+                    throw new SecurityException();
+                }
+
+                // the events are sent once the outermost transaction, which may have retrieved the objects,
+                // is committed
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        // deleted with a query, which does not remove the instances from the cache of this instance
+                        evictClassFromCaches();
+
+                        if (allowDeleteEvent) {
+                            sendBulkEvent(ids, DELETE);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
     @Override
     @Transactional
     public T findTrashInstanceById(Object instanceId, Object entityId) {
@@ -329,6 +486,12 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.getDetachedField(instance, fieldName);
     }
 
+    @Override
+    @Transactional
+    public void evictInstances() {
+        repository.evictAll();
+    }
+
     @Override
     @Transactional
     public List<T> filter(Filters filters, QueryParams queryParams) {
@@ -343,11 +506,41 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.countForFilters(filters, securityRestriction);
     }
 
+    @Override
+    @Transactional
+    public List<AggregationRow> aggregate(Aggregation aggregation) {
+        return aggregate(aggregation, new ArrayList<Property>());
+    }
+
+    @Override
+    @Transactional
+    public List<AggregationRow> aggregate(Aggregation aggregation, Filters filters) {
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return repository.aggregate(aggregation, filters, securityRestriction);
+    }
+
+    @Override
+    @Transactional
+    public List<AggregationRow> aggregate(Aggregation aggregation, List<Property> properties) {
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return repository.aggregate(aggregation, properties, securityRestriction);
+    }
+
+    @Override
+    @Transactional
+    public List<Map<String, Object>> retrieveFields(List<String> fields, List<Property> properties,
+                                                    QueryParams queryParams) {
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return repository.retrieveFields(fields, properties, queryParams, securityRestriction);
+    }
+
     @Override
     @Transactional
     public void deleteAll() {
         InstanceSecurityRestriction securityRestriction = validateCredentials();
         repository.delete(new String[0], new Object[0], securityRestriction);
+
+        evictClassFromCachesOnCommit();
     }
 
     @Override
@@ -355,7 +548,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     public <R> R executeQuery(QueryExecution<R> queryExecution) {
         InstanceSecurityRestriction securityRestriction = validateCredentials();
         Query query = repository.getPersistenceManager().newQuery(repository.getClassType());
-        return queryExecution.execute(query, securityRestriction);
+        return queryExecution.execute(cacheable ? evictOnBulkDelete(query) : query, securityRestriction);
     }
 
     @Override
@@ -372,6 +565,18 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return retrieve(Constants.Util.ID_FIELD_NAME, id);
     }
 
+    @Override
+    @Transactional
+    public List<T> findByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return repository.retrieveAll(new String[]{Constants.Util.ID_FIELD_NAME},
+                new Object[]{new HashSet<>(ids)}, securityRestriction);
+    }
+
     @Override
     public <R> R doInTransaction(TransactionCallback<R> transactionCallback) {
         TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
@@ -401,24 +606,51 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     }
 
     protected InstanceSecurityRestriction validateCredentials() {
-        return validateCredentials(null);
-    }
-
-    protected InstanceSecurityRestriction validateCredentials(T instance) {
         InstanceSecurityRestriction restriction = new InstanceSecurityRestriction();
         restriction.setByOwner(securityMode == SecurityMode.OWNER);
         restriction.setByCreator(securityMode == SecurityMode.CREATOR);
 
-        if (!restriction.isEmpty() && instance != null) {
-            restriction = checkInstanceAccess(instance, restriction);
+        return restriction;
+    }
+
+    protected InstanceSecurityRestriction validateCredentials(T instance) {
+        return validateCredentials(null == instance ? Collections.<T>emptyList() : Collections.singletonList(instance));
+    }
+
+    protected InstanceSecurityRestriction validateCredentials(Collection<T> instances) {
+        InstanceSecurityRestriction restriction = validateCredentials();
+
+        if (!restriction.isEmpty() && !instances.isEmpty()) {
+            // the owner or creator stored in the database is compared by the query, without reading the instances
+            List<Long> ids = getIds(instances);
+
+            if (repository.countAccessible(ids, restriction) != new HashSet<>(ids).size()) {
+                for (T instance : instances) {
+                    checkInstanceAccess(instance, restriction);
+                }
+            }
         }
 
         return restriction;
     }
 
-    private InstanceSecurityRestriction checkInstanceAccess(T instance, InstanceSecurityRestriction restriction) {
-        T fromDb = repository.retrieve(getId(instance));
+    private T retrieveAccessible(Long id, InstanceSecurityRestriction restriction) {
+        T instance = repository.retrieveAccessible(id, restriction);
+
+        if (instance == null) {
+            // throws the same exception as before if the instance does not exist
+            repository.retrieve(id);
+            throw new SecurityException();
+        }
+
+        return instance;
+    }
+
+    private void checkInstanceAccess(T instance, InstanceSecurityRestriction restriction) {
+        checkAccess(repository.retrieve(getId(instance)), restriction);
+    }
 
+    private void checkAccess(T fromDb, InstanceSecurityRestriction restriction) {
         String creator = (String) PropertyUtil.safeGetProperty(fromDb, CREATOR_FIELD_NAME);
         String owner = (String) PropertyUtil.safeGetProperty(fromDb, OWNER_FIELD_NAME);
 
@@ -435,34 +667,38 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         if (!authorized) {
             throw new SecurityException();
         }
-
-        return restriction;
     }
 
     private void updateComboList(T instance) {
-        Entity entity = allEntities.retrieveById(entityId);
+        updateComboList(Collections.singletonList(instance));
+    }
+
+    private void updateComboList(Collection<T> instances) {
         Map<String, Collection> fieldUpdateMap = new HashMap<>();
 
-        for (Field listField : entity.getStringComboboxFields()) {
-            Object value = PropertyUtil.safeGetProperty(instance, listField.getName());
+        for (String fieldName : getComboboxStringFieldNames()) {
+            Set<Object> values = new HashSet<>();
 
-            if (value != null) {
-                Collection valAsColl = (value instanceof Collection) ? (Collection) value : Arrays.asList(value);
-                fieldUpdateMap.put(listField.getName(), valAsColl);
+            for (T instance : instances) {
+                Object value = PropertyUtil.safeGetProperty(instance, fieldName);
+
+                if (value != null) {
+                    values.addAll((value instanceof Collection) ? (Collection) value : Arrays.asList(value));
+                }
+            }
+
+            if (!values.isEmpty()) {
+                fieldUpdateMap.put(fieldName, values);
             }
         }
 
         if (!fieldUpdateMap.isEmpty()) {
-            entityService.updateComboboxValues(entityId, fieldUpdateMap);
+            entityService.addComboboxValues(entityId, fieldUpdateMap);
         }
     }
 
-    private List<Field> getComboboxStringFields() {
-        if (comboboxStringFields == null) {
-            comboboxStringFields = allEntities.retrieveById(entityId).getStringComboboxFields();
-        }
-
-        return comboboxStringFields;
+    private List<String> getComboboxStringFieldNames() {
+        return entityService.getEntitySnapshot(entityId).getStringComboboxFieldNames();
     }
 
     private void sendEvent(Long id, CrudEventType action) {
@@ -471,6 +707,80 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         osgiEventProxy.sendEvent(subject, params);
     }
 
+    private void sendBulkEvent(List<Long> ids, CrudEventType action) {
+        String subject = createBulkSubject(module, namespace, entityName, action);
+        Map<String, Object> params = buildBulkEventParams(module, namespace, entityName, getClassType().getName(), ids);
+        osgiEventProxy.sendEvent(subject, params);
+    }
+
+    /**
+     * Commands other Motech instances to remove the instances of this entity from their level 2 caches. The cache
+     * of this instance is kept up to date by the persistence manager.
+     */
+    private void evictFromCachesOfOtherInstances() {
+        if (cacheable) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(Level2CacheService.CLASS_NAME_PARAM, getClassType().getName());
+            params.put(Level2CacheService.ORIGIN_INSTANCE_PARAM, Level2CacheRegistry.getInstanceId());
+
+            osgiEventProxy.broadcastEvent(Level2CacheService.EVICT_CACHED_INSTANCES, params, true);
+        }
+    }
+
+    /**
+     * Removes the instances of this entity from the level 2 caches of all Motech instances, including this one.
+     * Used after deletes executed as a query, which bypass the cache of this instance.
+     */
+    private void evictClassFromCaches() {
+        if (cacheable) {
+            Level2CacheRegistry.evict(getClassType().getName());
+            evictFromCachesOfOtherInstances();
+        }
+    }
+
+    private void evictClassFromCachesOnCommit() {
+        if (cacheable) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictClassFromCaches();
+                }
+            });
+        }
+    }
+
+    /**
+     * Wraps the given query, so that the instances of this entity are evicted from the caches once the transaction
+     * commits, if the query was used to delete instances.
+     */
+    private Query evictOnBulkDelete(final Query query) {
+        return (Query) Proxy.newProxyInstance(Query.class.getClassLoader(), new Class<?>[] {Query.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("deletePersistentAll".equals(method.getName())) {
+                            evictClassFromCachesOnCommit();
+                        }
+
+                        try {
+                            return method.invoke(query, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    private List<Long> getIds(Collection<T> instances) {
+        List<Long> ids = new ArrayList<>(instances.size());
+
+        for (T instance : instances) {
+            ids.add((Long) getId(instance));
+        }
+
+        return ids;
+    }
+
     protected Object getId(T instance) {
         return PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
     }
@@ -5,10 +5,12 @@ import org.motechproject.mds.dto.AdvancedSettingsDto;
 import org.motechproject.mds.dto.DraftData;
 import org.motechproject.mds.dto.DraftResult;
 import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.RestOptionsDto;
 import org.motechproject.mds.dto.TrackingDto;
+import org.motechproject.mds.util.IdStrategy;
 import org.motechproject.mds.util.SecurityMode;
 
 import java.util.Collection;
@@ -401,6 +403,25 @@ public interface EntityService {
      */
     void updateMaxFetchDepth(Long entityId, Integer maxFetchDepth);
 
+    /**
+     * Updates whether instances of the given entity should be kept in the level 2 cache. The change
+     * takes effect once the entities bundle is regenerated.
+     *
+     * @param entityId the id of the entity to update
+     * @param cacheable true if instances of the entity should be cached, otherwise false
+     */
+    void updateCacheable(Long entityId, boolean cacheable);
+
+    /**
+     * Updates the strategy used for generating the ids of the given entity. The change takes effect once
+     * the entities bundle is regenerated. An entity using the {@link IdStrategy#IDENTITY} strategy keeps it,
+     * since its ids were not allocated from the sequence table used by the {@link IdStrategy#INCREMENT} strategy.
+     *
+     * @param entityId the id of the entity to update
+     * @param idStrategy the strategy used for generating the ids of the entity
+     */
+    void updateIdStrategy(Long entityId, IdStrategy idStrategy);
+
     /**
      * Provides ability to point fields that should be non-editable via UI.
      *
@@ -463,6 +484,25 @@ public interface EntityService {
      */
     void updateComboboxValues(Long entityId, Map<String, Collection> fieldValuesToUpdate);
 
+    /**
+     * Adds user supplied values to combobox fields without waiting for the entity to be updated. Values that
+     * are already available in the fields are ignored right away, the new ones are collected in memory and
+     * saved in the field settings in the background, using {@link #updateComboboxValues(Long, java.util.Map)}.
+     * Values added within a transaction are collected only if it commits. This method does not touch the schema
+     * tables, so it can be called for every saved instance.
+     *
+     * @param entityId id of an entity
+     * @param fieldValues a map of the field names and values to add to these fields
+     * @see #flushComboboxValues()
+     */
+    void addComboboxValues(Long entityId, Map<String, Collection> fieldValues);
+
+    /**
+     * Saves the combobox values added with {@link #addComboboxValues(Long, java.util.Map)}, which have not
+     * been saved in the field settings yet.
+     */
+    void flushComboboxValues();
+
     /**
      * Increments the version of the entity.
      *
@@ -470,4 +510,31 @@ public interface EntityService {
      * @throws org.motechproject.mds.ex.entity.EntityNotFoundException when entity of the given id does not exist
      */
     void incrementVersion(Long entityId);
+
+    /**
+     * Returns the snapshot of the committed schema of the given entity. Snapshots are kept in memory and are served
+     * without touching the database until the entity is changed through this service or the snapshots are
+     * invalidated, so this method should be preferred over reading fields and lookups one by one on runtime paths.
+     * The returned snapshot is shared and must not be modified.
+     *
+     * @param entityId id of an entity
+     * @return the snapshot of the entity
+     * @throws org.motechproject.mds.ex.entity.EntityNotFoundException when entity of the given id does not exist
+     */
+    EntitySnapshot getEntitySnapshot(Long entityId);
+
+    /**
+     * Returns the snapshot of the committed schema of the entity with the given class name.
+     *
+     * @param className the class name of an entity
+     * @return the snapshot of the entity, or null if such entity does not exist
+     * @see #getEntitySnapshot(Long)
+     */
+    EntitySnapshot getEntitySnapshot(String className);
+
+    /**
+     * Discards all entity snapshots, so that they are rebuilt the next time they are requested. Called when the
+     * entities bundle is regenerated, since the schema could have been changed by another Motech instance.
+     */
+    void invalidateEntitySnapshots();
 }
@@ -2,6 +2,7 @@ package org.motechproject.mds.service;
 
 import org.motechproject.mds.query.QueryParams;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -20,6 +21,14 @@ public interface HistoryService {
      */
     void record(Object instance);
 
+    /**
+     * Records changes made on the given instances of entity. Works like {@link #record(Object)}, but
+     * the historical data of all instances is saved in a single batch.
+     *
+     * @param instances instances created from the same entity definition.
+     */
+    void recordAll(Collection instances);
+
     /**
      * Removes all historical data with information what changes were made on the given instance
      * of entity.
@@ -28,6 +37,14 @@ public interface HistoryService {
      */
     void remove(Object instance);
 
+    /**
+     * Removes all historical data related with the given instances of entity, using a single delete
+     * statement.
+     *
+     * @param instances instances created from the same entity definition.
+     */
+    void removeAll(Collection instances);
+
     /**
      * Sets the trash flag for historical data related with the given instance object.
      *
@@ -36,6 +53,15 @@ public interface HistoryService {
      */
     void setTrashFlag(Object instance, Object trash, boolean flag);
 
+    /**
+     * Sets the trash flag for historical data related with the given instances, which were moved
+     * to trash. The historical data of all instances is updated in a single batch.
+     *
+     * @param instances instances created from the same entity definition.
+     * @param trash     trash instances, in the same order as the instances they were created from.
+     */
+    void setTrashFlag(List instances, List trash);
+
     /**
      * Returns the historical data for the given instance. This method return historical data only
      * for objects that are not in the MDS trash. For trash instances the return value will be
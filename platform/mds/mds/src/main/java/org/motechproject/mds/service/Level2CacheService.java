@@ -0,0 +1,41 @@
+package org.motechproject.mds.service;
+
+import org.motechproject.mds.dto.CacheStatisticsDto;
+
+/**
+ * The <code>Level2CacheService</code> interface provides methods for managing the level 2 cache of MDS entity
+ * instances. Evicting instances from the cache also commands all other Motech instances to do the same.
+ * Only entities marked as cacheable have their instances cached.
+ */
+public interface Level2CacheService {
+
+    String EVICT_CACHED_INSTANCES = "org_motechproject_mds_evict_cached_instances";
+
+    String CLASS_NAME_PARAM = "class_name";
+    String ORIGIN_INSTANCE_PARAM = "origin_instance_id";
+
+    /**
+     * Returns the statistics of the level 2 cache of this Motech instance.
+     *
+     * @return the statistics of the cache
+     */
+    CacheStatisticsDto getStatistics();
+
+    /**
+     * Resets the hit, miss and eviction counters of the level 2 cache of this Motech instance.
+     */
+    void resetStatistics();
+
+    /**
+     * Removes all instances of the given entity class from the level 2 cache and commands other Motech instances
+     * to do the same.
+     *
+     * @param className the name of the entity class
+     */
+    void evict(String className);
+
+    /**
+     * Removes all instances from the level 2 cache and commands other Motech instances to do the same.
+     */
+    void evictAll();
+}
@@ -1,12 +1,17 @@
 package org.motechproject.mds.service;
 
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.AggregationRow;
+import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.springframework.transaction.support.TransactionCallback;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -27,6 +32,16 @@ public interface MotechDataService<T> {
      */
     T create(T object);
 
+    /**
+     * Creates the given instances in MDS. All instances are persisted in a single transaction and historical
+     * revisions are written in batches. Instead of a CRUD event for every instance, a single bulk event carrying
+     * the ids of all created instances is sent after the transaction is committed.
+     *
+     * @param objects instances to create
+     * @return created instances
+     */
+    List<T> createAll(Collection<T> objects);
+
     /**
      * Retrieves instance from MDS based on the value of the given primary key.
      *
@@ -60,6 +75,16 @@ public interface MotechDataService<T> {
      */
     T update(T object);
 
+    /**
+     * Updates the given instances in MDS. All instances are updated in a single transaction and historical
+     * revisions are written in batches. Instead of a CRUD event for every instance, a single bulk event carrying
+     * the ids of all updated instances is sent after the transaction is committed.
+     *
+     * @param objects instances to update
+     * @return updated instances
+     */
+    List<T> updateAll(Collection<T> objects);
+
     /**
      * Updates the given instance in MDS if it exists (checks the presence of the instances id to verify that)
      * or creates a new one if it doesn't.
@@ -111,6 +136,15 @@ public interface MotechDataService<T> {
      */
     void delete(String primaryKeyName, Object value);
 
+    /**
+     * Deletes the given instances from MDS. All instances are deleted (or moved to trash) in a single
+     * transaction. Instead of a CRUD event for every instance, a single bulk event carrying the ids of all
+     * deleted instances is sent after the transaction is committed.
+     *
+     * @param objects instances to delete
+     */
+    void deleteAll(Collection<T> objects);
+
     /**
      * Retrieves an instance, that has been moved to trash, by its id. These instances are
      * not retrieved with other retrieve methods.
@@ -146,6 +180,13 @@ public interface MotechDataService<T> {
      */
     Object getDetachedField(T instance, String fieldName);
 
+    /**
+     * Evicts instances of type {@value T} from the persistence manager of the current transaction, so that
+     * they can be garbage collected. Useful when processing large amounts of instances in a single transaction.
+     * Instances that are not committed yet are not affected.
+     */
+    void evictInstances();
+
     /**
      * Retrieves all instances of type {@value T} from MDS, filtered using specified filters
      * and query params.
@@ -164,6 +205,48 @@ public interface MotechDataService<T> {
      */
     long countForFilters(Filters filters);
 
+    /**
+     * Computes the given aggregation for all instances of type {@value T}. The aggregates are computed by the
+     * database, so the instances are not retrieved.
+     *
+     * @param aggregation the group by fields and the aggregate functions
+     * @return the rows of the aggregation, one for every group
+     * @throws IllegalArgumentException if the aggregation is not valid for the entity
+     */
+    List<AggregationRow> aggregate(Aggregation aggregation);
+
+    /**
+     * Computes the given aggregation for the instances of type {@value T}, filtered by the given filters.
+     *
+     * @param aggregation the group by fields and the aggregate functions
+     * @param filters filters to use
+     * @return the rows of the aggregation, one for every group
+     * @throws IllegalArgumentException if the aggregation is not valid for the entity
+     */
+    List<AggregationRow> aggregate(Aggregation aggregation, Filters filters);
+
+    /**
+     * Computes the given aggregation for the instances of type {@value T}, which match the given properties.
+     *
+     * @param aggregation the group by fields and the aggregate functions
+     * @param properties properties the instances must match
+     * @return the rows of the aggregation, one for every group
+     * @throws IllegalArgumentException if the aggregation is not valid for the entity
+     */
+    List<AggregationRow> aggregate(Aggregation aggregation, List<Property> properties);
+
+    /**
+     * Retrieves the values of the given fields of the instances of type {@value T}, which match the given
+     * properties. Only the given fields are selected by the database, so the instances are not retrieved.
+     *
+     * @param fields the fields to retrieve
+     * @param properties properties the instances must match
+     * @param queryParams query parameters to use retrieving the values, can be null
+     * @return maps of the field names and their values, one for every instance
+     * @throws IllegalArgumentException if an unknown field is given
+     */
+    List<Map<String, Object>> retrieveFields(List<String> fields, List<Property> properties, QueryParams queryParams);
+
     /**
      * Removes all instances of type {@value T} from MDS.
      */
@@ -188,6 +271,15 @@ public interface MotechDataService<T> {
      */
     T findById(Long id);
 
+    /**
+     * Retrieves instances of type {@value T} with the given ids from MDS, using a single query.
+     * Ids of instances that do not exist are ignored.
+     *
+     * @param ids ids of the instances
+     * @return instances with the given ids, in no particular order
+     */
+    List<T> findByIds(Collection<Long> ids);
+
     /**
      * Allows to wrap several instructions into a single transaction. Developers should implement
      * the {@link TransactionCallback} interface and override the
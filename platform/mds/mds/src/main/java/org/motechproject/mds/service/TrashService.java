@@ -30,6 +30,16 @@ public interface TrashService {
      */
     void moveToTrash(Object instance, Long schemaVersion, boolean recordHistory);
 
+    /**
+     * Moves the given instances to the trash. Works like {@link #moveToTrash(Object, Long, boolean)},
+     * but the trash instances are saved in a single batch.
+     *
+     * @param instances instances created from the same entity definition.
+     * @param schemaVersion current version of the entity schema
+     * @param recordHistory true if entity has active history recording ; otherwise false
+     */
+    void moveAllToTrash(Collection instances, Long schemaVersion, boolean recordHistory);
+
     /**
      * Return instance with given id from trash.
      *
@@ -58,8 +68,10 @@ public interface TrashService {
     void scheduleEmptyTrashJob();
 
     /**
-     * Cleans the module trash. All instances in trash should be removed permanently and if they
-     * contain any historical data they should also be removed permanently.
+     * Cleans the module trash. All instances that were moved to trash earlier than the time value
+     * and time unit (defined in {@link org.motechproject.mds.util.Constants.Config#MODULE_FILE})
+     * ago should be removed permanently and if they contain any historical data they should also
+     * be removed permanently. The instances are removed in chunks, each in a separate transaction.
      * <p/>
      * This method should only be executed by the job created in the
      * {@link #scheduleEmptyTrashJob()} method.
@@ -0,0 +1,259 @@
+package org.motechproject.mds.service.impl;
+
+import org.motechproject.mds.service.EntityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>ComboboxValueCollector</code> collects new values of combobox fields that allow user supplied values.
+ * Saving an instance only adds the values to an in-memory set of the field, the values are saved in the field
+ * settings periodically by a background thread, in a single transaction per entity. This way saving instances never
+ * updates the entity and concurrent writers do not wait for each other. Each value is saved once, no matter how
+ * many instances used it in the meantime. The collected values are saved when the collector is stopped.
+ * <p>
+ * Values added within a transaction are held back until the transaction commits, values of a transaction that was
+ * rolled back are dropped, so the field settings never get values of instances which were not saved.
+ */
+class ComboboxValueCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComboboxValueCollector.class);
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 5000;
+
+    private final ConcurrentMap<Long, ConcurrentMap<String, Set<String>>> pendingValues = new ConcurrentHashMap<>();
+
+    private final EntityService entityService;
+    private final PlatformTransactionManager transactionManager;
+    private final long flushInterval;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param entityService the service used for saving the values in the field settings
+     * @param transactionManager the transaction manager used for saving the values
+     * @param flushInterval the time, in milliseconds, between saving the collected values
+     */
+    ComboboxValueCollector(EntityService entityService, PlatformTransactionManager transactionManager,
+                           long flushInterval) {
+        if (flushInterval < 1) {
+            throw new IllegalArgumentException("The flush interval must be greater than zero");
+        }
+
+        this.entityService = entityService;
+        this.transactionManager = transactionManager;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Adds the given value of a combobox field. The value will be saved in the field settings in the background.
+     * If a transaction is active, the value is collected once the transaction commits.
+     *
+     * @param entityId the id of the entity
+     * @param fieldName the name of the combobox field
+     * @param value the new value
+     */
+    void add(Long entityId, String fieldName, String value) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionValues transactionValues = getTransactionValues();
+
+            if (null == transactionValues) {
+                transactionValues = new TransactionValues();
+                TransactionSynchronizationManager.registerSynchronization(transactionValues);
+            }
+
+            transactionValues.values.add(new PendingValue(entityId, fieldName, value));
+        } else {
+            collect(entityId, fieldName, value);
+        }
+    }
+
+    /**
+     * Saves the collected values of all entities in the field settings.
+     */
+    void flush() {
+        for (Map.Entry<Long, ConcurrentMap<String, Set<String>>> entry : pendingValues.entrySet()) {
+            Map<String, Collection> fieldValues = drain(entry.getValue());
+
+            if (!fieldValues.isEmpty()) {
+                flush(entry.getKey(), fieldValues);
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread and saves the values collected so far.
+     */
+    synchronized void stop() {
+        if (null != executor) {
+            executor.shutdownNow();
+            executor = null;
+        }
+
+        flush();
+    }
+
+    /**
+     * @return the number of values waiting to be saved
+     */
+    int getPendingCount() {
+        int count = 0;
+
+        for (ConcurrentMap<String, Set<String>> fields : pendingValues.values()) {
+            for (Set<String> values : fields.values()) {
+                count += values.size();
+            }
+        }
+
+        return count;
+    }
+
+    private void collect(Long entityId, String fieldName, String value) {
+        getPendingValues(entityId, fieldName).add(value);
+        start();
+    }
+
+    private TransactionValues getTransactionValues() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionValues
+                    && ((TransactionValues) synchronization).getCollector() == this) {
+                return (TransactionValues) synchronization;
+            }
+        }
+
+        return null;
+    }
+
+    private synchronized void start() {
+        if (null == executor) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "mds-combobox-values");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Set<String> getPendingValues(Long entityId, String fieldName) {
+        ConcurrentMap<String, Set<String>> fields = pendingValues.get(entityId);
+        if (null == fields) {
+            ConcurrentMap<String, Set<String>> newFields = new ConcurrentHashMap<>();
+            fields = pendingValues.putIfAbsent(entityId, newFields);
+            fields = null == fields ? newFields : fields;
+        }
+
+        Set<String> values = fields.get(fieldName);
+        if (null == values) {
+            Set<String> newValues = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            values = fields.putIfAbsent(fieldName, newValues);
+            values = null == values ? newValues : values;
+        }
+
+        return values;
+    }
+
+    private Map<String, Collection> drain(Map<String, Set<String>> fields) {
+        Map<String, Collection> fieldValues = new HashMap<>();
+
+        for (Map.Entry<String, Set<String>> entry : fields.entrySet()) {
+            // the sets are never replaced, so values added while draining are saved with the next flush
+            List<String> values = new ArrayList<>();
+            Iterator<String> iterator = entry.getValue().iterator();
+
+            while (iterator.hasNext()) {
+                values.add(iterator.next());
+                iterator.remove();
+            }
+
+            if (!values.isEmpty()) {
+                fieldValues.put(entry.getKey(), values);
+            }
+        }
+
+        return fieldValues;
+    }
+
+    private void flush(final Long entityId, final Map<String, Collection> fieldValues) {
+        try {
+            new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    entityService.updateComboboxValues(entityId, fieldValues);
+                }
+            });
+        } catch (RuntimeException e) {
+            // the values are not kept, they will be collected again when an instance uses them
+            LOGGER.warn("Unable to save new combobox values of entity with id: {}", entityId, e);
+        }
+    }
+
+    /**
+     * Holds the values added in a single transaction and collects them after the transaction commits. The
+     * synchronization is suspended and resumed together with its transaction.
+     */
+    private class TransactionValues extends TransactionSynchronizationAdapter {
+
+        private final List<PendingValue> values = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            for (PendingValue value : values) {
+                collect(value.entityId, value.fieldName, value.value);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // values of a transaction that was rolled back are not collected
+            values.clear();
+        }
+
+        private ComboboxValueCollector getCollector() {
+            return ComboboxValueCollector.this;
+        }
+    }
+
+    private static final class PendingValue {
+
+        private final Long entityId;
+        private final String fieldName;
+        private final String value;
+
+        private PendingValue(Long entityId, String fieldName, String value) {
+            this.entityId = entityId;
+            this.fieldName = fieldName;
+            this.value = value;
+        }
+    }
+}
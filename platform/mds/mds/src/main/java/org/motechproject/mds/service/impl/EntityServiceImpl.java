@@ -19,6 +19,7 @@ import org.motechproject.mds.dto.AdvancedSettingsDto;
 import org.motechproject.mds.dto.DraftData;
 import org.motechproject.mds.dto.DraftResult;
 import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.FieldBasicDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.FieldValidationDto;
@@ -52,6 +53,7 @@ import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.IdStrategy;
 import org.motechproject.mds.util.LookupName;
 import org.motechproject.mds.util.SecurityMode;
 import org.motechproject.mds.util.TypeHelper;
@@ -63,8 +65,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -73,9 +82,13 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.motechproject.mds.repository.query.DataSourceReferenceQueryExecutionHelper.DATA_SOURCE_CLASS_NAME;
 import static org.motechproject.mds.repository.query.DataSourceReferenceQueryExecutionHelper.createLookupReferenceQuery;
@@ -107,6 +120,13 @@ public class EntityServiceImpl implements EntityService {
     private BundleContext bundleContext;
     private EntityValidator entityValidator;
     private ComboboxDataMigrationHelper comboboxDataMigrationHelper;
+    private PlatformTransactionManager transactionManager;
+
+    private final ConcurrentMap<Long, EntitySnapshot> entitySnapshots = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> entitySnapshotIds = new ConcurrentHashMap<>();
+    private final AtomicLong snapshotGeneration = new AtomicLong();
+
+    private ComboboxValueCollector comboboxValueCollector;
 
     @Override
     @Transactional
@@ -158,15 +178,39 @@ public class EntityServiceImpl implements EntityService {
 
         if (doEntityUpdate) {
             allEntities.updateAndIncrementVersion(entity);
+            evictEntitySnapshotOnCompletion(entityId);
+        }
+    }
+
+    @Override
+    public void addComboboxValues(Long entityId, Map<String, Collection> fieldValues) {
+        EntitySnapshot snapshot = getEntitySnapshot(entityId);
+
+        for (Map.Entry<String, Collection> fieldValue : fieldValues.entrySet()) {
+            Set<String> cbValues = snapshot.getStringComboboxValues(fieldValue.getKey());
+
+            for (Object value : fieldValue.getValue()) {
+                String valueAsStr = value.toString().trim().replaceAll(" ", "%20");
+                if (!cbValues.contains(valueAsStr)) {
+                    getComboboxValueCollector().add(entityId, fieldValue.getKey(), valueAsStr);
+                }
+            }
         }
     }
 
+    @Override
+    public void flushComboboxValues() {
+        getComboboxValueCollector().flush();
+    }
+
     @Override
     @Transactional
     public void incrementVersion(Long entityId) {
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
         entity.incrementVersion();
+
+        evictEntitySnapshotOnCompletion(entityId);
     }
 
     @Override
@@ -450,6 +494,8 @@ public class EntityServiceImpl implements EntityService {
         allEntityDrafts.delete(draft);
         addModuleToRefresh(parent, modulesToRefresh);
 
+        evictEntitySnapshotOnCompletion(parent.getId());
+
         return modulesToRefresh;
     }
 
@@ -521,6 +567,7 @@ public class EntityServiceImpl implements EntityService {
             Field relatedField = entity.getField(field.getMetadataValue(RELATED_FIELD));
             entity.removeField(relatedField.getId());
             entity.incrementVersion();
+            evictEntitySnapshotOnCompletion(entity.getId());
             addModuleToRefresh(entity, modulesToRefresh);
         }
     }
@@ -556,6 +603,7 @@ public class EntityServiceImpl implements EntityService {
 
         if (fieldChanged || relatedEntityChanged) {
             relatedEntity.incrementVersion();
+            evictEntitySnapshotOnCompletion(relatedEntity.getId());
         }
         addModuleToRefresh(relatedEntity, modulesToRefresh);
     }
@@ -583,6 +631,7 @@ public class EntityServiceImpl implements EntityService {
 
         entity.addField(relatedField);
         entity.incrementVersion();
+        evictEntitySnapshotOnCompletion(entity.getId());
         addModuleToRefresh(entity, modulesToRefresh);
     }
 
@@ -643,6 +692,7 @@ public class EntityServiceImpl implements EntityService {
     public void updateRestOptions(Long entityId, RestOptionsDto restOptionsDto) {
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
+        evictEntitySnapshotOnCompletion(entityId);
 
         entity.updateRestOptions(restOptionsDto);
     }
@@ -652,6 +702,7 @@ public class EntityServiceImpl implements EntityService {
     public void updateTracking(Long entityId, TrackingDto trackingDto) {
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
+        evictEntitySnapshotOnCompletion(entityId);
 
         entity.updateTracking(trackingDto);
     }
@@ -679,6 +730,7 @@ public class EntityServiceImpl implements EntityService {
     public void addLookups(Long entityId, Collection<LookupDto> lookups) {
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
+        evictEntitySnapshotOnCompletion(entityId);
 
         removeLookup(entity, lookups);
         addOrUpdateLookups(entity, lookups);
@@ -775,6 +827,8 @@ public class EntityServiceImpl implements EntityService {
 
         allEntityDrafts.deleteAll(entity);
         allEntities.delete(entity);
+
+        evictEntitySnapshotOnCompletion(entity.getId());
     }
 
     @Override
@@ -1068,6 +1122,7 @@ public class EntityServiceImpl implements EntityService {
         Entity entity = allEntities.retrieveById(entityId);
 
         assertEntityExists(entity, entityId);
+        evictEntitySnapshotOnCompletion(entityId);
 
         removeFields(entity, fields);
 
@@ -1165,6 +1220,7 @@ public class EntityServiceImpl implements EntityService {
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
+        evictEntitySnapshotOnCompletion(entityDto.getId());
 
         for (Field field : entity.getFields()) {
             boolean isUIFilterable = fieldNames.contains(field.getName());
@@ -1216,6 +1272,7 @@ public class EntityServiceImpl implements EntityService {
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
+        evictEntitySnapshotOnCompletion(entityDto.getId());
 
         List<Field> fields = entity.getFields();
 
@@ -1239,6 +1296,7 @@ public class EntityServiceImpl implements EntityService {
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
+        evictEntitySnapshotOnCompletion(entityDto.getId());
 
         List<Field> fields = entity.getFields();
 
@@ -1275,6 +1333,7 @@ public class EntityServiceImpl implements EntityService {
         Entity entity = allEntities.retrieveById(entityId);
 
         assertEntityExists(entity, entityId);
+        evictEntitySnapshotOnCompletion(entityId);
 
         entity.setSecurityMode(securityMode);
         entity.setSecurityMembers(securityMembers);
@@ -1289,12 +1348,156 @@ public class EntityServiceImpl implements EntityService {
     public void updateMaxFetchDepth(Long entityId, Integer maxFetchDepth) {
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
+        evictEntitySnapshotOnCompletion(entityId);
 
         entity.setMaxFetchDepth(maxFetchDepth);
 
         allEntities.update(entity);
     }
 
+    @Override
+    @Transactional
+    public void updateCacheable(Long entityId, boolean cacheable) {
+        Entity entity = allEntities.retrieveById(entityId);
+        assertEntityExists(entity, entityId);
+        evictEntitySnapshotOnCompletion(entityId);
+
+        entity.setCacheable(cacheable);
+
+        allEntities.update(entity);
+    }
+
+    @Override
+    @Transactional
+    public void updateIdStrategy(Long entityId, IdStrategy idStrategy) {
+        Entity entity = allEntities.retrieveById(entityId);
+        assertEntityExists(entity, entityId);
+        evictEntitySnapshotOnCompletion(entityId);
+
+        if (entity.getIdStrategy() == IdStrategy.IDENTITY && idStrategy != IdStrategy.IDENTITY) {
+            // the sequence table knows nothing about the ids generated by the database
+            LOGGER.warn("The ids of entity {} are generated by the database, they cannot be allocated from " +
+                    "the sequence table again. The {} strategy will be kept.", entity.getClassName(),
+                    IdStrategy.IDENTITY);
+        } else if (null != idStrategy) {
+            entity.setIdStrategy(idStrategy);
+
+            allEntities.update(entity);
+        }
+    }
+
+    @Override
+    public EntitySnapshot getEntitySnapshot(Long entityId) {
+        EntitySnapshot snapshot = loadEntitySnapshot(entityId, null);
+
+        if (snapshot == null) {
+            throw new EntityNotFoundException(entityId);
+        }
+
+        return snapshot;
+    }
+
+    @Override
+    public EntitySnapshot getEntitySnapshot(String className) {
+        return loadEntitySnapshot(entitySnapshotIds.get(className), className);
+    }
+
+    @Override
+    public void invalidateEntitySnapshots() {
+        snapshotGeneration.incrementAndGet();
+        entitySnapshots.clear();
+        entitySnapshotIds.clear();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    snapshotGeneration.incrementAndGet();
+                    entitySnapshots.clear();
+                    entitySnapshotIds.clear();
+                }
+            });
+        }
+    }
+
+    private EntitySnapshot loadEntitySnapshot(final Long entityId, final String className) {
+        EntitySnapshot snapshot = (entityId == null) ? null : entitySnapshots.get(entityId);
+
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        // a snapshot built while the schema was being changed must not be cached
+        final long generation = snapshotGeneration.get();
+
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+
+        return template.execute(new TransactionCallback<EntitySnapshot>() {
+            @Override
+            public EntitySnapshot doInTransaction(TransactionStatus status) {
+                Entity entity = (className != null)
+                        ? allEntities.retrieveByClassName(className)
+                        : allEntities.retrieveById(entityId);
+
+                if (entity == null) {
+                    if (className != null) {
+                        entitySnapshotIds.remove(className);
+                    }
+                    return null;
+                }
+
+                EntitySnapshot built = buildEntitySnapshot(entity);
+
+                if (generation == snapshotGeneration.get()) {
+                    entitySnapshots.putIfAbsent(built.getEntityId(), built);
+                    entitySnapshotIds.put(built.getClassName(), built.getEntityId());
+                }
+
+                return built;
+            }
+        });
+    }
+
+    private EntitySnapshot buildEntitySnapshot(Entity entity) {
+        EntityDto entityDto = entity.toDto();
+        entityDto.setReadOnlyAccess(false);
+
+        List<LookupDto> lookups = new ArrayList<>();
+        Map<String, Map<String, FieldDto>> lookupFieldsMappings = new HashMap<>();
+        for (Lookup lookup : entity.getLookups()) {
+            lookups.add(lookup.toDto());
+            lookupFieldsMappings.put(lookup.getLookupName(), getLookupFieldsMapping(entity.getId(), lookup.getLookupName()));
+        }
+
+        Map<String, Set<String>> stringComboboxValues = new LinkedHashMap<>();
+        for (Field field : entity.getStringComboboxFields()) {
+            stringComboboxValues.put(field.getName(), new HashSet<>(Arrays.asList(new ComboboxHolder(field).getValues())));
+        }
+
+        return new EntitySnapshot(entityDto, entity.getEntityVersion(), getFields(entity.getId(), false), lookups,
+                lookupFieldsMappings, stringComboboxValues);
+    }
+
+    /**
+     * Discards the snapshot of the given entity right away and once again after the current transaction completes,
+     * so that a snapshot built from the uncommitted schema is not kept if the transaction is rolled back.
+     */
+    private void evictEntitySnapshotOnCompletion(final Long entityId) {
+        snapshotGeneration.incrementAndGet();
+        entitySnapshots.remove(entityId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    snapshotGeneration.incrementAndGet();
+                    entitySnapshots.remove(entityId);
+                }
+            });
+        }
+    }
+
     private void assertEntityExists(Entity entity, Long entityId) {
         if (entity == null) {
             throw new EntityNotFoundException(entityId);
@@ -1429,4 +1632,24 @@ public class EntityServiceImpl implements EntityService {
     public void setComboboxDataMigrationHelper(ComboboxDataMigrationHelper comboboxDataMigrationHelper) {
         this.comboboxDataMigrationHelper = comboboxDataMigrationHelper;
     }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if (null != comboboxValueCollector) {
+            comboboxValueCollector.stop();
+        }
+    }
+
+    private synchronized ComboboxValueCollector getComboboxValueCollector() {
+        if (comboboxValueCollector == null) {
+            comboboxValueCollector = new ComboboxValueCollector(this, transactionManager,
+                    ComboboxValueCollector.DEFAULT_FLUSH_INTERVAL);
+        }
+        return comboboxValueCollector;
+    }
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
 }
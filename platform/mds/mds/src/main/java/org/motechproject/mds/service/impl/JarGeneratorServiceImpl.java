@@ -7,7 +7,6 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.velocity.app.VelocityEngine;
-import org.motechproject.commons.api.ThreadSuspender;
 import org.motechproject.mds.MDSDataProvider;
 import org.motechproject.mds.builder.MDSConstructor;
 import org.motechproject.mds.domain.ClassData;
@@ -26,6 +25,7 @@ import org.motechproject.mds.javassist.MotechClassPool;
 import org.motechproject.mds.osgi.EntitiesBundleMonitor;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.repository.MetadataHolder;
+import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.JarGeneratorService;
 import org.motechproject.mds.service.JdoListenerRegistryService;
 import org.motechproject.mds.util.ClassName;
@@ -36,8 +36,6 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
-import org.osgi.framework.FrameworkEvent;
-import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.wiring.FrameworkWiring;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,8 +88,7 @@ import static org.motechproject.mds.util.Constants.Util.TRUE;
 public class JarGeneratorServiceImpl implements JarGeneratorService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JarGeneratorServiceImpl.class);
-    private static final Long WAIT_TIME = 50L;
-    private static final Integer MAX_WAIT_COUNT = 1000;
+    private static final long REFRESH_TIMEOUT = 50000;
 
     private BundleHeaders bundleHeaders;
     private MetadataHolder metadataHolder;
@@ -102,8 +99,7 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
     private EntitiesBundleMonitor monitor;
     private BundleContext bundleContext;
     private AllEntities allEntities;
-    private final Object lock = new Object();
-    private boolean moduleRefreshed;
+    private EntityService entityService;
 
     @Override
     @Transactional
@@ -127,6 +123,8 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
 
         clearModulesCache(moduleNames);
         cleanEntitiesBundleCachedClasses();
+        // the schema might have been changed by another Motech instance
+        entityService.invalidateEntitySnapshots();
 
         boolean constructed = mdsConstructor.constructEntities();
 
@@ -183,9 +181,6 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
 
         // Start bundles again if we stopped them manually
         startModulesForCoreBundleRefresh(moduleNames);
-
-        // Give framework some time before returning to the caller
-        ThreadSuspender.sleep(2000);
     }
 
     private void stopModulesForCoreBundleRefresh(String[] moduleNames) {
@@ -595,20 +590,7 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
         LOGGER.info("Refreshing module '{}' before restarting the entities bundle", moduleName);
         Bundle bundleToRefresh = WebBundleUtil.findBundleBySymbolicName(bundleContext, moduleName);
         if (bundleToRefresh != null) {
-            Bundle frameworkBundle = bundleContext.getBundle(0);
-            FrameworkWiring frameworkWiring = frameworkBundle.adapt(FrameworkWiring.class);
-            moduleRefreshed = false;
-            FrameworkListener frameworkListener = new FrameworkListener() {
-                @Override
-                public void frameworkEvent(FrameworkEvent frameworkEvent) {
-                    synchronized (lock) {
-                        moduleRefreshed = frameworkEvent.getType() == FrameworkEvent.PACKAGES_REFRESHED;
-                    }
-                }
-            };
-
-            frameworkWiring.refreshBundles(Arrays.asList(bundleToRefresh), frameworkListener);
-            waitForPackagesRefreshed();
+            MdsBundleHelper.refreshBundles(bundleContext, Arrays.asList(bundleToRefresh), REFRESH_TIMEOUT);
         } else {
             LOGGER.warn("Module '{}' not present, skipping refresh, but this can indicate of an error",
                     moduleName);
@@ -622,20 +604,6 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
         }
     }
 
-    private void waitForPackagesRefreshed() {
-        int count = 0;
-        synchronized (lock) {
-            while (!moduleRefreshed && count < MAX_WAIT_COUNT) {
-                try {
-                    lock.wait(WAIT_TIME);
-                } catch (InterruptedException e) {
-                    LOGGER.error("Interrupted while waiting", e);
-                }
-                ++count;
-            }
-        }
-    }
-
     @Autowired
     public void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
@@ -672,6 +640,11 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
         this.allEntities = allEntities;
     }
 
+    @Autowired
+    public void setEntityService(EntityService entityService) {
+        this.entityService = entityService;
+    }
+
     @Autowired
     public void setListenerRegistryService(JdoListenerRegistryService jdoListenerRegistryService) {
         this.jdoListenerRegistryService = jdoListenerRegistryService;
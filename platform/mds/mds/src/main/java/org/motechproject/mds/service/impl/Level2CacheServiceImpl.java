@@ -0,0 +1,80 @@
+package org.motechproject.mds.service.impl;
+
+import org.motechproject.mds.dto.CacheStatisticsDto;
+import org.motechproject.mds.jdo.Level2CacheRegistry;
+import org.motechproject.mds.service.Level2CacheService;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Default implementation of the <code>Level2CacheService</code> interface. The cached instances are evicted through
+ * the {@link Level2CacheRegistry} and the eviction requests are broadcast to other Motech instances using the
+ * {@link OsgiEventProxy}. Without the event module, the eviction only affects this instance.
+ */
+@Service
+public class Level2CacheServiceImpl implements Level2CacheService, EventHandler {
+
+    private OsgiEventProxy osgiEventProxy;
+
+    @Override
+    public CacheStatisticsDto getStatistics() {
+        return Level2CacheRegistry.getStatistics();
+    }
+
+    @Override
+    public void resetStatistics() {
+        Level2CacheRegistry.resetStatistics();
+    }
+
+    @Override
+    public void evict(String className) {
+        Level2CacheRegistry.evict(className);
+        broadcast(className);
+    }
+
+    @Override
+    public void evictAll() {
+        Level2CacheRegistry.evictAll();
+        broadcast(null);
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        if (!EVICT_CACHED_INSTANCES.equals(event.getTopic())) {
+            throw new IllegalStateException("Received an event with an unknown subject/topic: " + event.getTopic());
+        }
+
+        // the cache of the instance that sent the request is already up to date
+        if (!Level2CacheRegistry.getInstanceId().equals(event.getProperty(ORIGIN_INSTANCE_PARAM))) {
+            String className = (String) event.getProperty(CLASS_NAME_PARAM);
+
+            if (null == className) {
+                Level2CacheRegistry.evictAll();
+            } else {
+                Level2CacheRegistry.evict(className);
+            }
+        }
+    }
+
+    private void broadcast(String className) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(ORIGIN_INSTANCE_PARAM, Level2CacheRegistry.getInstanceId());
+
+        if (null != className) {
+            params.put(CLASS_NAME_PARAM, className);
+        }
+
+        osgiEventProxy.broadcastEvent(EVICT_CACHED_INSTANCES, params, true);
+    }
+
+    @Autowired
+    public void setOsgiEventProxy(OsgiEventProxy osgiEventProxy) {
+        this.osgiEventProxy = osgiEventProxy;
+    }
+}
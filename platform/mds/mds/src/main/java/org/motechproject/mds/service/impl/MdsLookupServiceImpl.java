@@ -1,6 +1,6 @@
 package org.motechproject.mds.service.impl;
 
-import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.ex.lookup.SingleResultFromLookupExpectedException;
 import org.motechproject.mds.javassist.MotechClassPool;
@@ -131,10 +131,10 @@ public class MdsLookupServiceImpl implements MDSLookupService {
         MotechDataService dataService = OSGiServiceUtils.findService(bundleContext,
                 MotechClassPool.getInterfaceName(fullyQualifiedEntityClassName));
 
-        EntityDto entity = entityService.getEntityByClassName(fullyQualifiedEntityClassName);
-        LookupDto lookup = entityService.getLookupByName(entity.getId(), lookupName);
+        EntitySnapshot snapshot = entityService.getEntitySnapshot(fullyQualifiedEntityClassName);
+        LookupDto lookup = snapshot.getLookup(lookupName);
 
-        return new LookupExecutor(dataService, lookup, entityService.getLookupFieldsMapping(entity.getId(), lookupName));
+        return new LookupExecutor(dataService, lookup, snapshot.getLookupFieldsMapping(lookupName));
     }
 
     private <T> T assertAndReturnSingleResult(Object result, String lookupName) {
@@ -6,6 +6,7 @@ import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.ex.csv.DataExportException;
 import org.motechproject.mds.ex.entity.EntityNotFoundException;
 import org.motechproject.mds.helper.DataServiceHelper;
+import org.motechproject.mds.query.KeysetIterator;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.CsvExportCustomizer;
@@ -23,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -72,11 +74,10 @@ public abstract class AbstractMdsExporter {
             long rowsExported = 0;
             Map<String, String> row = new HashMap<>();
 
-            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
-                    mdsLookupService.findMany(entity.getClassName(), lookupName, lookupFields, params);
+            Iterator<Object> instances = instanceIterator(dataService, entity, lookupName, lookupFields, params);
 
-            for (Object instance : instances) {
-                buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
+            while (instances.hasNext()) {
+                buildCsvRow(row, fieldMap, instances.next(), orderedHeaders, exportCustomizer);
                 writer.writeRow(row, orderedHeaders);
                 rowsExported++;
             }
@@ -87,6 +88,35 @@ public abstract class AbstractMdsExporter {
         }
     }
 
+    /**
+     * Returns an iterator over the instances to export. The instances are retrieved in chunks, using the keyset
+     * pagination, and evicted once they were written, so that the memory used by the export does not depend
+     * on the amount of exported instances.
+     *
+     * @param dataService the data service of the entity
+     * @param entity the exported entity
+     * @param lookupName the name of the lookup used for retrieving the instances, blank for all instances
+     * @param lookupFields the values of the lookup fields
+     * @param params the query parameters, can be null
+     * @return the iterator over the instances to export
+     */
+    protected Iterator<Object> instanceIterator(final MotechDataService dataService, final Entity entity,
+                                                final String lookupName, final Map<String, Object> lookupFields,
+                                                QueryParams params) {
+        return new KeysetIterator<Object>(params) {
+            @Override
+            protected List<Object> retrieveChunk(QueryParams queryParams) {
+                return StringUtils.isBlank(lookupName) ? dataService.retrieveAll(queryParams) :
+                        mdsLookupService.findMany(entity.getClassName(), lookupName, lookupFields, queryParams);
+            }
+
+            @Override
+            protected void chunkProcessed() {
+                dataService.evictInstances();
+            }
+        };
+    }
+
     protected Entity getEntity(long entityId) {
         Entity entity = allEntities.retrieveById(entityId);
         if (entity == null) {
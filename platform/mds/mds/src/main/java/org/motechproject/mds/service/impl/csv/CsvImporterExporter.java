@@ -8,9 +8,11 @@ import org.motechproject.mds.domain.FieldMetadata;
 import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.domain.Type;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.ex.csv.CsvImportException;
 import org.motechproject.mds.helper.DataServiceHelper;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.service.BatchCsvImportCustomizer;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.CsvImportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
@@ -22,7 +24,14 @@ import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.mds.util.TypeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.supercsv.io.CsvMapReader;
 import org.supercsv.prefs.CsvPreference;
 
@@ -31,10 +40,14 @@ import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
@@ -42,28 +55,38 @@ import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
 /**
  * Component used for importing CSV records to the database.
  * The reason for separating import logic is keeping the db transaction and sending the MOTECH event at completion separate.
+ * Rows are imported in batches, each of them is committed in its own transaction. The import does not run in an
+ * outer transaction, so a failed import keeps the batches committed before the failure. The size of the batches can be set with
+ * {@link #setImportBatchSize(int)}.
  * This bean lives in the context of the generated MDS entities bundle.
  */
 public class CsvImporterExporter extends AbstractMdsExporter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvImporterExporter.class);
 
+    public static final int DEFAULT_IMPORT_BATCH_SIZE = 100;
+
+    private PlatformTransactionManager transactionManager;
+    private int importBatchSize = DEFAULT_IMPORT_BATCH_SIZE;
+
     /**
-     * Imports instances of the given entity to the database.
+     * Imports instances of the given entity to the database. The rows are committed in batches, each in its own
+     * transaction, so if the import fails and <code>continueOnError</code> is false, the batches imported before
+     * the failure stay committed.
      * @param entityId the ID of the entity for which instances will be imported
      * @param reader reader from which the csv file will be read
      * @param continueOnError if true, import will continue with next row if exception was encountered,
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, boolean continueOnError) {
-        Entity entity = getEntity(entityId);
-        return importCsv(entity, reader, continueOnError);
+        return importCsv(entityId, reader, new DefaultCsvImportCustomizer(), continueOnError);
     }
 
     /**
-     * Imports instances of the given entity to the database.
+     * Imports instances of the given entity to the database. The rows are committed in batches, each in its own
+     * transaction, so if the import fails and <code>continueOnError</code> is false, the batches imported before
+     * the failure stay committed.
      * @param entityId the ID of the entity for which instances will be imported
      * @param reader reader from which the csv file will be read
      * @param importCustomizer the customizer that will be used during instance import from rows
@@ -71,24 +94,34 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, CsvImportCustomizer importCustomizer, boolean continueOnError) {
-        Entity entity = getEntity(entityId);
-        return importCsv(entity, reader, importCustomizer, continueOnError);
+        EntityDto entity = newTransaction().execute(new TransactionCallback<EntityDto>() {
+            @Override
+            public EntityDto doInTransaction(TransactionStatus status) {
+                return getEntity(entityId).toDto();
+            }
+        });
+        return importCsv(entityId, entity, reader, importCustomizer, continueOnError);
     }
 
     /**
-     * Imports instances of the given entity to the database.
+     * Imports instances of the given entity to the database. The rows are committed in batches, each in its own
+     * transaction, so if the import fails and <code>continueOnError</code> is false, the batches imported before
+     * the failure stay committed.
      * @param entityClassName the class name of the entity for which instances will be imported
      * @param reader reader from which the csv file will be read
      * @param continueOnError if true, import will continue with next row if exception was encountered,
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final String entityClassName, final Reader reader, boolean continueOnError) {
-        Entity entity = getEntity(entityClassName);
-        return importCsv(entity, reader, continueOnError);
+        EntityDto entity = newTransaction().execute(new TransactionCallback<EntityDto>() {
+            @Override
+            public EntityDto doInTransaction(TransactionStatus status) {
+                return getEntity(entityClassName).toDto();
+            }
+        });
+        return importCsv(entity.getId(), entity, reader, new DefaultCsvImportCustomizer(), continueOnError);
     }
 
     /**
@@ -225,109 +258,37 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
-    private CsvImportResults importCsv(final Entity entity, final Reader reader, boolean continueOnError) {
-        return importCsv(entity, reader, new DefaultCsvImportCustomizer(), continueOnError);
-    }
-
-    private CsvImportResults importCsv(final Entity entity, final Reader reader, CsvImportCustomizer importCustomizer,
-                                       boolean continueOnError) {
-        final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entity);
-
-        Map<String, Field> fieldCacheMap = new HashMap<>();
+    private CsvImportResults importCsv(long entityId, EntityDto entity, Reader reader,
+                                       CsvImportCustomizer importCustomizer, boolean continueOnError) {
+        final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(),
+                entity.getClassName());
 
         try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
+            final String headers[] = csvMapReader.getHeader(true);
 
-            List<Long> newInstanceIDs = new ArrayList<>();
-            List<Long> updatedInstanceIDs = new ArrayList<>();
-
-            Map <Integer, String> exceptions = new HashMap<>();
+            CsvImport csvImport = new CsvImport(entityId, dataService, headers, importCustomizer, continueOnError);
 
+            List<Map<String, String>> rows = new ArrayList<>(importBatchSize);
             Map<String, String> row;
-            int rowNum = 0;
-
-            final String headers[] = csvMapReader.getHeader(true);
 
             while ((row = csvMapReader.read(headers)) != null) {
-                rowNum++;
-                try {
-                    // import a row
-                    RowImportResult rowImportResult = importInstanceFromRow(row, headers, fieldCacheMap, entity.getFields(), dataService, importCustomizer);
-                    Long id = rowImportResult.getId();
+                rows.add(row);
 
-                    // put its ID in the correct list
-                    if (rowImportResult.isNewInstance()) {
-                        newInstanceIDs.add(id);
-                    } else {
-                        updatedInstanceIDs.add(id);
-                    }
-                } catch (RuntimeException e){
-                    if (continueOnError) {
-                        exceptions.put(rowNum, e.getMessage());
-                    } else {
-                        throw e;
-                    }
+                if (rows.size() >= importBatchSize) {
+                    csvImport.importBatch(rows);
+                    rows = new ArrayList<>(importBatchSize);
                 }
             }
 
-            return new CsvImportResults(entity.toDto(), newInstanceIDs, updatedInstanceIDs, exceptions);
-        } catch (IOException e) {
-            throw new CsvImportException("IO Error when importing CSV", e);
-        }
-    }
-
-    private RowImportResult importInstanceFromRow(Map<String, String> row, String[] headers, Map<String, Field> fieldMap, List<Field> fields,
-                                              MotechDataService dataService, CsvImportCustomizer importCustomizer) {
-        Class entityClass = dataService.getClassType();
-
-        boolean isNewInstance = true;
-        Object instance;
-        try {
-            instance = importCustomizer.findExistingInstance(row, dataService);
-            if (instance == null) {
-                LOGGER.debug("Creating new {}", entityClass.getName());
-                instance = entityClass.newInstance();
-            } else {
-                isNewInstance = false;
-                LOGGER.debug("Updating {} with id {}", entityClass.getName(), row.get(Constants.Util.ID_FIELD_NAME));
-            }
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
-        }
-
-        for (String fieldName : headers) {
-            Field field = findField(fieldName, fields, fieldMap, importCustomizer);
-
-            if (field == null) {
-                LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
-                        fieldName, entityClass.getName());
-                continue;
-            }
-
-            if (row.containsKey(fieldName)) {
-                String csvValue = row.get(fieldName);
-
-                Object parsedValue = parseValue(csvValue, field, entityClass.getClassLoader());
-
-                try {
-                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getName()), parsedValue);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                    String msg = String.format("Error when processing field: %s, value in CSV file is %s",
-                            fieldName, csvValue);
-                    throw new CsvImportException(msg, e);
-                }
+            if (!rows.isEmpty()) {
+                csvImport.importBatch(rows);
             }
-        }
 
-        Object importedInstance;
-        if (isNewInstance) {
-            importedInstance = importCustomizer.doCreate(instance, dataService);
-        } else {
-            importedInstance = importCustomizer.doUpdate(instance, dataService);
+            return new CsvImportResults(entity, csvImport.getNewInstanceIDs(),
+                    csvImport.getUpdatedInstanceIDs(), csvImport.getExceptions());
+        } catch (IOException e) {
+            throw new CsvImportException("IO Error when importing CSV", e);
         }
-
-        Long importedId = (Long) PropertyUtil.safeGetProperty(importedInstance, Constants.Util.ID_FIELD_NAME);
-
-        return new RowImportResult(importedId, isNewInstance);
     }
 
     private Field findField(String fieldName, List<Field> fields, Map<String, Field> fieldMap, CsvImportCustomizer importCustomizer) {
@@ -338,14 +299,15 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         return fieldMap.get(fieldName);
     }
 
-    private Object parseValue(String csvValue, Field field, ClassLoader entityCl) {
+    private Object parseValue(String csvValue, Field field, ClassLoader entityCl,
+                              Map<String, Map<Long, Object>> relatedObjects) {
         final Type type = field.getType();
 
         Object value;
         if (type.isCombobox()) {
             value = parseComboboxValue(csvValue, field, entityCl);
         } else if (type.isRelationship()) {
-            value = parseRelationshipValue(csvValue, field);
+            value = parseRelationshipValue(csvValue, field, relatedObjects);
         } else if (type.isMap()) {
             FieldMetadata keyMetadata = field.getMetadata(MAP_KEY_TYPE);
             FieldMetadata valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
@@ -375,24 +337,32 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
-    private Object parseRelationshipValue(String csvValue, Field field) {
+    private Object parseRelationshipValue(String csvValue, Field field, Map<String, Map<Long, Object>> prefetched) {
         RelationshipHolder relationshipHolder = new RelationshipHolder(field);
         if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
-            List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
+            List<Long> ids = parseRelatedIds(csvValue, relationshipHolder);
 
             Collection<Object> relatedObjects = buildRelationshipCollection(relationshipHolder);
-            if (ids != null) {
-                for (Long id : ids) {
-                    Object relatedObj = getRelatedObject(id, relationshipHolder.getRelatedClass());
-                    if (relatedObj != null) {
-                        relatedObjects.add(relatedObj);
-                    }
+            for (Long id : ids) {
+                Object relatedObj = getRelatedObject(id, relationshipHolder.getRelatedClass(), prefetched);
+                if (relatedObj != null) {
+                    relatedObjects.add(relatedObj);
                 }
             }
             return relatedObjects;
         } else {
             Long id = (Long) TypeHelper.parse(csvValue, Long.class);
-            return getRelatedObject(id, relationshipHolder.getRelatedClass());
+            return getRelatedObject(id, relationshipHolder.getRelatedClass(), prefetched);
+        }
+    }
+
+    private List<Long> parseRelatedIds(String csvValue, RelationshipHolder relationshipHolder) {
+        if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
+            List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
+            return ids == null ? new ArrayList<Long>() : ids;
+        } else {
+            Long id = (Long) TypeHelper.parse(csvValue, Long.class);
+            return id == null ? new ArrayList<Long>() : Arrays.asList(id);
         }
     }
 
@@ -410,9 +380,14 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
-    private Object getRelatedObject(Long id, String entityClass) {
-        MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityClass);
-        Object obj = dataService.findById(id);
+    private Object getRelatedObject(Long id, String entityClass, Map<String, Map<Long, Object>> prefetched) {
+        Map<Long, Object> prefetchedObjects = prefetched.get(entityClass);
+        Object obj = (id == null || prefetchedObjects == null) ? null : prefetchedObjects.get(id);
+
+        if (obj == null) {
+            MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityClass);
+            obj = dataService.findById(id);
+        }
 
         if (obj == null) {
             LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
@@ -422,6 +397,247 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         return obj;
     }
 
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Sets the amount of rows imported and committed in a single transaction. Defaults to
+     * {@value #DEFAULT_IMPORT_BATCH_SIZE}.
+     *
+     * @param importBatchSize the amount of rows in a single batch
+     */
+    public void setImportBatchSize(int importBatchSize) {
+        if (importBatchSize < 1) {
+            throw new IllegalArgumentException("The import batch size must be greater than zero");
+        }
+        this.importBatchSize = importBatchSize;
+    }
+
+    /**
+     * This class represents a single import of a CSV file. The rows are imported in batches, each of them
+     * is committed in its own transaction. The entity is retrieved again in every batch transaction, since
+     * its fields are detached once the previous batch is committed. Before a batch is imported, the existing instances and the related
+     * instances for all of its rows are retrieved at once. If importing a row fails in a way that prevents the batch
+     * from being committed, the rows of that batch are imported again one by one, so that the errors can
+     * be reported for the failing rows.
+     */
+    private class CsvImport {
+        private final long entityId;
+        private final MotechDataService dataService;
+        private final String[] headers;
+        private final CsvImportCustomizer importCustomizer;
+        private final boolean continueOnError;
+
+        private final Map<String, Field> fieldCacheMap = new HashMap<>();
+        private final List<Long> newInstanceIDs = new ArrayList<>();
+        private final List<Long> updatedInstanceIDs = new ArrayList<>();
+        private final Map<Integer, String> exceptions = new HashMap<>();
+
+        private Entity entity;
+        private int rowNum;
+
+        public CsvImport(long entityId, MotechDataService dataService, String[] headers,
+                         CsvImportCustomizer importCustomizer, boolean continueOnError) {
+            this.entityId = entityId;
+            this.dataService = dataService;
+            this.headers = headers;
+            this.importCustomizer = importCustomizer;
+            this.continueOnError = continueOnError;
+        }
+
+        public void importBatch(final List<Map<String, String>> rows) {
+            final int firstRowNum = rowNum + 1;
+            rowNum += rows.size();
+
+            final List<RowImportResult> results = new ArrayList<>();
+            final Map<Integer, String> batchExceptions = new HashMap<>();
+
+            try {
+                newTransaction().execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus status) {
+                        importRows(rows, firstRowNum, results, batchExceptions, status);
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (!continueOnError) {
+                    throw e;
+                } else if (rows.size() == 1) {
+                    exceptions.put(firstRowNum, e.getMessage());
+                } else {
+                    LOGGER.debug("Import of rows {}-{} failed, importing them one by one", firstRowNum, rowNum);
+
+                    rowNum = firstRowNum - 1;
+                    for (Map<String, String> row : rows) {
+                        importBatch(Collections.singletonList(row));
+                    }
+                }
+                return;
+            }
+
+            // the results are only taken into account once the batch is committed
+            for (RowImportResult result : results) {
+                if (result.isNewInstance()) {
+                    newInstanceIDs.add(result.getId());
+                } else {
+                    updatedInstanceIDs.add(result.getId());
+                }
+            }
+            exceptions.putAll(batchExceptions);
+        }
+
+        public List<Long> getNewInstanceIDs() {
+            return newInstanceIDs;
+        }
+
+        public List<Long> getUpdatedInstanceIDs() {
+            return updatedInstanceIDs;
+        }
+
+        public Map<Integer, String> getExceptions() {
+            return exceptions;
+        }
+
+        private void importRows(List<Map<String, String>> rows, int firstRowNum, List<RowImportResult> results,
+                                Map<Integer, String> batchExceptions, TransactionStatus status) {
+            entity = getEntity(entityId);
+            fieldCacheMap.clear();
+
+            List<Object> existingInstances = findExistingInstances(rows);
+            Map<String, Map<Long, Object>> relatedObjects = findRelatedObjects(rows);
+
+            for (int i = 0; i < rows.size(); ++i) {
+                try {
+                    results.add(importInstanceFromRow(rows.get(i), existingInstances.get(i), relatedObjects));
+                } catch (RuntimeException e) {
+                    // a transaction marked for rollback cannot be committed, the whole batch has to be retried
+                    if (continueOnError && !status.isRollbackOnly()) {
+                        batchExceptions.put(firstRowNum + i, e.getMessage());
+                    } else {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private List<Object> findExistingInstances(List<Map<String, String>> rows) {
+            if (importCustomizer instanceof BatchCsvImportCustomizer) {
+                List<Object> instances = ((BatchCsvImportCustomizer) importCustomizer).findExistingInstances(rows,
+                        dataService);
+                if (instances != null && instances.size() == rows.size()) {
+                    return instances;
+                }
+            }
+            return Collections.nCopies(rows.size(), null);
+        }
+
+        private Map<String, Map<Long, Object>> findRelatedObjects(List<Map<String, String>> rows) {
+            Map<String, Set<Long>> idsByClass = new HashMap<>();
+
+            for (String fieldName : headers) {
+                Field field = findField(fieldName, entity.getFields(), fieldCacheMap, importCustomizer);
+                if (field == null || !field.getType().isRelationship()) {
+                    continue;
+                }
+
+                RelationshipHolder relationshipHolder = new RelationshipHolder(field);
+                Set<Long> ids = idsByClass.get(relationshipHolder.getRelatedClass());
+                if (ids == null) {
+                    ids = new HashSet<>();
+                    idsByClass.put(relationshipHolder.getRelatedClass(), ids);
+                }
+
+                for (Map<String, String> row : rows) {
+                    try {
+                        ids.addAll(parseRelatedIds(row.get(fieldName), relationshipHolder));
+                    } catch (RuntimeException e) {
+                        // the error will be reported for the row, once it is imported
+                        LOGGER.debug("Unable to parse related ids: {}", row.get(fieldName));
+                    }
+                }
+            }
+
+            Map<String, Map<Long, Object>> relatedObjects = new HashMap<>();
+            for (Map.Entry<String, Set<Long>> entry : idsByClass.entrySet()) {
+                MotechDataService relatedDataService = DataServiceHelper.getDataService(getBundleContext(),
+                        entry.getKey());
+
+                Map<Long, Object> objectsById = new HashMap<>();
+                for (Object relatedObject : (List<Object>) relatedDataService.findByIds(entry.getValue())) {
+                    Number id = (Number) PropertyUtil.safeGetProperty(relatedObject, Constants.Util.ID_FIELD_NAME);
+                    objectsById.put(id.longValue(), relatedObject);
+                }
+                relatedObjects.put(entry.getKey(), objectsById);
+            }
+
+            return relatedObjects;
+        }
+
+        private RowImportResult importInstanceFromRow(Map<String, String> row, Object existingInstance,
+                                                      Map<String, Map<Long, Object>> relatedObjects) {
+            Class entityClass = dataService.getClassType();
+
+            boolean isNewInstance = true;
+            Object instance;
+            try {
+                instance = (existingInstance != null) ? existingInstance :
+                        importCustomizer.findExistingInstance(row, dataService);
+                if (instance == null) {
+                    LOGGER.debug("Creating new {}", entityClass.getName());
+                    instance = entityClass.newInstance();
+                } else {
+                    isNewInstance = false;
+                    LOGGER.debug("Updating {} with id {}", entityClass.getName(), row.get(Constants.Util.ID_FIELD_NAME));
+                }
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
+            }
+
+            for (String fieldName : headers) {
+                Field field = findField(fieldName, entity.getFields(), fieldCacheMap, importCustomizer);
+
+                if (field == null) {
+                    LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
+                            fieldName, entityClass.getName());
+                    continue;
+                }
+
+                if (row.containsKey(fieldName)) {
+                    String csvValue = row.get(fieldName);
+
+                    Object parsedValue = parseValue(csvValue, field, entityClass.getClassLoader(), relatedObjects);
+
+                    try {
+                        PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getName()), parsedValue);
+                    } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+                        String msg = String.format("Error when processing field: %s, value in CSV file is %s",
+                                fieldName, csvValue);
+                        throw new CsvImportException(msg, e);
+                    }
+                }
+            }
+
+            Object importedInstance;
+            if (isNewInstance) {
+                importedInstance = importCustomizer.doCreate(instance, dataService);
+            } else {
+                importedInstance = importCustomizer.doUpdate(instance, dataService);
+            }
+
+            Long importedId = (Long) PropertyUtil.safeGetProperty(importedInstance, Constants.Util.ID_FIELD_NAME);
+
+            return new RowImportResult(importedId, isNewInstance);
+        }
+    }
+
     /**
      * This class represents a result of a single row import.
      * It contains the ID of the created instance, it also contains information about whether it is a
@@ -0,0 +1,130 @@
+package org.motechproject.mds.service.impl.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The <code>HistoryBatchWriter</code> saves the historical data recorded in a transaction in batches. The history
+ * instances are collected while the transaction runs and are saved right before it commits, in the same
+ * transaction, so the history is committed or rolled back together with the changed instances and nothing is lost
+ * if the server goes down. A batch is saved earlier, once it reaches the batch size.
+ * <p>
+ * Batching only reduces the number of insert statements. The history is still written synchronously, by the thread
+ * that commits, so the commit takes as long as before plus the time of saving the batch. Every history instance is
+ * a full copy of the changed instance, not only of the changed fields.
+ * <p>
+ * History instances can only be added while a transaction is active. Each transaction has its own batch, batches of
+ * suspended transactions are kept apart.
+ */
+public class HistoryBatchWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryBatchWriter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final PersistenceManagerFactory persistenceManagerFactory;
+    private final int batchSize;
+
+    /**
+     * @param persistenceManagerFactory the factory of persistence managers used for saving the history instances
+     * @param batchSize the maximum amount of history instances saved at once
+     */
+    public HistoryBatchWriter(PersistenceManagerFactory persistenceManagerFactory, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be greater than zero");
+        }
+
+        this.persistenceManagerFactory = persistenceManagerFactory;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Adds the given history instances to the batch of the current transaction. They will be saved before the
+     * transaction commits, or earlier if the batch is full.
+     *
+     * @param historyInstances new, transient history instances
+     * @throws IllegalStateException if transaction synchronization is not active
+     */
+    public void add(Collection<?> historyInstances) {
+        BatchSynchronization batch = getBatch();
+
+        if (null == batch) {
+            batch = new BatchSynchronization();
+            TransactionSynchronizationManager.registerSynchronization(batch);
+        }
+
+        batch.instances.addAll(historyInstances);
+
+        if (batch.instances.size() >= batchSize) {
+            batch.write();
+        }
+    }
+
+    /**
+     * Saves the history instances collected in the current transaction. Should be called before the historical
+     * data of an instance is read, modified or removed in the same transaction.
+     */
+    public void flush() {
+        BatchSynchronization batch = getBatch();
+
+        if (null != batch) {
+            batch.write();
+        }
+    }
+
+    private BatchSynchronization getBatch() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                if (synchronization instanceof BatchSynchronization
+                        && ((BatchSynchronization) synchronization).getWriter() == this) {
+                    return (BatchSynchronization) synchronization;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Holds the batch of a single transaction and saves it before the transaction commits. The synchronization is
+     * suspended and resumed together with its transaction.
+     */
+    private class BatchSynchronization extends TransactionSynchronizationAdapter {
+
+        private final List<Object> instances = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            write();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // nothing is saved for a transaction that was rolled back
+            instances.clear();
+        }
+
+        private void write() {
+            if (!instances.isEmpty()) {
+                PersistenceManager manager = persistenceManagerFactory.getPersistenceManager();
+                manager.makePersistentAll(new ArrayList<>(instances));
+
+                LOGGER.debug("Saved a batch of {} history instances", instances.size());
+                instances.clear();
+            }
+        }
+
+        private HistoryBatchWriter getWriter() {
+            return HistoryBatchWriter.this;
+        }
+    }
+}
@@ -1,25 +1,40 @@
 package org.motechproject.mds.service.impl.history;
 
+import org.apache.commons.lang.math.NumberUtils;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.domain.EntityType;
+import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.PropertyBuilder;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.QueryUtil;
 import org.motechproject.mds.service.HistoryService;
 import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.ObjectReferenceRepository;
 import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
+import static org.motechproject.mds.util.Constants.Config.MDS_HISTORY_BATCH;
+import static org.motechproject.mds.util.Constants.Config.MDS_HISTORY_BATCH_SIZE;
+import static org.motechproject.mds.util.Constants.Config.MODULE_FILE;
 import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
 
 /**
@@ -28,6 +43,20 @@ import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
 public class HistoryServiceImpl extends BasePersistenceService implements HistoryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HistoryServiceImpl.class);
 
+    private MdsConfig mdsConfig;
+    private HistoryBatchWriter historyBatchWriter;
+
+    @PostConstruct
+    public void init() {
+        Properties properties = null == mdsConfig ? new Properties() : mdsConfig.getProperties(MODULE_FILE);
+
+        if (null == historyBatchWriter && Boolean.parseBoolean(properties.getProperty(MDS_HISTORY_BATCH))) {
+            historyBatchWriter = new HistoryBatchWriter(getPersistenceManagerFactory(),
+                    NumberUtils.toInt(properties.getProperty(MDS_HISTORY_BATCH_SIZE),
+                            HistoryBatchWriter.DEFAULT_BATCH_SIZE));
+        }
+    }
+
     @Override
     @Transactional
     public void record(Object instance) {
@@ -36,12 +65,50 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         if (null != historyClass) {
             LOGGER.debug("Recording history for: {}", instance.getClass().getName());
 
-            create(historyClass, instance, EntityType.HISTORY);
+            if (isBatchRecording()) {
+                ValueGetter valueGetter = new HistoryValueGetter(this, getBundleContext(), true);
+                historyBatchWriter.add(Collections.singletonList(
+                        newHistoryInstance(historyClass, instance, EntityType.HISTORY, valueGetter)));
+            } else {
+                create(historyClass, instance, EntityType.HISTORY);
+            }
 
             LOGGER.debug("Recorded history for: {}", instance.getClass().getName());
         }
     }
 
+    @Override
+    @Transactional
+    public void recordAll(Collection instances) {
+        if (instances.isEmpty()) {
+            return;
+        }
+
+        Object first = instances.iterator().next();
+        Class<?> historyClass = HistoryTrashClassHelper.getClass(first, EntityType.HISTORY, getBundleContext());
+
+        if (null != historyClass) {
+            LOGGER.debug("Recording history for {} instances of {}", instances.size(), first.getClass().getName());
+
+            boolean batch = isBatchRecording();
+            ValueGetter valueGetter = new HistoryValueGetter(this, getBundleContext(), batch);
+            List<Object> historyInstances = new ArrayList<>(instances.size());
+
+            for (Object instance : instances) {
+                historyInstances.add(newHistoryInstance(historyClass, instance, EntityType.HISTORY, valueGetter));
+            }
+
+            if (batch) {
+                historyBatchWriter.add(historyInstances);
+            } else {
+                PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+                manager.makePersistentAll(historyInstances);
+            }
+
+            LOGGER.debug("Recorded history for {} instances of {}", instances.size(), first.getClass().getName());
+        }
+    }
+
     @Override
     @Transactional
     public void remove(Object instance) {
@@ -50,6 +117,8 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
                 HistoryTrashClassHelper.getInstanceClassName(instance)), EntityType.HISTORY, getBundleContext());
 
         if (null != historyClass) {
+            flushBatchedHistory();
+
             Long objId = getInstanceId(instance);
 
             Query query = initQuery(historyClass);
@@ -57,12 +126,33 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         }
     }
 
+    @Override
+    @Transactional
+    public void removeAll(Collection instances) {
+        if (instances.isEmpty()) {
+            return;
+        }
+
+        Class<?> historyClass = HistoryTrashClassHelper.getClass(ClassName.trimTrashHistorySuffix(
+                HistoryTrashClassHelper.getInstanceClassName(instances.iterator().next())), EntityType.HISTORY,
+                getBundleContext());
+
+        if (null != historyClass) {
+            flushBatchedHistory();
+
+            Query query = initBulkQuery(historyClass);
+            query.deletePersistentAll(getInstanceIds(instances), false);
+        }
+    }
+
     @Override
     @Transactional
     public void setTrashFlag(Object instance, Object trash, boolean flag) {
         Class<?> historyClass = HistoryTrashClassHelper.getClass(instance, EntityType.HISTORY, getBundleContext());
 
         if (null != historyClass) {
+            flushBatchedHistory();
+
             PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
             Long objId = getInstanceId(instance);
             Long trashId = getInstanceId(trash);
@@ -91,6 +181,42 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         }
     }
 
+    @Override
+    @Transactional
+    public void setTrashFlag(List instances, List trash) {
+        if (instances.isEmpty()) {
+            return;
+        }
+
+        Class<?> historyClass = HistoryTrashClassHelper.getClass(instances.get(0), EntityType.HISTORY,
+                getBundleContext());
+
+        if (null != historyClass) {
+            flushBatchedHistory();
+
+            Map<Long, Long> trashIds = new HashMap<>();
+            for (int i = 0; i < instances.size(); ++i) {
+                trashIds.put(getInstanceId(instances.get(i)), getInstanceId(trash.get(i)));
+            }
+
+            String currentVersion = HistoryTrashClassHelper.currentVersion(historyClass);
+            String trashFlag = HistoryTrashClassHelper.trashFlag(historyClass);
+
+            Query query = initBulkQuery(historyClass);
+            Collection collection = (Collection) query.execute(trashIds.keySet(), false);
+
+            for (Object data : collection) {
+                Long objId = (Long) PropertyUtil.safeGetProperty(data, currentVersion);
+
+                PropertyUtil.safeSetProperty(data, currentVersion, trashIds.get(objId));
+                PropertyUtil.safeSetProperty(data, trashFlag, true);
+            }
+
+            PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+            manager.makePersistentAll(collection);
+        }
+    }
+
     @Override
     @Transactional
     public List getHistoryForInstance(Object instance, QueryParams queryParams) {
@@ -98,6 +224,8 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         List list = new ArrayList();
 
         if (null != historyClass) {
+            flushBatchedHistory();
+
             Long objId = getInstanceId(instance);
 
             Query query = initQuery(historyClass, false);
@@ -116,6 +244,8 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         Class<?> historyClass = HistoryTrashClassHelper.getClass(instance, EntityType.HISTORY, getBundleContext());
         Long objId = getInstanceId(instance);
 
+        flushBatchedHistory();
+
         Query query = initQuery(historyClass, false);
         query.setResult("count(this)");
 
@@ -128,6 +258,8 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         Object obj = null;
 
         if (null != historyClass) {
+            flushBatchedHistory();
+
             Query query = initQuery(historyClass, false);
 
             List<Property> properties = new ArrayList<>();
@@ -142,11 +274,30 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return obj;
     }
 
-    private <T> Object create(Class<T> historyClass, Object instance, EntityType type) {
-        ValueGetter valueGetter = new HistoryValueGetter(this, getBundleContext());
-        Object currentHistoryInstance = create(historyClass, instance, type, valueGetter);
+    @Autowired(required = false)
+    public void setMdsConfig(MdsConfig mdsConfig) {
+        this.mdsConfig = mdsConfig;
+    }
 
-        setHistoryProperties(currentHistoryInstance, instance);
+    public void setHistoryBatchWriter(HistoryBatchWriter historyBatchWriter) {
+        this.historyBatchWriter = historyBatchWriter;
+    }
+
+    private boolean isBatchRecording() {
+        // without an active transaction there is no commit the history could be saved with
+        return null != historyBatchWriter && TransactionSynchronizationManager.isSynchronizationActive();
+    }
+
+    private void flushBatchedHistory() {
+        // historical data batched in this transaction must be saved, before it is read, modified or removed
+        if (null != historyBatchWriter) {
+            historyBatchWriter.flush();
+        }
+    }
+
+    private <T> Object create(Class<T> historyClass, Object instance, EntityType type) {
+        ValueGetter valueGetter = new HistoryValueGetter(this, getBundleContext(), false);
+        Object currentHistoryInstance = newHistoryInstance(historyClass, instance, type, valueGetter);
 
         PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
 
@@ -156,6 +307,24 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return currentHistoryInstance;
     }
 
+    private Object newHistoryInstance(Class<?> historyClass, Object instance, EntityType type,
+                                      ValueGetter valueGetter) {
+        Object historyInstance = create(historyClass, instance, type, valueGetter);
+        setHistoryProperties(historyInstance, instance);
+
+        return historyInstance;
+    }
+
+    private List<Long> getInstanceIds(Collection instances) {
+        List<Long> ids = new ArrayList<>(instances.size());
+
+        for (Object instance : instances) {
+            ids.add(getInstanceId(instance));
+        }
+
+        return ids;
+    }
+
     private void setHistoryProperties(Object newHistoryObj, Object realCurrentObj) {
         // creates connection between instance object and history object
         Long id = getInstanceId(realCurrentObj);
@@ -176,6 +345,18 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return query.execute(instanceId);
     }
 
+    private Query initBulkQuery(Class<?> historyClass) {
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+        Query query = manager.newQuery(historyClass);
+        query.setFilter(String.format("param0.contains(%s) && %s == param1",
+                HistoryTrashClassHelper.currentVersion(historyClass), HistoryTrashClassHelper.trashFlag(historyClass)));
+        query.declareParameters(String.format("%s param0, %s param1",
+                Collection.class.getName(), Boolean.class.getName()));
+
+        return query;
+    }
+
     private Query initQuery(Class<?> historyClass) {
         return initQuery(historyClass, true);
     }
@@ -206,8 +387,22 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
      */
     private class HistoryValueGetter extends ValueGetter {
 
-        public HistoryValueGetter(BasePersistenceService persistenceService, BundleContext bundleContext) {
+        private final boolean deferred;
+
+        public HistoryValueGetter(BasePersistenceService persistenceService, BundleContext bundleContext,
+                                  boolean deferred) {
             super(persistenceService, bundleContext);
+            this.deferred = deferred;
+        }
+
+        @Override
+        public Object getValue(Field field, Object instance, Object recordInstance, EntityType type,
+                               ObjectReferenceRepository objectReferenceRepository) {
+            Object value = super.getValue(field, instance, recordInstance, type, objectReferenceRepository);
+
+            // batched history is saved later in the transaction, it cannot share the maps of the instance, since
+            // these can still change before the batch is saved
+            return deferred && value instanceof Map ? new LinkedHashMap<>((Map) value) : value;
         }
 
         @Override
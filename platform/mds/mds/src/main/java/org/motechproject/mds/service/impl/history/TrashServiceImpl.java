@@ -1,6 +1,7 @@
 package org.motechproject.mds.service.impl.history;
 
 import org.apache.commons.beanutils.MethodUtils;
+import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.config.DeleteMode;
 import org.motechproject.mds.config.SettingsService;
 import org.motechproject.mds.domain.Entity;
@@ -14,11 +15,17 @@ import org.motechproject.mds.service.HistoryService;
 import org.motechproject.mds.service.MdsSchedulerService;
 import org.motechproject.mds.service.TrashService;
 import org.motechproject.mds.util.ObjectReferenceRepository;
+import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
 import javax.jdo.PersistenceManager;
@@ -26,7 +33,14 @@ import javax.jdo.Query;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.SCHEMA_VERSION_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.TRASH_DATE_FIELD_NAME;
 
 /**
  * Default implementation of {@link org.motechproject.mds.service.TrashService} interface.
@@ -34,10 +48,21 @@ import java.util.List;
 public class TrashServiceImpl extends BasePersistenceService implements TrashService {
     private static final Logger LOGGER = LoggerFactory.getLogger(TrashServiceImpl.class);
 
+    /**
+     * The default amount of trash instances removed in a single transaction, while emptying the trash.
+     */
+    public static final int DEFAULT_PURGE_CHUNK_SIZE = 1000;
+
+    private static final String CHUNK_PARAMETERS = String.format("%s cutoff, %s maxId", Date.class.getName(),
+            Long.class.getName());
+
     private MdsSchedulerService mdsSchedulerService;
     private SettingsService settingsService;
     private HistoryService historyService;
+    private PlatformTransactionManager transactionManager;
     private ValueGetter trashValueGetter;
+    private int purgeChunkSize = DEFAULT_PURGE_CHUNK_SIZE;
+    private long purgeThrottle;
 
     @Override
     public boolean isTrashMode() {
@@ -65,11 +90,8 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
 
             LOGGER.debug("Created trash instance for: {}", instance);
 
-            try {
-                MethodUtils.invokeMethod(trash, "setSchemaVersion", entityVersion);
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                LOGGER.error("Failed to set schema version of the trash instance.");
-            }
+            setSchemaVersion(trash, entityVersion);
+            PropertyUtil.safeSetProperty(trash, TRASH_DATE_FIELD_NAME, DateUtil.now().toDate());
 
             PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
 
@@ -86,6 +108,42 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
         }
     }
 
+    @Override
+    @Transactional
+    public void moveAllToTrash(Collection instances, Long entityVersion, boolean recordHistory) {
+        if (instances.isEmpty()) {
+            return;
+        }
+
+        Object first = instances.iterator().next();
+        Class<?> trashClass = HistoryTrashClassHelper.getClass(first, EntityType.TRASH, getBundleContext());
+
+        if (null == trashClass) {
+            throw new IllegalStateException("Not found the trash class for " + first.getClass().getName());
+        }
+
+        LOGGER.debug("Moving {} instances of {} to trash", instances.size(), first.getClass().getName());
+
+        List<Object> trashInstances = new ArrayList<>(instances.size());
+        Date trashDate = DateUtil.now().toDate();
+
+        for (Object instance : instances) {
+            Object trash = create(trashClass, instance, EntityType.TRASH, trashValueGetter);
+            setSchemaVersion(trash, entityVersion);
+            PropertyUtil.safeSetProperty(trash, TRASH_DATE_FIELD_NAME, trashDate);
+
+            trashInstances.add(trash);
+        }
+
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+        manager.makePersistentAll(trashInstances);
+
+        // set the flag in historical data
+        if (recordHistory) {
+            historyService.setTrashFlag(new ArrayList<>(instances), trashInstances);
+        }
+    }
+
     @Override
     @Transactional
     public Object findTrashById(Object instanceId, Object entityId) {
@@ -128,7 +186,7 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
         Long schemaVersion = getCurrentSchemaVersion(className);
 
         List<Property> properties = new ArrayList<>();
-        properties.add(PropertyBuilder.create("schemaVersion", schemaVersion, Long.class));
+        properties.add(PropertyBuilder.create(SCHEMA_VERSION_FIELD_NAME, schemaVersion, Long.class));
 
         PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
 
@@ -148,7 +206,7 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
         Long schemaVersion = getCurrentSchemaVersion(className);
 
         List<Property> properties = new ArrayList<>();
-        properties.add(PropertyBuilder.create("schemaVersion", schemaVersion, Long.class));
+        properties.add(PropertyBuilder.create(SCHEMA_VERSION_FIELD_NAME, schemaVersion, Long.class));
 
         PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
         Query query = manager.newQuery(trashClass);
@@ -175,24 +233,176 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
     }
 
     @Override
-    @Transactional
     public void emptyTrash() {
-        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+        final Date cutoff = getPurgeCutoff();
+
+        Map<String, Boolean> entities = newTransaction().execute(new TransactionCallback<Map<String, Boolean>>() {
+            @Override
+            public Map<String, Boolean> doInTransaction(TransactionStatus status) {
+                Map<String, Boolean> recordHistory = new LinkedHashMap<>();
+                for (Entity entity : getEntities()) {
+                    recordHistory.put(entity.getClassName(), entity.isRecordHistory());
+                }
+                return recordHistory;
+            }
+        });
 
-        for (Entity entity : getEntities()) {
-            Class<?> trashClass =  HistoryTrashClassHelper.getClass(entity.getClassName(), EntityType.TRASH,
-                    getBundleContext());
+        LOGGER.info("Emptying trash of {} entities, removing instances moved to trash before {}", entities.size(),
+                cutoff);
 
-            Query query = manager.newQuery(trashClass);
-            Collection instances = (Collection) query.execute();
-            if (entity.isRecordHistory()) {
-                for (Object instance : instances) {
-                    historyService.remove(instance);
-                }
+        long removed = 0;
+        for (Map.Entry<String, Boolean> entry : entities.entrySet()) {
+            removed += emptyTrash(entry.getKey(), entry.getValue(), cutoff);
+
+            if (Thread.currentThread().isInterrupted()) {
+                LOGGER.warn("Emptying trash was interrupted, {} instances were removed", removed);
+                return;
             }
+        }
+
+        LOGGER.info("Emptied trash, {} instances were removed", removed);
+    }
+
+    private long emptyTrash(String className, boolean recordHistory, final Date cutoff) {
+        final Class<?> trashClass = HistoryTrashClassHelper.getClass(className, EntityType.TRASH, getBundleContext());
+        final Class<?> historyClass = recordHistory
+                ? HistoryTrashClassHelper.getClass(className, EntityType.HISTORY, getBundleContext())
+                : null;
+
+        long total = newTransaction().execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                Query query = newPurgeQuery(trashClass);
+                QueryUtil.setCountResult(query);
+
+                return (Long) query.execute(cutoff);
+            }
+        });
+
+        if (total == 0) {
+            return 0;
+        }
+
+        LOGGER.info("Removing {} instances from the trash of {}", total, className);
+
+        long start = System.currentTimeMillis();
+        long removed = 0;
+        long chunkRemoved;
+
+        do {
+            chunkRemoved = newTransaction().execute(new TransactionCallback<Long>() {
+                @Override
+                public Long doInTransaction(TransactionStatus status) {
+                    return purgeChunk(trashClass, historyClass, cutoff);
+                }
+            });
+            removed += chunkRemoved;
+
+            LOGGER.debug("Removed {} of {} instances from the trash of {}", removed, total, className);
+        } while (chunkRemoved == purgeChunkSize && throttle());
+
+        LOGGER.info("Removed {} instances from the trash of {} in {} ms", removed, className,
+                System.currentTimeMillis() - start);
+
+        return removed;
+    }
+
+    private long purgeChunk(Class<?> trashClass, Class<?> historyClass, Date cutoff) {
+        // the ids are the only thing we retrieve, the instances are never loaded into memory
+        Query idQuery = newPurgeQuery(trashClass);
+        idQuery.setResult(ID_FIELD_NAME);
+        idQuery.setOrdering(ID_FIELD_NAME + " ascending");
+        idQuery.setRange(0, purgeChunkSize);
 
-            manager.deletePersistentAll(instances);
+        List ids = (List) idQuery.execute(cutoff);
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // the chunk consists of the instances to purge with the lowest ids, so it can be matched by the highest one
+        Long maxId = (Long) ids.get(ids.size() - 1);
+
+        if (null != historyClass) {
+            removeTrashHistory(trashClass, historyClass, maxId, cutoff);
+        }
+
+        Query query = newChunkQuery(trashClass);
+
+        return query.deletePersistentAll(cutoff, maxId);
+    }
+
+    private void removeTrashHistory(Class<?> trashClass, Class<?> historyClass, Long maxId, Date cutoff) {
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+        // ids of the trash instances in the chunk, joined with the historical data in the database
+        Query trashIds = newChunkQuery(trashClass);
+        trashIds.setResult(ID_FIELD_NAME);
+
+        Query query = manager.newQuery(historyClass);
+        query.setFilter(String.format("%s == true && trashIds.contains(%s)",
+                HistoryTrashClassHelper.trashFlag(historyClass), HistoryTrashClassHelper.currentVersion(historyClass)));
+        query.declareParameters(CHUNK_PARAMETERS);
+        query.addSubquery(trashIds, Collection.class.getName() + " trashIds", null, "cutoff", "maxId");
+
+        query.deletePersistentAll(cutoff, maxId);
+    }
+
+    private Query newPurgeQuery(Class<?> trashClass) {
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+        Query query = manager.newQuery(trashClass);
+        query.setFilter(purgeFilter());
+        query.declareParameters(Date.class.getName() + " cutoff");
+
+        return query;
+    }
+
+    private Query newChunkQuery(Class<?> trashClass) {
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+        Query query = manager.newQuery(trashClass);
+        query.setFilter(String.format("%s <= maxId && %s", ID_FIELD_NAME, purgeFilter()));
+        query.declareParameters(CHUNK_PARAMETERS);
+
+        return query;
+    }
+
+    private String purgeFilter() {
+        // instances moved to trash before the trash date was recorded are always removed
+        return String.format("(%s == null || %s < cutoff)", TRASH_DATE_FIELD_NAME, TRASH_DATE_FIELD_NAME);
+    }
+
+    private Date getPurgeCutoff() {
+        long afterTime = settingsService.getTimeValue() * settingsService.getTimeUnit().inMillis();
+        return DateUtil.now().minus(afterTime).toDate();
+    }
+
+    private boolean throttle() {
+        if (purgeThrottle > 0) {
+            try {
+                Thread.sleep(purgeThrottle);
+            } catch (InterruptedException e) {
+                LOGGER.warn("Interrupted while waiting for the next chunk of the trash to remove");
+                Thread.currentThread().interrupt();
+                return false;
             }
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    private void setSchemaVersion(Object trash, Long entityVersion) {
+        try {
+            MethodUtils.invokeMethod(trash, "setSchemaVersion", entityVersion);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOGGER.error("Failed to set schema version of the trash instance.");
+        }
     }
 
     @Autowired
@@ -210,6 +420,33 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
         this.historyService = historyService;
     }
 
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Sets the amount of trash instances removed in a single transaction, while emptying the trash.
+     *
+     * @param purgeChunkSize the amount of instances, must be greater than zero
+     */
+    public void setPurgeChunkSize(int purgeChunkSize) {
+        if (purgeChunkSize < 1) {
+            throw new IllegalArgumentException("The purge chunk size must be greater than zero");
+        }
+        this.purgeChunkSize = purgeChunkSize;
+    }
+
+    /**
+     * Sets the pause between removing consecutive chunks of trash instances, which limits the load the trash
+     * purge puts on the database. There is no pause by default.
+     *
+     * @param purgeThrottle the pause in milliseconds
+     */
+    public void setPurgeThrottle(long purgeThrottle) {
+        this.purgeThrottle = purgeThrottle;
+    }
+
     /**
      * We do not create deep trash copies, hence this getter implementation.
      */
@@ -223,6 +223,32 @@ public final class Constants {
          */
         public static final String MDS_TIME_UNIT = "mds.emptyTrash.afterTimeUnit";
 
+        /**
+         * The boolean property that specifies if the historical data should be saved in batches. If set, the history
+         * recorded in a transaction is collected and saved right before the transaction commits, in batches of at
+         * most {@link #MDS_HISTORY_BATCH_SIZE} instances. By default every history instance is saved as soon as
+         * it is recorded. Batching saves insert statements, the history is still saved within the committing
+         * transaction.
+         *
+         * @see #MDS_HISTORY_BATCH_SIZE
+         */
+        public static final String MDS_HISTORY_BATCH = "mds.history.batch";
+
+        /**
+         * The integer property that specifies how many history instances are saved at once, when the historical
+         * data is saved in batches.
+         *
+         * @see #MDS_HISTORY_BATCH
+         */
+        public static final String MDS_HISTORY_BATCH_SIZE = "mds.history.batch.size";
+
+        /**
+         * The integer property that specifies how many ids are allocated at once for entities using the
+         * {@link org.motechproject.mds.util.IdStrategy#INCREMENT} strategy. Larger blocks mean fewer updates
+         * of the sequence table, but more ids are skipped when the server is restarted.
+         */
+        public static final String MDS_ID_ALLOCATION_SIZE = "mds.id.allocationSize";
+
         /**
          * Constant <code>EMPTY_TRASH_JOB</code> presents a name of job scheduled by scheduler
          * module.
@@ -329,6 +355,16 @@ public final class Constants {
          */
         public static final String MAX_FETCH_DEPTH = "maxFetchDepth";
 
+        /**
+         * Constant <code>CACHEABLE</code> corresponding to the @Entity attribute named {@code cacheable}
+         */
+        public static final String CACHEABLE = "cacheable";
+
+        /**
+         * Constant <code>ID_STRATEGY</code> corresponding to the @Entity attribute named {@code idStrategy}
+         */
+        public static final String ID_STRATEGY = "idStrategy";
+
         /**
          * Constant <code>CRUD_EVENTS</code> corresponding to the @Entity attribute named {@code crudEvents}
          */
@@ -433,6 +469,8 @@ public final class Constants {
         public static final String OWNER_DISPLAY_FIELD_NAME = "Owner";
         public static final String MODIFIED_BY_DISPLAY_FIELD_NAME = "Modified By";
         public static final String MODIFICATION_DATE_DISPLAY_FIELD_NAME = "Modification Date";
+        public static final String SCHEMA_VERSION_FIELD_NAME = "schemaVersion";
+        public static final String TRASH_DATE_FIELD_NAME = "trashDate";
         public static final String DATANUCLEUS = "datanucleus";
         public static final String VALUE_GENERATOR = "object-value-generator";
         public static final String AUTO_GENERATED = "autoGenerated";
@@ -549,6 +587,7 @@ public final class Constants {
         public static final String NAMESPACE = "namespace";
         public static final String ENTITY_CLASS = "entity_class";
         public static final String OBJECT_ID = "object_id";
+        public static final String OBJECT_IDS = "object_ids";
 
         private static final String CSV_IMPORT_PREFIX = "csv-import.";
         public static final String CSV_IMPORT_CREATED_IDS = CSV_IMPORT_PREFIX + "created_ids";
@@ -562,6 +601,7 @@ public final class Constants {
 
         // subject
         public static final String BASE_SUBJECT = "mds.crud.";
+        public static final String BULK_ACTION_PREFIX = "bulk.";
         public static final String CSV_IMPORT_SUCCESS = "csv-import.success";
         public static final String CSV_IMPORT_FAILURE = "csv-import.failure";
     }
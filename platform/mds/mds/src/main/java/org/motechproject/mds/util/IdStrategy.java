@@ -0,0 +1,34 @@
+package org.motechproject.mds.util;
+
+/**
+ * This enum describes how the values of the id field of an entity are generated.
+ */
+public enum IdStrategy {
+    /**
+     * Values are allocated in blocks from a sequence table managed by DataNucleus. The size of the
+     * blocks can be set with the {@code mds.id.allocationSize} property. This is the default strategy.
+     */
+    INCREMENT,
+    /**
+     * Values are generated by the database when an instance is inserted - the id column is an
+     * AUTO_INCREMENT column on MySQL and a column backed by a sequence on PostgreSQL. Instances can be
+     * inserted concurrently without sharing a sequence table. The id column of an existing table is
+     * converted when the entities bundle starts. An entity cannot be switched back to {@link #INCREMENT}.
+     */
+    IDENTITY;
+
+    public static IdStrategy getEnumByName(String value) {
+        if (null == value) {
+            return null;
+        }
+
+        switch (value.toUpperCase()) {
+            case "INCREMENT":
+                return INCREMENT;
+            case "IDENTITY":
+                return IDENTITY;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.motechproject.mds.util;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The <code>PropertyAccessor</code> reads and writes simple properties of instances of a single class, without
+ * the use of reflection. Implementations are generated at runtime by {@link PropertyAccessors}, with a method
+ * body that dispatches on the property name and calls the getter or setter directly.
+ * <p>
+ * Only simple properties with public getters or setters are supported, nested, indexed and mapped property
+ * names are never readable or writeable - callers should check {@link #isReadable(String)} and
+ * {@link #isWriteable(String)} and fall back to {@link PropertyUtil} otherwise.
+ */
+public abstract class PropertyAccessor {
+
+    private Set<String> readable = Collections.emptySet();
+    private Set<String> writeable = Collections.emptySet();
+
+    /**
+     * @param property the name of the property
+     * @return true if the property can be read by this accessor
+     */
+    public boolean isReadable(String property) {
+        return readable.contains(property);
+    }
+
+    /**
+     * @param property the name of the property
+     * @return true if the property can be written by this accessor
+     */
+    public boolean isWriteable(String property) {
+        return writeable.contains(property);
+    }
+
+    /**
+     * Returns the value of the property, primitive values are wrapped.
+     *
+     * @param bean the instance to read from
+     * @param property the name of a readable property
+     * @return the value of the property
+     * @throws IllegalArgumentException if the property is not readable
+     */
+    public abstract Object get(Object bean, String property);
+
+    /**
+     * Sets the value of the property, primitive properties accept wrapped values.
+     *
+     * @param bean the instance to write to
+     * @param property the name of a writeable property
+     * @param value the new value of the property
+     * @throws IllegalArgumentException if the property is not writeable
+     * @throws ClassCastException if the value does not match the type of the property
+     */
+    public abstract void set(Object bean, String property, Object value);
+
+    void init(Set<String> readableProperties, Set<String> writeableProperties) {
+        this.readable = Collections.unmodifiableSet(readableProperties);
+        this.writeable = Collections.unmodifiableSet(writeableProperties);
+    }
+}
@@ -0,0 +1,271 @@
+package org.motechproject.mds.util;
+
+import javassist.CannotCompileException;
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jdo.spi.PersistenceCapable;
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The <code>PropertyAccessors</code> util class generates {@link PropertyAccessor}s with javassist. Accessors
+ * are generated lazily for persistence capable classes - the entity classes and their history and trash classes -
+ * and are kept with the class itself, so they are released together with the entities bundle that defined the
+ * class. If an accessor cannot be generated, an accessor that supports no properties is returned, so that callers
+ * fall back to the reflection.
+ */
+public final class PropertyAccessors {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyAccessors.class);
+
+    private static final String ACCESSOR_SUFFIX = "__PropertyAccessor";
+
+    private static final Map<Class<?>, String> UNWRAP_EXPRESSIONS = new HashMap<>();
+    private static final Map<Class<?>, String> WRAPPER_TYPES = new HashMap<>();
+
+    static {
+        UNWRAP_EXPRESSIONS.put(boolean.class, "((java.lang.Boolean) $3).booleanValue()");
+        UNWRAP_EXPRESSIONS.put(char.class, "((java.lang.Character) $3).charValue()");
+        UNWRAP_EXPRESSIONS.put(byte.class, "((java.lang.Number) $3).byteValue()");
+        UNWRAP_EXPRESSIONS.put(short.class, "((java.lang.Number) $3).shortValue()");
+        UNWRAP_EXPRESSIONS.put(int.class, "((java.lang.Number) $3).intValue()");
+        UNWRAP_EXPRESSIONS.put(long.class, "((java.lang.Number) $3).longValue()");
+        UNWRAP_EXPRESSIONS.put(float.class, "((java.lang.Number) $3).floatValue()");
+        UNWRAP_EXPRESSIONS.put(double.class, "((java.lang.Number) $3).doubleValue()");
+
+        WRAPPER_TYPES.put(boolean.class, Boolean.class.getName());
+        WRAPPER_TYPES.put(char.class, Character.class.getName());
+        WRAPPER_TYPES.put(byte.class, Byte.class.getName());
+        WRAPPER_TYPES.put(short.class, Short.class.getName());
+        WRAPPER_TYPES.put(int.class, Integer.class.getName());
+        WRAPPER_TYPES.put(long.class, Long.class.getName());
+        WRAPPER_TYPES.put(float.class, Float.class.getName());
+        WRAPPER_TYPES.put(double.class, Double.class.getName());
+    }
+
+    private static final PropertyAccessor NONE = new PropertyAccessor() {
+        @Override
+        public Object get(Object bean, String property) {
+            throw new IllegalArgumentException("Property " + property + " is not readable");
+        }
+
+        @Override
+        public void set(Object bean, String property, Object value) {
+            throw new IllegalArgumentException("Property " + property + " is not writeable");
+        }
+    };
+
+    private static final ClassValue<PropertyAccessor> ACCESSORS = new ClassValue<PropertyAccessor>() {
+        @Override
+        protected PropertyAccessor computeValue(Class<?> type) {
+            PropertyAccessor accessor = PersistenceCapable.class.isAssignableFrom(type) ? generate(type) : null;
+            return (null == accessor) ? NONE : accessor;
+        }
+    };
+
+    /**
+     * Returns the accessor for the given class. The accessor is generated on the first call for a class.
+     *
+     * @param type the class of the instances
+     * @return the accessor for the class, never null, supports no properties if no accessor could be generated
+     */
+    public static PropertyAccessor getAccessor(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    /**
+     * Generates a new accessor for the given class. The accessor is not cached, {@link #getAccessor(Class)} should
+     * be used instead, unless a fresh accessor is required.
+     *
+     * @param type the class of the instances
+     * @return the new accessor, or null if it could not be generated for the given class
+     */
+    public static PropertyAccessor generate(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers()) || type.isInterface() || null == type.getClassLoader()) {
+            return null;
+        }
+
+        Map<String, PropertyDescriptor> readable = new LinkedHashMap<>();
+        Map<String, PropertyDescriptor> writeable = new LinkedHashMap<>();
+
+        for (PropertyDescriptor descriptor : PropertyUtils.getPropertyDescriptors(type)) {
+            if (descriptor instanceof IndexedPropertyDescriptor || null == descriptor.getPropertyType()) {
+                continue;
+            }
+            if (isAccessible(type, descriptor.getReadMethod())) {
+                readable.put(descriptor.getName(), descriptor);
+            }
+            if (isAccessible(type, descriptor.getWriteMethod())) {
+                writeable.put(descriptor.getName(), descriptor);
+            }
+        }
+
+        if (readable.isEmpty() && writeable.isEmpty()) {
+            return null;
+        }
+
+        try {
+            PropertyAccessor accessor = defineAccessor(type, readable, writeable).newInstance();
+            accessor.init(names(readable), names(writeable));
+
+            LOGGER.debug("Generated property accessor for {}", type.getName());
+
+            return accessor;
+        } catch (CannotCompileException | NotFoundException | IOException | InstantiationException
+                | IllegalAccessException | LinkageError e) {
+            LOGGER.warn("Unable to generate property accessor for {}, reflection will be used", type.getName(), e);
+            return null;
+        }
+    }
+
+    private static Class<? extends PropertyAccessor> defineAccessor(Class<?> type,
+                                                                     Map<String, PropertyDescriptor> readable,
+                                                                     Map<String, PropertyDescriptor> writeable)
+            throws CannotCompileException, NotFoundException, IOException {
+        ClassPool pool = new ClassPool(false);
+        pool.appendClassPath(new ClassClassPath(PropertyAccessor.class));
+        pool.appendClassPath(new LoaderClassPath(type.getClassLoader()));
+        pool.appendSystemPath();
+
+        String accessorName = type.getName() + ACCESSOR_SUFFIX;
+
+        CtClass accessor = pool.makeClass(accessorName, pool.get(PropertyAccessor.class.getName()));
+        accessor.addConstructor(CtNewConstructor.defaultConstructor(accessor));
+        accessor.addMethod(CtNewMethod.make(getterSource(type, readable), accessor));
+        accessor.addMethod(CtNewMethod.make(setterSource(type, writeable), accessor));
+
+        byte[] bytecode = accessor.toBytecode();
+        accessor.detach();
+
+        AccessorClassLoader loader = new AccessorClassLoader(type.getClassLoader());
+        return loader.define(accessorName, bytecode).asSubclass(PropertyAccessor.class);
+    }
+
+    private static String getterSource(Class<?> type, Map<String, PropertyDescriptor> readable) {
+        StringBuilder body = new StringBuilder();
+
+        for (Map.Entry<Integer, List<PropertyDescriptor>> entry : byHashCode(readable).entrySet()) {
+            body.append("case ").append(entry.getKey()).append(": ");
+
+            for (PropertyDescriptor descriptor : entry.getValue()) {
+                String call = "((" + sourceName(type) + ") $1)." + descriptor.getReadMethod().getName() + "()";
+                Class<?> propertyType = descriptor.getReadMethod().getReturnType();
+
+                if (propertyType.isPrimitive()) {
+                    call = WRAPPER_TYPES.get(propertyType) + ".valueOf(" + call + ")";
+                }
+
+                body.append("if (\"").append(descriptor.getName()).append("\".equals($2)) { return ")
+                        .append(call).append("; } ");
+            }
+
+            body.append("break; ");
+        }
+
+        return "public Object get(Object bean, String property) { " + switchOnName(body) +
+                "throw new IllegalArgumentException(\"Property \" + $2 + \" is not readable\"); }";
+    }
+
+    private static String setterSource(Class<?> type, Map<String, PropertyDescriptor> writeable) {
+        StringBuilder body = new StringBuilder();
+
+        for (Map.Entry<Integer, List<PropertyDescriptor>> entry : byHashCode(writeable).entrySet()) {
+            body.append("case ").append(entry.getKey()).append(": ");
+
+            for (PropertyDescriptor descriptor : entry.getValue()) {
+                Class<?> propertyType = descriptor.getWriteMethod().getParameterTypes()[0];
+                String value = propertyType.isPrimitive()
+                        ? UNWRAP_EXPRESSIONS.get(propertyType)
+                        : "(" + sourceName(propertyType) + ") $3";
+
+                body.append("if (\"").append(descriptor.getName()).append("\".equals($2)) { ((")
+                        .append(sourceName(type)).append(") $1).").append(descriptor.getWriteMethod().getName())
+                        .append('(').append(value).append("); return; } ");
+            }
+
+            body.append("break; ");
+        }
+
+        return "public void set(Object bean, String property, Object value) { " + switchOnName(body) +
+                "throw new IllegalArgumentException(\"Property \" + $2 + \" is not writeable\"); }";
+    }
+
+    private static String switchOnName(StringBuilder cases) {
+        // javassist does not compile switch statements on strings, so we switch on the hash code instead
+        return (cases.length() == 0) ? "" : "switch ($2.hashCode()) { " + cases + "default: break; } ";
+    }
+
+    private static Map<Integer, List<PropertyDescriptor>> byHashCode(Map<String, PropertyDescriptor> descriptors) {
+        Map<Integer, List<PropertyDescriptor>> byHashCode = new LinkedHashMap<>();
+
+        for (PropertyDescriptor descriptor : descriptors.values()) {
+            Integer hashCode = descriptor.getName().hashCode();
+
+            if (!byHashCode.containsKey(hashCode)) {
+                byHashCode.put(hashCode, new ArrayList<PropertyDescriptor>());
+            }
+            byHashCode.get(hashCode).add(descriptor);
+        }
+
+        return byHashCode;
+    }
+
+    private static boolean isAccessible(Class<?> type, Method method) {
+        // the generated code can only call public methods of public classes
+        return null != method && null != MethodUtils.getAccessibleMethod(type, method)
+                && Modifier.isPublic(method.getDeclaringClass().getModifiers());
+    }
+
+    private static String sourceName(Class<?> type) {
+        return type.isArray() ? sourceName(type.getComponentType()) + "[]" : type.getName();
+    }
+
+    private static Set<String> names(Map<String, PropertyDescriptor> descriptors) {
+        return new HashSet<>(descriptors.keySet());
+    }
+
+    /**
+     * Defines the accessor classes. The entity class is resolved through the class loader of the entity, while
+     * the {@link PropertyAccessor} class is always resolved through the loader of this bundle.
+     */
+    private static final class AccessorClassLoader extends ClassLoader {
+
+        AccessorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            return PropertyAccessor.class.getName().equals(name)
+                    ? PropertyAccessor.class
+                    : super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+
+    private PropertyAccessors() {
+    }
+}
@@ -23,7 +23,8 @@ import java.util.Set;
 /**
  * The <code>PropertyUtil</code> util class provides the same method like
  * {@link org.apache.commons.beanutils.PropertyUtils} and two additional methods for safe writing
- * and reading property in the given bean.
+ * and reading property in the given bean. The safe methods use the generated {@link PropertyAccessor} of the bean
+ * class, if there is one, and fall back to the reflection otherwise.
  */
 public final class PropertyUtil extends PropertyUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(PropertyUtil.class);
@@ -91,7 +92,11 @@ public final class PropertyUtil extends PropertyUtils {
     public static void safeSetProperty(Object bean, String name, Object value) {
         try {
             if (null != bean) {
-                if (isWriteable(bean, name)) {
+                PropertyAccessor accessor = PropertyAccessors.getAccessor(bean.getClass());
+
+                if (accessor.isWriteable(name)) {
+                    setWithAccessor(accessor, bean, name, value);
+                } else if (isWriteable(bean, name)) {
                     setProperty(bean, name, value);
                 } else if (Character.isUpperCase(name.charAt(0))) {
                     safeSetProperty(bean, StringUtils.uncapitalize(name), value);
@@ -109,7 +114,11 @@ public final class PropertyUtil extends PropertyUtils {
 
         try {
             if (null != bean) {
-                if (isReadable(bean, name)) {
+                PropertyAccessor accessor = PropertyAccessors.getAccessor(bean.getClass());
+
+                if (accessor.isReadable(name)) {
+                    value = getWithAccessor(accessor, bean, name);
+                } else if (isReadable(bean, name)) {
                     value = getProperty(bean, name);
                 } else if (Character.isUpperCase(name.charAt(0))) {
                     return safeGetProperty(bean, StringUtils.uncapitalize(name));
@@ -124,6 +133,29 @@ public final class PropertyUtil extends PropertyUtils {
         return value;
     }
 
+    private static void setWithAccessor(PropertyAccessor accessor, Object bean, String name, Object value) {
+        try {
+            accessor.set(bean, name, value);
+        } catch (RuntimeException e) {
+            // the reflection would wrap these, so they are handled the same way
+            LOGGER.error(
+                    "There was a problem with set value {} for property {} in bean: {}",
+                    value, name, bean, e);
+        }
+    }
+
+    private static Object getWithAccessor(PropertyAccessor accessor, Object bean, String name) {
+        try {
+            return accessor.get(bean, name);
+        } catch (RuntimeException e) {
+            // the reflection would wrap these, so they are handled the same way
+            LOGGER.error(
+                    "There was a problem with get value of property {} in bean: {}", name, bean, e
+            );
+            return null;
+        }
+    }
+
     public static Class<?> safeGetPropertyType(Object bean, String name) {
         Class<?> type = null;
         try {
@@ -0,0 +1,3 @@
+-- adds cacheable column ---
+
+ALTER TABLE "Entity" ADD COLUMN "cacheable" boolean NOT NULL DEFAULT false;
@@ -0,0 +1,3 @@
+-- adds idStrategy column ---
+
+ALTER TABLE "Entity" ADD COLUMN "idStrategy" varchar(255) NOT NULL DEFAULT 'INCREMENT';
@@ -0,0 +1,3 @@
+-- adds cacheableModified column ---
+
+ALTER TABLE "Entity" ADD COLUMN "cacheableModified" boolean NOT NULL DEFAULT false;
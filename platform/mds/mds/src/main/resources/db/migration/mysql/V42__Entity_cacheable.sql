@@ -0,0 +1,3 @@
+-- adds cacheable column ---
+
+ALTER TABLE Entity ADD cacheable bit(1) NOT NULL DEFAULT 0;
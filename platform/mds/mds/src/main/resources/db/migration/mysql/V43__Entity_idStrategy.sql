@@ -0,0 +1,3 @@
+-- adds idStrategy column ---
+
+ALTER TABLE Entity ADD idStrategy varchar(255) CHARACTER SET latin1 COLLATE latin1_bin NOT NULL DEFAULT 'INCREMENT';
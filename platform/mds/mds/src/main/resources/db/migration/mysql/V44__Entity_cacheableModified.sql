@@ -0,0 +1,3 @@
+-- adds cacheableModified column ---
+
+ALTER TABLE Entity ADD cacheableModified bit(1) NOT NULL DEFAULT 0;
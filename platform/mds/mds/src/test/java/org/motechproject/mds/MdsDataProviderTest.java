@@ -7,6 +7,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.motechproject.mds.annotations.Lookup;
 import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.LookupFieldDto;
@@ -19,6 +20,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.springframework.core.io.ResourceLoader;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -58,11 +60,9 @@ public class MdsDataProviderTest {
 
     @Before
     public void setUp() {
-        when(entityService.getEntityByClassName(Record.class.getName())).thenReturn(entity);
         when(entity.getId()).thenReturn(ENTITY_ID);
 
         FieldDto fieldDto = FieldTestHelper.fieldDto(1L, "field", String.class.getName(), "disp", null);
-        when(entityService.getEntityFields(ENTITY_ID)).thenReturn(asList(fieldDto));
 
         LookupFieldDto lookupField = FieldTestHelper.lookupFieldDto(1L, "field");
         LookupDto singleLookup = new LookupDto("singleLookup", true, false, asList(lookupField), false);
@@ -72,18 +72,20 @@ public class MdsDataProviderTest {
         lookupField.setRelatedName("stringVar");
         LookupDto relatedLookup = new LookupDto("relatedLookup", false, false, asList(lookupField), false);
 
-        when(entityService.getLookupByName(ENTITY_ID, "singleLookup")).thenReturn(singleLookup);
-        when(entityService.getLookupByName(ENTITY_ID, "multiLookup")).thenReturn(multiLookup);
-        when(entityService.getLookupByName(ENTITY_ID, "relatedLookup")).thenReturn(relatedLookup);
+        Map<String, Map<String, FieldDto>> mappings = new HashMap<>();
 
         Map<String, FieldDto> mapping = new HashMap<>();
         mapping.put("field", fieldDto);
-        when(entityService.getLookupFieldsMapping(ENTITY_ID, "singleLookup")).thenReturn(mapping);
-        when(entityService.getLookupFieldsMapping(ENTITY_ID, "multiLookup")).thenReturn(mapping);
+        mappings.put("singleLookup", mapping);
+        mappings.put("multiLookup", mapping);
 
         mapping = new HashMap<>();
         mapping.put("related.stringVar", fieldDto);
-        when(entityService.getLookupFieldsMapping(ENTITY_ID, "relatedLookup")).thenReturn(mapping);
+        mappings.put("relatedLookup", mapping);
+
+        EntitySnapshot snapshot = new EntitySnapshot(entity, 1L, asList(fieldDto),
+                asList(singleLookup, multiLookup, relatedLookup), mappings, Collections.<String>emptyList());
+        when(entityService.getEntitySnapshot(Record.class.getName())).thenReturn(snapshot);
 
         when(bundleContext.getServiceReference(LookupService.class.getName())).thenReturn(serviceReference);
         when(bundleContext.getService(serviceReference)).thenReturn(new LookupService());
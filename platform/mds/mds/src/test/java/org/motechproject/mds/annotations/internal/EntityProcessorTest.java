@@ -265,6 +265,21 @@ public class EntityProcessorTest extends MockBundle {
         assertFalse(tracking.isRecordHistory());
     }
 
+    @Test
+    public void shouldNotOverrideCacheableOptionIfModifiedByUser() {
+        EntityDto existingEntity = new EntityDto(1L, Sample.class.getName());
+        existingEntity.setCacheable(true);
+        existingEntity.setCacheableModified(true);
+        when(entityService.getEntityByClassName(Sample.class.getName())).thenReturn(existingEntity);
+        when(entityService.getAdvancedSettings(1L, true)).thenReturn(new AdvancedSettingsDto());
+
+        processor.process(Sample.class);
+
+        EntityDto entity = processor.getProcessingResult().get(0).getEntityProcessingResult();
+
+        assertTrue(entity.isCacheable());
+    }
+
     @Test
     public void shouldSetNonEditableFlag() {
         processor.process(AnotherSample.class);
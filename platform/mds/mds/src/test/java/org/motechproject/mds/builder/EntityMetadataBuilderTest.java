@@ -15,6 +15,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.motechproject.mds.annotations.internal.AnotherSample;
 import org.motechproject.mds.builder.impl.EntityMetadataBuilderImpl;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.domain.ClassData;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.EntityType;
@@ -22,7 +23,12 @@ import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.domain.OneToManyRelationship;
 import org.motechproject.mds.domain.OneToOneRelationship;
 import org.motechproject.mds.domain.Type;
+import org.motechproject.mds.helper.LookupIndexHelper;
 import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.jdo.Level2CacheRegistry;
+import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.IdStrategy;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -34,15 +40,18 @@ import javax.jdo.metadata.ClassMetadata;
 import javax.jdo.metadata.ClassPersistenceModifier;
 import javax.jdo.metadata.CollectionMetadata;
 import javax.jdo.metadata.FieldMetadata;
+import javax.jdo.metadata.IndexMetadata;
 import javax.jdo.metadata.InheritanceMetadata;
 import javax.jdo.metadata.JDOMetadata;
 import javax.jdo.metadata.PackageMetadata;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
 
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
@@ -135,6 +144,57 @@ public class EntityMetadataBuilderTest {
         verifyCommonClassMetadata();
     }
 
+    @Test
+    public void shouldMarkCacheableEntities() {
+        when(entity.getName()).thenReturn(ENTITY_NAME);
+        when(entity.isCacheable()).thenReturn(true);
+        when(jdoMetadata.newPackageMetadata(PACKAGE)).thenReturn(packageMetadata);
+        when(packageMetadata.newClassMetadata(ENTITY_NAME)).thenReturn(classMetadata);
+
+        try {
+            entityMetadataBuilder.addEntityMetadata(jdoMetadata, entity, Sample.class);
+
+            verify(classMetadata).setCacheable(true);
+            assertTrue(Level2CacheRegistry.isCacheable(ClassName.getEntityName(CLASS_NAME)));
+        } finally {
+            Level2CacheRegistry.setCacheable(ClassName.getEntityName(CLASS_NAME), false);
+        }
+    }
+
+    @Test
+    public void shouldLetTheDatabaseGenerateIdsForIdentityStrategy() {
+        when(entity.getName()).thenReturn(ENTITY_NAME);
+        when(entity.getIdStrategy()).thenReturn(IdStrategy.IDENTITY);
+        when(jdoMetadata.newPackageMetadata(PACKAGE)).thenReturn(packageMetadata);
+        when(packageMetadata.newClassMetadata(ENTITY_NAME)).thenReturn(classMetadata);
+
+        entityMetadataBuilder.addEntityMetadata(jdoMetadata, entity, Sample.class);
+
+        verify(idMetadata).setPrimaryKey(true);
+        verify(idMetadata).setValueStrategy(IdGeneratorStrategy.IDENTITY);
+        verify(idMetadata, never()).newExtensionMetadata(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void shouldSetIdAllocationSizeForIncrementStrategy() {
+        Properties properties = new Properties();
+        properties.setProperty(Constants.Config.MDS_ID_ALLOCATION_SIZE, "100");
+
+        MdsConfig mdsConfig = mock(MdsConfig.class);
+        when(mdsConfig.getProperties(Constants.Config.MODULE_FILE)).thenReturn(properties);
+        ((EntityMetadataBuilderImpl) entityMetadataBuilder).setMdsConfig(mdsConfig);
+
+        when(entity.getName()).thenReturn(ENTITY_NAME);
+        when(entity.getIdStrategy()).thenReturn(IdStrategy.INCREMENT);
+        when(jdoMetadata.newPackageMetadata(PACKAGE)).thenReturn(packageMetadata);
+        when(packageMetadata.newClassMetadata(ENTITY_NAME)).thenReturn(classMetadata);
+
+        entityMetadataBuilder.addEntityMetadata(jdoMetadata, entity, Sample.class);
+
+        verify(idMetadata).setValueStrategy(IdGeneratorStrategy.INCREMENT);
+        verify(idMetadata).newExtensionMetadata(DATANUCLEUS, "key-cache-size", "100");
+    }
+
     @Test
     public void shouldAddToAnExistingPackage() {
         when(entity.getName()).thenReturn(ENTITY_NAME);
@@ -323,6 +383,31 @@ public class EntityMetadataBuilderTest {
         verify(fmd).setIndexed(true);
     }
 
+    @Test
+    public void shouldAddCompositeIndexForLookupOnMultipleFields() throws Exception {
+        Field first = new Field(null, "first", "First", new Type(String.class));
+        Field second = new Field(null, "second", "Second", new Type(Integer.class));
+        org.motechproject.mds.domain.Lookup lookup = new org.motechproject.mds.domain.Lookup("By first and second",
+                false, false, asList(first, second));
+
+        IndexMetadata indexMetadata = mock(IndexMetadata.class);
+
+        when(entity.getName()).thenReturn(ENTITY_NAME);
+        when(entity.getModule()).thenReturn(MODULE);
+        when(entity.getNamespace()).thenReturn(NAMESPACE);
+        when(entity.getTableName()).thenReturn(TABLE_NAME);
+        when(entity.getLookups()).thenReturn(asList(lookup));
+        when(jdoMetadata.newPackageMetadata(PACKAGE)).thenReturn(packageMetadata);
+        when(packageMetadata.newClassMetadata(ENTITY_NAME)).thenReturn(classMetadata);
+        when(classMetadata.newIndexMetadata()).thenReturn(indexMetadata);
+
+        entityMetadataBuilder.addEntityMetadata(jdoMetadata, entity, Sample.class);
+
+        verify(indexMetadata).setName(LookupIndexHelper.getIndexName(TABLE_NAME_3, asList("first", "second")));
+        verify(indexMetadata).newFieldMetadata("first");
+        verify(indexMetadata).newFieldMetadata("second");
+    }
+
     @Test
     public void shouldAddObjectValueGeneratorToAppropriateFields() throws Exception {
         when(entity.getName()).thenReturn(ENTITY_NAME);
@@ -0,0 +1,143 @@
+package org.motechproject.mds.builder.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.mds.domain.ClassData;
+import org.motechproject.mds.domain.Entity;
+import org.motechproject.mds.helper.EntitiesTopologyTest;
+import org.motechproject.mds.testutil.EntitySchemaBuilder;
+import org.motechproject.mds.util.ClassName;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EntityClassCacheTest extends EntitiesTopologyTest {
+
+    private EntityClassCache cache;
+
+    private List<Entity> entities;
+    private Map<String, String> fingerprints;
+
+    @Before
+    public void setUp() {
+        cache = new EntityClassCache();
+
+        //    A -> B -> D
+        //         |
+        //         v
+        //         C
+        setupSimpleTopology();
+
+        entities = asList(entityA, entityB, entityC, entityD);
+        fingerprints = new HashMap<>();
+
+        for (Entity entity : entities) {
+            fingerprints.put(entity.getClassName(), "v1");
+        }
+    }
+
+    @Test
+    public void shouldBuildAllEntitiesWithoutCachedClasses() {
+        assertEquals(asSet("A", "B", "C", "D"), cache.getEntitiesToBuild(entities, fingerprints));
+    }
+
+    @Test
+    public void shouldNotBuildUnchangedEntities() {
+        cacheAll();
+
+        assertTrue(cache.getEntitiesToBuild(entities, fingerprints).isEmpty());
+        assertNotNull(cache.get("A"));
+        assertNotNull(cache.get("A").getHistoryClassData());
+    }
+
+    @Test
+    public void shouldBuildChangedEntityAndItsDependents() {
+        cacheAll();
+
+        fingerprints.put("C", "v2");
+        assertEquals(asSet("A", "B", "C"), cache.getEntitiesToBuild(entities, fingerprints));
+
+        fingerprints.put("C", "v1");
+        fingerprints.put("A", "v2");
+        assertEquals(asSet("A"), cache.getEntitiesToBuild(entities, fingerprints));
+    }
+
+    @Test
+    public void shouldBuildSubclassesOfChangedEntity() {
+        Entity subclass = EntitySchemaBuilder.eude("E").build();
+        subclass.setSuperClass("D");
+        entities.add(subclass);
+        fingerprints.put("E", "v1");
+
+        cacheAll();
+
+        fingerprints.put("D", "v2");
+        assertEquals(asSet("A", "B", "D", "E"), cache.getEntitiesToBuild(entities, fingerprints));
+    }
+
+    @Test
+    public void shouldAlwaysBuildEntitiesWithoutFingerprint() {
+        fingerprints.put("D", null);
+        cacheAll();
+
+        assertEquals(asSet("A", "B", "D"), cache.getEntitiesToBuild(entities, fingerprints));
+    }
+
+    @Test
+    public void shouldRemoveClassesOfOtherEntities() {
+        cacheAll();
+
+        cache.retain(asList("A", "B"));
+
+        assertNotNull(cache.get("B"));
+        assertNull(cache.get("C"));
+        assertEquals(asSet("A", "B", "C", "D"), cache.getEntitiesToBuild(entities, fingerprints));
+    }
+
+    @Test
+    public void shouldRemoveAllClasses() {
+        cacheAll();
+
+        cache.clear();
+
+        assertEquals(asSet("A", "B", "C", "D"), cache.getEntitiesToBuild(entities, fingerprints));
+    }
+
+    @Test
+    public void shouldChangeFingerprintWhenEntityDefinitionChanges() {
+        String fingerprint = EntityClassCache.fingerprint(entityB, null);
+
+        assertNotNull(fingerprint);
+        assertEquals(fingerprint, EntityClassCache.fingerprint(entityB, null));
+        assertNotEquals(fingerprint, EntityClassCache.fingerprint(entityB, 1000L));
+
+        Entity changed = EntitySchemaBuilder.eude("B")
+                .field("relC", "mds.field.relationship.oneToOne").relatedClass("C").done()
+                .field("relD", "mds.field.relationship.oneToOne").relatedClass("D").done()
+                .field("name", "mds.field.string").done()
+                .build();
+
+        assertNotEquals(fingerprint, EntityClassCache.fingerprint(changed, null));
+    }
+
+    private void cacheAll() {
+        for (Entity entity : entities) {
+            String className = entity.getClassName();
+
+            cache.put(fingerprints.get(className), classData(className),
+                    classData(ClassName.getHistoryClassName(className)),
+                    classData(ClassName.getTrashClassName(className)));
+        }
+    }
+
+    private ClassData classData(String className) {
+        return new ClassData(className, new byte[0]);
+    }
+}
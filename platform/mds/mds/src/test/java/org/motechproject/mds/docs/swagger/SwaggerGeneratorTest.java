@@ -58,6 +58,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.API_DESCRIPTION_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ARRAY_TYPE;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CONTINUATION_TOKEN_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_BODY_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_ID_KEY;
@@ -67,6 +68,7 @@ import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.DELETE_I
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ID_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INT64_FORMAT;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INTEGER_TYPE;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.KEYSET_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.LICENSE_NAME_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.LICENSE_URL_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ORDER_DESC_KEY;
@@ -299,11 +301,11 @@ public class SwaggerGeneratorTest {
         List<Parameter> parameters = pathEntry.getParameters();
 
         assertNotNull(parameters);
-        assertEquals(5, parameters.size());
+        assertEquals(7, parameters.size());
         verifyQueryParameters(pathEntry.getParameters(),
                 asList("str", "integerField", "longField", "timeField", "owner", "creator",
                         "modifiedBy", "modificationDate", "creationDate"), 0);
-        verifyQueryParameter(parameters.get(4), "id", ID_DESC_KEY, "integer", "int64");
+        verifyQueryParameter(parameters.get(6), "id", ID_DESC_KEY, "integer", "int64");
 
         Map<Integer, Response> responses = pathEntry.getResponses();
 
@@ -402,7 +404,7 @@ public class SwaggerGeneratorTest {
         assertNull(longParam.getSchema());
 
         assertNotNull(parameters);
-        assertEquals(6, parameters.size());
+        assertEquals(8, parameters.size());
         verifyQueryParameters(pathEntry.getParameters(),
                 asList("str", "integerField", "longField", "timeField", "owner", "creator",
                         "modifiedBy", "modificationDate", "creationDate"), 2);
@@ -578,7 +580,7 @@ public class SwaggerGeneratorTest {
         assertNull(localeParamItems.getItems());
 
         assertNotNull(parameters);
-        assertEquals(6, parameters.size());
+        assertEquals(8, parameters.size());
         verifyQueryParameters(pathEntry.getParameters(),
                 asList("doubleField", "dateField", "dtField", "ldField", "localeField", "listField",
                         "owner", "creator", "modifiedBy", "modificationDate", "creationDate"), 2);
@@ -752,7 +754,9 @@ public class SwaggerGeneratorTest {
         verifyQueryParameter(parameters.get(i++), "page", PAGE_DESC_KEY, "integer", "int32");
         verifyQueryParameter(parameters.get(i++), "pageSize", PAGESIZE_DESC_KEY, "integer", "int32");
         verifyQueryParameter(parameters.get(i++), "sort", SORT_DESC_KEY, "string", null);
-        verifyQueryParameter(parameters.get(i), "order", ORDER_DESC_KEY, "string", null);
+        verifyQueryParameter(parameters.get(i++), "order", ORDER_DESC_KEY, "string", null);
+        verifyQueryParameter(parameters.get(i++), "keyset", KEYSET_DESC_KEY, "string", null);
+        verifyQueryParameter(parameters.get(i), "continuationToken", CONTINUATION_TOKEN_DESC_KEY, "string", null);
 
         // verify values in the sort parameter
         assertEquals(expectedSortFields, parameters.get(startIndex + 2).getEnumValues());
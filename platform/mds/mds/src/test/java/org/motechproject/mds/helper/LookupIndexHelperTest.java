@@ -0,0 +1,160 @@
+package org.motechproject.mds.helper;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.mds.domain.Entity;
+import org.motechproject.mds.domain.Field;
+import org.motechproject.mds.domain.FieldSetting;
+import org.motechproject.mds.domain.Lookup;
+import org.motechproject.mds.domain.OneToManyRelationship;
+import org.motechproject.mds.domain.Type;
+import org.motechproject.mds.domain.TypeSetting;
+import org.motechproject.mds.testutil.FieldTestHelper;
+import org.motechproject.mds.util.Constants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LookupIndexHelperTest {
+
+    private static final String TABLE_NAME = "MDS_PATIENT";
+
+    private Entity entity;
+    private Field externalId;
+    private Field status;
+    private Field visitDate;
+    private Field name;
+    private Field visits;
+
+    @Before
+    public void setUp() {
+        entity = new Entity("org.motechproject.mds.entity.Patient");
+
+        externalId = FieldTestHelper.field("externalId", String.class);
+        status = FieldTestHelper.field("status", String.class);
+        visitDate = FieldTestHelper.field("visitDate", DateTime.class);
+        name = FieldTestHelper.field("name", String.class);
+        visits = FieldTestHelper.field("visits", String.class);
+        visits.setType(new Type(OneToManyRelationship.class));
+    }
+
+    @Test
+    public void shouldOrderEqualityFieldsBeforeSetAndRangeFields() {
+        Lookup lookup = lookup("By visit date and status", asList(visitDate, externalId, status),
+                asList("visitDate"), asList("status"), Collections.<String, String>emptyMap());
+
+        assertEquals(asList("externalId", "status", "visitDate"), LookupIndexHelper.getIndexFields(lookup));
+    }
+
+    @Test
+    public void shouldSkipFieldsThatCannotUseAnIndex() {
+        Map<String, String> operators = new HashMap<>();
+        operators.put("name", Constants.Operators.MATCHES);
+        operators.put("status", Constants.Operators.STARTS_WITH);
+
+        Lookup lookup = lookup("By name", asList(name, status, visits, externalId),
+                Collections.<String>emptyList(), Collections.<String>emptyList(), operators);
+
+        assertEquals(asList("externalId", "status"), LookupIndexHelper.getIndexFields(lookup));
+    }
+
+    @Test
+    public void shouldCreateIndexesOnlyForLookupsOnMultipleFields() {
+        entity.addLookup(lookup("By external id", asList(externalId)));
+        entity.addLookup(lookup("By external id and status", asList(externalId, status)));
+
+        Map<String, List<String>> indexes = LookupIndexHelper.getLookupIndexes(entity, TABLE_NAME);
+
+        assertEquals(1, indexes.size());
+        assertEquals(asList("externalId", "status"), indexes.values().iterator().next());
+    }
+
+    @Test
+    public void shouldDropIndexesCoveredByOtherIndexes() {
+        entity.addLookup(lookup("By external id and status", asList(externalId, status)));
+        entity.addLookup(lookup("By status and external id", asList(externalId, status)));
+        entity.addLookup(lookup("By external id, status and name", asList(externalId, status, name)));
+        entity.addLookup(lookup("By name and status", asList(name, status)));
+
+        Map<String, List<String>> indexes = LookupIndexHelper.getLookupIndexes(entity, TABLE_NAME);
+
+        assertEquals(2, indexes.size());
+        assertTrue(indexes.containsValue(asList("externalId", "status", "name")));
+        assertTrue(indexes.containsValue(asList("name", "status")));
+    }
+
+    @Test
+    public void shouldLeaveOutColumnsExceedingIndexKeyLength() {
+        Field city = FieldTestHelper.field("city", String.class);
+        Field street = FieldTestHelper.field("street", String.class);
+        Field zip = FieldTestHelper.field("zip", String.class);
+        setMaxLength(name, 800);
+
+        entity.addLookup(lookup("By address", asList(externalId, status, city, street, zip, visitDate)));
+        entity.addLookup(lookup("By name and external id", asList(name, externalId)));
+
+        Map<String, List<String>> indexes = LookupIndexHelper.getLookupIndexes(entity, TABLE_NAME);
+
+        assertEquals(1, indexes.size());
+        assertEquals(asList("externalId", "status", "city", "street"), indexes.values().iterator().next());
+    }
+
+    @Test
+    public void shouldNotCreateIndexIfSecondColumnExceedsIndexKeyLength() {
+        setMaxLength(name, 1000);
+        setMaxLength(status, 100);
+
+        entity.addLookup(lookup("By name and status", asList(name, status)));
+
+        assertTrue(LookupIndexHelper.getLookupIndexes(entity, TABLE_NAME).isEmpty());
+    }
+
+    @Test
+    public void shouldNameIndexesAfterTableAndFields() {
+        String indexName = LookupIndexHelper.getIndexName(TABLE_NAME, asList("externalId", "status"));
+
+        assertTrue(indexName.startsWith(LookupIndexHelper.INDEX_NAME_PREFIX + TABLE_NAME + "_"));
+        assertEquals(indexName, LookupIndexHelper.getIndexName(TABLE_NAME, asList("externalId", "status")));
+        assertNotEquals(indexName, LookupIndexHelper.getIndexName(TABLE_NAME, asList("status", "externalId")));
+        assertNotEquals(indexName, LookupIndexHelper.getIndexName("MDS_OTHER", asList("externalId", "status")));
+        assertTrue(LookupIndexHelper.getIndexName(longTableName(), asList("externalId", "status")).length() < 64);
+    }
+
+    private void setMaxLength(Field field, int maxLength) {
+        field.addSetting(new FieldSetting(field, new TypeSetting(Constants.Settings.STRING_MAX_LENGTH),
+                String.valueOf(maxLength)));
+    }
+
+    private Lookup lookup(String lookupName, List<Field> fields) {
+        return lookup(lookupName, fields, Collections.<String>emptyList(), Collections.<String>emptyList(),
+                Collections.<String, String>emptyMap());
+    }
+
+    private Lookup lookup(String lookupName, List<Field> fields, List<String> rangeFields, List<String> setFields,
+                          Map<String, String> customOperators) {
+        List<String> fieldsOrder = new ArrayList<>();
+        for (Field field : fields) {
+            fieldsOrder.add(field.getName());
+        }
+
+        return new Lookup(lookupName, false, false, fields, false, lookupName.replace(" ", ""), rangeFields,
+                setFields, customOperators, new HashMap<String, Boolean>(), fieldsOrder);
+    }
+
+    private String longTableName() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; ++i) {
+            sb.append("MDS_TABLE_");
+        }
+        return sb.toString();
+    }
+}
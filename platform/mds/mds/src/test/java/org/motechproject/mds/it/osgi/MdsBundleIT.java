@@ -624,6 +624,7 @@ public class MdsBundleIT extends BasePaxIT {
                 YEAR_LATER, LD_YEAR_AGO, TEST_MAP2, NEW_PERIOD, BYTE_ARRAY_VALUE,
                 DATE_TOMORROW, DOUBLE_VALUE_2, NIGHT_TIME, 3, toEnum(objClass, "two"));
         service.update(retrieved);
+        entityService.flushComboboxValues();
 
         FieldDto comboboxField = entityService.findEntityFieldByName(entityId, "someList");
 
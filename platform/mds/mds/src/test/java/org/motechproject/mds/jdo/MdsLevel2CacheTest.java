@@ -0,0 +1,175 @@
+package org.motechproject.mds.jdo;
+
+import org.datanucleus.Configuration;
+import org.datanucleus.NucleusContext;
+import org.datanucleus.cache.CachedPC;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.dto.CacheStatisticsDto;
+import org.motechproject.mds.testutil.records.Record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MdsLevel2CacheTest {
+
+    private static final int MAX_SIZE = 2;
+
+    @Mock
+    private NucleusContext nucleusContext;
+
+    @Mock
+    private Configuration configuration;
+
+    private MdsLevel2Cache cache;
+
+    @Before
+    public void setUp() {
+        when(nucleusContext.getConfiguration()).thenReturn(configuration);
+
+        cache = new MdsLevel2Cache(nucleusContext, MAX_SIZE);
+        Level2CacheRegistry.setCacheable(Record.class.getName(), true);
+    }
+
+    @After
+    public void tearDown() {
+        Level2CacheRegistry.setCacheable(Record.class.getName(), false);
+        cache.close();
+    }
+
+    @Test
+    public void shouldCacheOnlyCacheableClasses() {
+        CachedPC record = cachedPC(Record.class);
+        CachedPC string = cachedPC(String.class);
+
+        cache.put(1L, record);
+        cache.put(2L, string);
+
+        assertSame(record, cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void shouldRemoveLeastRecentlyUsedInstancesWhenFull() {
+        cache.put(1L, cachedPC(Record.class));
+        cache.put(2L, cachedPC(Record.class));
+        cache.get(1L);
+        cache.put(3L, cachedPC(Record.class));
+
+        assertEquals(MAX_SIZE, cache.getSize());
+        assertTrue(cache.containsOid(1L));
+        assertFalse(cache.containsOid(2L));
+        assertTrue(cache.containsOid(3L));
+        assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        cache.put(1L, cachedPC(Record.class));
+
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(2L);
+
+        CacheStatisticsDto statistics = cache.getStatistics();
+        assertEquals(2, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(2.0 / 3, statistics.getHitRatio(), 0.0001);
+
+        cache.resetStatistics();
+
+        assertEquals(0, cache.getStatistics().getHits());
+        assertEquals(0, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void shouldEvictInstancesOfClassThroughRegistry() {
+        cache.put(1L, cachedPC(Record.class));
+        cache.put(2L, cachedPC(Record.class));
+
+        Level2CacheRegistry.evict(Record.class.getName());
+
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void shouldEvictInstancesWhenClassIsNoLongerCacheable() {
+        cache.put(1L, cachedPC(Record.class));
+
+        Level2CacheRegistry.setCacheable(Record.class.getName(), false);
+
+        assertTrue(cache.isEmpty());
+
+        cache.put(1L, cachedPC(Record.class));
+
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void shouldReturnPinnedInstances() {
+        CachedPC record = cachedPC(Record.class);
+
+        cache.put(1L, record);
+        cache.pin(1L);
+
+        assertSame(record, cache.get(1L));
+        assertTrue(cache.containsOid(1L));
+        assertEquals(1, cache.getNumberOfPinnedObjects());
+        assertEquals(1, cache.getStatistics().getHits());
+    }
+
+    @Test
+    public void shouldNotRemovePinnedInstancesWhenFull() {
+        cache.pinAll(Record.class, false);
+
+        CachedPC pinned = cachedPC(Record.class);
+        cache.put(1L, pinned);
+        cache.put(2L, cachedPC(Record.class));
+        cache.put(3L, cachedPC(Record.class));
+        cache.put(4L, cachedPC(Record.class));
+
+        assertSame(pinned, cache.get(1L));
+        assertEquals(0, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void shouldKeepUnpinnedInstances() {
+        CachedPC record = cachedPC(Record.class);
+
+        cache.pin(1L);
+        cache.put(1L, record);
+        cache.unpin(1L);
+
+        assertSame(record, cache.get(1L));
+        assertEquals(0, cache.getNumberOfPinnedObjects());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void shouldEvictPinnedInstancesOfClassThroughRegistry() {
+        cache.pin(1L);
+        cache.put(1L, cachedPC(Record.class));
+
+        Level2CacheRegistry.evict(Record.class.getName());
+
+        assertNull(cache.get(1L));
+        assertTrue(cache.isEmpty());
+    }
+
+    private CachedPC cachedPC(Class<?> clazz) {
+        CachedPC pc = mock(CachedPC.class);
+        when(pc.getObjectClass()).thenReturn(clazz);
+        return pc;
+    }
+}
@@ -7,6 +7,7 @@ import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.LookupFieldDto;
 import org.motechproject.mds.dto.LookupFieldType;
+import org.motechproject.mds.ex.lookup.LookupExecutorException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.DefaultMotechDataService;
 import org.motechproject.mds.testutil.FieldTestHelper;
@@ -129,6 +130,39 @@ public class LookupExecutorTest {
         assertEquals(dataService.findByRelationFields(STR_ARG, LONG_ARG, INT_ARG, STR_ARG_2), result);
     }
 
+    @Test
+    public void shouldExecuteDifferentLookupsWithTheSameName() {
+        Map<String, Object> lookupMap1 = new HashMap<>();
+        lookupMap1.put(STR_FIELD_NAME, STR_ARG);
+        lookupMap1.put(INT_FIELD_NAME, INT_ARG);
+        lookupMap1.put(TEXTAREA_FIELD_NAME, TEXTAREA_ARG);
+
+        Map<String, Object> lookupMap2 = new HashMap<>();
+        lookupMap2.put(STR_FIELD_NAME, STR_ARG);
+        lookupMap2.put(LookupName.buildLookupFieldName(RELATED_FIELD_NAME, ID), LONG_ARG);
+        lookupMap2.put(INT_FIELD_NAME, INT_ARG);
+        lookupMap2.put(LookupName.buildLookupFieldName(RELATED_FIELD_NAME, NAME), STR_ARG_2);
+
+        // both lookups share the name, the plan must be rebuilt when the definition changes
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(dataService.find(STR_ARG, INT_ARG, TEXTAREA_ARG), lookupExecutor1.execute(lookupMap1));
+            assertEquals(dataService.findByRelationFields(STR_ARG, LONG_ARG, INT_ARG, STR_ARG_2),
+                    lookupExecutor2.execute(lookupMap2));
+            assertEquals(COUNT, lookupExecutor1.executeCount(lookupMap1));
+        }
+    }
+
+    @Test(expected = LookupExecutorException.class)
+    public void shouldThrowExceptionIfCountMethodIsMissing() {
+        Map<String, Object> lookupMap = new HashMap<>();
+        lookupMap.put(STR_FIELD_NAME, STR_ARG);
+        lookupMap.put(LookupName.buildLookupFieldName(RELATED_FIELD_NAME, ID), LONG_ARG);
+        lookupMap.put(INT_FIELD_NAME, INT_ARG);
+        lookupMap.put(LookupName.buildLookupFieldName(RELATED_FIELD_NAME, NAME), STR_ARG_2);
+
+        lookupExecutor2.executeCount(lookupMap);
+    }
+
     private Map<String, FieldDto> getFieldMapping() {
         Map<String, FieldDto> mapping = new HashMap<>();
         mapping.put(STR_FIELD_NAME, FieldTestHelper.fieldDto(1L, STR_FIELD_NAME, String.class.getName(), "strFieldDisp", null));
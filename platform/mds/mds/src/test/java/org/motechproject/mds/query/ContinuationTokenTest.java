@@ -0,0 +1,84 @@
+package org.motechproject.mds.query;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.util.Order;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContinuationTokenTest {
+
+    @Test
+    public void shouldCreateAndParseTokens() {
+        DateTime date = new DateTime(2015, 3, 11, 10, 15, 20, 123);
+        QueryParams queryParams = QueryParams.keyset(20, new Order("date", Order.Direction.DESC), date, 7L);
+
+        QueryParams parsed = ContinuationToken.parse(ContinuationToken.create(queryParams), 20);
+
+        assertTrue(parsed.isKeyset());
+        assertTrue(parsed.isLastSeenSet());
+        assertEquals(Integer.valueOf(20), parsed.getPageSize());
+        assertEquals("date", parsed.getOrder().getField());
+        assertEquals(Order.Direction.DESC, parsed.getOrder().getDirection());
+        assertEquals(Long.valueOf(7), parsed.getLastId());
+        assertEquals(date, ContinuationToken.parseValue(parsed.getLastValue(), DateTime.class.getName()));
+    }
+
+    @Test
+    public void shouldKeepNullValuesInTokens() {
+        QueryParams queryParams = QueryParams.keyset(10, new Order("value", Order.Direction.ASC), null, 3L);
+
+        QueryParams parsed = ContinuationToken.parse(ContinuationToken.create(queryParams), 10);
+
+        assertNull(parsed.getLastValue());
+        assertEquals(Long.valueOf(3), parsed.getLastId());
+    }
+
+    @Test
+    public void shouldCreateTokenOnlyForFullKeysetPages() {
+        Record first = new Record();
+        first.setId(1L);
+        first.setValue("a");
+        Record second = new Record();
+        second.setId(2L);
+        second.setValue("b");
+        List<Record> records = Arrays.asList(first, second);
+
+        assertNull(ContinuationToken.next(new QueryParams(1, 2), records));
+        assertNull(ContinuationToken.next(QueryParams.keyset(3, new Order("value")), records));
+
+        String token = ContinuationToken.next(QueryParams.keyset(2, new Order("value")), records);
+        assertNotNull(token);
+
+        QueryParams parsed = ContinuationToken.parse(token, 2);
+        assertEquals("b", parsed.getLastValue());
+        assertEquals(Long.valueOf(2), parsed.getLastId());
+    }
+
+    @Test
+    public void shouldCreateTokenFromProjectedRows() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("value", "c");
+        row.put("id", 3L);
+
+        String token = ContinuationToken.next(QueryParams.keyset(1, new Order("value")), Arrays.asList(row));
+
+        QueryParams parsed = ContinuationToken.parse(token, 1);
+        assertEquals("c", parsed.getLastValue());
+        assertEquals(Long.valueOf(3), parsed.getLastId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMalformedTokens() {
+        ContinuationToken.parse("malformed", 10);
+    }
+}
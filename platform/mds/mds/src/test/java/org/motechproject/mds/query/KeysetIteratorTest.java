@@ -0,0 +1,122 @@
+package org.motechproject.mds.query;
+
+import org.junit.Test;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.util.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KeysetIteratorTest {
+
+    @Test
+    public void shouldIterateOverAllChunks() {
+        TestIterator iterator = new TestIterator(records(5), null, 2);
+
+        assertEquals(asIds(records(5)), drain(iterator));
+        assertEquals(3, iterator.retrievals.size());
+        assertEquals(2, iterator.processedChunks);
+
+        QueryParams second = iterator.retrievals.get(1);
+        assertTrue(second.isKeyset());
+        assertEquals(Long.valueOf(2), second.getLastId());
+        assertEquals("id", second.getOrder().getField());
+    }
+
+    @Test
+    public void shouldRespectPageSizeAndOrder() {
+        QueryParams queryParams = new QueryParams(1, 3, new Order("value", Order.Direction.DESC));
+        TestIterator iterator = new TestIterator(records(10), queryParams, 2);
+
+        assertEquals(3, drain(iterator).size());
+        assertEquals(2, iterator.retrievals.size());
+        assertEquals(Integer.valueOf(1), iterator.retrievals.get(1).getPageSize());
+        assertEquals("value", iterator.retrievals.get(1).getOrder().getField());
+        assertEquals(Order.Direction.DESC, iterator.retrievals.get(1).getOrder().getDirection());
+    }
+
+    @Test
+    public void shouldRetrieveOtherPagesAtOnce() {
+        QueryParams queryParams = new QueryParams(2, 3);
+        TestIterator iterator = new TestIterator(records(10), queryParams, 2);
+
+        drain(iterator);
+
+        assertEquals(1, iterator.retrievals.size());
+        assertEquals(queryParams, iterator.retrievals.get(0));
+        assertFalse(iterator.retrievals.get(0).isKeyset());
+    }
+
+    @Test
+    public void shouldHandleNoInstances() {
+        TestIterator iterator = new TestIterator(new ArrayList<Record>(), null, 2);
+
+        assertFalse(iterator.hasNext());
+        assertEquals(1, iterator.retrievals.size());
+        assertNull(iterator.retrievals.get(0).getLastId());
+    }
+
+    private List<Long> drain(TestIterator iterator) {
+        List<Long> ids = new ArrayList<>();
+        while (iterator.hasNext()) {
+            ids.add(iterator.next().getId());
+        }
+        return ids;
+    }
+
+    private List<Long> asIds(List<Record> records) {
+        List<Long> ids = new ArrayList<>();
+        for (Record record : records) {
+            ids.add(record.getId());
+        }
+        return ids;
+    }
+
+    private List<Record> records(int count) {
+        List<Record> records = new ArrayList<>();
+        for (long i = 1; i <= count; ++i) {
+            Record record = new Record();
+            record.setId(i);
+            record.setValue("value" + i);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static class TestIterator extends KeysetIterator<Record> {
+
+        private final List<Record> records;
+        private final List<QueryParams> retrievals = new ArrayList<>();
+        private int processedChunks;
+
+        TestIterator(List<Record> records, QueryParams queryParams, int chunkSize) {
+            super(queryParams, chunkSize);
+            this.records = records;
+        }
+
+        @Override
+        protected List<Record> retrieveChunk(QueryParams queryParams) {
+            retrievals.add(queryParams);
+
+            // the records are already ordered, we only skip the ones that were seen
+            List<Record> chunk = new ArrayList<>();
+            for (Record record : records) {
+                boolean seen = queryParams.getLastId() != null && record.getId() <= queryParams.getLastId();
+                if (!seen && chunk.size() < queryParams.getPageSize()) {
+                    chunk.add(record);
+                }
+            }
+            return chunk;
+        }
+
+        @Override
+        protected void chunkProcessed() {
+            processedChunks++;
+        }
+    }
+}
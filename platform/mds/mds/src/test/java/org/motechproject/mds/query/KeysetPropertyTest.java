@@ -0,0 +1,76 @@
+package org.motechproject.mds.query;
+
+import org.junit.Test;
+import org.motechproject.mds.util.Order;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class KeysetPropertyTest {
+
+    @Test
+    public void shouldGenerateFilterForOrderField() {
+        Property property = new KeysetProperty<>("name", "John", String.class.getName(), 5L, Order.Direction.ASC,
+                true);
+
+        assertEquals("(name>param2 || (name == param2 && id>param2id))", property.asFilter(2));
+        assertEquals("java.lang.String param2, java.lang.Long param2id", property.asDeclareParameter(2));
+        assertEquals(Arrays.asList("John", 5L), property.unwrap());
+    }
+
+    @Test
+    public void shouldGenerateFilterForDescendingOrder() {
+        Property property = new KeysetProperty<>("age", 30, Integer.class.getName(), 5L, Order.Direction.DESC, false);
+
+        assertEquals("(age<param1 || (age == param1 && id<param1id))", property.asFilter(1));
+        assertEquals("java.lang.Integer param1, java.lang.Long param1id", property.asDeclareParameter(1));
+        assertEquals(Arrays.asList(30, 5L), property.unwrap());
+    }
+
+    @Test
+    public void shouldGenerateFilterForIdOrder() {
+        Property property = new KeysetProperty<>("id", 5L, Long.class.getName(), 5L, Order.Direction.ASC, true);
+
+        assertEquals("id>param0id", property.asFilter(0));
+        assertEquals("java.lang.Long param0id", property.asDeclareParameter(0));
+        assertEquals(Arrays.asList(5L), property.unwrap());
+    }
+
+    @Test
+    public void shouldContinueWithinNullValuesIfNullsComeLast() {
+        Property property = new KeysetProperty<>("name", null, String.class.getName(), 5L, Order.Direction.ASC,
+                false);
+
+        assertEquals("(name == null && id>param0id)", property.asFilter(0));
+        assertEquals("java.lang.Long param0id", property.asDeclareParameter(0));
+        assertEquals(Arrays.asList(5L), property.unwrap());
+    }
+
+    @Test
+    public void shouldContinueWithNonNullValuesAfterNullsIfNullsComeFirst() {
+        Property property = new KeysetProperty<>("name", null, String.class.getName(), 5L, Order.Direction.ASC,
+                true);
+
+        assertEquals("((name == null && id>param0id) || name != null)", property.asFilter(0));
+        assertEquals("java.lang.Long param0id", property.asDeclareParameter(0));
+        assertEquals(Arrays.asList(5L), property.unwrap());
+
+        property = new KeysetProperty<>("name", null, String.class.getName(), 5L, Order.Direction.DESC, false);
+
+        assertEquals("((name == null && id<param0id) || name != null)", property.asFilter(0));
+    }
+
+    @Test
+    public void shouldContinueWithNullsAfterNonNullValuesIfNullsComeLast() {
+        Property property = new KeysetProperty<>("name", "John", String.class.getName(), 5L, Order.Direction.ASC,
+                false);
+
+        assertEquals("(name>param0 || (name == param0 && id>param0id) || name == null)", property.asFilter(0));
+        assertEquals(Arrays.asList("John", 5L), property.unwrap());
+
+        property = new KeysetProperty<>("name", "John", String.class.getName(), 5L, Order.Direction.DESC, true);
+
+        assertEquals("(name<param0 || (name == param0 && id<param0id) || name == null)", property.asFilter(0));
+    }
+}
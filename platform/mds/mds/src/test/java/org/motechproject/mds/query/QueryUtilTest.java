@@ -12,6 +12,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import javax.jdo.Query;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -20,6 +21,8 @@ import java.util.Map;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -50,6 +53,38 @@ public class QueryUtilTest {
         verify(query).setOrdering("field ascending");
     }
 
+    @Test
+    public void shouldUseIdForTiesInKeysetOrdering() {
+        QueryParams keysetParams = QueryParams.keyset(10, new Order("field", Order.Direction.DESC));
+
+        QueryUtil.setQueryParams(query, keysetParams);
+
+        verify(query).setRange(0, 10);
+        verify(query).setOrdering("field descending, id descending");
+    }
+
+    @Test
+    public void shouldCreateKeysetProperty() {
+        Map<String, String> fieldTypeMap = new HashMap<>();
+        fieldTypeMap.put("date", DateTime.class.getName());
+
+        DateTime date = new DateTime(2015, 3, 11, 10, 15);
+        QueryParams keysetParams = QueryParams.keyset(10, new Order("date"), String.valueOf(date.getMillis()), 4L);
+
+        Property property = QueryUtil.keysetProperty(keysetParams, fieldTypeMap, true);
+
+        assertEquals("(date>param0 || (date == param0 && id>param0id))", property.asFilter(0));
+        assertEquals(asList(date, 4L), property.unwrap());
+        assertNull(QueryUtil.keysetProperty(QueryParams.keyset(10, new Order("date")), fieldTypeMap, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotCreateKeysetPropertyForUnknownFields() {
+        QueryParams keysetParams = QueryParams.keyset(10, new Order("unknown"), "value", 4L);
+
+        QueryUtil.keysetProperty(keysetParams, new HashMap<String, String>(), true);
+    }
+
     @Test
     public void shouldCreateFiltersAndParamDeclarationForRanges() {
         DateTime now = DateTime.now();
@@ -113,6 +148,98 @@ public class QueryUtilTest {
         QueryUtil.setCountResult(null);
     }
 
+    @Test
+    public void shouldSetAggregationResult() {
+        Aggregation aggregation = new Aggregation().groupBy("prop1", "prop2").count().sum("prop3").max("id");
+
+        QueryUtil.setAggregationResult(query, aggregation, typeMap(String.class, DateTime.class, Integer.class));
+
+        verify(query).setResult("prop1, prop2, count(this), sum(prop3), max(id)");
+        verify(query).setGrouping("prop1, prop2");
+        verify(query).setOrdering("prop1 ascending, prop2 ascending");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAggregateUnknownFields() {
+        QueryUtil.setAggregationResult(query, new Aggregation().groupBy("prop1 || true").count(),
+                typeMap(String.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotSumFieldsThatAreNotNumeric() {
+        QueryUtil.setAggregationResult(query, new Aggregation().sum("prop1"), typeMap(String.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireAggregateFunctions() {
+        QueryUtil.setAggregationResult(query, new Aggregation().groupBy("prop1"), typeMap(String.class));
+    }
+
+    @Test
+    public void shouldConvertAggregationResultsToRows() {
+        Aggregation aggregation = new Aggregation().groupBy("prop1").count().avg("prop2");
+
+        List<AggregationRow> rows = QueryUtil.getAggregationRows(aggregation,
+                asList(new Object[]{"a", 2L, 1.5}, new Object[]{"b", 1L, 3.0}));
+
+        assertEquals(2, rows.size());
+        assertEquals("a", rows.get(0).getGroupValue("prop1"));
+        assertEquals(2L, rows.get(0).getValue("count"));
+        assertEquals(1.5, rows.get(0).getValue("avg(prop2)"));
+        assertEquals("b", rows.get(1).getGroupValue("prop1"));
+        assertEquals(3.0, rows.get(1).getValue(new Aggregate(AggregateFunction.AVG, "prop2")));
+
+        rows = QueryUtil.getAggregationRows(new Aggregation().count(), 7L);
+
+        assertEquals(1, rows.size());
+        assertTrue(rows.get(0).getGroup().isEmpty());
+        assertEquals(7L, rows.get(0).getValue("count"));
+    }
+
+    @Test
+    public void shouldSetProjectionResult() {
+        QueryUtil.setProjectionResult(query, asList("prop2", "id"), typeMap(String.class, DateTime.class));
+
+        verify(query).setResult("prop2, id");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotProjectUnknownFields() {
+        QueryUtil.setProjectionResult(query, asList("prop1", "this"), typeMap(String.class));
+    }
+
+    @Test
+    public void shouldConvertProjectionResultsToRows() {
+        List<Map<String, Object>> rows = QueryUtil.getProjectionRows(asList("prop1", "id"),
+                asList(new Object[]{"a", 1L}, new Object[]{"b", 2L}));
+
+        assertEquals(2, rows.size());
+        assertEquals(asList("prop1", "id"), new ArrayList<>(rows.get(0).keySet()));
+        assertEquals("a", rows.get(0).get("prop1"));
+        assertEquals(2L, rows.get(1).get("id"));
+
+        // a single field is not wrapped
+
+        Byte[] blob = {1, 2};
+        rows = QueryUtil.getProjectionRows(asList("prop1"), asList((Object) blob));
+
+        assertEquals(1, rows.size());
+        assertSame(blob, rows.get(0).get("prop1"));
+    }
+
+    @Test
+    public void shouldParseAggregates() {
+        assertEquals("count", Aggregate.parse("count").getLabel());
+        assertEquals("count", Aggregate.parse("COUNT()").getLabel());
+        assertEquals("min(prop1)", Aggregate.parse(" min( prop1 ) ").getLabel());
+        assertEquals(AggregateFunction.SUM, Aggregate.parse("sum(prop2)").getFunction());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotParseAggregatesWithoutRequiredField() {
+        Aggregate.parse("avg");
+    }
+
     private Map<String, String> typeMap(Class... types) {
         Map<String, String> typeMap = new HashMap<>();
         for (int i = 0; i < types.length; i++) {
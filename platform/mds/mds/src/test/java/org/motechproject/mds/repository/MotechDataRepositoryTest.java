@@ -0,0 +1,191 @@
+package org.motechproject.mds.repository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MotechDataRepositoryTest {
+
+    private static final String USERNAME = "motech";
+
+    @Mock
+    private PersistenceManagerFactory persistenceManagerFactory;
+
+    @Mock
+    private PersistenceManager persistenceManager;
+
+    @Mock
+    private Query query;
+
+    @Mock
+    private Filters filters;
+
+    private MotechDataRepository<Record> repository = new RecordRepository();
+
+    @Before
+    public void setUp() {
+        when(persistenceManagerFactory.getPersistenceManager()).thenReturn(persistenceManager);
+        when(persistenceManager.newQuery(Record.class)).thenReturn(query);
+
+        repository.setPersistenceManagerFactory(persistenceManagerFactory);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void shouldRetrieveInstanceOnlyIfOwnedByCurrentUser() {
+        login();
+        Record record = new Record();
+        when(query.executeWithArray(5L, USERNAME)).thenReturn(record);
+
+        assertSame(record, repository.retrieveAccessible(5L, restriction(true, false)));
+
+        verify(query).setFilter("id == param0 && owner == param1");
+        verify(query).declareParameters("java.lang.Long param0, java.lang.String param1");
+        verify(query).setUnique(true);
+    }
+
+    @Test
+    public void shouldRetrieveInstanceWithoutCreatorIfNoUserIsLoggedIn() {
+        repository.retrieveAccessible(5L, restriction(false, true));
+
+        verify(query).setFilter("id == param0 && creator == null");
+        verify(query).declareParameters("java.lang.Long param0");
+        verify(query).executeWithArray(5L);
+    }
+
+    @Test
+    public void shouldNotRestrictQueriesWithoutRestriction() {
+        login();
+        List<Long> ids = asList(1L, 2L);
+
+        repository.deleteByIds(ids, new InstanceSecurityRestriction());
+
+        verify(query).setFilter("param0.contains(id)");
+        verify(query).declareParameters("java.util.Collection param0");
+        verify(query).deletePersistentAll(new Object[]{ids});
+    }
+
+    @Test
+    public void shouldDeleteOnlyInstancesCreatedByCurrentUser() {
+        login();
+        List<Long> ids = asList(1L, 2L);
+        when(query.deletePersistentAll(ids, USERNAME)).thenReturn(1L);
+
+        assertEquals(1L, repository.deleteByIds(ids, restriction(false, true)));
+
+        verify(query).setFilter("param0.contains(id) && creator == param1");
+        verify(query).declareParameters("java.util.Collection param0, java.lang.String param1");
+    }
+
+    @Test
+    public void shouldCountInstancesOwnedByCurrentUser() {
+        login();
+        Collection<Long> ids = asList(1L, 2L, 3L);
+        when(query.executeWithArray(ids, USERNAME)).thenReturn(3L);
+
+        assertEquals(3L, repository.countAccessible(ids, restriction(true, false)));
+
+        verify(query).setFilter("param0.contains(id) && owner == param1");
+        verify(query).setResult("count(this)");
+    }
+
+    @Test
+    public void shouldRestrictKeysetPagedFiltersToInstancesOwnedByCurrentUser() {
+        login();
+        Record record = new Record();
+        when(filters.requiresFiltering()).thenReturn(true);
+        when(filters.filterForQuery()).thenReturn("value == arg0");
+        when(filters.paramsDeclarationForQuery()).thenReturn("java.lang.String arg0");
+        when(filters.valuesForQuery()).thenReturn(new Object[]{"test"});
+        when(query.executeWithArray("test", 4L, USERNAME)).thenReturn(asList(record));
+
+        List<Record> result = repository.filter(filters, QueryParams.keyset(10, new Order("id"), "4", 4L),
+                restriction(true, false));
+
+        assertEquals(asList(record), result);
+        verify(query).setFilter("(value == arg0) && id>param0id && owner == param1");
+        verify(query).declareParameters("java.lang.String arg0, java.lang.Long param0id, java.lang.String param1");
+    }
+
+    @Test
+    public void shouldContinueAfterNullValuesWithNonNullValuesOnMySql() {
+        when(persistenceManagerFactory.getConnectionDriverName()).thenReturn("com.mysql.jdbc.Driver");
+        repository.setFieldTypeMap(Collections.singletonMap("value", String.class.getName()));
+        when(query.executeWithArray(4L)).thenReturn(new ArrayList<>());
+
+        repository.retrieveAll(QueryParams.keyset(10, new Order("value"), null, 4L), null);
+
+        verify(query).setFilter("((value == null && id>param0id) || value != null)");
+        verify(query).setOrdering("value ascending, id ascending");
+        verify(query).executeWithArray(4L);
+    }
+
+    @Test
+    public void shouldContinueAfterNonNullValuesWithNullValuesOnPostgres() {
+        when(persistenceManagerFactory.getConnectionDriverName()).thenReturn("org.postgresql.Driver");
+        repository.setFieldTypeMap(Collections.singletonMap("value", String.class.getName()));
+        when(query.executeWithArray("test", 4L)).thenReturn(new ArrayList<>());
+
+        repository.retrieveAll(QueryParams.keyset(10, new Order("value"), "test", 4L), null);
+
+        verify(query).setFilter("(value>param0 || (value == param0 && id>param0id) || value == null)");
+        verify(query).executeWithArray("test", 4L);
+    }
+
+    private InstanceSecurityRestriction restriction(boolean byOwner, boolean byCreator) {
+        InstanceSecurityRestriction restriction = new InstanceSecurityRestriction();
+        restriction.setByOwner(byOwner);
+        restriction.setByCreator(byCreator);
+        return restriction;
+    }
+
+    private void login() {
+        User principal = new User(USERNAME, USERNAME, Collections.<SimpleGrantedAuthority>emptyList());
+
+        SecurityContextImpl securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(principal, null));
+
+        SecurityContextHolder.setContext(securityContext);
+    }
+
+    public static class Record {
+    }
+
+    private static class RecordRepository extends MotechDataRepository<Record> {
+
+        RecordRepository() {
+            super(Record.class);
+        }
+    }
+}
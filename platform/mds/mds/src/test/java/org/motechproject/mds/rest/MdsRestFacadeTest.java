@@ -5,13 +5,17 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.domain.RestOptions;
@@ -20,24 +24,34 @@ import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.RestOptionsDto;
 import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.ex.rest.RestBadBodyFormatException;
+import org.motechproject.mds.ex.rest.RestEntityNotFoundException;
 import org.motechproject.mds.ex.rest.RestLookupExecutionForbiddenException;
 import org.motechproject.mds.ex.rest.RestLookupNotFoundException;
 import org.motechproject.mds.ex.rest.RestNoLookupResultException;
 import org.motechproject.mds.ex.rest.RestOperationNotSupportedException;
+import org.motechproject.mds.query.Aggregation;
+import org.motechproject.mds.query.AggregationRow;
+import org.motechproject.mds.query.KeysetIterator;
+import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.FieldTestHelper;
 import org.motechproject.mds.testutil.records.Record;
 import org.motechproject.mds.util.Order;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,13 +62,19 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
 
 @RunWith(MockitoJUnitRunner.class)
 public class MdsRestFacadeTest {
@@ -142,6 +162,12 @@ public class MdsRestFacadeTest {
         when(dataService.create(recordOne)).thenReturn(recordOne);
         when(dataService.getDetachedField(recordOne, BLOB_FIELD))
                 .thenReturn(blobFieldValue);
+        when(dataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
 
         // do the initialization, normally called by Spring as @PostConstruct
         mdsRestFacade.init();
@@ -252,6 +278,77 @@ public class MdsRestFacadeTest {
         assertEquals(Long.valueOf(1), longCaptor.getValue());
     }
 
+    @Test
+    public void shouldGetOnlyRequestedFields() {
+        setUpCrudAccess(false, true, false, false);
+        Map<String, Object> row = new HashMap<>();
+        row.put(VALUE_FIELD, "restTest");
+        row.put(ID_FIELD_NAME, 1L);
+        QueryParams queryParams = QueryParams.keyset(1, null);
+
+        when(dataService.retrieveFields(eq(asList(VALUE_FIELD, ID_FIELD_NAME)), any(List.class), eq(queryParams)))
+                .thenReturn(asList(row));
+
+        RestResponse response = mdsRestFacade.get(queryParams, false, asList(VALUE_FIELD));
+
+        assertEquals(1, response.getData().size());
+        assertEquals(1, response.getData().get(0).size());
+        assertEquals("restTest", response.getData().get(0).get(VALUE_FIELD));
+        assertNotNull(response.getMetadata().getContinuationToken());
+        verify(dataService, never()).retrieveAll(any(QueryParams.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotProjectBlobFields() {
+        setUpCrudAccess(false, true, false, false);
+        mdsRestFacade.get(new QueryParams(1, 10), false, asList(VALUE_FIELD, BLOB_FIELD));
+    }
+
+    @Test(expected = RestEntityNotFoundException.class)
+    public void shouldThrowNotFoundWhenProjectingNonexistentInstance() {
+        setUpCrudAccess(false, true, false, false);
+        mdsRestFacade.get(7L, false, asList(VALUE_FIELD));
+    }
+
+    @Test
+    public void shouldComputeVersionsWithoutRetrievingInstances() {
+        setUpCrudAccess(false, true, false, false);
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", 2L);
+        values.put("max(modificationDate)", 1000L);
+        when(dataService.aggregate(any(Aggregation.class)))
+                .thenReturn(asList(new AggregationRow(new HashMap<String, Object>(), values)));
+
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(ID_FIELD_NAME, 1L);
+        row.put("modificationDate", 1000L);
+        when(dataService.retrieveFields(eq(asList(ID_FIELD_NAME, "modificationDate")), any(List.class),
+                any(QueryParams.class))).thenReturn(asList(row));
+
+        assertEquals("2:1000", mdsRestFacade.getVersion());
+        assertEquals("1:1000", mdsRestFacade.getVersion(1L));
+
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(dataService).aggregate(captor.capture());
+        assertEquals("max(modificationDate)", captor.getValue().getAggregates().get(1).getLabel());
+        verify(dataService, never()).findById(any(Long.class));
+    }
+
+    @Test
+    public void shouldNotComputeVersionsWithinPrecisionOfModificationDate() {
+        setUpCrudAccess(false, true, false, false);
+        DateTime now = DateUtil.now();
+
+        // another update within the same second would not change these versions
+        setUpModificationDate(now);
+        assertNull(mdsRestFacade.getVersion());
+        assertNull(mdsRestFacade.getVersion(1L));
+
+        setUpModificationDate(now.minusSeconds(1));
+        assertNotNull(mdsRestFacade.getVersion());
+        assertNotNull(mdsRestFacade.getVersion(1L));
+    }
+
     @Test
     public void shouldDoCreateOperation() throws IOException {
         setUpCrudAccess(true, false, false, false);
@@ -299,6 +396,154 @@ public class MdsRestFacadeTest {
         verify(dataService).deleteById(14L);
     }
 
+    @Test
+    public void shouldDoBulkCreateOperation() throws IOException {
+        setUpCrudAccess(true, false, false, false);
+        Record recordTwo = testRecord();
+        recordTwo.setValue("restTestTwo");
+
+        when(dataService.createAll(any(Collection.class))).thenReturn(asList(recordOne, recordTwo));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream recordsAsStream = toInputStream(asList(recordOne, recordTwo))) {
+            mdsRestFacade.createAll(recordsAsStream, output);
+        }
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(dataService).createAll(captor.capture());
+
+        List<Record> created = new ArrayList<>(captor.getValue());
+        assertEquals(2, created.size());
+        assertEquals("restTest", created.get(0).getValue());
+        assertEquals("restTestTwo", created.get(1).getValue());
+        assertNull(created.get(1).getDateIgnoredByRest());
+
+        List<Map> result = objectMapper.readValue(output.toByteArray(), List.class);
+        assertEquals(2, result.size());
+        assertEquals("restTestTwo", result.get(1).get(VALUE_FIELD));
+    }
+
+    @Test
+    public void shouldDoBulkUpdateOperation() throws IOException {
+        setUpCrudAccess(false, false, true, false);
+        Record fromDb = testRecord();
+        fromDb.setValue("old");
+        when(dataService.findByIds(asList(1L))).thenReturn(asList(fromDb));
+
+        try (InputStream recordsAsStream = toInputStream(asList(recordOne))) {
+            mdsRestFacade.updateAll(recordsAsStream, new ByteArrayOutputStream());
+        }
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(dataService).updateAll(captor.capture());
+
+        assertEquals(1, captor.getValue().size());
+        assertSame(fromDb, captor.getValue().iterator().next());
+        assertEquals("restTest", fromDb.getValue());
+    }
+
+    @Test
+    public void shouldDoBulkCreateOperationFromNewlineDelimitedJson() throws IOException {
+        setUpCrudAccess(true, false, false, false);
+        String body = "{\"value\":\"one\"}\n{\"value\":\"two\"}\n\n{\"value\":\"three\"}\n";
+
+        try (InputStream recordsAsStream = new ByteArrayInputStream(body.getBytes("UTF-8"))) {
+            mdsRestFacade.createAll(recordsAsStream, new ByteArrayOutputStream());
+        }
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(dataService).createAll(captor.capture());
+
+        List<Record> created = new ArrayList<>(captor.getValue());
+        assertEquals(3, created.size());
+        assertEquals("one", created.get(0).getValue());
+        assertEquals("three", created.get(2).getValue());
+    }
+
+    @Test
+    public void shouldCreateLargeBodiesInBatches() throws IOException {
+        setUpCrudAccess(true, false, false, false);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 250; ++i) {
+            records.add(testRecord());
+        }
+
+        try (InputStream recordsAsStream = toInputStream(records)) {
+            mdsRestFacade.createAll(recordsAsStream, new ByteArrayOutputStream());
+        }
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(dataService, times(3)).createAll(captor.capture());
+        verify(dataService, times(3)).doInTransaction(any(TransactionCallback.class));
+
+        assertEquals(100, captor.getAllValues().get(0).size());
+        assertEquals(50, captor.getAllValues().get(2).size());
+    }
+
+    @Test
+    public void shouldWriteErrorMarkerIfLaterBatchFails() throws IOException {
+        setUpCrudAccess(true, false, false, false);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 150; ++i) {
+            records.add(testRecord());
+        }
+
+        when(dataService.createAll(any(Collection.class))).thenReturn(asList(recordOne))
+                .thenThrow(new IllegalStateException("broken"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream recordsAsStream = toInputStream(records)) {
+            mdsRestFacade.createAll(recordsAsStream, output);
+            fail("The failure of the second batch should be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        }
+
+        // the first batch was written, the array is left unclosed after the marker
+        String body = output.toString("UTF-8");
+        assertTrue(body.startsWith("[{"));
+        assertTrue(body.endsWith(",{\"error\":\"broken\"}"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotWriteAnythingIfFirstBatchFails() throws IOException {
+        setUpCrudAccess(true, false, false, false);
+        when(dataService.createAll(any(Collection.class))).thenThrow(new IllegalStateException("broken"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream recordsAsStream = toInputStream(asList(recordOne))) {
+            mdsRestFacade.createAll(recordsAsStream, output);
+        } finally {
+            assertEquals(0, output.size());
+        }
+    }
+
+    @Test(expected = RestEntityNotFoundException.class)
+    public void shouldNotUpdateAnythingIfInstanceDoesNotExist() throws IOException {
+        setUpCrudAccess(false, false, true, false);
+        Record recordTwo = testRecord();
+        recordTwo.setId(2L);
+
+        try (InputStream recordsAsStream = toInputStream(asList(recordOne, recordTwo))) {
+            mdsRestFacade.updateAll(recordsAsStream, new ByteArrayOutputStream());
+        } finally {
+            verify(dataService, never()).updateAll(any(Collection.class));
+        }
+    }
+
+    @Test
+    public void shouldDoBulkDeleteOperation() {
+        setUpCrudAccess(false, false, false, true);
+
+        when(dataService.findByIds(asList(1L, 14L))).thenReturn(asList(recordOne));
+
+        mdsRestFacade.deleteAll(asList(1L, 14L));
+
+        verify(dataService).doInTransaction(any(TransactionCallback.class));
+        verify(dataService).deleteAll(asList(recordOne));
+        verify(dataService, never()).findById(any(Long.class));
+    }
+
     @Test
     public void shouldExecuteLookupWithoutBlobField() {
 
@@ -360,6 +605,82 @@ public class MdsRestFacadeTest {
         assertEquals(81l, result.getMetadata().getTotalCount());
     }
 
+    @Test
+    public void shouldStreamInstancesAsNewlineDelimitedJson() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+        Record recordTwo = testRecord();
+        recordTwo.setValue("restTestTwo");
+        when(dataService.retrieveAll(any(QueryParams.class))).thenReturn(asList(recordOne, recordTwo));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mdsRestFacade.stream(new QueryParams((Order) null), false, RestStreamFormat.NDJSON, output);
+
+        String[] lines = output.toString("UTF-8").split("\n");
+        assertEquals(2, lines.length);
+
+        Map first = objectMapper.readValue(lines[0], Map.class);
+        Map second = objectMapper.readValue(lines[1], Map.class);
+        assertEquals("restTest", first.get(VALUE_FIELD));
+        assertEquals("restTestTwo", second.get(VALUE_FIELD));
+        assertFalse(first.containsKey(BLOB_FIELD));
+
+        verify(dataService).doInTransaction(any(TransactionCallback.class));
+    }
+
+    @Test
+    public void shouldStreamInstancesAsJsonArray() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mdsRestFacade.stream(new QueryParams((Order) null), true, RestStreamFormat.JSON, output);
+
+        List<Map> result = objectMapper.readValue(output.toByteArray(), List.class);
+        assertEquals(1, result.size());
+        assertEquals("restTest", result.get(0).get(VALUE_FIELD));
+        assertTrue(result.get(0).containsKey(BLOB_FIELD));
+    }
+
+    @Test
+    public void shouldWriteErrorMarkerIfStreamFails() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+        List<Record> chunk = Collections.nCopies(KeysetIterator.DEFAULT_CHUNK_SIZE, recordOne);
+        when(dataService.retrieveAll(any(QueryParams.class))).thenReturn(chunk)
+                .thenThrow(new IllegalStateException("broken"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            mdsRestFacade.stream(new QueryParams((Order) null), false, RestStreamFormat.NDJSON, output);
+            fail("The failure of the second chunk should be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        }
+
+        // the first chunk was written, followed by the marker
+        String[] lines = output.toString("UTF-8").split("\n");
+        assertEquals(KeysetIterator.DEFAULT_CHUNK_SIZE + 1, lines.length);
+        assertEquals("restTest", objectMapper.readValue(lines[0], Map.class).get(VALUE_FIELD));
+        assertEquals("broken", objectMapper.readValue(lines[lines.length - 1], Map.class).get("error"));
+    }
+
+    @Test
+    public void shouldStreamLookupResult() throws IOException {
+        when(dataService.supportedLookup(any(String.class), eq(44), any(QueryParams.class)))
+                .thenReturn(asList(recordOne));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mdsRestFacade.streamLookup(SUPPORTED_LOOKUP_NAME, asLookupMap(null, "44"), new QueryParams((Order) null),
+                false, RestStreamFormat.NDJSON, output);
+
+        Map result = objectMapper.readValue(output.toString("UTF-8").trim(), Map.class);
+        assertEquals("restTest", result.get(VALUE_FIELD));
+    }
+
+    @Test(expected = RestLookupExecutionForbiddenException.class)
+    public void shouldNotStreamForbiddenLookup() {
+        mdsRestFacade.streamLookup(FORBIDDEN_LOOKUP_NAME, asLookupMap(null, "44"), null, false,
+                RestStreamFormat.NDJSON, new ByteArrayOutputStream());
+    }
+
     // bad input exceptions verifications
 
     @Test(expected = RestBadBodyFormatException.class)
@@ -390,6 +711,40 @@ public class MdsRestFacadeTest {
         mdsRestFacade.executeLookup(FORBIDDEN_LOOKUP_NAME, asLookupMap("something", "55"), null, false);
     }
 
+    @Test
+    public void shouldAggregateByFieldsExposedByRest() {
+        setUpCrudAccess(false, true, false, false);
+        Aggregation aggregation = new Aggregation().groupBy(DATE_FIELD).count().max(ID_FIELD_NAME);
+        List<AggregationRow> rows = new ArrayList<>();
+
+        when(dataService.aggregate(any(Aggregation.class), any(List.class))).thenReturn(rows);
+
+        Map<String, String> fieldValues = new HashMap<>();
+        fieldValues.put(VALUE_FIELD, "restTest");
+
+        assertSame(rows, mdsRestFacade.aggregate(aggregation, fieldValues));
+
+        ArgumentCaptor<List> propertiesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(dataService).aggregate(any(Aggregation.class), propertiesCaptor.capture());
+
+        List<Property> properties = propertiesCaptor.getValue();
+        assertEquals(1, properties.size());
+        assertEquals(VALUE_FIELD, properties.get(0).getName());
+        assertEquals("restTest", properties.get(0).getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAggregateFieldsHiddenFromRest() {
+        setUpCrudAccess(false, true, false, false);
+        mdsRestFacade.aggregate(new Aggregation().sum(INT_FIELD), new HashMap<String, String>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAggregateInstancesByFieldsHiddenFromRest() {
+        setUpCrudAccess(false, true, false, false);
+        mdsRestFacade.aggregate(new Aggregation().count(), asLookupMap("something", "55"));
+    }
+
     // Unsupported exceptions verification
 
     @Test(expected = RestOperationNotSupportedException.class)
@@ -416,6 +771,30 @@ public class MdsRestFacadeTest {
         mdsRestFacade.delete(1L);
     }
 
+    @Test(expected = RestOperationNotSupportedException.class)
+    public void shouldThrowExceptionForUnsupportedBulkCreate() {
+        setUpCrudAccess(false, true, true, true);
+        mdsRestFacade.createAll(mock(InputStream.class), new ByteArrayOutputStream());
+    }
+
+    @Test(expected = RestOperationNotSupportedException.class)
+    public void shouldThrowExceptionForUnsupportedBulkDelete() {
+        setUpCrudAccess(true, true, true, false);
+        mdsRestFacade.deleteAll(asList(1L));
+    }
+
+    @Test(expected = RestOperationNotSupportedException.class)
+    public void shouldThrowExceptionForUnsupportedAggregate() {
+        setUpCrudAccess(true, false, true, true);
+        mdsRestFacade.aggregate(new Aggregation().count(), new HashMap<String, String>());
+    }
+
+    @Test(expected = RestOperationNotSupportedException.class)
+    public void shouldThrowExceptionForUnsupportedStream() {
+        setUpCrudAccess(true, false, true, true);
+        mdsRestFacade.stream(null, false, RestStreamFormat.JSON, new ByteArrayOutputStream());
+    }
+
     @Test(expected = RestNoLookupResultException.class)
     public void shouldThrowExceptionForEmptyResult() {
         Map<String, String> lookupMap = asLookupMap(null, "44");
@@ -433,6 +812,20 @@ public class MdsRestFacadeTest {
         when(restOptionsDto.isDelete()).thenReturn(allowDelete);
     }
 
+    private void setUpModificationDate(DateTime modificationDate) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", 2L);
+        values.put("max(modificationDate)", modificationDate);
+        when(dataService.aggregate(any(Aggregation.class)))
+                .thenReturn(asList(new AggregationRow(new HashMap<String, Object>(), values)));
+
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(ID_FIELD_NAME, 1L);
+        row.put("modificationDate", modificationDate);
+        when(dataService.retrieveFields(eq(asList(ID_FIELD_NAME, "modificationDate")), any(List.class),
+                any(QueryParams.class))).thenReturn(asList(row));
+    }
+
     private Record testRecord() {
         Record record = new Record();
         record.setValue("restTest");
@@ -456,7 +849,7 @@ public class MdsRestFacadeTest {
         return map;
     }
 
-    private InputStream toInputStream(Record record) throws IOException {
+    private InputStream toInputStream(Object record) throws IOException {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
             objectMapper.writeValue(baos, record);
             return new ByteArrayInputStream(baos.toByteArray());
@@ -13,6 +13,7 @@ import org.motechproject.mds.domain.Tracking;
 import org.motechproject.mds.domain.Type;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.impl.history.BasePersistenceService;
+import org.motechproject.mds.service.impl.history.HistoryBatchWriter;
 import org.motechproject.mds.service.impl.history.HistoryServiceImpl;
 import org.motechproject.mds.testutil.records.Record;
 import org.motechproject.mds.testutil.records.history.Record__History;
@@ -25,12 +26,15 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.framework.wiring.BundleWiring;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -39,10 +43,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -189,6 +197,20 @@ public class HistoryServiceTest {
         assertThat(values, hasItem("java.lang.Long param0, java.lang.Boolean param1"));
     }
 
+    @Test
+    public void shouldRemoveHistoryRecordsOfAllInstancesWithSingleQuery() throws Exception {
+        Record first = new Record();
+        Record second = new Record();
+        second.setId(2L);
+
+        historyService.removeAll(Arrays.asList(first, second));
+
+        verify(manager).newQuery(Record__History.class);
+        verify(query).setFilter("param0.contains(record__HistoryCurrentVersion) && record__HistoryFromTrash == param1");
+        verify(query).declareParameters("java.util.Collection param0, java.lang.Boolean param1");
+        verify(query).deletePersistentAll(Arrays.asList(1L, 2L), false);
+    }
+
     @Test
     public void shouldNotSetTrashFlagIfClassNotFound() throws Exception {
         doReturn(null).when(classLoader).loadClass(anyString());
@@ -218,4 +240,80 @@ public class HistoryServiceTest {
         verify(manager).makePersistentAll(collection);
     }
 
+    @Test
+    public void shouldSetTrashFlagForAllInstances() throws Exception {
+        Record__History firstValue = new Record__History(1L, "first");
+        Record__History secondValue = new Record__History(2L, "second");
+
+        List<Record__History> collection = Arrays.asList(firstValue, secondValue);
+        doReturn(collection).when(query).execute(anyCollection(), eq(false));
+
+        Record first = new Record();
+        Record second = new Record();
+        second.setId(2L);
+
+        Record__Trash firstTrash = new Record__Trash();
+        firstTrash.setId(10L);
+        Record__Trash secondTrash = new Record__Trash();
+        secondTrash.setId(20L);
+
+        historyService.setTrashFlag(Arrays.asList(first, second), Arrays.asList(firstTrash, secondTrash));
+
+        assertTrue(firstValue.getRecord__HistoryFromTrash());
+        assertEquals(Long.valueOf(10L), firstValue.getRecord__HistoryCurrentVersion());
+        assertTrue(secondValue.getRecord__HistoryFromTrash());
+        assertEquals(Long.valueOf(20L), secondValue.getRecord__HistoryCurrentVersion());
+        verify(manager).makePersistentAll(collection);
+    }
+
+    @Test
+    public void shouldSaveBatchedHistoryBeforeCommit() throws Exception {
+        ((HistoryServiceImpl) historyService).setHistoryBatchWriter(new HistoryBatchWriter(factory, 10));
+
+        Entity entity = mock(Entity.class);
+        Field valueField = mock(Field.class);
+        Type valueType = mock(Type.class);
+
+        doReturn("value").when(valueField).getName();
+        doReturn(valueType).when(valueField).getType();
+        doReturn(String.class.getName()).when(valueType).getTypeClassName();
+
+        doReturn(17L).when(entity).getEntityVersion();
+        doReturn(Arrays.asList(valueField)).when(entity).getFields();
+        doReturn(entity).when(allEntities).retrieveByClassName(anyString());
+
+        Record instance = new Record();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            historyService.record(instance);
+
+            verify(manager, never()).makePersistent(any());
+            verify(manager, never()).makePersistentAll(anyCollection());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.beforeCommit(false);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(manager).makePersistentAll(captor.capture());
+
+        Record__History history = (Record__History) captor.getValue().iterator().next();
+        assertEquals(instance.getId(), history.getRecord__HistoryCurrentVersion());
+        assertEquals(instance.getValue(), history.getValue());
+    }
+
+    @Test
+    public void shouldFlushBatchedHistoryBeforeRemovingHistory() throws Exception {
+        HistoryBatchWriter writer = mock(HistoryBatchWriter.class);
+        ((HistoryServiceImpl) historyService).setHistoryBatchWriter(writer);
+
+        historyService.remove(new Record());
+
+        verify(writer).flush();
+        verify(query).deletePersistentAll(1L, false);
+    }
 }
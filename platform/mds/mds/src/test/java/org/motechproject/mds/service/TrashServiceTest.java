@@ -18,6 +18,7 @@ import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.impl.history.TrashServiceImpl;
 import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.testutil.records.history.Record__History;
 import org.motechproject.mds.testutil.records.history.Record__Trash;
 import org.motechproject.mds.util.MDSClassLoader;
 import org.osgi.framework.Bundle;
@@ -25,20 +26,31 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.wiring.BundleWiring;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.motechproject.testing.utils.TimeFaker.fakeNow;
 import static org.motechproject.testing.utils.TimeFaker.stopFakingTime;
@@ -68,6 +80,12 @@ public class TrashServiceTest {
     @Mock
     private Query query;
 
+    @Mock
+    private Query historyQuery;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @Mock
     private ClassLoader classLoader;
 
@@ -86,6 +104,9 @@ public class TrashServiceTest {
     @Captor
     private ArgumentCaptor<Record__Trash> trashCaptor;
 
+    @Captor
+    private ArgumentCaptor<List<Record__Trash>> trashListCaptor;
+
     private TrashService trashService;
 
     @Before
@@ -99,12 +120,14 @@ public class TrashServiceTest {
         ((TrashServiceImpl) trashService).setMdsSchedulerService(schedulerService);
         ((TrashServiceImpl) trashService).setPersistenceManagerFactory(factory);
         ((TrashServiceImpl) trashService).setBundleContext(bundleContext);
+        ((TrashServiceImpl) trashService).setTransactionManager(transactionManager);
 
         doReturn(manager).when(factory).getPersistenceManager();
         doReturn(query).when(manager).newQuery(Record.class);
         doReturn(bundle).when(bundleContext).getBundle();
         doReturn(bundleWiring).when(bundle).adapt(BundleWiring.class);
         doReturn(classLoader).when(bundleWiring).getClassLoader();
+        doReturn(new SimpleTransactionStatus()).when(transactionManager).getTransaction(any(TransactionDefinition.class));
 
         ((TrashServiceImpl) trashService).init();
     }
@@ -142,6 +165,41 @@ public class TrashServiceTest {
 
         Record__Trash trash = trashCaptor.getValue();
         assertEquals(instance.getValue(), trash.getValue());
+        assertNotNull(trash.getTrashDate());
+    }
+
+    @Test
+    public void shouldMoveAllObjectsToTrashInSingleBatch() throws Exception {
+        doReturn(Record__Trash.class).when(classLoader).loadClass(Record__Trash.class.getName());
+
+        Entity entity = mock(Entity.class);
+        Field field = mock(Field.class);
+        Type type = mock(Type.class);
+
+        doReturn(17L).when(entity).getEntityVersion();
+        doReturn(field).when(entity).getField("id");
+        doReturn(field).when(entity).getField("value");
+
+        doReturn(type).when(field).getType();
+        doReturn(false).when(type).isRelationship();
+
+        doReturn(entity).when(allEntities).retrieveByClassName(anyString());
+
+        Record first = new Record();
+        Record second = new Record();
+        second.setId(2L);
+
+        trashService.moveAllToTrash(asList(first, second), 1L, true);
+
+        verify(manager).makePersistentAll(trashListCaptor.capture());
+        verify(manager, never()).makePersistent(any());
+
+        List<Record__Trash> trash = trashListCaptor.getValue();
+        assertEquals(2, trash.size());
+        assertNotNull(trash.get(0).getTrashDate());
+        assertEquals(trash.get(0).getTrashDate(), trash.get(1).getTrashDate());
+
+        verify(historyService).setTrashFlag(asList(first, second), trash);
     }
 
     @Test
@@ -225,4 +283,72 @@ public class TrashServiceTest {
             stopFakingTime();
         }
     }
+
+    @Test
+    public void shouldEmptyTrashInChunks() throws Exception {
+        DateTime now = DateTime.now();
+        Date cutoff = now.minusHours(2).toDate();
+
+        doReturn(Record__Trash.class).when(classLoader).loadClass("org.test.history.TestEntity__Trash");
+        doReturn(Record__History.class).when(classLoader).loadClass("org.test.history.TestEntity__History");
+        doReturn(query).when(manager).newQuery(Record__Trash.class);
+        doReturn(historyQuery).when(manager).newQuery(Record__History.class);
+
+        doReturn(true).when(entity).isActualEntity();
+        doReturn(true).when(entity).isRecordHistory();
+        doReturn("org.test.TestEntity").when(entity).getClassName();
+        doReturn(asList(entity)).when(allEntities).retrieveAll();
+
+        doReturn(2).when(settingsService).getTimeValue();
+        doReturn(TimeUnit.HOURS).when(settingsService).getTimeUnit();
+
+        // the count of instances to remove, followed by the ids of the two chunks
+        doReturn(3L).doReturn(asList(1L, 2L)).doReturn(asList(3L)).when(query).execute(cutoff);
+        doReturn(2L).when(query).deletePersistentAll(cutoff, 2L);
+        doReturn(1L).when(query).deletePersistentAll(cutoff, 3L);
+
+        ((TrashServiceImpl) trashService).setPurgeChunkSize(2);
+
+        fakeNow(now);
+
+        try {
+            trashService.emptyTrash();
+        } finally {
+            stopFakingTime();
+        }
+
+        verify(query, times(3)).execute(cutoff);
+        verify(query, times(2)).setRange(0, 2);
+        verify(query).deletePersistentAll(cutoff, 2L);
+        verify(query).deletePersistentAll(cutoff, 3L);
+
+        verify(historyQuery, times(2)).addSubquery(eq(query), eq(Collection.class.getName() + " trashIds"),
+                (String) isNull(), eq("cutoff"), eq("maxId"));
+        verify(historyQuery).deletePersistentAll(cutoff, 2L);
+        verify(historyQuery).deletePersistentAll(cutoff, 3L);
+
+        verify(historyService, never()).remove(any());
+        verify(manager, never()).deletePersistentAll(any(Collection.class));
+        verify(transactionManager, times(4)).commit(any(SimpleTransactionStatus.class));
+    }
+
+    @Test
+    public void shouldNotRemoveAnythingIfTrashIsEmpty() throws Exception {
+        doReturn(Record__Trash.class).when(classLoader).loadClass("org.test.history.TestEntity__Trash");
+        doReturn(query).when(manager).newQuery(Record__Trash.class);
+
+        doReturn(true).when(entity).isActualEntity();
+        doReturn("org.test.TestEntity").when(entity).getClassName();
+        doReturn(asList(entity)).when(allEntities).retrieveAll();
+
+        doReturn(1).when(settingsService).getTimeValue();
+        doReturn(TimeUnit.DAYS).when(settingsService).getTimeUnit();
+        doReturn(0L).when(query).execute(any(Date.class));
+
+        trashService.emptyTrash();
+
+        verify(query, never()).setRange(anyLong(), anyLong());
+        verify(query, never()).deletePersistentAll(any(Date.class), anyLong());
+        verify(manager, never()).newQuery(Record__History.class);
+    }
 }
@@ -0,0 +1,161 @@
+package org.motechproject.mds.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.service.EntityService;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ComboboxValueCollectorTest {
+
+    private static final long FLUSH_INTERVAL = 60000;
+
+    @Mock
+    private EntityService entityService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ComboboxValueCollector collector;
+
+    @Before
+    public void setUp() {
+        collector = new ComboboxValueCollector(entityService, transactionManager, FLUSH_INTERVAL);
+    }
+
+    @After
+    public void tearDown() {
+        collector.stop();
+    }
+
+    @Test
+    public void shouldSaveEachValueOnce() {
+        collector.add(1L, "list", "one");
+        collector.add(1L, "list", "two");
+        collector.add(1L, "list", "one");
+        collector.add(1L, "other", "one");
+
+        assertEquals(3, collector.getPendingCount());
+        verify(entityService, never()).updateComboboxValues(any(Long.class), anyMap());
+
+        collector.flush();
+
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(entityService).updateComboboxValues(eq(1L), captor.capture());
+        verify(transactionManager).getTransaction(any(TransactionDefinition.class));
+
+        Map<String, Collection> saved = captor.getValue();
+        assertEquals(2, saved.size());
+        assertEquals(new HashSet<>(asList("one", "two")), new HashSet<>(saved.get("list")));
+        assertEquals(asList("one"), saved.get("other"));
+        assertEquals(0, collector.getPendingCount());
+    }
+
+    @Test
+    public void shouldSaveValuesOfEachEntitySeparately() {
+        collector.add(1L, "list", "one");
+        collector.add(2L, "list", "two");
+
+        collector.flush();
+
+        verify(entityService).updateComboboxValues(eq(1L), anyMap());
+        verify(entityService).updateComboboxValues(eq(2L), anyMap());
+    }
+
+    @Test
+    public void shouldNotSaveTheSameValuesTwice() {
+        collector.add(1L, "list", "one");
+
+        collector.flush();
+        collector.flush();
+
+        verify(entityService, times(1)).updateComboboxValues(eq(1L), anyMap());
+    }
+
+    @Test
+    public void shouldDropValuesWhichCouldNotBeSaved() {
+        doThrow(new IllegalArgumentException()).when(entityService).updateComboboxValues(eq(1L), anyMap());
+
+        collector.add(1L, "list", "one");
+        collector.add(2L, "list", "two");
+
+        collector.flush();
+
+        verify(entityService).updateComboboxValues(eq(2L), anyMap());
+        assertEquals(0, collector.getPendingCount());
+    }
+
+    @Test
+    public void shouldSaveCollectedValuesWhenStopped() {
+        collector.add(1L, "list", "one");
+
+        collector.stop();
+
+        verify(entityService).updateComboboxValues(eq(1L), anyMap());
+    }
+
+    @Test
+    public void shouldCollectValuesAfterTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            collector.add(1L, "list", "one");
+
+            assertEquals(0, collector.getPendingCount());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, collector.getPendingCount());
+    }
+
+    @Test
+    public void shouldDropValuesOfRolledBackTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            collector.add(1L, "list", "one");
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        collector.flush();
+
+        assertEquals(0, collector.getPendingCount());
+        verify(entityService, never()).updateComboboxValues(any(Long.class), anyMap());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidFlushInterval() {
+        new ComboboxValueCollector(entityService, transactionManager, 0);
+    }
+}
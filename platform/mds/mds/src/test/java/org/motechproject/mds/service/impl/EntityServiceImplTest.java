@@ -16,6 +16,7 @@ import org.motechproject.mds.domain.Lookup;
 import org.motechproject.mds.domain.Type;
 import org.motechproject.mds.dto.DraftData;
 import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.FieldBasicDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
@@ -41,6 +42,8 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.core.userdetails.User;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -50,6 +53,8 @@ import java.util.Map;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
@@ -123,6 +128,9 @@ public class EntityServiceImplTest {
     @InjectMocks
     private EntityValidator entityValidator = new EntityValidator();
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private EntityServiceImpl entityService = new EntityServiceImpl();
 
@@ -538,6 +546,53 @@ public class EntityServiceImplTest {
         entityService.commitChanges(8L);
     }
 
+    @Test
+    public void shouldCacheEntitySnapshotsUntilInvalidated() {
+        when(entity.getId()).thenReturn(8L);
+        when(entity.getEntityVersion()).thenReturn(3L);
+        when(entity.toDto()).thenReturn(entityDto);
+        when(entityDto.getId()).thenReturn(8L);
+        when(entityDto.getClassName()).thenReturn(CLASS_NAME);
+        when(allEntities.retrieveById(8L)).thenReturn(entity);
+
+        EntitySnapshot snapshot = entityService.getEntitySnapshot(8L);
+
+        assertEquals(Long.valueOf(3), snapshot.getEntityVersion());
+        assertSame(snapshot, entityService.getEntitySnapshot(8L));
+        assertSame(snapshot, entityService.getEntitySnapshot(CLASS_NAME));
+        verify(entityDto).setReadOnlyAccess(false);
+        verify(allEntities, never()).retrieveByClassName(CLASS_NAME);
+        // cached snapshots are served without a transaction
+        verify(transactionManager).getTransaction(any(TransactionDefinition.class));
+
+        entityService.invalidateEntitySnapshots();
+
+        assertNotSame(snapshot, entityService.getEntitySnapshot(8L));
+    }
+
+    @Test
+    public void shouldRebuildEntitySnapshotAfterEntityVersionChanged() {
+        when(entity.getId()).thenReturn(8L);
+        when(entity.getEntityVersion()).thenReturn(3L);
+        when(entity.toDto()).thenReturn(entityDto);
+        when(entityDto.getId()).thenReturn(8L);
+        when(entityDto.getClassName()).thenReturn(CLASS_NAME);
+        when(allEntities.retrieveById(8L)).thenReturn(entity);
+
+        EntitySnapshot snapshot = entityService.getEntitySnapshot(8L);
+
+        assertSame(snapshot, entityService.getEntitySnapshot(8L));
+
+        entityService.incrementVersion(8L);
+        when(entity.getEntityVersion()).thenReturn(4L);
+
+        EntitySnapshot newSnapshot = entityService.getEntitySnapshot(8L);
+
+        assertNotSame(snapshot, newSnapshot);
+        assertEquals(Long.valueOf(4), newSnapshot.getEntityVersion());
+        assertSame(newSnapshot, entityService.getEntitySnapshot(8L));
+    }
+
     private void setUpSecurityContext() {
         SimpleGrantedAuthority authority = new SimpleGrantedAuthority("mdsSchemaAccess");
         List<SimpleGrantedAuthority> authorities = asList(authority);
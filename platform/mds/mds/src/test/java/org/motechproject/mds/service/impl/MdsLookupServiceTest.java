@@ -8,6 +8,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.EntitySnapshot;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.LookupFieldDto;
@@ -94,16 +95,17 @@ public class MdsLookupServiceTest {
         LookupDto secondLookup = new LookupDto(SECOND_LOOKUP_NAME, false, false,
                 asList(strLookupField, intLookupField), false);
 
-        when(entityService.getEntityByClassName(ENTITY_CLASS_NAME)).thenReturn(entity);
-        when(entityService.getEntityFields(ENTITY_ID)).thenReturn(asList(intField, strField));
-        when(entityService.getLookupByName(ENTITY_ID, FIRST_LOOKUP_NAME)).thenReturn(firstLookup);
-        when(entityService.getLookupByName(ENTITY_ID, SECOND_LOOKUP_NAME)).thenReturn(secondLookup);
-
         Map<String, FieldDto> mapping = new HashMap<>();
         mapping.put(STR_PARAM, strField);
         mapping.put(INT_PARAM, intField);
-        when(entityService.getLookupFieldsMapping(ENTITY_ID, FIRST_LOOKUP_NAME)).thenReturn(mapping);
-        when(entityService.getLookupFieldsMapping(ENTITY_ID, SECOND_LOOKUP_NAME)).thenReturn(mapping);
+
+        Map<String, Map<String, FieldDto>> mappings = new HashMap<>();
+        mappings.put(FIRST_LOOKUP_NAME, mapping);
+        mappings.put(SECOND_LOOKUP_NAME, mapping);
+
+        EntitySnapshot snapshot = new EntitySnapshot(entity, 1L, asList(intField, strField),
+                asList(firstLookup, secondLookup), mappings, Collections.<String>emptyList());
+        when(entityService.getEntitySnapshot(ENTITY_CLASS_NAME)).thenReturn(snapshot);
 
         when(bundleContext.getServiceReference(TestDataService.class.getName())).thenReturn(serviceReference);
         when(bundleContext.getService(serviceReference)).thenReturn(dataService);
@@ -27,11 +27,16 @@ import org.motechproject.mds.testutil.records.RecordEnum;
 import org.motechproject.mds.testutil.records.RelatedClass;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -39,7 +44,9 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
@@ -101,8 +108,13 @@ public class CsvImporterExporterTest {
     @Mock
     private MDSLookupService mdsLookupService;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @Before
     public void setUp() {
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(new SimpleTransactionStatus());
+
         MotechClassPool.registerServiceInterface(ENTITY_CLASSNAME, DATA_SERVICE_CLASSNAME);
         when(bundleContext.getServiceReference(DATA_SERVICE_CLASSNAME)).thenReturn(serviceRef);
         when(bundleContext.getService(serviceRef)).thenReturn(motechDataService);
@@ -200,6 +212,48 @@ public class CsvImporterExporterTest {
         assertEquals(INSTANCE_COUNT, results.totalNumberOfImportedInstances());
     }
 
+    @Test
+    public void shouldRetrieveExistingAndRelatedInstancesInBatches() {
+        csvImporterExporter.setImportBatchSize(7);
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID));
+
+        when(motechDataService.findByIds(anyCollection())).thenAnswer(new Answer<List<Record2>>() {
+            @Override
+            public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+                List<Record2> records = new ArrayList<>();
+                for (Object id : (Collection) invocation.getArguments()[0]) {
+                    Record2 record = new Record2();
+                    record.setId((Long) id);
+                    records.add(record);
+                }
+                return records;
+            }
+        });
+        when(relatedDataService.findByIds(anyCollection())).thenReturn(Arrays.asList(new RelatedClass(0L),
+                new RelatedClass(1L)));
+        when(motechDataService.update(any(Record2.class))).thenAnswer(new Answer<Record2>() {
+            @Override
+            public Record2 answer(InvocationOnMock invocation) throws Throwable {
+                return (Record2) invocation.getArguments()[0];
+            }
+        });
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, CONTINUE_ON_ERROR);
+
+        // 20 rows in batches of 7, every batch is committed separately, after the entity is read
+        verify(motechDataService, times(3)).findByIds(anyCollection());
+        verify(relatedDataService, times(3)).findByIds(anyCollection());
+        verify(motechDataService, never()).findById(anyLong());
+        verify(relatedDataService, never()).findById(anyLong());
+        verify(transactionManager, times(4)).commit(any(TransactionStatus.class));
+        verify(allEntities, times(4)).retrieveById(ENTITY_ID);
+
+        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
+        verify(motechDataService, times(INSTANCE_COUNT)).update(captor.capture());
+        assertEquals(testInstances(IdMode.INCLUDE_ID), captor.getAllValues());
+        assertEquals(listFromRangeInclusive(0, 19), results.getUpdatedInstanceIDs());
+    }
+
     @Test
     public void testImportWithInvalidRows() {
         CsvImportResults results;
@@ -11,6 +11,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.records.Record2;
@@ -26,6 +27,7 @@ import java.util.List;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -158,7 +160,7 @@ public class PdfCsvExporterTest {
             instances.add(instance2);
         }
 
-        when(dataService.retrieveAll(null)).thenReturn(instances);
+        when(dataService.retrieveAll(any(QueryParams.class))).thenReturn(instances);
     }
 
     private void writePdfToFile() {
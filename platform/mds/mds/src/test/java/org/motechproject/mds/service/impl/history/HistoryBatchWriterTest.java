@@ -0,0 +1,126 @@
+package org.motechproject.mds.service.impl.history;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.testutil.records.history.Record__History;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HistoryBatchWriterTest {
+
+    @Mock
+    private PersistenceManagerFactory persistenceManagerFactory;
+
+    @Mock
+    private PersistenceManager manager;
+
+    private HistoryBatchWriter writer;
+
+    @Before
+    public void setUp() {
+        when(persistenceManagerFactory.getPersistenceManager()).thenReturn(manager);
+
+        writer = new HistoryBatchWriter(persistenceManagerFactory, 3);
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    public void shouldSaveBatchBeforeCommit() {
+        Record__History first = new Record__History(1L, "a");
+        Record__History second = new Record__History(2L, "b");
+
+        writer.add(Collections.singletonList(first));
+        writer.add(Collections.singletonList(second));
+
+        verify(manager, never()).makePersistentAll(anyCollection());
+
+        beforeCommit();
+
+        verify(manager).makePersistentAll(asList(first, second));
+    }
+
+    @Test
+    public void shouldSaveBatchOnceItIsFull() {
+        Record__History first = new Record__History(1L, "a");
+        Record__History second = new Record__History(2L, "b");
+        Record__History third = new Record__History(3L, "c");
+        Record__History fourth = new Record__History(4L, "d");
+
+        writer.add(asList(first, second, third));
+
+        verify(manager).makePersistentAll(asList(first, second, third));
+
+        writer.add(Collections.singletonList(fourth));
+        beforeCommit();
+
+        verify(manager).makePersistentAll(Collections.singletonList(fourth));
+    }
+
+    @Test
+    public void shouldSaveBatchOnFlush() {
+        Record__History first = new Record__History(1L, "a");
+
+        writer.add(Collections.singletonList(first));
+        writer.flush();
+
+        verify(manager).makePersistentAll(Collections.singletonList(first));
+
+        beforeCommit();
+
+        verify(manager).makePersistentAll(anyCollection());
+    }
+
+    @Test
+    public void shouldNotSaveBatchOfRolledBackTransaction() {
+        writer.add(Collections.singletonList(new Record__History(1L, "a")));
+
+        for (TransactionSynchronization synchronization : getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        writer.flush();
+
+        verify(manager, never()).makePersistentAll(anyCollection());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotAcceptHistoryOutsideOfTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+        try {
+            writer.add(Collections.singletonList(new Record__History(1L, "a")));
+        } finally {
+            TransactionSynchronizationManager.initSynchronization();
+        }
+    }
+
+    private void beforeCommit() {
+        for (TransactionSynchronization synchronization : getSynchronizations()) {
+            synchronization.beforeCommit(false);
+        }
+    }
+
+    private List<TransactionSynchronization> getSynchronizations() {
+        return TransactionSynchronizationManager.getSynchronizations();
+    }
+}
@@ -6,10 +6,15 @@ import org.junit.Test;
 import org.motechproject.mds.query.InMemoryQueryFilter;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.testutil.records.Record2;
+import org.motechproject.mds.testutil.records.RelatedClass;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 import static ch.lambdaj.Lambda.extract;
 import static ch.lambdaj.Lambda.on;
@@ -91,10 +96,93 @@ public class InMemoryQueryFilterTest {
         assertListByValues(result, asList("zet", "test", "something", "aaa", "hmm"));
     }
 
+    @Test
+    public void shouldReturnTheSamePagesAsFullOrdering() {
+        List<Record> records = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            // the values repeat, so that ties are ordered by id
+            records.add(record("value " + (id * 37 % 10), id));
+        }
+        Collections.shuffle(records, new Random(42));
+
+        List<Record> ordered = InMemoryQueryFilter.order(records, "value", Order.Direction.DESC);
+
+        for (int page = 1; page <= 11; page++) {
+            QueryParams queryParams = new QueryParams(page, 10, new Order("value", Order.Direction.DESC));
+
+            List<Record> result = InMemoryQueryFilter.filter(records, queryParams);
+
+            assertEquals(InMemoryQueryFilter.paginate(ordered, page, 10), result);
+        }
+    }
+
+    @Test
+    public void shouldOrderTiesById() {
+        testCollection.add(record("aaa", 7));
+        testCollection.add(record("aaa", 6));
+
+        List<Record> result = InMemoryQueryFilter.order(testCollection, "value", Order.Direction.ASC);
+
+        assertEquals(asList(4L, 6L, 7L), extract(result.subList(0, 3), on(Record.class).getId()));
+    }
+
+    @Test
+    public void shouldOrderNullValuesLast() {
+        testCollection.add(record(null, 6));
+
+        List<Record> result = InMemoryQueryFilter.filter(testCollection,
+                new QueryParams(1, 2, new Order("value", Order.Direction.DESC)));
+
+        assertListByValues(result, asList(null, "zet"));
+    }
+
+    @Test
+    public void shouldSkipUntilLastSeenInstance() {
+        testCollection.add(record("something", 6));
+
+        QueryParams queryParams = QueryParams.keyset(2, new Order("value", Order.Direction.ASC), "something", 3L);
+
+        List<Record> result = InMemoryQueryFilter.filter(testCollection, queryParams);
+
+        assertListByValues(result, asList("something", "test"));
+        assertEquals(6L, (long) result.get(0).getId());
+
+        result = InMemoryQueryFilter.filter(testCollection, queryParams.nextPage(result.get(1)));
+
+        assertListByValues(result, asList("zet"));
+    }
+
+    @Test
+    public void shouldOrderByNestedProperty() {
+        // a null relationship is ordered as a null value
+        List<Record2> records = asList(record2(1L, 30L), record2(2L, null), record2(3L, 10L), record2(4L, 20L));
+
+        List<Record2> result = InMemoryQueryFilter.filter(records,
+                new QueryParams(1, 3, new Order("singleRelationship.id", Order.Direction.ASC)));
+
+        assertEquals(asList(3L, 4L, 1L), extract(result, on(Record2.class).getId()));
+
+        result = InMemoryQueryFilter.order(records, "singleRelationship.id", Order.Direction.DESC);
+
+        assertEquals(asList(2L, 1L, 4L, 3L), extract(result, on(Record2.class).getId()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownOrderField() {
+        InMemoryQueryFilter.filter(testCollection, new QueryParams(1, 2, new Order("unknown", Order.Direction.ASC)));
+    }
+
     private void assertListByValues(List<Record> result, List<String> values) {
         assertEquals(values, extract(result, on(Record.class).getValue()));
     }
 
+    private Record2 record2(Long id, Long relatedId) {
+        Record2 record = new Record2();
+        record.setId(id);
+        record.setSingleRelationship(null == relatedId ? null : new RelatedClass(relatedId));
+        return record;
+    }
+
     private Record record(String value, long id) {
         Record record = new Record();
         record.setValue(value);
@@ -0,0 +1,179 @@
+package org.motechproject.mds.util;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyAccessorsTest {
+
+    private PropertyAccessor accessor;
+
+    @Before
+    public void setUp() {
+        accessor = PropertyAccessors.generate(TestBean.class);
+        assertNotNull(accessor);
+    }
+
+    @Test
+    public void shouldReadProperties() {
+        DateTime now = DateTime.now();
+        TestBean bean = new TestBean();
+        bean.setId(7L);
+        bean.setName("name");
+        bean.setCount(3);
+        bean.setActive(true);
+        bean.setDate(now);
+        bean.setValues(Arrays.asList("a", "b"));
+
+        assertEquals(7L, accessor.get(bean, "id"));
+        assertEquals("name", accessor.get(bean, "name"));
+        assertEquals(3, accessor.get(bean, "count"));
+        assertEquals(true, accessor.get(bean, "active"));
+        assertEquals(now, accessor.get(bean, "date"));
+        assertEquals(Arrays.asList("a", "b"), accessor.get(bean, "values"));
+        assertEquals("read only", accessor.get(bean, "readOnly"));
+    }
+
+    @Test
+    public void shouldWriteProperties() {
+        DateTime now = DateTime.now();
+        TestBean bean = new TestBean();
+
+        accessor.set(bean, "id", 7L);
+        accessor.set(bean, "name", "name");
+        accessor.set(bean, "count", 3);
+        accessor.set(bean, "active", true);
+        accessor.set(bean, "date", now);
+        accessor.set(bean, "values", Arrays.asList("a", "b"));
+
+        assertEquals(Long.valueOf(7), bean.getId());
+        assertEquals("name", bean.getName());
+        assertEquals(3, bean.getCount());
+        assertTrue(bean.isActive());
+        assertEquals(now, bean.getDate());
+        assertEquals(Arrays.asList("a", "b"), bean.getValues());
+
+        accessor.set(bean, "name", null);
+        assertNull(bean.getName());
+    }
+
+    @Test
+    public void shouldWidenPrimitiveValues() {
+        TestBean bean = new TestBean();
+
+        accessor.set(bean, "count", (short) 5);
+
+        assertEquals(5, bean.getCount());
+    }
+
+    @Test
+    public void shouldOnlySupportSimpleProperties() {
+        assertTrue(accessor.isReadable("name"));
+        assertTrue(accessor.isWriteable("name"));
+        assertTrue(accessor.isReadable("readOnly"));
+        assertFalse(accessor.isWriteable("readOnly"));
+        assertFalse(accessor.isReadable("Name"));
+        assertFalse(accessor.isReadable("date.millis"));
+        assertFalse(accessor.isReadable("values[0]"));
+        assertFalse(accessor.isReadable("missing"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionForUnknownProperty() {
+        accessor.get(new TestBean(), "missing");
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void shouldThrowExceptionForValueOfWrongType() {
+        accessor.set(new TestBean(), "name", 5);
+    }
+
+    @Test
+    public void shouldNotGenerateAccessorsForClassesThatAreNotPersistent() {
+        PropertyAccessor notPersistent = PropertyAccessors.getAccessor(TestBean.class);
+
+        assertFalse(notPersistent.isReadable("name"));
+        assertFalse(notPersistent.isWriteable("name"));
+    }
+
+    @Test
+    public void shouldUseReflectionIfThereIsNoAccessor() {
+        TestBean bean = new TestBean();
+
+        PropertyUtil.safeSetProperty(bean, "Name", "name");
+
+        assertEquals("name", bean.getName());
+        assertEquals("name", PropertyUtil.safeGetProperty(bean, "Name"));
+    }
+
+    public static class TestBean {
+
+        private Long id;
+        private String name;
+        private int count;
+        private boolean active;
+        private DateTime date;
+        private List<String> values;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public DateTime getDate() {
+            return date;
+        }
+
+        public void setDate(DateTime date) {
+            this.date = date;
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+
+        public void setValues(List<String> values) {
+            this.values = values;
+        }
+
+        public String getReadOnly() {
+            return "read only";
+        }
+    }
+}